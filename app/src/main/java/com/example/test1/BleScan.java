@@ -7,17 +7,428 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import vpos.apipackage.At;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class BleScan {
-    private boolean isScanning = false;
+    private volatile boolean isScanning = false;
     private static final String TAG = "BLEScan";
-    private boolean isMaster;
+
+    public static final int DEFAULT_DEVICE_CAPACITY = 1024;
+    public static final long DEFAULT_DEVICE_TTL_MS = 30_000;
+    public static final int DEFAULT_RSSI_HYSTERESIS = 4;
+
+    // UART 수신 스레드와 파싱 스레드 사이 버퍼: 최대 recv 버퍼 두 개를 이어 붙일 수 있는 슬롯 16개
+    private static final int MAX_RECV_BUFFER_SIZE = 4096;
+    private static final int CHUNK_RING_SLOTS = 16;
+    private static final int CHUNK_RING_SLOT_SIZE = MAX_RECV_BUFFER_SIZE * 2;
+    // 수신이 없어도 이 주기로 만료 기기(LOST)를 처리한다
+    private static final int CHUNK_POLL_TIMEOUT_MS = 100;
+    // AT 명령 하나의 응답 기한 (기존 receiveAtResponse 의 recv 대기 시간과 같음)
+    private static final long AT_COMMAND_TIMEOUT_MS = 500;
+    // 최근 UART 원본 청크 보관 크기 (logcat HEX 덤프 대신)
+    private static final int RAW_TRACE_CAPACITY = 64 * 1024;
+    // 서로 다른 ADV/RSP 페이로드를 기억할 개수
+    private static final int PAYLOAD_CACHE_CAPACITY = 4096;
+    // 업링크 HTTP 연결/응답 기한
+    private static final int UPLINK_TIMEOUT_MS = 15_000;
+    private static final int UPLINK_QUEUE_CAPACITY = 8192;
+    // setModuleCacheDir 에 저장하는 모듈 정보 파일
+    private static final String MODULE_CACHE_FILE = "radio-module.properties";
+    // 수신 루프 안의 경고 로그 최소 간격
+    private static final long LOOP_LOG_INTERVAL_MS = 1000;
+
+    static {
+        ScanLog.setSink(BleScan::writeLog);
+    }
+
+    // 스캔 루프가 끝나도 유지되는 기기 테이블 (recvScanData 스레드에서만 접근)
+    private final DeviceTable deviceTable;
+    private final DeltaTracker deltaTracker;
+    // 청크마다 바뀐 기기만 반영해 게시하는 테이블 전체 스냅샷
+    private final TableSnapshot.Publisher tablePublisher;
+    // 기기별 RSSI 평활화/거리/구역 (recvScanData 스레드에서만 갱신)
+    private final ProximityEngine proximity;
+    // 다음 recvScanData 부터 적용할 설정
+    private volatile ProximityEngine.Config proximityConfig = new ProximityEngine.Config();
+    // 비콘 프레임 해석기 (스캔 전에 코덱을 등록한다)
+    private final CodecRegistry codecRegistry = CodecRegistry.standard();
+    // 반복 수신되는 페이로드의 해석 결과 (recvScanData 스레드에서만 갱신)
+    private final PayloadCache payloadCache = new PayloadCache(PAYLOAD_CACHE_CAPACITY, codecRegistry);
+    private final ChunkRing chunkRing;
+    // recv 버퍼 크기/timeout 을 수신량에 맞춰 조정 (UartReader 스레드에서만 갱신)
+    private final RecvScheduler recvScheduler;
+    // 소프트웨어 사전 필터, null 이면 모든 줄을 받는다
+    private volatile CompiledScanFilter scanFilter;
+    private volatile long filteredLines;
+    // 수신/파싱 계측 (BleScan 수명 동안 누적)
+    private final ScanMetrics metrics = new ScanMetrics();
+    private final RawTrace rawTrace = new RawTrace(RAW_TRACE_CAPACITY);
+    // 스캔 시작과 정리(수신 스레드 종료, Lib_AtStopScan)를 직렬화한다
+    private final Object scanLock = new Object();
+    // 목격 기록 저널, null 이면 기록하지 않는다
+    private volatile SightingJournal journal;
+    // 여러 구독자에게 이벤트를 나눠 준다 (구독자별 큐/스레드)
+    private final ScanDispatcher dispatcher = new ScanDispatcher();
+    // 서버 업링크와 그 구독 (startUplink/stopUplink 에서만 바꾼다)
+    private SightingUplink uplink;
+    private ScanDispatcher.Subscription uplinkSubscription;
+    // 구간별 방문/체류 요약, null 이면 집계하지 않는다
+    private volatile OccupancyAnalytics analytics;
+    // 스캔 창/주기 스케줄러, null 이면 계속 스캔한다 (다음 스캔부터 적용)
+    private volatile ScanDutyCycle dutyCycle;
+    // 수신 멈춤/깨진 스트림/명령 실패 감지와 단계별 복구, null 이면 감시하지 않는다 (다음 스캔부터 적용)
+    private volatile ScanWatchdog watchdog;
+
+    // BLE 모듈 통신 (실제 단말: At JNI, 테스트: 시뮬레이터, 재현: ReplayAtTransport)
+    private final AtTransport transport;
+    // transport 와 같은 객체. 수신 청크 캡처를 켜고 끈다.
+    private final CapturingAtTransport capture;
+    // AT 명령 전송/응답 대응 (스캔 중에는 사용하지 않는다)
+    private final AtCommandEngine atEngine;
+    // 모듈 동작 모드와 MAC/버전/마지막 스캔 조건 (이미 만족된 명령은 보내지 않는다)
+    private final RadioStateMachine radio;
+    // AT+OBSERVER 설정과 워치독 조치 (스캔 스레드나 스캔 전에만 사용)
+    private final ScanRecovery recovery;
+
+    public BleScan() {
+        this(new VposAtTransport());
+    }
+
+    public BleScan(AtTransport transport) {
+        this(transport, DEFAULT_DEVICE_CAPACITY, DEFAULT_DEVICE_TTL_MS);
+    }
+
+    /**
+     * @param transport      BLE 모듈 통신 구현
+     * @param deviceCapacity 동시에 추적할 최대 기기 수
+     * @param deviceTtlMs    마지막 수신 후 기기를 테이블에서 제거할 때까지의 시간
+     */
+    public BleScan(AtTransport transport, int deviceCapacity, long deviceTtlMs) {
+        capture = new CapturingAtTransport(transport);
+        this.transport = capture;
+        atEngine = new AtCommandEngine(this.transport);
+        radio = new RadioStateMachine(this.transport);
+        deviceTable = new DeviceTable(deviceCapacity, deviceTtlMs);
+        deltaTracker = new DeltaTracker(deviceTable, DEFAULT_RSSI_HYSTERESIS);
+        proximity = new ProximityEngine(deviceCapacity, proximityConfig);
+        deltaTracker.setProximity(proximity);
+        deltaTracker.setPayloadCache(payloadCache);
+        tablePublisher = new TableSnapshot.Publisher(deviceCapacity);
+        deltaTracker.setSnapshotPublisher(tablePublisher);
+        chunkRing = new ChunkRing(CHUNK_RING_SLOTS, CHUNK_RING_SLOT_SIZE, ChunkRing.POLICY_COALESCE);
+        recvScheduler = new RecvScheduler(new RecvScheduler.Config().bufferSize(512, MAX_RECV_BUFFER_SIZE));
+        recovery = new ScanRecovery(radio, atEngine, chunkRing);
+    }
+
+    /**
+     * ScanEventListener 에 RSSI 변화를 CHANGED 로 보고할 최소 차이 (dB)
+     */
+    public void setRssiHysteresis(int db) {
+        deltaTracker.setRssiHysteresis(db);
+    }
+
+    /**
+     * 마지막으로 게시된 기기 테이블 전체 스냅샷. 어느 스레드에서든 잠금/복사 없이 읽을 수 있고,
+     * 청크 처리가 끝날 때마다 새 스냅샷으로 바뀐다. 기존 JSON 형식은 {@link TableSnapshot#toJson()}.
+     */
+    public TableSnapshot getTableSnapshot() {
+        return tablePublisher.current();
+    }
+
+    /**
+     * 페이로드 캐시 적중률 등 (통계 확인용, 스캔 중에는 값이 계속 바뀐다)
+     */
+    public PayloadCache getPayloadCache() {
+        return payloadCache;
+    }
+
+    /**
+     * {@link DeviceSnapshot#getFrame} / {@link DecodedPayload#frames()} 가 쓰는 코덱 목록.
+     * iBeacon, Eddystone, mcandle 이 기본으로 들어 있고, 앱 전용 형식은 스캔 시작 전에 등록한다.
+     */
+    public CodecRegistry getCodecRegistry() {
+        return codecRegistry;
+    }
+
+    /**
+     * 스캔 이벤트 구독자를 추가한다. 구독자마다 조건, 큐 크기, 전달 주기/배치 크기를 따로 정하고
+     * 전용 스레드에서 호출되므로, 느린 구독자가 스캔 루프나 다른 구독자를 막지 않는다.
+     * 스캔 중에도 추가/해제할 수 있다 ({@link ScanDispatcher.Subscription#close()}).
+     */
+    public ScanDispatcher.Subscription subscribe(String name, ScanEventListener listener,
+                                                 ScanDispatcher.Config config) {
+        return dispatcher.subscribe(name, listener, config);
+    }
+
+    public ScanDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * RSSI 필터, 거리 모델, 구역 경계. 다음 스캔 시작부터 적용된다 (기기별 상태는 초기화).
+     */
+    public void setProximityConfig(ProximityEngine.Config config) {
+        proximityConfig = config;
+    }
+
+    /**
+     * 기기의 근접 구역이 바뀔 때마다 스캔 스레드에서 호출된다.
+     */
+    public void setZoneListener(ProximityEngine.ZoneListener listener) {
+        proximity.setZoneListener(listener);
+    }
+
+    /**
+     * 파싱/리스너 처리가 UART 수신을 따라가지 못할 때의 동작
+     *
+     * @param policy {@link ChunkRing#POLICY_DROP_OLDEST}, {@link ChunkRing#POLICY_COALESCE}(기본),
+     *               {@link ChunkRing#POLICY_BLOCK}
+     */
+    public void setBackpressurePolicy(int policy) {
+        chunkRing.setPolicy(policy);
+    }
+
+    /**
+     * 수신 버퍼 상태와 통계 (overruns, droppedChunks 등)
+     */
+    public ChunkRing getChunkRing() {
+        return chunkRing;
+    }
+
+    /**
+     * 사전 필터에서 버린 줄 수 (디코딩 전 MAC/RSSI + 디코딩 후 페이로드)
+     */
+    public long getFilteredLineCount() {
+        return filteredLines;
+    }
+
+    /**
+     * 수신 스케줄러 상태 (mode, bufferSize, maxWaitMs, arrivalRate 등)
+     */
+    public RecvScheduler getRecvScheduler() {
+        return recvScheduler;
+    }
+
+    /**
+     * 수신/파싱 계측. {@link ScanMetrics#snapshot()} 으로 현재 값을 읽는다.
+     */
+    public ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * periodMs 마다 계측 스냅샷을 로그로 남긴다
+     */
+    public void startMetricsDump(long periodMs) {
+        metrics.startDump(periodMs, snapshot -> Log.i(TAG, "metrics\n" + snapshot));
+    }
+
+    public void stopMetricsDump() {
+        metrics.stopDump();
+    }
+
+    /**
+     * 스캔 로그 레벨을 바꾼다. {@link ScanLog#VERBOSE} 면 청크마다 수신 길이를 남긴다.
+     *
+     * @param level {@link ScanLog#VERBOSE} .. {@link ScanLog#NONE}
+     */
+    public void setLogLevel(int level) {
+        ScanLog.setLevel(level);
+    }
+
+    /**
+     * 최근 UART 원본 청크. 기록을 끄려면 {@link RawTrace#setEnabled}.
+     */
+    public RawTrace getRawTrace() {
+        return rawTrace;
+    }
+
+    /**
+     * 최근 UART 원본 청크를 HEX 로 만들어 로그에 남기고 반환한다 (디버깅용)
+     */
+    public String dumpRawTrace() {
+        String dump = rawTrace.toHexDump();
+        Log.i(TAG, "raw trace (" + rawTrace.size() + " chunks)\n" + dump);
+        return dump;
+    }
+
+    /**
+     * 이후 수신 청크를 dir 에 메모리 맵 세그먼트 파일로 기록한다 ({@link CaptureWriter}).
+     * 기록한 파일은 {@link ReplayAtTransport} 로 재생할 수 있다. 이미 캡처 중이면 새 파일로 바꾼다.
+     */
+    public void startCapture(File dir) throws IOException {
+        closeCapture(capture.setWriter(new CaptureWriter(dir, new CaptureWriter.Config())));
+    }
+
+    public void stopCapture() {
+        closeCapture(capture.setWriter(null));
+    }
+
+    /**
+     * 이후 테이블에 반영되는 모든 패킷을 dir 의 {@link SightingJournal} 에 기록한다.
+     * 스캔을 멈춰도 기록은 남고, {@link SightingReader} 로 읽어 내보낸다. 이미 기록 중이면 새 저널로 바꾼다.
+     */
+    public void startJournal(File dir) throws IOException {
+        startJournal(dir, new SightingJournal.Config());
+    }
+
+    public void startJournal(File dir, SightingJournal.Config config) throws IOException {
+        SightingJournal old = journal;
+        journal = new SightingJournal(dir, config);
+        closeJournal(old);
+    }
+
+    public void stopJournal() {
+        SightingJournal old = journal;
+        journal = null;
+        closeJournal(old);
+    }
+
+    /**
+     * 스캔 이벤트를 묶어 url 로 POST 한다. 보내지 못한 묶음은 spoolDir 에 쌓였다가 재시도된다.
+     * 이미 켜져 있으면 새 업링크로 바꾼다.
+     */
+    public void startUplink(File spoolDir, URL url) throws IOException {
+        startUplink(spoolDir, SightingUplink.http(url, UPLINK_TIMEOUT_MS), new SightingUplink.Config());
+    }
+
+    public synchronized void startUplink(File spoolDir, SightingUplink.Sender sender,
+                                         SightingUplink.Config config) throws IOException {
+        stopUplink();
+        uplink = new SightingUplink(spoolDir, sender, config);
+        // 업링크는 자기 스레드에서 디스크/네트워크를 쓰므로 큐는 묶음을 쌓아 두는 정도면 된다
+        uplinkSubscription = dispatcher.subscribe("uplink", uplink,
+                new ScanDispatcher.Config().queueCapacity(UPLINK_QUEUE_CAPACITY));
+    }
+
+    /**
+     * 업링크를 끈다. 아직 보내지 못한 묶음은 스풀 디렉터리에 남아 다음 startUplink 때 보낸다.
+     */
+    public synchronized void stopUplink() {
+        if (uplink == null) {
+            return;
+        }
+        uplinkSubscription.close();
+        uplink.close();
+        Log.i(TAG, "uplink closed: " + uplink);
+        uplink = null;
+        uplinkSubscription = null;
+    }
+
+    /** 현재 업링크 (통계 확인용), 꺼져 있으면 null */
+    public synchronized SightingUplink getUplink() {
+        return uplink;
+    }
+
+    /**
+     * 목격을 구간별 sketch 로 요약하기 시작한다 (고정 메모리). 이미 켜져 있으면 새로 시작한다.
+     * 결과는 {@link OccupancyAnalytics#current()} / {@link OccupancyAnalytics#last(int)} 로 읽는다.
+     */
+    public OccupancyAnalytics startAnalytics(OccupancyAnalytics.Config config) {
+        OccupancyAnalytics a = new OccupancyAnalytics(config);
+        analytics = a;
+        return a;
+    }
+
+    public void stopAnalytics() {
+        analytics = null;
+    }
+
+    /** 현재 집계, 꺼져 있으면 null */
+    public OccupancyAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    /**
+     * 스캔을 창/주기 프로필로 켜고 끈다 ({@link ScanDutyCycle}). 다음 스캔부터 적용되며,
+     * null 이면 기존처럼 stopScan 까지 계속 스캔한다.
+     */
+    public ScanDutyCycle setDutyCycle(ScanDutyCycle.Config config) {
+        ScanDutyCycle d = config == null ? null : new ScanDutyCycle(config);
+        dutyCycle = d;
+        return d;
+    }
+
+    /** 현재 스케줄러, 없으면 null */
+    public ScanDutyCycle getDutyCycle() {
+        return dutyCycle;
+    }
+
+    /**
+     * 스캔 감시 설정. 기본으로 꺼져 있고 다음 스캔부터 적용된다. null 이면 감시하지 않는다.
+     * 기기가 모두 떠나도 데이터가 끊기므로 {@link ScanWatchdog.Config#stallMs} 는 기기 TTL 이상으로 잡는다.
+     * 복구 횟수와 걸린 시간은 {@link ScanWatchdog} 통계로 읽는다.
+     */
+    public ScanWatchdog setWatchdog(ScanWatchdog.Config config) {
+        ScanWatchdog w = config == null ? null : new ScanWatchdog(config);
+        watchdog = w;
+        return w;
+    }
+
+    /** 현재 감시기, 꺼져 있으면 null */
+    public ScanWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /** 스케줄러가 있으면 정해진 시간 동안 계속 스캔한다 (쉬는 중이면 바로 깨운다) */
+    public void triggerScanBurst() {
+        ScanDutyCycle d = dutyCycle;
+        if (d != null) {
+            d.trigger(System.currentTimeMillis());
+            chunkRing.wakeConsumer();
+        }
+    }
+
+    private static void closeJournal(SightingJournal j) {
+        if (j == null) {
+            return;
+        }
+        try {
+            j.close();
+            Log.i(TAG, "journal closed: " + j.writtenRecords() + " records, " + j.storedBytes() + " bytes, "
+                    + j.droppedRecords() + " dropped");
+        } catch (IOException e) {
+            Log.e(TAG, "journal close failed", e);
+        }
+    }
+
+    private static void closeCapture(CaptureWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+            Log.i(TAG, "capture closed: " + writer.chunks() + " chunks, " + writer.bytes() + " bytes in "
+                    + writer.directory());
+        } catch (IOException e) {
+            Log.e(TAG, "capture close failed", e);
+        }
+    }
+
+    private static void writeLog(int level, String tag, String message, Throwable error) {
+        switch (level) {
+            case ScanLog.VERBOSE:
+                Log.v(tag, message);
+                break;
+            case ScanLog.DEBUG:
+                Log.d(tag, message);
+                break;
+            case ScanLog.INFO:
+                Log.i(tag, message);
+                break;
+            case ScanLog.WARN:
+                Log.w(tag, message, error);
+                break;
+            default:
+                Log.e(tag, message, error);
+                break;
+        }
+    }
 
     // ✅ 인터페이스를 BLEScan 클래스 내부에 정의
     public interface ScanResultListener {
@@ -36,100 +447,82 @@ public class BleScan {
         this.dataReceiveListener = listener;
     }
 
+    /**
+     * Lib_EnableMaster 로 마스터 모드를 켜거나 끈다. 이미 요청한 모드면 명령을 보내지 않는다.
+     */
     public int enableMasterMode(boolean enable) {
-        if (isMaster == enable) {
-            Log.d("BLE_MANAGER", "Already in the requested mode. No changes made.");
-            return 0; // ✅ 동일한 상태면 변경 없음
-        } else {
-            int ret = At.Lib_EnableMaster(enable);
-            if (!enable) {
-                isMaster = true; // false에서 true로 변경하여 이후 호출 방지
-            } else {
-                isMaster = enable;
-            }
-            Log.d("BLE_MANAGER", "Master mode updated successfully, Result: " + ret);
-            return ret; // ✅ 변경 적용
-        }
+        int ret = enable ? radio.enterMaster() : radio.enterBeacon();
+        Log.d("BLE_MANAGER", "Master mode updated, Result: " + ret + ", state: "
+                + RadioStateMachine.stateName(radio.state()));
+        return ret;
     }
 
     /**
      * AT 명령을 직접 전송하는 방식으로 마스터 모드 설정
-     * At.Lib_AtCtsCtrl() + 수동 AT 명령 사용
+     * At.Lib_AtCtsCtrl() + {@link AtCommandEngine} 으로 AT 명령 전송 (응답이 오는 즉시 다음 단계로 진행)
+     * 명령 순서는 워치독 조치와 같이 {@link ScanRecovery#setObserverMode} 에 있다.
      */
     public int enableMasterMode1(boolean enable) {
-        if (isMaster == enable) {
-            Log.d(TAG, "Already in the requested mode. No changes made.");
-            return 0;
-        }
-
-        try {
-            // Step 1: CTS 컨트롤 호출 (beacon 모드 종료)
-            Log.d(TAG, "Calling Lib_AtCtsCtrl()...");
-            int ret = At.Lib_AtCtsCtrl();
-            if (ret != 0) {
-                Log.e(TAG, "Lib_AtCtsCtrl() failed with code: " + ret);
-                return ret;
-            }
-            Thread.sleep(100); // CTS 제어 후 대기
-
-            // Step 2: OBSERVER 모드 설정 (0 = Master mode, 1 = Observer mode)
-            String observerCommand = enable ? "AT+OBSERVER=0\r\n" : "AT+OBSERVER=1\r\n";
-            Log.d(TAG, "Sending command: " + observerCommand.trim());
-            ret = sendAtCommand(observerCommand);
-            if (ret != 0) {
-                Log.e(TAG, "Failed to send OBSERVER command");
-                return ret;
-            }
-            Thread.sleep(100); // waiting
-
-            // 응답 확인
-            String response = receiveAtResponse(500);
-            Log.d(TAG, "OBSERVER response: " + response);
-            if (!response.contains("OK")) {
-                Log.e(TAG, "OBSERVER command did not return OK");
-                return -1;
-            }
-
-            // Step 3: AT 모드 종료
-            Log.d(TAG, "Sending command: AT+EXIT");
-            ret = sendAtCommand("AT+EXIT\r\n");
-            if (ret != 0) {
-                Log.e(TAG, "Failed to send EXIT command");
-                return ret;
-            }
+        return recovery.setObserverMode(enable);
+    }
 
-            response = receiveAtResponse(500);
-            Log.d(TAG, "EXIT response: " + response);
+    /**
+     * AT 명령을 비동기로 전송한다. 응답 줄(OK/ERROR/AT+..=)을 받는 즉시 완료되고,
+     * timeoutMs 가 지나면 {@link java.util.concurrent.TimeoutException} 으로 완료된다.
+     *
+     * @param command 줄바꿈 없는 명령 ("AT+VERSION", "AT+MAC?" 등)
+     */
+    public CompletableFuture<AtResponse> submitAtCommand(String command, long timeoutMs) {
+        return atEngine.submit(command, timeoutMs);
+    }
 
-            // Step 4: AT 모드 재진입
-            Log.d(TAG, "Sending command: +++");
-            ret = sendAtCommand("+++");
-            if (ret != 0) {
-                Log.e(TAG, "Failed to send +++ command");
-                return ret;
-            }
+    /**
+     * 모듈 펌웨어 버전과 MAC 을 한 번에 조회한다. 두 명령은 응답을 기다리지 않고 이어서 보낸다.
+     * 이미 알고 있는 값은 다시 묻지 않는다.
+     *
+     * @return [버전, MAC], 응답이 없는 항목은 null
+     */
+    public CompletableFuture<String[]> queryModuleInfo() {
+        return queryCached("AT+VERSION", radio.version(), radio::setVersion)
+                .thenCombine(queryCached("AT+MAC?", radio.cachedMac(), radio::setMac),
+                        (v, m) -> new String[]{v, m});
+    }
 
-            Thread.sleep(100);
+    private CompletableFuture<String> queryCached(String command, String cached,
+                                                  Consumer<String> store) {
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return atEngine.submit(command, AT_COMMAND_TIMEOUT_MS).handle((r, e) -> {
+            String value = e == null ? r.getValue() : null;
+            store.accept(value);
+            return value;
+        });
+    }
 
-            // 상태 업데이트
-            isMaster = enable;
-            Log.d(TAG, "Master mode updated successfully via manual AT commands");
-            return 0;
+    /**
+     * 모듈 MAC/버전/마지막 스캔 조건을 dir 에 저장해 앱을 다시 시작해도 모듈에 다시 묻지 않는다.
+     */
+    public void setModuleCacheDir(File dir) {
+        radio.setCacheFile(new File(dir, MODULE_CACHE_FILE));
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error in enableMasterMode1: " + e.getMessage());
-            return -1;
-        }
+    /** 모듈 동작 모드와 보낸/건너뛴 명령 수 */
+    public RadioStateMachine getRadio() {
+        return radio;
     }
 
     /**
      * AT 명령 전송
+     *
+     * @deprecated 전송 후 고정 200ms 대기. {@link #submitAtCommand} 를 사용한다.
      */
+    @Deprecated
     public int sendAtCommand(String command) {
         try {
             Log.d(TAG, "Sending AT command: " + command.replace("\r\n", ""));
             byte[] cmdBytes = command.getBytes();
-            int ret = At.Lib_ComSend(cmdBytes, cmdBytes.length);
+            int ret = transport.send(cmdBytes, cmdBytes.length);
             if (ret == 0) {
                 Log.d(TAG, "AT command sent successfully");
                 Thread.sleep(200); // 응답 대기
@@ -146,7 +539,10 @@ public class BleScan {
     /**
      * AT 명령 응답 수신 (재시도 로직 포함)
      * 최대 5번 재시도, 각 시도 사이 1초 대기
+     *
+     * @deprecated 응답 대응 없이 처음 읽힌 바이트를 돌려준다. {@link #submitAtCommand} 를 사용한다.
      */
+    @Deprecated
     public String receiveAtResponse(int timeoutMs) {
         final int MAX_RETRY = 5;
         final int RETRY_DELAY_MS = 1000; // 1초
@@ -156,7 +552,7 @@ public class BleScan {
                 byte[] recvData = new byte[1024];
                 int[] recvDataLen = new int[1];
 
-                int ret = At.Lib_ComRecvAT(recvData, recvDataLen, 10, timeoutMs);
+                int ret = transport.recv(recvData, recvDataLen, 10, timeoutMs);
 
                 if (ret == 0 && recvDataLen[0] > 0) {
                     String response = new String(recvData, 0, recvDataLen[0]);
@@ -194,10 +590,9 @@ public class BleScan {
         return "";
     }
 
+    /** 모듈 MAC. Lib_GetAtMac 은 처음 한 번만 호출한다. */
     public String getDeviceMacAddress() {
-        String[] macAddress = new String[1];
-        int ret = At.Lib_GetAtMac(macAddress);
-        return (ret == 0) ? macAddress[0] : null;
+        return radio.mac();
     }
 
     public int startNewScan(String macAddress,
@@ -205,324 +600,392 @@ public class BleScan {
                             int rssi,
                             String manufacturerId,
                             String data) {
-        int ret = At.Lib_AtStartNewScan(macAddress, broadcastName, -rssi, manufacturerId, data);
+        int ret = radio.startScan(new RadioStateMachine.ScanParams(macAddress, broadcastName, -rssi,
+                manufacturerId, data));
+        scanFilter = null; // 모듈 필터만 사용
 
         Log.e("BLE_SCAN", "BLE Scan Started with result: " + ret);
         return ret;
     }
 
     public void startScanAsync(SharedPreferences sp, ScanResultListener listener) {
-        if (isScanning) return;
-        isScanning = true;
+        startScanAsync(sp, listener, null);
+    }
 
-        Log.e(TAG, "Starting BLE scan async...");
+    /**
+     * 변경된 기기만 {@link ScanEventListener} 로 전달받는 스캔. (APPEARED / CHANGED / LOST)
+     */
+    public void startScanAsync(SharedPreferences sp, ScanEventListener listener) {
+        startScanAsync(sp, null, listener);
+    }
 
-        int ret = At.Lib_EnableMaster(true);
-        if (ret != 0) {
-            Log.e(TAG, "Failed to enable master mode: " + ret);
-            isScanning = false;
-            return;
-        }
+    /**
+     * {@link #subscribe} 로 등록한 구독자에게만 전달하는 스캔.
+     */
+    public void startScanAsync(ScanFilter filter) {
+        startScanAsync(filter, null);
+    }
+
+    /**
+     * {@link ScanFilter} 조건으로 스캔한다. 조건 하나는 Lib_AtStartNewScan 으로 모듈에서 거르고,
+     * 나머지는 페이로드 디코딩 전후에 바이트 단위로 거른다. (SharedPreferences 필터 값은 사용하지 않는다)
+     *
+     * @param listener 스캔 스레드에서 바로 호출된다. null 이면 구독자에게만 전달한다.
+     */
+    public void startScanAsync(ScanFilter filter, ScanEventListener listener) {
+        CompiledScanFilter compiled = filter.compile();
+        Log.d(TAG, "Scan filter pushed down: " + compiled.pushedDown()
+                + ", payload prefilter: " + compiled.hasPayloadCriteria());
+        startScanAsync(compiled.moduleMac(), compiled.moduleName(), compiled.moduleRssi(),
+                compiled.moduleManufacturerId(), compiled.moduleData(), compiled, null, listener);
+    }
 
-        ret = At.Lib_AtStartNewScan(
+    private void startScanAsync(SharedPreferences sp, ScanResultListener resultListener,
+                                ScanEventListener eventListener) {
+        startScanAsync(
                 sp.getString("macAddress", ""),
                 sp.getString("broadcastName", ""),  // ✅ "mcandle"로 시작하는 기기만 스캔
                 -Integer.parseInt(sp.getString("rssi", "0")),
                 sp.getString("manufacturerId", ""),
-                sp.getString("data", "")
-        );
+                sp.getString("data", ""),
+                null, resultListener, eventListener);
+    }
 
-        if (ret == 0) {
-            recvScanData(listener);  // Run in current Coroutine thread
-        } else {
-            isScanning = false;
-            Log.e(TAG, "Failed to start BLE scan");
+    private void startScanAsync(String macAddress, String broadcastName, int rssi, String manufacturerId,
+                                String data, CompiledScanFilter filter, ScanResultListener resultListener,
+                                ScanEventListener eventListener) {
+        if (isScanning) return;
+
+        // 이전 스캔이 정리 중이면 끝날 때까지 기다린다 (isScanning 은 잠금 안에서만 켠다)
+        synchronized (scanLock) {
+            if (isScanning) return;
+            isScanning = true;
+            Log.e(TAG, "Starting BLE scan async...");
+
+            // 이미 마스터 모드면 Lib_EnableMaster 는 건너뛰고 Lib_AtStartNewScan 만 보낸다
+            int ret = radio.startScan(new RadioStateMachine.ScanParams(macAddress, broadcastName, rssi,
+                    manufacturerId, data));
+
+            if (ret == 0) {
+                scanFilter = filter;
+                recvScanData(resultListener, eventListener);  // Run in current Coroutine thread
+            } else {
+                isScanning = false;
+                Log.e(TAG, "Failed to start BLE scan: " + ret + ", state: "
+                        + RadioStateMachine.stateName(radio.state()));
+            }
         }
     }
 
+    /**
+     * 스캔 루프에 멈추라고 알리고 바로 돌아온다. 기다리던 루프는 즉시 깨어나고,
+     * 수신 스레드 종료와 Lib_AtStopScan 은 스캔 스레드가 루프를 빠져나오면서 처리한다.
+     */
     public void stopScan() {
         if (!isScanning) return;
         isScanning = false;
-        At.Lib_AtStopScan();
-        Log.e(TAG, "BLE scan stopped");
+        chunkRing.wakeConsumer();
+        Log.e(TAG, "BLE scan stop requested");
+    }
+
+    /** 스캔 루프가 돌고 있으면 true (stopScan 이후 정리 중이면 false) */
+    public boolean isScanning() {
+        return isScanning;
     }
 
     public void ComRecvAT() {  // 테스트 용도
-        byte[] recvData = new byte[2048];
+        // 고정 2초 대기 대신 수신량에 맞춰 recv 파라미터와 호출 간격을 조정한다
+        RecvScheduler scheduler = new RecvScheduler();
+        int[] sizes = scheduler.bufferSizes();
+        byte[][] buffers = new byte[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            buffers[i] = new byte[sizes[i]];
+        }
         int[] recvDataLen = new int[2];
 
-        Log.e("TAG", "ComRecvAT 시작");
+        ScanLog.i(TAG, "ComRecvAT 시작");
 
         isScanning = true;
         while (isScanning) {
-
-            int ret = At.Lib_ComRecvAT(recvData, recvDataLen, 20, 1000);
-            Log.e("TAG", "runLib_ComRecvAT: recvDataLen " + recvDataLen[0]);
-            Log.e("TAG", "Lib_ComRecvAT recvData: " + bytesToHex(recvData, recvDataLen[0]));
-            String buff= new String(recvData, 0, recvDataLen[0]);
+            byte[] recvData = buffers[scheduler.bufferIndex()];
+            long start = System.nanoTime();
+            // 실패한 recv 는 길이를 건드리지 않을 수 있으므로 이전(더 큰 버퍼의) 길이를 먼저 지운다
+            recvDataLen[0] = 0;
+            int ret = transport.recv(recvData, recvDataLen, scheduler.timeoutMs(), scheduler.maxWaitMs());
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            int n = ret == 0 ? recvDataLen[0] : 0;
+            // 청크마다 HEX 문자열을 만들지 않는다. 원본은 rawTrace 에서 필요할 때 꺼낸다.
+            rawTrace.record(recvData, 0, n, System.currentTimeMillis());
+            if (ScanLog.isEnabled(ScanLog.VERBOSE)) {
+                ScanLog.v(TAG, "Lib_ComRecvAT ret " + ret + " recvDataLen " + n);
+            }
+            String buff= new String(recvData, 0, n);
 
             // 콜백이 등록되어 있으면 MainActivity로 데이터 전달
             if (dataReceiveListener != null) {
                 dataReceiveListener.onDataReceived(buff);
             }
 
-            try {
-                Thread.sleep(2000); // 2초 대기
-            } catch (InterruptedException e) {
-                Log.e("TAG", "Sleep interrupted", e);
-                Thread.currentThread().interrupt();
+            int sleepMs = scheduler.onRecv(n, elapsedMs);
+            if (sleepMs > 0) {
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException e) {
+                    Log.e("TAG", "Sleep interrupted", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
         }
+        isScanning = false;
+        radio.stopScan();
     }
     public void recvScanData(ScanResultListener listener) {
-        byte[] recvData =new byte[2048];
-        int[] recvDataLen =new int[2];
-        String lineLeft="";
+        recvScanData(listener, null);
+    }
 
+    public void recvScanData(ScanEventListener listener) {
+        recvScanData(null, listener);
+    }
 
-        while (isScanning) {
-            int ret = At.Lib_ComRecvAT(recvData, recvDataLen, 20, 1000);
-            Log.e("TAG", "runLib_ComRecvAT: recvDataLen"+recvDataLen[0] );
-            Log.e("TAG", "Lib_ComRecvAT recvData: "+bytesToHex(recvData,recvDataLen[0]));
-            Map<String, JSONObject> deviceMap = new ConcurrentHashMap<>();
-            boolean startProcessing = false;
-
-            // String buff= lineLeft+new String(recvData);
-            String buff= lineLeft+new String(recvData, 0, recvDataLen[0]);
-            // String []data=buff.split("\r\n|\r|\n");
-            String []data=buff.split("\\r\\n|\\r|\\n", -1); // ����λ�������ַ���
-            //Log.e("TAG", "debug crash position:echo21" );
-            int lineCount=data.length;
-            // if(lineCount>0)//each time response data left last line ,for maybe data not recv all.
-            //     lineLeft = data[lineCount-1];
-            // else
-            //     lineLeft="";
-            // �������һ��δ�������
-            lineLeft = (data.length > 0) ? data[data.length-1] : "";
-            //for (String line : data)
-            for (int i=0;i<lineCount-1;i++)
-            {
-                String line =data[i];
-//                    Log.e("TAG", "debug crash position:echo22" );
-                if (line.startsWith("MAC:")) {
-                    startProcessing = true;
-                    String[] parts = line.split(",",3);
-                    if(parts.length < 3) {
-                        continue;
+    /**
+     * 수신 스레드({@link UartReader})가 채운 청크를 현재 스레드에서 파싱하고 리스너에 전달한다.
+     * 리스너가 느려도 UART 읽기는 계속되며, 밀린 데이터는 {@link ChunkRing} 정책에 따라 처리된다.
+     */
+    private void recvScanData(ScanResultListener resultListener, ScanEventListener eventListener) {
+        byte[] chunk = new byte[CHUNK_RING_SLOT_SIZE];
+        // lineLeft 문자열 대신 파서 내부 carry 버퍼가 청크 경계의 미완성 줄을 보관한다
+        ScanLineParser parser = new ScanLineParser();
+        CompiledScanFilter filter = scanFilter;
+        parser.setHeaderFilter(filter);
+        TableUpdater updater = new TableUpdater(filter);
+        long filteredBefore = filteredLines;
+        long headerFiltered = 0;
+        ScanLog.RateLimit overrunLog = new ScanLog.RateLimit(LOOP_LOG_INTERVAL_MS);
+
+        if (proximity.getConfig() != proximityConfig) {
+            proximity.setConfig(proximityConfig);
+        }
+        deltaTracker.collect(); // 이전 세션에서 남은 변경분 정리
+        chunkRing.clear();
+        UartReader reader = new UartReader(transport, chunkRing, recvScheduler, metrics);
+        reader.start();
+        ScanDutyCycle duty = dutyCycle;
+        if (duty != null) {
+            duty.start(System.currentTimeMillis());
+        }
+        ScanWatchdog wd = watchdog;
+        if (wd != null) {
+            wd.start(System.currentTimeMillis());
+        }
+        recovery.start();
+        // 창을 다시 열거나 복구할 때 쓸 스캔 조건. 상태 캐시가 지워져도 이 스캔 동안은 유지한다.
+        // startScan 을 거치지 않고 recvScanData 를 부르면 null 이다.
+        RadioStateMachine.ScanParams scanParams = radio.lastScan();
+        long acceptedBefore = 0;
+        long rejectedBefore = 0;
+        try {
+            // stopScan() 은 poll 을 바로 깨우고, 스레드 인터럽트(코루틴 취소)로도 멈춘다
+            while (isScanning && !Thread.currentThread().isInterrupted()) {
+                long pollMs = CHUNK_POLL_TIMEOUT_MS;
+                if (duty != null) {
+                    long now = System.currentTimeMillis();
+                    int action = duty.update(now);
+                    if (action == ScanDutyCycle.ACTION_STOP) {
+                        // 모듈을 먼저 멈춘 뒤 수신 스레드를 쉰다. 진행 중이던 recv 의 데이터와 이미 링에 있는
+                        // 청크는 이어서 파싱하지만, 그 뒤에 UART 에 남은 바이트를 따로 비우지는 않는다.
+                        radio.stopScan();
+                        reader.stop();
+                    } else if (action == ScanDutyCycle.ACTION_START) {
+                        if (scanParams == null) {
+                            ScanLog.e(TAG, "No scan parameters to resume scan window");
+                            break;
+                        }
+                        int ret = radio.startScan(scanParams);
+                        if (ret != 0 && wd == null) {
+                            ScanLog.e(TAG, "Failed to resume scan window: " + ret);
+                            break;
+                        }
+                        parser.reset(); // 쉬기 전 미완성 줄은 잇지 않는다
+                        reader.start();
+                        if (wd != null) {
+                            wd.resume(now);
+                            if (ret != 0) {
+                                wd.onCommandFailed(); // 다음 검사에서 복구한다
+                            }
+                        }
                     }
-
-                    String mac = parts[0].split(":",2)[1].trim();
-                    String rssi = parts[1].split(":")[1].trim();
-                    int irssi =0;
-                    try {
-                        irssi = Integer.parseInt(rssi); // ��֤ RSSI �Ƿ�Ϊ��Ч����
-                    } catch (NumberFormatException e) {
-                        Log.e("TAG", "Invalid RSSI value: " + rssi);
-                        continue;
+                    if (!duty.isOn()) {
+                        // 쉬는 동안은 다음 창까지 잠든다 (stopScan/triggerScanBurst 가 깨운다)
+                        pollMs = Math.max(1, duty.waitMs(now));
                     }
-                    String payload = parts[2].split(":",2)[1].trim();
-                    if((payload.length()>62)||(payload.length()%2!=0))
-                        continue;
-//                        Log.e("TAG", "debug crash position:echo20" );
-                    JSONObject device;
-                    if (deviceMap.containsKey(mac)) {
-                        device = deviceMap.get(mac);
-                    } else {
-                        device = new JSONObject();
-                        try {
-                            device.put("MAC", mac);
-                        } catch (JSONException e) {
-                            Log.e("TAG", "Handler runLib_ComRecvAT mac 0000: JSONException"+e );
-                            //throw new RuntimeException(e);
-                            continue;
-                        }
-                        deviceMap.put(mac, device);
+                }
+                int len = chunkRing.poll(chunk, pollMs);
+                if (len == ChunkRing.NONE) {
+                    len = 0;
+                } else {
+                    rawTrace.record(chunk, 0, len, System.currentTimeMillis());
+                    if (ScanLog.isEnabled(ScanLog.VERBOSE)) {
+                        ScanLog.v(TAG, "chunk " + len + " bytes");
                     }
-//                        Log.e("TAG", "debug crash position:echo19" );
-                    if (parts[2].startsWith("RSP")) {
+                    if ((chunkRing.lastFlags() & ChunkRing.FLAG_GAP) != 0) {
+                        // 앞 데이터가 버려졌으므로 미완성 줄을 이어 붙이지 않는다
+                        overrunLog.log(ScanLog.WARN, TAG,
+                                () -> "UART chunk overrun, dropped " + chunkRing.droppedChunks() + " chunks so far");
+                        metrics.onGap();
+                        parser.reset();
+                    }
+                }
 
-                        try {
-                            assert device != null;
-                            device.put("RSP_org", payload);
-                            device.put("RSP", parseAdvertisementData(hexStringToByteArray(payload)));
-                        } catch (JSONException e) {
-                            Log.e("TAG", "Runnable 444: JSONException"+e );
-//                                throw new RuntimeException(e);
-                            continue;
-                        }
+                // 같은 청크의 줄은 같은 수신 시각을 사용한다
+                long parseStart = System.nanoTime();
+                updater.now = System.currentTimeMillis();
+                parser.feed(chunk, 0, len, updater);
+                filteredLines = filteredBefore + parser.filteredLines() + updater.filtered;
+                // 스캔을 쉬는 동안과 복구 명령을 보내는 동안 못 본 기기는 만료로 치지 않는다
+                deviceTable.evictExpired(recovery.evictionTime(
+                        duty == null ? updater.now : duty.evictionTime(updater.now)));
+                if (len > 0) {
+                    metrics.parseNanos().record(System.nanoTime() - parseStart);
+                }
+                metrics.onFiltered(parser.filteredLines() - headerFiltered);
+                headerFiltered = parser.filteredLines();
+                metrics.onTable(deviceTable);
+                if (wd != null && (duty == null || duty.isOn())) {
+                    long accepted = updater.accepted + parser.filteredLines();
+                    wd.onData(len, updater.now);
+                    wd.onLines((int) (accepted - acceptedBefore), (int) (updater.rejected - rejectedBefore));
+                    acceptedBefore = accepted;
+                    rejectedBefore = updater.rejected;
+                    int action = wd.check(updater.now);
+                    if (action != ScanWatchdog.ACTION_NONE
+                            && recovery.recover(action, scanParams, reader, parser) != 0) {
+                        wd.onCommandFailed();
+                    }
+                }
+                SightingJournal j = journal;
+                if (j != null) {
+                    j.flushIfDue(updater.now);
+                }
 
-                    } else if (parts[2].startsWith("ADV")) {
-                        //device.put("ADV", parsePayload(payload));
+                long callbackStart = System.nanoTime();
+                boolean called = false;
+
+                // 기존 리스너: 이번 청크에서 갱신된 기기 전체 (ADV/RSP 는 테이블에서 합쳐진 상태)
+                if (resultListener != null && deviceTable.dirtyCount() > 0) {
+                    JSONArray resultArray = new JSONArray();
+                    for (int i = 0; i < deviceTable.dirtyCount(); i++) {
                         try {
-                            assert device != null;
-                            device.put("ADV_org", payload);
-                            device.put("ADV", parseAdvertisementData(hexStringToByteArray(payload)));
+                            resultArray.put(DeviceSnapshot.capture(deviceTable, deviceTable.dirtyEntry(i), null,
+                                    proximity, payloadCache).toJson());
                         } catch (JSONException e) {
-                            Log.e("TAG", "Runnable 333: JSONException"+e );
-//                                throw new RuntimeException(e);
-                            continue;
+                            ScanLog.e(TAG, "Error building device JSON", e);
                         }
                     }
-                    //Log.e("TAG", "debug crash position:echo18" );
-                    try {
-                        assert device != null;
-                        // Log.e("TAG", "debug crash position:echo18"+rssi );
-                        device.put("RSSI", irssi);
-                    } catch (JSONException e) {
-                        Log.e("TAG", "Runnable 222: JSONException"+e.getMessage() );
-//                            throw new RuntimeException(e);
-                        continue;
-                    }
-//                        Log.e("TAG", "debug crash position:echo17" );
-                    // ���ʱ����ֶ�
-                    try {
-//                                long curr_time=System.currentTimeMillis();
-                        device.put("Timestamp", System.currentTimeMillis());
-                    } catch (JSONException e) {
-                        //Log.e("TAG", "Runnable 000: JSONException"+e );
-//                            throw new RuntimeException(e);
-                        continue;
-                    }
-//                        Log.e("TAG", "debug crash position:echo16" );
-                } else if (startProcessing) {
-                    // ����Ѿ���ʼ����MAC���ݣ���������MAC��ͷ�����ݣ�������
-                    continue;
+                    resultListener.onScanResult(resultArray);
+                    called = true;
                 }
-            }
 
-            // Send results after processing all lines (moved outside the for loop)
-            if (!deviceMap.isEmpty() && listener != null) {
-                // Create deep copies of JSONObjects to avoid concurrent modification
-                JSONArray resultArray = new JSONArray();
-                for (JSONObject device : deviceMap.values()) {
-                    try {
-                        // Create a new JSONObject with the same data (deep copy)
-                        JSONObject deviceCopy = new JSONObject(device.toString());
-                        resultArray.put(deviceCopy);
-                    } catch (JSONException e) {
-                        Log.e("TAG", "Error copying JSONObject: " + e);
-                    }
+                // 새 리스너: 변경분만 (스냅샷은 불변이라 복사하지 않는다)
+                List<ScanEvent> events = deltaTracker.collect();
+                OccupancyAnalytics a = analytics;
+                if (!events.isEmpty() && a != null) {
+                    a.onScanEvents(events); // LOST 의 체류 시간
+                }
+                if (!events.isEmpty() && duty != null) {
+                    duty.onScanEvents(events, updater.now); // 프로필 자동 선택, 새 기기 버스트
+                }
+                if (!events.isEmpty() && eventListener != null) {
+                    eventListener.onScanEvents(events);
+                    called = true;
+                }
+                // 구독자: 같은 이벤트 객체를 각자의 큐에 넣기만 한다
+                if (!events.isEmpty() && dispatcher.hasSubscribers()) {
+                    dispatcher.onScanEvents(events);
+                    called = true;
+                }
+                if (called) {
+                    metrics.callbackNanos().record(System.nanoTime() - callbackStart);
                 }
-                listener.onScanResult(resultArray);
             }
+        } finally {
+            isScanning = false;
+            reader.stop();
+            radio.stopScan();
+            Log.e(TAG, "BLE scan stopped");
         }
     }
-    private static byte[] hexStringToByteArray(String hexString) {
-        int len = hexString.length();
-        if(len%2==1)
-            len--;
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
-                    + Character.digit(hexString.charAt(i+1), 16));
-        }
-        return data;
-    }
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X ", b));
-        }
-        return sb.toString();
-    }
-    private static String bytesToHex(byte[] bytes,int len) {
-        StringBuilder sb = new StringBuilder();
-        for (int i=0;i<len;i++) {
-            sb.append(String.format("%02X", bytes[i]));
-        }
-        return sb.toString();
-    }
-    public static JSONObject parseAdvertisementData(byte[] advertisementData) throws JSONException {
-//        Map<String, String> parsedData = new HashMap<>();
-//        byte[] advertisementData =new byte[advertiseData.length()/2];
-        JSONObject parsedData = new JSONObject();
-        int offset = 0;
-        while (offset < advertisementData.length) {
-            int length = advertisementData[offset++] & 0xFF;
-            if (length == 0) break;
-
-            int type = advertisementData[offset] & 0xFF;
-            offset++;
-
-            byte[] data = new byte[length - 1];
-            if(length-1>advertisementData.length-offset)//data format issue.
-            {
-                return null;
-            }
-            System.arraycopy(advertisementData, offset, data, 0, length - 1);
-            offset += length - 1;
-
-            switch (type) {
-                case 0x01: // Flags
-                    parsedData.put("Flags", bytesToHex(data));
-                    break;
-                case 0x02: // Incomplete List of 16-bit Service Class UUIDs
-                case 0x03: // Complete List of 16-bit Service Class UUIDs
-                    parsedData.put("Service UUIDs", bytesToHex(data));
-                    break;
-                case 0x04: // Incomplete List of 32-bit Service Class UUIDs
-                case 0x05: // Complete List of 32-bit Service Class UUIDs
-                    parsedData.put("Service UUIDs", bytesToHex(data));
-                    break;
-                case 0x06: // Incomplete List of 128-bit Service Class UUIDs
-                case 0x07: // Complete List of 128-bit Service Class UUIDs
-                    parsedData.put("Service UUIDs", bytesToHex(data));
-                    break;
-                case 0x08: // Shortened Local Name
-                case 0x09: // Complete Local Name
-                    parsedData.put("Device Name", new String(data));
-                    break;
-                case 0x0A: // Complete Local Name
-//                    byte [] tx_power=hexStringToByteArray(new String(data));
-                    parsedData.put("TX Power Level", data[0]);
-                    break;
-                case 0xFF: // Manufacturer Specific Data
-                    parsedData.put("Manufacturer Data", bytesToHex(data));
-                    break;
 
-                case 0x16: // Service Data - 16-bit UUID
-                    if (data.length >= 2) {
-                        String uuid16 = String.format("%04X", ((data[1] & 0xFF) << 8) | (data[0] & 0xFF));
-                        byte[] serviceData = Arrays.copyOfRange(data, 2, data.length);
-                        addServiceData(parsedData, uuid16, serviceData);
-                    }
-                    break;
-                case 0x20: // Service Data - 32-bit UUID
-                    if (data.length >= 4) {
-                        String uuid32 = String.format("%08X",
-                                ((data[3] & 0xFF) << 24) | ((data[2] & 0xFF) << 16) | ((data[1] & 0xFF) << 8) | (data[0] & 0xFF));
-                        byte[] serviceData = Arrays.copyOfRange(data, 4, data.length);
-                        addServiceData(parsedData, uuid32, serviceData);
-                    }
-                    break;
-                case 0x21: // Service Data - 128-bit UUID
-                    if (data.length >= 16) {
-                        String uuid128 = bytesToHex(Arrays.copyOfRange(data, 0, 16));
-                        byte[] serviceData = Arrays.copyOfRange(data, 16, data.length);
-                        addServiceData(parsedData, uuid128, serviceData);
-                    }
+    /**
+     * 파싱된 줄을 기기 테이블에 바로 반영하는 콜백
+     */
+    private final class TableUpdater implements ScanLineParser.Callback {
+        private final CompiledScanFilter filter;
+        private final AdvertisementView view = new AdvertisementView();
+        long now;
+        long filtered;
+        // 워치독용: 형식이 맞는 줄, 거부된 줄
+        long accepted;
+        long rejected;
+
+        TableUpdater(CompiledScanFilter filter) {
+            this.filter = filter;
+        }
 
-                default:
-                    parsedData.put("Unknown Data (" + type + ")", bytesToHex(data));
-                    break;
+        @Override
+        public void onRecord(ScanLineParser record) {
+            accepted++;
+            // 페이로드 조건: 통과한 기기의 나머지 패킷(ADV/RSP)은 조건과 상관없이 받는다.
+            // 이미 테이블에 있는 기기는 해시 조회 한 번으로 끝나므로 페이로드 검사보다 먼저 본다.
+            if (filter != null && filter.hasPayloadCriteria()
+                    && deviceTable.find(record.mac()) == DeviceTable.NO_ENTRY
+                    && !filter.acceptPayload(view.wrap(record.payload(), 0, record.payloadLength()))) {
+                filtered++;
+                metrics.onFiltered(1);
+                return;
+            }
+            metrics.onRecord();
+            // 반복 수신되는 페이로드는 해시 한 번과 바이트 비교로 이전 해석 결과를 찾는다
+            DecodedPayload decoded = payloadCache.intern(record.payload(), 0, record.payloadLength());
+            if (!decoded.isValid()) {
+                // 기존에는 parseAdvertisementData 가 null 을 반환하던 페이로드. 테이블에는 그대로 반영한다.
+                metrics.onTruncatedAd();
+            }
+            int changes = deviceTable.update(record.mac(), record.rssi(), record.type(),
+                    record.payload(), 0, record.payloadLength(), now);
+            // RSSI 는 덮어쓰지 않고 기기별 필터를 거쳐 거리/구역 판정에 쓴다
+            proximity.update(deviceTable.lastEntry(), record.mac(), (changes & DeviceTable.CHANGE_NEW) != 0,
+                    record.rssi(), decoded.txPower(), now);
+            OccupancyAnalytics a = analytics;
+            if (a != null) {
+                a.onSighting(record.mac(), record.rssi(), now);
+            }
+            SightingJournal j = journal;
+            if (j != null) {
+                j.append(record.mac(), record.rssi(), record.type(),
+                        record.payload(), 0, record.payloadLength(), now);
             }
         }
 
-        return parsedData;
+        @Override
+        public void onReject(int reason) {
+            // UART 손상과 필터를 구분할 수 있도록 사유별로 센다 (줄마다 로그를 남기지 않는다)
+            metrics.onReject(reason);
+            rejected++;
+        }
     }
 
-    private static void addServiceData(JSONObject parsedData, String uuid, byte[] serviceData) throws JSONException {
-        String key = "Service Data UUID " + uuid;
-        JSONArray serviceArray;
-
-        if (parsedData.has(key)) {
-            serviceArray = parsedData.getJSONArray(key);
-        } else {
-            serviceArray = new JSONArray();
-            parsedData.put(key, serviceArray);
-        }
+    /**
+     * 광고 페이로드를 기존 JSON 형식으로 변환한다. (디버깅/호환용)
+     * 실제 필드 해석은 {@link AdvertisementView} 가 담당한다.
+     *
+     * @return JSON, AD structure 가 잘려 있으면 null
+     */
+    public static JSONObject parseAdvertisementData(byte[] advertisementData) throws JSONException {
+        return parseAdvertisementData(advertisementData, 0, advertisementData.length);
+    }
 
-        serviceArray.put(bytesToHex(serviceData));
+    public static JSONObject parseAdvertisementData(byte[] data, int offset, int length) throws JSONException {
+        return new AdvertisementView().wrap(data, offset, length).toJson();
     }
 }
-
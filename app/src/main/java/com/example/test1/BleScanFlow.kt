@@ -0,0 +1,119 @@
+package com.example.test1
+
+import android.content.SharedPreferences
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.launch
+import kotlin.concurrent.thread
+
+/** [scanEvents] 기본 버퍼 크기 (이벤트 수) */
+const val DEFAULT_SCAN_EVENT_BUFFER = 256
+
+/**
+ * [ScanFilter] 조건으로 스캔하는 cold Flow. collect 하는 동안만 스캔하고, 취소하면 스캔 루프가 바로 멈춘다.
+ *
+ * 스캔은 전용 스레드("ble-scan")에서 돌고 이벤트는 기다리지 않고 버퍼에 넣는다. 수집이 느려 버퍼가 차면
+ * [onBufferOverflow] 에 따라 버리므로 UART 읽기는 막히지 않는다 ([BufferOverflow.SUSPEND] 는 쓸 수 없다).
+ * 다른 스캔이 이미 돌고 있으면 이벤트 없이 바로 끝난다.
+ */
+fun BleScan.scanEvents(
+    filter: ScanFilter,
+    capacity: Int = DEFAULT_SCAN_EVENT_BUFFER,
+    onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST,
+): Flow<ScanEvent> = scanEventFlow(capacity, onBufferOverflow) { listener ->
+    startScanAsync(filter, listener)
+}
+
+/** SharedPreferences 의 필터 값(macAddress, broadcastName, rssi, manufacturerId, data)으로 스캔하는 Flow */
+fun BleScan.scanEvents(
+    prefs: SharedPreferences,
+    capacity: Int = DEFAULT_SCAN_EVENT_BUFFER,
+    onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST,
+): Flow<ScanEvent> = scanEventFlow(capacity, onBufferOverflow) { listener ->
+    startScanAsync(prefs, listener)
+}
+
+private fun scanEventFlow(
+    capacity: Int,
+    onBufferOverflow: BufferOverflow,
+    start: (ScanEventListener) -> Unit,
+): Flow<ScanEvent> {
+    require(onBufferOverflow != BufferOverflow.SUSPEND) { "scan thread never waits for collectors" }
+    return callbackFlow {
+        val listener = ScanEventListener { events ->
+            for (event in events) {
+                trySend(event)
+            }
+        }
+        val scanThread = thread(name = "ble-scan", isDaemon = true) {
+            try {
+                // 스캔 루프가 끝날 때(정리 포함)까지 돌아오지 않는다
+                start(listener)
+                close()
+            } catch (e: Throwable) {
+                close(e)
+            }
+        }
+        // 인터럽트는 이 Flow 가 시작한 스캔 루프만 깨운다 (다른 수집자의 스캔은 건드리지 않는다)
+        awaitClose { scanThread.interrupt() }
+    }.buffer(capacity, onBufferOverflow)
+}
+
+/**
+ * UI 용 기기별 합치기. [periodMillis] 마다 그동안 바뀐 기기의 마지막 이벤트만 목록으로 내보낸다.
+ *
+ * 한 주기 안의 APPEARED 뒤 CHANGED 는 APPEARED 로 합치고, APPEARED 뒤 LOST 는 둘 다 버린다.
+ * 수집이 느려도 위쪽 Flow 는 계속 받아 합치므로 밀린 이벤트가 쌓이지 않는다.
+ */
+fun Flow<ScanEvent>.conflateByDevice(periodMillis: Long): Flow<List<ScanEvent>> {
+    require(periodMillis > 0) { "period must be > 0" }
+    val upstream = this
+    return channelFlow {
+        val pending = LinkedHashMap<Long, ScanEvent>()
+        val ticker = launch {
+            while (true) {
+                delay(periodMillis)
+                val batch = drain(pending)
+                if (batch.isNotEmpty()) {
+                    send(batch)
+                }
+            }
+        }
+        upstream.collect { event ->
+            synchronized(pending) {
+                val merged = merge(pending[event.device.mac], event)
+                if (merged == null) {
+                    pending.remove(event.device.mac)
+                } else {
+                    pending[event.device.mac] = merged
+                }
+            }
+        }
+        ticker.cancel()
+        val rest = drain(pending)
+        if (rest.isNotEmpty()) {
+            send(rest)
+        }
+    }
+}
+
+private fun drain(pending: LinkedHashMap<Long, ScanEvent>): List<ScanEvent> = synchronized(pending) {
+    val batch = ArrayList(pending.values)
+    pending.clear()
+    batch
+}
+
+private fun merge(previous: ScanEvent?, event: ScanEvent): ScanEvent? = when {
+    previous == null -> event
+    previous.type == ScanEvent.Type.APPEARED && event.type == ScanEvent.Type.LOST -> null
+    previous.type == ScanEvent.Type.APPEARED ->
+        ScanEvent(ScanEvent.Type.APPEARED, previous.changes or event.changes, event.device)
+    previous.type == ScanEvent.Type.CHANGED && event.type == ScanEvent.Type.CHANGED ->
+        ScanEvent(ScanEvent.Type.CHANGED, previous.changes or event.changes, event.device)
+    else -> event
+}
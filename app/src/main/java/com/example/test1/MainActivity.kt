@@ -1,8 +1,6 @@
 package com.example.test1
 
 import android.os.Bundle
-import android.os.Handler
-import android.os.Looper
 import android.util.Log
 import android.widget.Button
 import androidx.activity.enableEdgeToEdge
@@ -10,20 +8,15 @@ import androidx.appcompat.app.AppCompatActivity
 import androidx.core.view.ViewCompat
 import androidx.core.view.WindowInsetsCompat
 import androidx.lifecycle.lifecycleScope
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
-import org.json.JSONArray
-import android.content.SharedPreferences
 
 class MainActivity : AppCompatActivity() {
     private lateinit var btn1: Button
     private lateinit var btn2: Button
     private lateinit var btn3: Button
     private var bleScan = BleScan() // BleScan 인스턴스 생성can()
-    private var isScanning = false // 상태 변수 추가
-    private var scanJob: Job? = null // 코루틴 Job 저장 변수
+    private var scanJob: Job? = null // 스캔 중이면 결과를 수집하는 Job
 
 
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -36,6 +29,9 @@ class MainActivity : AppCompatActivity() {
             insets
         }
 
+        // 모듈 MAC/버전은 한 번 읽으면 앱을 다시 시작해도 다시 묻지 않는다
+        bleScan.setModuleCacheDir(filesDir)
+
         btn1 = findViewById(R.id.btn1)
         btn1.setOnClickListener {
             Step1()
@@ -77,59 +73,45 @@ class MainActivity : AppCompatActivity() {
         Log.d("MainActivity", "Step2: " + ret)
     }
 
-    private fun Step3() {
-        val sharedPreferences = getSharedPreferences("MyPrefs", MODE_PRIVATE) // ✅ sharedPreferences 가져오기
-
-        val scanResultListener = object : BleScan.ScanResultListener { // ✅ ScanResultListener 객체 생성
-            override fun onScanResult(scanData: JSONArray) {
-                runOnUiThread {
-                    Log.d("BLE_SCAN", "Received Scan Data: $scanData")
-                    // UI 업데이트 코드 추가 가능
-                }
-            }
-        }
-
-        lifecycleScope.launch(Dispatchers.IO) {
-            bleScan.startScanAsync(sharedPreferences, scanResultListener)
-        }
-    }
-
-
     private fun toggleScan() {
-        if (isScanning) {
-            // Stop Scan
-            isScanning = false
-            btn3.text = "ComRev"
-            btn1.isEnabled = true
-            btn2.isEnabled = true
-            scanJob?.cancel() // 코루틴 중지
-            bleScan.stopScan() // BLE 스캔 중지
+        val job = scanJob
+        if (job != null) {
+            // 취소하면 스캔 루프가 바로 멈추고 Lib_AtStopScan 은 스캔 스레드가 보낸다
+            job.cancel()
             Log.d("MainActivity", "Scanning stopped")
-        } else {
-            // Start Scan
-            isScanning = true
-            btn3.text = "Stop"
-            btn1.isEnabled = false
-            btn2.isEnabled = false
-
-            // 코루틴 실행 (백그라운드에서 실행)
-            scanJob = CoroutineScope(Dispatchers.IO).launch {
-                Step3()
+            return
+        }
+        setScanning(true)
+        val sharedPreferences = getSharedPreferences("MyPrefs", MODE_PRIVATE)
+
+        // Activity 가 끝나면 lifecycleScope 와 함께 스캔도 멈춘다
+        scanJob = lifecycleScope.launch {
+            try {
+                // 변경된 기기만 (APPEARED / CHANGED / LOST), 화면 갱신 주기마다 기기별로 합쳐서 받는다
+                bleScan.scanEvents(sharedPreferences)
+                    .conflateByDevice(UI_REFRESH_MS)
+                    .collect { events ->
+                        for (event in events) {
+                            val device = event.device
+                            Log.d("BLE_SCAN", "${event.type} ${device.macString} RSSI=${device.rssi}")
+                        }
+                        // UI 업데이트 코드 추가 가능
+                    }
+            } finally {
+                scanJob = null
+                setScanning(false)
             }
-            Log.d("MainActivity", "Scanning started")
         }
+        Log.d("MainActivity", "Scanning started")
     }
 
-    private fun startScan() {
-        // 스캔 리스너 설정
-        val scanListener = object : BleScan.ScanResultListener {
-            override fun onScanResult(scanData: JSONArray) {
-                // 백그라운드 스레드에서 메인 스레드로 전환
-                Handler(Looper.getMainLooper()).post {
-                    Log.e("BLE_SCAN", "onScanResult: " + scanData)
-                    //               updateDeviceList(scanData)
-                }
-            }
-        }
+    private fun setScanning(scanning: Boolean) {
+        btn3.text = if (scanning) "Stop" else "ComRev"
+        btn1.isEnabled = !scanning
+        btn2.isEnabled = !scanning
+    }
+
+    companion object {
+        private const val UI_REFRESH_MS = 250L
     }
-}
\ No newline at end of file
+}
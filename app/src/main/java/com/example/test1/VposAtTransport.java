@@ -0,0 +1,43 @@
+package com.example.test1;
+
+import vpos.apipackage.At;
+
+/**
+ * libVpos3893 의 At JNI API 를 그대로 호출하는 실제 단말용 구현.
+ */
+public final class VposAtTransport implements AtTransport {
+    @Override
+    public int enableMaster(boolean enable) {
+        return At.Lib_EnableMaster(enable);
+    }
+
+    @Override
+    public int getMac(String[] mac) {
+        return At.Lib_GetAtMac(mac);
+    }
+
+    @Override
+    public int startNewScan(String macAddress, String broadcastName, int rssi, String manufacturerId, String data) {
+        return At.Lib_AtStartNewScan(macAddress, broadcastName, rssi, manufacturerId, data);
+    }
+
+    @Override
+    public int stopScan() {
+        return At.Lib_AtStopScan();
+    }
+
+    @Override
+    public int recv(byte[] data, int[] length, int timeoutMs, int maxWaitMs) {
+        return At.Lib_ComRecvAT(data, length, timeoutMs, maxWaitMs);
+    }
+
+    @Override
+    public int send(byte[] data, int length) {
+        return At.Lib_ComSend(data, length);
+    }
+
+    @Override
+    public int ctsCtrl() {
+        return At.Lib_AtCtsCtrl();
+    }
+}
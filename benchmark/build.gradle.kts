@@ -0,0 +1,51 @@
+// 스캔 수신 파이프라인 JMH 벤치마크 (순수 JVM 모듈)
+//   ./gradlew :benchmark:jmh                         전체 실행 (결과: build/results/jmh/results.json)
+//   ./gradlew :benchmark:jmh -PjmhIncludes=LineSplit 일부만 실행
+//   ./gradlew :benchmark:jmhCompare -Pbaseline=old.json -Pcurrent=new.json [-Pthreshold=10]
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":scan-core"))
+    // 기존 JSON 기반 경로를 비교 기준으로 실행하기 위해 필요
+    implementation(libs.org.json)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // 커밋 간 결과를 비교할 수 있도록 반복/포크 설정을 고정한다
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    jvmArgsAppend.add("-Dscan.corpus.dir=${rootProject.file("app/log").absolutePath}")
+    // -PcaptureDir=<dir>: recorded 코퍼스로 CaptureWriter 캡처 사용
+    providers.gradleProperty("captureDir").orNull?.let {
+        jvmArgsAppend.add("-Dscan.capture.dir=${file(it).absolutePath}")
+    }
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
+
+tasks.register<JavaExec>("jmhCompare") {
+    group = "benchmark"
+    description = "Compares two JMH JSON result files and fails on regressions."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.test1.benchmark.JmhCompare")
+    args(
+        providers.gradleProperty("baseline").getOrElse(""),
+        providers.gradleProperty("current")
+            .getOrElse(layout.buildDirectory.file("results/jmh/results.json").get().asFile.path),
+        providers.gradleProperty("threshold").getOrElse("10")
+    )
+}
@@ -0,0 +1,127 @@
+package com.example.test1.benchmark;
+
+import com.example.test1.AdvertisementView;
+import com.example.test1.CodecRegistry;
+import com.example.test1.PayloadCache;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AD structure 해석. 한 op = 코퍼스의 모든 페이로드 1회 해석.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AdParseBenchmark {
+    @Param({Corpora.RECORDED, Corpora.SYNTHETIC})
+    public String corpus;
+
+    private byte[][] payloads;
+    private final AdvertisementView view = new AdvertisementView();
+    private PayloadCache cache;
+    private final CodecRegistry codecs = CodecRegistry.standard();
+
+    @Setup
+    public void setup() throws Exception {
+        Corpora.Records r = Corpora.Records.of(Corpora.chunks(corpus));
+        payloads = java.util.Arrays.copyOf(r.payloads, r.count);
+        cache = new PayloadCache(4096);
+    }
+
+    @Benchmark
+    public void legacyJson(Blackhole bh, LineCounter counter) throws JSONException {
+        for (byte[] p : payloads) {
+            bh.consume(LegacyScanParsing.parseAdvertisementData(p));
+        }
+        counter.lines += payloads.length;
+    }
+
+    /** 소비자가 실제로 쓰는 필드(flags, 제조사 ID, 이름 길이, TX power, UUID 수)를 뷰로 읽는다 */
+    @Benchmark
+    public void viewAccessors(Blackhole bh, LineCounter counter) {
+        for (byte[] p : payloads) {
+            view.wrap(p, 0, p.length);
+            bh.consume(view.flags());
+            bh.consume(view.manufacturerId());
+            bh.consume(view.localNameLength());
+            bh.consume(view.txPower());
+            bh.consume(view.serviceUuid16Count());
+        }
+        counter.lines += payloads.length;
+    }
+
+    @Benchmark
+    public void viewToJson(Blackhole bh, LineCounter counter) throws JSONException {
+        for (byte[] p : payloads) {
+            bh.consume(view.wrap(p, 0, p.length).toJson());
+        }
+        counter.lines += payloads.length;
+    }
+
+    /** 반복 페이로드는 캐시에서 이미 만든 JSON 을 찾는다 (해시 + 바이트 비교) */
+    @Benchmark
+    public void cachedJson(Blackhole bh, LineCounter counter) throws JSONException {
+        for (byte[] p : payloads) {
+            bh.consume(cache.intern(p, 0, p.length).json());
+        }
+        counter.lines += payloads.length;
+    }
+
+    /**
+     * 기존 소비자 방식: JSON 을 만든 뒤 "Manufacturer Data" / "Service Data UUID 1234" hex 를 다시 파싱해
+     * iBeacon 과 mcandle 값을 꺼낸다.
+     */
+    @Benchmark
+    public void legacyJsonReparse(Blackhole bh, LineCounter counter) throws JSONException {
+        for (byte[] p : payloads) {
+            JSONObject json = LegacyScanParsing.parseAdvertisementData(p);
+            if (json == null) {
+                continue;
+            }
+            String manufacturer = json.optString("Manufacturer Data", null);
+            if (manufacturer != null) {
+                String h = manufacturer.replace(" ", "");
+                if (h.length() >= 50 && h.startsWith("4C000215")) {
+                    bh.consume(new UUID(Long.parseUnsignedLong(h.substring(8, 24), 16),
+                            Long.parseUnsignedLong(h.substring(24, 40), 16)));
+                    bh.consume(Integer.parseInt(h.substring(40, 44), 16));
+                    bh.consume(Integer.parseInt(h.substring(44, 48), 16));
+                }
+            }
+            JSONArray service = json.optJSONArray("Service Data UUID 1234");
+            if (service != null) {
+                String h = service.getString(0).replace(" ", "");
+                byte[] text = new byte[h.length() / 2];
+                for (int i = 0; i < text.length; i++) {
+                    text[i] = (byte) Integer.parseInt(h.substring(i * 2, i * 2 + 2), 16);
+                }
+                bh.consume(new String(text, StandardCharsets.US_ASCII));
+            }
+        }
+        counter.lines += payloads.length;
+    }
+
+    /** 코덱 레지스트리로 페이로드 바이트에서 바로 프레임을 만든다 */
+    @Benchmark
+    public void codecFrames(Blackhole bh, LineCounter counter) {
+        for (byte[] p : payloads) {
+            bh.consume(codecs.decode(view.wrap(p, 0, p.length)));
+        }
+        counter.lines += payloads.length;
+    }
+}
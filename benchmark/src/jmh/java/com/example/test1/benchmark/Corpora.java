@@ -0,0 +1,110 @@
+package com.example.test1.benchmark;
+
+import com.example.test1.CaptureReader;
+import com.example.test1.CaptureWriter;
+import com.example.test1.LogcatCapture;
+import com.example.test1.ScanLineParser;
+import com.example.test1.SimulatedAtTransport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크 입력 데이터.
+ * <ul>
+ *     <li>recorded: app/log/orginal.txt 에서 복원한 실제 수신 청크.
+ *     -Dscan.capture.dir 를 주면 그 디렉터리의 {@link CaptureWriter} 캡처(scan-*.cap)를 대신 사용한다.</li>
+ *     <li>synthetic: {@link SimulatedAtTransport} 로 만든 500대 규모 트래픽 (seed 고정)</li>
+ * </ul>
+ */
+final class Corpora {
+    static final String RECORDED = "recorded";
+    static final String SYNTHETIC = "synthetic";
+
+    private Corpora() {
+    }
+
+    static List<byte[]> chunks(String corpus) throws IOException {
+        if (RECORDED.equals(corpus)) {
+            String capture = System.getProperty("scan.capture.dir");
+            if (capture != null) {
+                return captured(new File(capture));
+            }
+            String dir = System.getProperty("scan.corpus.dir", "app/log");
+            return LogcatCapture.readChunks(new File(dir, "orginal.txt"));
+        }
+        if (SYNTHETIC.equals(corpus)) {
+            return synthetic(500, 400);
+        }
+        throw new IllegalArgumentException("unknown corpus: " + corpus);
+    }
+
+    static List<byte[]> captured(File dir) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        try (CaptureReader reader = CaptureReader.open(dir, "scan")) {
+            while (reader.next()) {
+                byte[] chunk = new byte[reader.length()];
+                reader.read(chunk, 0);
+                chunks.add(chunk);
+            }
+        }
+        if (chunks.isEmpty()) {
+            throw new IOException("no capture segments in " + dir);
+        }
+        return chunks;
+    }
+
+    static List<byte[]> synthetic(int devices, int chunkCount) {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(devices).chunkSize(1000).seed(1));
+        t.enableMaster(true);
+        t.startNewScan("", "", 0, "", "");
+        List<byte[]> chunks = new ArrayList<>();
+        byte[] buf = new byte[2048];
+        int[] len = new int[1];
+        for (int i = 0; i < chunkCount; i++) {
+            t.recv(buf, len, 20, 1000);
+            chunks.add(java.util.Arrays.copyOf(buf, len[0]));
+        }
+        return chunks;
+    }
+
+    /** 청크에서 파싱한 레코드를 primitive 배열로 보관 (테이블/디스패치 벤치마크 입력) */
+    static final class Records implements ScanLineParser.Callback {
+        int count;
+        long[] macs = new long[1024];
+        int[] rssi = new int[1024];
+        int[] types = new int[1024];
+        byte[][] payloads = new byte[1024][];
+        // 청크 i 의 레코드는 [chunkEnd[i-1], chunkEnd[i])
+        final List<Integer> chunkEnds = new ArrayList<>();
+
+        static Records of(List<byte[]> chunks) {
+            Records r = new Records();
+            ScanLineParser parser = new ScanLineParser();
+            for (byte[] chunk : chunks) {
+                parser.feed(chunk, 0, chunk.length, r);
+                r.chunkEnds.add(r.count);
+            }
+            return r;
+        }
+
+        @Override
+        public void onRecord(ScanLineParser p) {
+            if (count == macs.length) {
+                int n = count * 2;
+                macs = java.util.Arrays.copyOf(macs, n);
+                rssi = java.util.Arrays.copyOf(rssi, n);
+                types = java.util.Arrays.copyOf(types, n);
+                payloads = java.util.Arrays.copyOf(payloads, n);
+            }
+            macs[count] = p.mac();
+            rssi[count] = p.rssi();
+            types[count] = p.type();
+            payloads[count] = java.util.Arrays.copyOf(p.payload(), p.payloadLength());
+            count++;
+        }
+    }
+}
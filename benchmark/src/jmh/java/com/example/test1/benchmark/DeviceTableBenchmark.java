@@ -0,0 +1,79 @@
+package com.example.test1.benchmark;
+
+import com.example.test1.DeviceTable;
+import com.example.test1.Hex;
+import com.example.test1.MacAddress;
+import com.example.test1.ScanLineParser;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 파싱된 줄을 기기 상태에 반영하는 비용. 한 op = 코퍼스 전체 1회 반영.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DeviceTableBenchmark {
+    @Param({Corpora.RECORDED, Corpora.SYNTHETIC})
+    public String corpus;
+
+    private Corpora.Records records;
+    private String[] macStrings;
+    private String[] hexStrings;
+    private final DeviceTable table = new DeviceTable(1024, 0);
+
+    @Setup
+    public void setup() throws Exception {
+        records = Corpora.Records.of(Corpora.chunks(corpus));
+        macStrings = new String[records.count];
+        hexStrings = new String[records.count];
+        for (int i = 0; i < records.count; i++) {
+            macStrings[i] = MacAddress.toString(records.macs[i]);
+            hexStrings[i] = Hex.encode(records.payloads[i], 0, records.payloads[i].length);
+        }
+    }
+
+    /** 청크마다 새 ConcurrentHashMap + JSONObject 갱신 (기존 recvScanData) */
+    @Benchmark
+    public void legacyJsonDeviceMap(Blackhole bh, LineCounter counter) throws JSONException {
+        int i = 0;
+        for (int end : records.chunkEnds) {
+            Map<String, JSONObject> deviceMap = new ConcurrentHashMap<>();
+            for (; i < end; i++) {
+                LegacyScanParsing.putDevice(deviceMap, macStrings[i], records.rssi[i],
+                        records.types[i] == ScanLineParser.TYPE_RSP, hexStrings[i]);
+            }
+            bh.consume(deviceMap);
+        }
+        counter.lines += records.count;
+    }
+
+    @Benchmark
+    public void deviceTableUpdate(Blackhole bh, LineCounter counter) {
+        int i = 0;
+        long now = 0;
+        for (int end : records.chunkEnds) {
+            for (; i < end; i++) {
+                byte[] p = records.payloads[i];
+                bh.consume(table.update(records.macs[i], records.rssi[i], records.types[i], p, 0, p.length, now));
+            }
+            table.clearDirty();
+            now += 20;
+        }
+        counter.lines += records.count;
+    }
+}
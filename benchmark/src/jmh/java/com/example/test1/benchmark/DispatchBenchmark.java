@@ -0,0 +1,105 @@
+package com.example.test1.benchmark;
+
+import com.example.test1.DeltaTracker;
+import com.example.test1.DeviceTable;
+import com.example.test1.Hex;
+import com.example.test1.MacAddress;
+import com.example.test1.ScanEvent;
+import com.example.test1.ScanEventListener;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 청크 처리 후 리스너로 결과를 전달하는 비용. 한 op = 청크 하나 분량의 테이블 갱신과 결과 전달.
+ * 두 방식 모두 같은 {@link #updateChunk} 를 거치므로 차이는 전달 방식에서만 나온다.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DispatchBenchmark {
+    /** 한 청크에 들어오는 줄 수 */
+    @Param({"30"})
+    public int linesPerChunk;
+
+    /** 그중 페이로드가 바뀐 기기 비율 (%) */
+    @Param({"0", "10", "100"})
+    public int churnPercent;
+
+    private Corpora.Records records;
+    private final DeviceTable table = new DeviceTable(1024, 0);
+    private DeltaTracker tracker;
+    private final Map<String, JSONObject> legacyMap = new HashMap<>();
+    private int cursor;
+    private long now;
+    // 바뀐 페이로드마다 다른 값을 만들기 위한 일련번호
+    private int changeSeq;
+    private final byte[] changed = new byte[31];
+
+    @Setup
+    public void setup() throws Exception {
+        records = Corpora.Records.of(Corpora.synthetic(500, 400));
+        tracker = new DeltaTracker(table, 4);
+        for (int i = 0; i < records.count; i++) {
+            byte[] p = records.payloads[i];
+            table.update(records.macs[i], records.rssi[i], records.types[i], p, 0, p.length, 0);
+        }
+        tracker.collect();
+        for (int i = 0; i < linesPerChunk; i++) {
+            String mac = MacAddress.toString(records.macs[i]);
+            LegacyScanParsing.putDevice(legacyMap, mac, records.rssi[i], false,
+                    Hex.encode(records.payloads[i], 0, records.payloads[i].length));
+        }
+    }
+
+    /** 기존: 청크의 모든 기기를 toString() -> new JSONObject() 로 복사해 전달 */
+    @Benchmark
+    public void legacyDeepCopy(Blackhole bh) throws JSONException {
+        updateChunk();
+        table.clearDirty();
+        bh.consume(LegacyScanParsing.deepCopy(legacyMap));
+    }
+
+    /** 변경분만 불변 스냅샷으로 전달 */
+    @Benchmark
+    public void deltaEvents(final Blackhole bh) {
+        updateChunk();
+        List<ScanEvent> events = tracker.collect();
+        ScanEventListener listener = bh::consume;
+        if (!events.isEmpty()) {
+            listener.onScanEvents(events);
+        }
+    }
+
+    /** 청크 하나의 줄을 테이블에 반영한다. 앞쪽 churnPercent% 는 페이로드 마지막 바이트를 바꿔 보낸다. */
+    private void updateChunk() {
+        int churn = linesPerChunk * churnPercent / 100;
+        for (int k = 0; k < linesPerChunk; k++) {
+            int i = cursor;
+            cursor = (cursor + 1) % records.count;
+            byte[] p = records.payloads[i];
+            if (k < churn) {
+                System.arraycopy(p, 0, changed, 0, p.length);
+                // 0 이 아닌 값으로 뒤집어 항상 바뀐 페이로드가 되게 한다
+                changed[p.length - 1] ^= (byte) (1 + changeSeq++ % 255);
+                p = changed;
+            }
+            table.update(records.macs[i], records.rssi[i], records.types[i], p, 0, p.length, now);
+        }
+        now++;
+    }
+}
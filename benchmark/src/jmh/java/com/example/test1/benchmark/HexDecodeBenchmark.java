@@ -0,0 +1,58 @@
+package com.example.test1.benchmark;
+
+import com.example.test1.Hex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 페이로드 HEX 디코딩. 한 op = 코퍼스의 모든 페이로드 1회 디코딩.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HexDecodeBenchmark {
+    @Param({Corpora.RECORDED, Corpora.SYNTHETIC})
+    public String corpus;
+
+    private String[] hexStrings;
+    private byte[][] hexAscii;
+    private final byte[] out = new byte[31];
+
+    @Setup
+    public void setup() throws Exception {
+        Corpora.Records r = Corpora.Records.of(Corpora.chunks(corpus));
+        hexStrings = new String[r.count];
+        hexAscii = new byte[r.count][];
+        for (int i = 0; i < r.count; i++) {
+            hexStrings[i] = Hex.encode(r.payloads[i], 0, r.payloads[i].length);
+            hexAscii[i] = hexStrings[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Benchmark
+    public void legacyHexStringToByteArray(Blackhole bh, LineCounter counter) {
+        for (String s : hexStrings) {
+            bh.consume(LegacyScanParsing.hexStringToByteArray(s));
+        }
+        counter.lines += hexStrings.length;
+    }
+
+    @Benchmark
+    public void tableDecodeInPlace(Blackhole bh, LineCounter counter) {
+        for (byte[] s : hexAscii) {
+            bh.consume(Hex.decode(s, 0, s.length, out, 0));
+        }
+        counter.lines += hexAscii.length;
+    }
+}
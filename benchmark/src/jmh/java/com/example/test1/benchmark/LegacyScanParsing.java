@@ -0,0 +1,176 @@
+package com.example.test1.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 비교 기준: 최적화 이전 BleScan 의 String/JSON 기반 처리 경로를 옮긴 것.
+ * (잘린 페이로드에서 예외가 나던 경계 검사만 추가했다)
+ */
+final class LegacyScanParsing {
+    private LegacyScanParsing() {
+    }
+
+    /** recvScanData 의 줄 분할 + 필드 분할. 마지막 미완성 줄을 반환한다. */
+    static String splitLines(String lineLeft, byte[] recvData, int len, LineSink sink) {
+        String buff = lineLeft + new String(recvData, 0, len);
+        String[] data = buff.split("\\r\\n|\\r|\\n", -1);
+        for (int i = 0; i < data.length - 1; i++) {
+            String line = data[i];
+            if (!line.startsWith("MAC:")) {
+                continue;
+            }
+            String[] parts = line.split(",", 3);
+            if (parts.length < 3) {
+                continue;
+            }
+            String mac = parts[0].split(":", 2)[1].trim();
+            String rssi = parts[1].split(":")[1].trim();
+            int irssi;
+            try {
+                irssi = Integer.parseInt(rssi);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            String payload = parts[2].split(":", 2)[1].trim();
+            if ((payload.length() > 62) || (payload.length() % 2 != 0)) {
+                continue;
+            }
+            sink.onLine(mac, irssi, parts[2].startsWith("RSP"), payload);
+        }
+        return data.length > 0 ? data[data.length - 1] : "";
+    }
+
+    interface LineSink {
+        void onLine(String mac, int rssi, boolean rsp, String payload);
+    }
+
+    /** recvScanData 의 기기 JSON 갱신 */
+    static void putDevice(Map<String, JSONObject> deviceMap, String mac, int rssi, boolean rsp, String payload)
+            throws JSONException {
+        JSONObject device = deviceMap.get(mac);
+        if (device == null) {
+            device = new JSONObject();
+            device.put("MAC", mac);
+            deviceMap.put(mac, device);
+        }
+        if (rsp) {
+            device.put("RSP_org", payload);
+            device.put("RSP", parseAdvertisementData(hexStringToByteArray(payload)));
+        } else {
+            device.put("ADV_org", payload);
+            device.put("ADV", parseAdvertisementData(hexStringToByteArray(payload)));
+        }
+        device.put("RSSI", rssi);
+        device.put("Timestamp", System.currentTimeMillis());
+    }
+
+    /** recvScanData 의 결과 전달 (toString / new JSONObject 깊은 복사) */
+    static JSONArray deepCopy(Map<String, JSONObject> deviceMap) throws JSONException {
+        JSONArray resultArray = new JSONArray();
+        for (JSONObject device : deviceMap.values()) {
+            resultArray.put(new JSONObject(device.toString()));
+        }
+        return resultArray;
+    }
+
+    static byte[] hexStringToByteArray(String hexString) {
+        int len = hexString.length();
+        if (len % 2 == 1)
+            len--;
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(hexString.charAt(i), 16) << 4)
+                    + Character.digit(hexString.charAt(i + 1), 16));
+        }
+        return data;
+    }
+
+    static String bytesToHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02X ", b));
+        }
+        return sb.toString();
+    }
+
+    static JSONObject parseAdvertisementData(byte[] advertisementData) throws JSONException {
+        JSONObject parsedData = new JSONObject();
+        int offset = 0;
+        while (offset < advertisementData.length) {
+            int length = advertisementData[offset++] & 0xFF;
+            if (length == 0) break;
+            if (offset >= advertisementData.length) return null;
+
+            int type = advertisementData[offset] & 0xFF;
+            offset++;
+
+            if (length - 1 > advertisementData.length - offset) {
+                return null;
+            }
+            byte[] data = new byte[length - 1];
+            System.arraycopy(advertisementData, offset, data, 0, length - 1);
+            offset += length - 1;
+
+            switch (type) {
+                case 0x01:
+                    parsedData.put("Flags", bytesToHex(data));
+                    break;
+                case 0x02:
+                case 0x03:
+                case 0x04:
+                case 0x05:
+                case 0x06:
+                case 0x07:
+                    parsedData.put("Service UUIDs", bytesToHex(data));
+                    break;
+                case 0x08:
+                case 0x09:
+                    parsedData.put("Device Name", new String(data));
+                    break;
+                case 0x0A:
+                    if (data.length > 0) parsedData.put("TX Power Level", data[0]);
+                    break;
+                case 0xFF:
+                    parsedData.put("Manufacturer Data", bytesToHex(data));
+                    break;
+                case 0x16:
+                    if (data.length >= 2) {
+                        String uuid16 = String.format("%04X", ((data[1] & 0xFF) << 8) | (data[0] & 0xFF));
+                        addServiceData(parsedData, uuid16, Arrays.copyOfRange(data, 2, data.length));
+                    }
+                    break;
+                case 0x20:
+                    if (data.length >= 4) {
+                        String uuid32 = String.format("%08X",
+                                ((data[3] & 0xFF) << 24) | ((data[2] & 0xFF) << 16) | ((data[1] & 0xFF) << 8) | (data[0] & 0xFF));
+                        addServiceData(parsedData, uuid32, Arrays.copyOfRange(data, 4, data.length));
+                    }
+                    break;
+                case 0x21:
+                    if (data.length >= 16) {
+                        String uuid128 = bytesToHex(Arrays.copyOfRange(data, 0, 16));
+                        addServiceData(parsedData, uuid128, Arrays.copyOfRange(data, 16, data.length));
+                    }
+                default:
+                    parsedData.put("Unknown Data (" + type + ")", bytesToHex(data));
+                    break;
+            }
+        }
+        return parsedData;
+    }
+
+    private static void addServiceData(JSONObject parsedData, String uuid, byte[] serviceData) throws JSONException {
+        String key = "Service Data UUID " + uuid;
+        JSONArray serviceArray = parsedData.optJSONArray(key);
+        if (serviceArray == null) {
+            serviceArray = new JSONArray();
+            parsedData.put(key, serviceArray);
+        }
+        serviceArray.put(bytesToHex(serviceData));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.test1.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 처리한 광고 줄 수. JMH 가 primary metric 옆에 lines (ops/s) 로 함께 보고한다.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class LineCounter {
+    public long lines;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        lines = 0;
+    }
+}
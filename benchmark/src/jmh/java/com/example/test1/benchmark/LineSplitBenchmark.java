@@ -0,0 +1,63 @@
+package com.example.test1.benchmark;
+
+import com.example.test1.ScanLineParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 수신 청크 -> (MAC, RSSI, 페이로드) 줄 분할. 한 op = 코퍼스 전체 1회 처리.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LineSplitBenchmark {
+    @Param({Corpora.RECORDED, Corpora.SYNTHETIC})
+    public String corpus;
+
+    private List<byte[]> chunks;
+    private final ScanLineParser parser = new ScanLineParser();
+
+    @Setup
+    public void setup() throws Exception {
+        chunks = Corpora.chunks(corpus);
+    }
+
+    @Benchmark
+    public void legacyStringSplit(final Blackhole bh, final LineCounter counter) {
+        String lineLeft = "";
+        LegacyScanParsing.LineSink sink = (mac, rssi, rsp, payload) -> {
+            bh.consume(mac);
+            bh.consume(rssi);
+            bh.consume(payload);
+            counter.lines++;
+        };
+        for (byte[] chunk : chunks) {
+            lineLeft = LegacyScanParsing.splitLines(lineLeft, chunk, chunk.length, sink);
+        }
+    }
+
+    @Benchmark
+    public void scanLineParser(final Blackhole bh, final LineCounter counter) {
+        ScanLineParser.Callback callback = p -> {
+            bh.consume(p.mac());
+            bh.consume(p.rssi());
+            bh.consume(p.payloadLength());
+            counter.lines++;
+        };
+        parser.reset();
+        for (byte[] chunk : chunks) {
+            parser.feed(chunk, 0, chunk.length, callback);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.test1.benchmark;
+
+import com.example.test1.DeviceSnapshot;
+import com.example.test1.DeviceTable;
+import com.example.test1.PayloadCache;
+import com.example.test1.ScanLineParser;
+import com.example.test1.TableSnapshot;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 청크 하나를 처리한 뒤 읽는 쪽에 기기 테이블을 넘기는 비용. 한 op = changed 개 기기 갱신 후 게시 1회.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TableSnapshotBenchmark {
+    @Param({"256", "1024"})
+    public int devices;
+
+    /** 청크마다 바뀌는 기기 수 */
+    @Param({"1", "30"})
+    public int changed;
+
+    private Corpora.Records records;
+    private DeviceTable table;
+    private TableSnapshot.Publisher publisher;
+    private final PayloadCache cache = new PayloadCache(4096);
+    private final Map<Long, JSONObject> legacyMap = new HashMap<>();
+    private int cursor;
+    private int rssi = -60;
+
+    @Setup
+    public void setup() throws Exception {
+        records = Corpora.Records.of(Corpora.synthetic(devices, devices));
+        table = new DeviceTable(devices, 0);
+        publisher = new TableSnapshot.Publisher(devices);
+        for (int i = 0; i < records.count; i++) {
+            byte[] p = records.payloads[i];
+            table.update(records.macs[i], records.rssi[i], records.types[i], p, 0, p.length, 0);
+        }
+        for (int e = table.nextEntry(0); e >= 0; e = table.nextEntry(e + 1)) {
+            publisher.update(table, e, null, cache, null);
+            legacyMap.put(table.mac(e), DeviceSnapshot.capture(table, e, null, null, cache).toJson());
+        }
+        publisher.publish();
+        table.clearDirty();
+    }
+
+    private void touch() {
+        rssi = rssi == -60 ? -61 : -60;
+        for (int k = 0; k < changed; k++) {
+            int i = cursor++ % records.count;
+            byte[] p = records.payloads[i];
+            table.update(records.macs[i], rssi, ScanLineParser.TYPE_ADV, p, 0, p.length, 0);
+        }
+    }
+
+    /** 전체 기기를 toString 후 다시 파싱해 넘기는 깊은 복사 (기존 recvScanData) */
+    @Benchmark
+    public void legacyJsonDeepCopy(Blackhole bh) throws JSONException {
+        touch();
+        for (int i = 0; i < table.dirtyCount(); i++) {
+            int e = table.dirtyEntry(i);
+            legacyMap.put(table.mac(e), DeviceSnapshot.capture(table, e, null, null, cache).toJson());
+        }
+        table.clearDirty();
+        Map<Long, JSONObject> copy = new HashMap<>();
+        for (Map.Entry<Long, JSONObject> d : legacyMap.entrySet()) {
+            copy.put(d.getKey(), new JSONObject(d.getValue().toString()));
+        }
+        bh.consume(copy);
+    }
+
+    /** 바뀐 기기의 페이지만 복사하고 참조를 바꾼다 */
+    @Benchmark
+    public void pagedSnapshot(Blackhole bh) {
+        touch();
+        for (int i = 0; i < table.dirtyCount(); i++) {
+            publisher.update(table, table.dirtyEntry(i), null, cache, null);
+        }
+        table.clearDirty();
+        bh.consume(publisher.publish());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.test1.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 두 JMH JSON 결과 파일을 비교해 표로 출력한다.
+ * 점수가 threshold(%) 이상 나빠진 벤치마크가 하나라도 있으면 종료 코드 1.
+ *
+ * <pre>java JmhCompare baseline.json current.json [thresholdPercent]</pre>
+ */
+public final class JmhCompare {
+    private JmhCompare() {
+    }
+
+    public static void main(String[] args) throws IOException, JSONException {
+        if (args.length < 2) {
+            System.err.println("usage: JmhCompare <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, Result> baseline = load(args[0]);
+        Map<String, Result> current = load(args[1]);
+
+        int regressions = 0;
+        System.out.println(String.format(Locale.ROOT, "%-70s %14s %14s %8s %12s %12s",
+                "benchmark", "baseline", "current", "delta%", "B/op base", "B/op cur"));
+        for (Map.Entry<String, Result> e : current.entrySet()) {
+            Result cur = e.getValue();
+            Result base = baseline.get(e.getKey());
+            if (base == null) {
+                System.out.println(String.format(Locale.ROOT, "%-70s %14s %14.2f %8s %12s %12.1f",
+                        e.getKey(), "-", cur.score, "new", "-", cur.allocNorm));
+                continue;
+            }
+            double delta = change(base, cur);
+            boolean regressed = -delta >= threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.println(String.format(Locale.ROOT, "%-70s %14.2f %14.2f %+7.1f%% %12.1f %12.1f%s",
+                    e.getKey(), base.score, cur.score, delta, base.allocNorm, cur.allocNorm,
+                    regressed ? "  REGRESSION" : ""));
+        }
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmark(s) regressed by >= " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    /** 개선 방향을 양수로 맞춘 변화율(%). thrpt 는 클수록, avgt/sample/ss 는 작을수록 좋다. */
+    static double change(Result base, Result cur) {
+        if (base.score == 0) {
+            return 0;
+        }
+        double ratio = (cur.score - base.score) / base.score * 100.0;
+        return "thrpt".equals(cur.mode) ? ratio : -ratio;
+    }
+
+    static Map<String, Result> load(String path) throws IOException, JSONException {
+        String text = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+        return parse(new JSONArray(text));
+    }
+
+    static Map<String, Result> parse(JSONArray runs) throws JSONException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (int i = 0; i < runs.length(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            Result r = new Result();
+            r.mode = run.getString("mode");
+            r.score = run.getJSONObject("primaryMetric").getDouble("score");
+            JSONObject secondary = run.optJSONObject("secondaryMetrics");
+            if (secondary != null) {
+                for (String key : secondary.keySet()) {
+                    if (key.endsWith("gc.alloc.rate.norm")) {
+                        r.allocNorm = secondary.getJSONObject(key).getDouble("score");
+                    }
+                }
+            }
+            results.put(key(run), r);
+        }
+        return results;
+    }
+
+    private static String key(JSONObject run) throws JSONException {
+        StringBuilder sb = new StringBuilder(run.getString("benchmark"));
+        JSONObject params = run.optJSONObject("params");
+        if (params != null) {
+            for (String name : new java.util.TreeSet<>(params.keySet())) {
+                sb.append(' ').append(name).append('=').append(params.getString(name));
+            }
+        }
+        return sb.toString();
+    }
+
+    static final class Result {
+        String mode;
+        double score;
+        double allocNorm = Double.NaN;
+    }
+}
@@ -0,0 +1,18 @@
+// 스캔 파이프라인의 순수 Java 부분 (파서, 기기 테이블, 시뮬레이터).
+// Android 의존성이 없어 JVM 단위 테스트와 :benchmark 에서 그대로 사용한다.
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    // org.json 은 Android 플랫폼이 제공하므로 컴파일에만 사용
+    compileOnly(libs.org.json)
+
+    testImplementation(libs.junit)
+    testImplementation(libs.org.json)
+}
@@ -0,0 +1,14 @@
+package com.example.test1;
+
+/**
+ * 제조사 ID 나 서비스 UUID 하나에 등록되는 비콘 해석기. {@link CodecRegistry} 에서 호출한다.
+ */
+public interface AdvertisementCodec {
+    /**
+     * @param data   페이로드 배열 (공유 배열, 수정 금지)
+     * @param offset 제조사 ID / 서비스 UUID 바로 뒤 데이터의 절대 offset
+     * @param length 그 데이터 길이
+     * @return 해석한 프레임, 이 코덱의 형식이 아니면 null
+     */
+    BeaconFrame decode(byte[] data, int offset, int length);
+}
@@ -0,0 +1,415 @@
+package com.example.test1;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * BLE 광고 페이로드(AD structure 목록)를 복사 없이 읽는 flyweight 뷰.
+ *
+ * <p>{@link #wrap} 은 배열 참조와 범위만 기억하고, 첫 접근자 호출 시 한 번 AD structure 를 훑어
+ * 필드 위치(type/offset/length)만 인덱싱한다. 값은 원본 배열에서 바로 읽으며, 문자열이 필요한
+ * {@link #localName()} / {@link #toJson()} 만 객체를 생성한다.
+ *
+ * <p>재사용 가능하며 스레드 안전하지 않다. wrap 한 배열이 바뀌면 다시 wrap 해야 한다.
+ */
+public final class AdvertisementView {
+    public static final int AD_FLAGS = 0x01;
+    public static final int AD_UUID16_INCOMPLETE = 0x02;
+    public static final int AD_UUID16_COMPLETE = 0x03;
+    public static final int AD_UUID32_INCOMPLETE = 0x04;
+    public static final int AD_UUID32_COMPLETE = 0x05;
+    public static final int AD_UUID128_INCOMPLETE = 0x06;
+    public static final int AD_UUID128_COMPLETE = 0x07;
+    public static final int AD_NAME_SHORT = 0x08;
+    public static final int AD_NAME_COMPLETE = 0x09;
+    public static final int AD_TX_POWER = 0x0A;
+    public static final int AD_SERVICE_DATA16 = 0x16;
+    public static final int AD_SERVICE_DATA32 = 0x20;
+    public static final int AD_SERVICE_DATA128 = 0x21;
+    public static final int AD_MANUFACTURER = 0xFF;
+
+    /** 값이 없을 때 {@link #txPower()} 반환값 */
+    public static final int NO_TX_POWER = Integer.MIN_VALUE;
+
+    private byte[] data;
+    private int offset;
+    private int length;
+
+    private boolean indexed;
+    private boolean truncated;
+    private int fieldCount;
+    // 필드별 AD type, 데이터 시작 위치(절대 offset), 데이터 길이 (length/type 바이트 제외)
+    private int[] fieldType = new int[16];
+    private int[] fieldStart = new int[16];
+    private int[] fieldLength = new int[16];
+
+    public AdvertisementView wrap(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.indexed = false;
+        return this;
+    }
+
+    public byte[] array() {
+        return data;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * AD structure 길이가 페이로드 범위를 넘지 않으면 true.
+     * 기존 parseAdvertisementData 가 null 을 반환하던 경우가 false 에 해당한다.
+     */
+    public boolean isValid() {
+        ensureIndexed();
+        return !truncated;
+    }
+
+    public int fieldCount() {
+        ensureIndexed();
+        return fieldCount;
+    }
+
+    public int fieldType(int i) {
+        ensureIndexed();
+        return fieldType[i];
+    }
+
+    /** i 번째 필드 데이터의 절대 offset ({@link #array()} 기준) */
+    public int fieldOffset(int i) {
+        ensureIndexed();
+        return fieldStart[i];
+    }
+
+    public int fieldLength(int i) {
+        ensureIndexed();
+        return fieldLength[i];
+    }
+
+    /** 해당 type 의 첫 번째 필드 index, 없으면 -1 */
+    public int findField(int type) {
+        ensureIndexed();
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldType[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Flags 값, 없으면 -1 */
+    public int flags() {
+        int f = findField(AD_FLAGS);
+        return (f < 0 || fieldLength[f] < 1) ? -1 : data[fieldStart[f]] & 0xFF;
+    }
+
+    /** TX Power Level (dBm), 없으면 {@link #NO_TX_POWER} */
+    public int txPower() {
+        int f = findField(AD_TX_POWER);
+        return (f < 0 || fieldLength[f] < 1) ? NO_TX_POWER : data[fieldStart[f]];
+    }
+
+    // ---- Service UUID 목록 (0x02-0x07) ----
+
+    public int serviceUuid16Count() {
+        return countUuids(AD_UUID16_INCOMPLETE, AD_UUID16_COMPLETE, 2);
+    }
+
+    public int serviceUuid16(int index) {
+        int p = uuidPosition(AD_UUID16_INCOMPLETE, AD_UUID16_COMPLETE, 2, index);
+        return le16(p);
+    }
+
+    public int serviceUuid32Count() {
+        return countUuids(AD_UUID32_INCOMPLETE, AD_UUID32_COMPLETE, 4);
+    }
+
+    /** 32비트 UUID (부호 없는 값) */
+    public long serviceUuid32(int index) {
+        int p = uuidPosition(AD_UUID32_INCOMPLETE, AD_UUID32_COMPLETE, 4, index);
+        return le32(p);
+    }
+
+    public int serviceUuid128Count() {
+        return countUuids(AD_UUID128_INCOMPLETE, AD_UUID128_COMPLETE, 16);
+    }
+
+    /** 128비트 UUID 상위 64비트 (표기 순서 기준) */
+    public long serviceUuid128Msb(int index) {
+        return le64(uuidPosition(AD_UUID128_INCOMPLETE, AD_UUID128_COMPLETE, 16, index) + 8);
+    }
+
+    /** 128비트 UUID 하위 64비트 (표기 순서 기준) */
+    public long serviceUuid128Lsb(int index) {
+        return le64(uuidPosition(AD_UUID128_INCOMPLETE, AD_UUID128_COMPLETE, 16, index));
+    }
+
+    public UUID serviceUuid128(int index) {
+        return new UUID(serviceUuid128Msb(index), serviceUuid128Lsb(index));
+    }
+
+    // ---- Local Name (0x08/0x09) ----
+
+    public boolean hasLocalName() {
+        return nameField() >= 0;
+    }
+
+    public boolean isLocalNameComplete() {
+        int f = nameField();
+        return f >= 0 && fieldType[f] == AD_NAME_COMPLETE;
+    }
+
+    public int localNameOffset() {
+        int f = nameField();
+        return f < 0 ? -1 : fieldStart[f];
+    }
+
+    public int localNameLength() {
+        int f = nameField();
+        return f < 0 ? 0 : fieldLength[f];
+    }
+
+    /** 이름 문자열 (호출할 때만 생성), 없으면 null */
+    public String localName() {
+        int f = nameField();
+        return f < 0 ? null : new String(data, fieldStart[f], fieldLength[f], StandardCharsets.UTF_8);
+    }
+
+    // ---- Manufacturer Specific Data (0xFF) ----
+
+    /** 제조사 ID (Company Identifier, little-endian), 없으면 -1 */
+    public int manufacturerId() {
+        int f = findField(AD_MANUFACTURER);
+        return (f < 0 || fieldLength[f] < 2) ? -1 : le16(fieldStart[f]);
+    }
+
+    /** 제조사 ID 뒤 데이터의 절대 offset, 없으면 -1 */
+    public int manufacturerDataOffset() {
+        int f = findField(AD_MANUFACTURER);
+        return (f < 0 || fieldLength[f] < 2) ? -1 : fieldStart[f] + 2;
+    }
+
+    public int manufacturerDataLength() {
+        int f = findField(AD_MANUFACTURER);
+        return (f < 0 || fieldLength[f] < 2) ? 0 : fieldLength[f] - 2;
+    }
+
+    // ---- Service Data (0x16/0x20/0x21) ----
+
+    /** 16비트 UUID 서비스 데이터 필드 index, 없으면 -1 */
+    public int findServiceData16(int uuid) {
+        ensureIndexed();
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldType[i] == AD_SERVICE_DATA16 && fieldLength[i] >= 2 && le16(fieldStart[i]) == uuid) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** 32비트 UUID 서비스 데이터 필드 index, 없으면 -1 */
+    public int findServiceData32(long uuid) {
+        ensureIndexed();
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldType[i] == AD_SERVICE_DATA32 && fieldLength[i] >= 4 && le32(fieldStart[i]) == uuid) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** 128비트 UUID 서비스 데이터 필드 index, 없으면 -1 */
+    public int findServiceData128(long msb, long lsb) {
+        ensureIndexed();
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldType[i] == AD_SERVICE_DATA128 && fieldLength[i] >= 16
+                    && le64(fieldStart[i] + 8) == msb && le64(fieldStart[i]) == lsb) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** 서비스 데이터 필드에서 UUID 뒤 데이터의 절대 offset */
+    public int serviceDataOffset(int field) {
+        return fieldStart[field] + uuidWidth(fieldType[field]);
+    }
+
+    public int serviceDataLength(int field) {
+        return fieldLength[field] - uuidWidth(fieldType[field]);
+    }
+
+    /**
+     * 디버깅용 JSON 렌더링. 기존 parseAdvertisementData 와 같은 키/형식을 사용한다.
+     *
+     * @return JSON, 페이로드가 잘려 있으면 null
+     */
+    public JSONObject toJson() throws JSONException {
+        ensureIndexed();
+        if (truncated) {
+            return null;
+        }
+        JSONObject parsedData = new JSONObject();
+        for (int i = 0; i < fieldCount; i++) {
+            int type = fieldType[i];
+            int start = fieldStart[i];
+            int len = fieldLength[i];
+            switch (type) {
+                case AD_FLAGS:
+                    parsedData.put("Flags", Hex.encodeSpaced(data, start, len));
+                    break;
+                case AD_UUID16_INCOMPLETE:
+                case AD_UUID16_COMPLETE:
+                case AD_UUID32_INCOMPLETE:
+                case AD_UUID32_COMPLETE:
+                case AD_UUID128_INCOMPLETE:
+                case AD_UUID128_COMPLETE:
+                    parsedData.put("Service UUIDs", Hex.encodeSpaced(data, start, len));
+                    break;
+                case AD_NAME_SHORT:
+                case AD_NAME_COMPLETE:
+                    parsedData.put("Device Name", new String(data, start, len, StandardCharsets.UTF_8));
+                    break;
+                case AD_TX_POWER:
+                    if (len >= 1) {
+                        parsedData.put("TX Power Level", data[start]);
+                    }
+                    break;
+                case AD_MANUFACTURER:
+                    parsedData.put("Manufacturer Data", Hex.encodeSpaced(data, start, len));
+                    break;
+                case AD_SERVICE_DATA16:
+                    if (len >= 2) {
+                        addServiceData(parsedData, String.format("%04X", le16(start)), start + 2, len - 2);
+                    }
+                    break;
+                case AD_SERVICE_DATA32:
+                    if (len >= 4) {
+                        addServiceData(parsedData, String.format("%08X", le32(start)), start + 4, len - 4);
+                    }
+                    break;
+                case AD_SERVICE_DATA128:
+                    if (len >= 16) {
+                        addServiceData(parsedData, Hex.encodeSpaced(data, start, 16), start + 16, len - 16);
+                    }
+                    break;
+                default:
+                    parsedData.put("Unknown Data (" + type + ")", Hex.encodeSpaced(data, start, len));
+                    break;
+            }
+        }
+        return parsedData;
+    }
+
+    private void addServiceData(JSONObject parsedData, String uuid, int start, int len) throws JSONException {
+        String key = "Service Data UUID " + uuid;
+        JSONArray serviceArray = parsedData.optJSONArray(key);
+        if (serviceArray == null) {
+            serviceArray = new JSONArray();
+            parsedData.put(key, serviceArray);
+        }
+        serviceArray.put(Hex.encodeSpaced(data, start, len));
+    }
+
+    private void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        indexed = true;
+        truncated = false;
+        fieldCount = 0;
+        int p = offset;
+        int end = offset + length;
+        while (p < end) {
+            int len = data[p++] & 0xFF;
+            if (len == 0) {
+                break;
+            }
+            if (p >= end || len - 1 > end - p - 1) {
+                truncated = true; // data format issue
+                break;
+            }
+            int type = data[p++] & 0xFF;
+            addField(type, p, len - 1);
+            p += len - 1;
+        }
+    }
+
+    private void addField(int type, int start, int len) {
+        if (fieldCount == fieldType.length) {
+            fieldType = java.util.Arrays.copyOf(fieldType, fieldCount * 2);
+            fieldStart = java.util.Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldLength = java.util.Arrays.copyOf(fieldLength, fieldCount * 2);
+        }
+        fieldType[fieldCount] = type;
+        fieldStart[fieldCount] = start;
+        fieldLength[fieldCount] = len;
+        fieldCount++;
+    }
+
+    private int nameField() {
+        int f = findField(AD_NAME_COMPLETE);
+        return f >= 0 ? f : findField(AD_NAME_SHORT);
+    }
+
+    private int countUuids(int incompleteType, int completeType, int width) {
+        ensureIndexed();
+        int n = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldType[i] == incompleteType || fieldType[i] == completeType) {
+                n += fieldLength[i] / width;
+            }
+        }
+        return n;
+    }
+
+    private int uuidPosition(int incompleteType, int completeType, int width, int index) {
+        ensureIndexed();
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldType[i] == incompleteType || fieldType[i] == completeType) {
+                int n = fieldLength[i] / width;
+                if (index < n) {
+                    return fieldStart[i] + index * width;
+                }
+                index -= n;
+            }
+        }
+        throw new IndexOutOfBoundsException("uuid index " + index);
+    }
+
+    private static int uuidWidth(int serviceDataType) {
+        switch (serviceDataType) {
+            case AD_SERVICE_DATA16:
+                return 2;
+            case AD_SERVICE_DATA32:
+                return 4;
+            case AD_SERVICE_DATA128:
+                return 16;
+            default:
+                return 0;
+        }
+    }
+
+    private int le16(int p) {
+        return (data[p] & 0xFF) | ((data[p + 1] & 0xFF) << 8);
+    }
+
+    private long le32(int p) {
+        return (le16(p) | ((long) le16(p + 2) << 16)) & 0xFFFFFFFFL;
+    }
+
+    private long le64(int p) {
+        return le32(p) | (le32(p + 4) << 32);
+    }
+}
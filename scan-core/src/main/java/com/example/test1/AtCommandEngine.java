@@ -0,0 +1,336 @@
+package com.example.test1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 고정 sleep 없이 AT 명령을 보내고 응답 줄을 명령에 대응시키는 비동기 엔진.
+ *
+ * <p>명령은 큐에 쌓이고 엔진 스레드가 순서대로 보낸다. 수신 스트림에서 결과 줄이 보이는 즉시
+ * {@link CompletableFuture} 를 완료한다.
+ * <ul>
+ *     <li>"OK" / "ERROR": 보낸 순서상 가장 오래된 명령의 결과</li>
+ *     <li>"AT+NAME=값": 같은 이름의 명령이 있으면 그 명령의 값 (결과 줄보다 먼저 완료)</li>
+ *     <li>"MAC:" 스캔 줄 등 그 밖의 줄: 무시</li>
+ * </ul>
+ * 조회 명령("?" 로 끝나거나 AT+VERSION)은 응답을 기다리지 않고 이어서 보낸다(파이프라이닝).
+ * 모드를 바꾸는 명령(AT+OBSERVER=.., AT+EXIT, +++ 등)은 앞 명령의 응답이 모두 끝난 뒤 혼자 보낸다.
+ *
+ * <p>명령마다 UART 로 보낸 시점부터 기한이 있고, 넘기면 {@link TimeoutException} 으로 완료된다.
+ * 큐에서 앞 명령을 기다리는 시간은 기한에 넣지 않으므로, 앞 명령이 응답하지 않아도 뒤 명령은 반드시 보내진다.
+ * 기한이 지난 명령의 늦은 결과 줄은 같은 시간만큼 더 기다렸다가 흡수해서 다음 명령과 섞이지 않게 한다.
+ *
+ * <p>명령이 없으면 엔진 스레드는 UART 를 읽지 않는다. 스캔 수신({@link UartReader})과 동시에 쓰지 않는다.
+ */
+public final class AtCommandEngine {
+    public static final long DEFAULT_TIMEOUT_MS = 1000;
+    /** 동시에 응답을 기다릴 수 있는 조회 명령 수 */
+    public static final int MAX_IN_FLIGHT = 4;
+
+    private static final int RECV_TIMEOUT_MS = 5;
+    private static final int RECV_MAX_WAIT_MS = 20;
+    private static final int MAX_LINE_LENGTH = 256;
+
+    private final AtTransport transport;
+
+    private final Object lock = new Object();
+    // lock 으로 보호
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private Thread thread;
+    private boolean closed;
+
+    // 엔진 스레드 전용
+    private final ArrayDeque<Pending> inFlight = new ArrayDeque<>();
+    private final byte[] recvBuffer = new byte[1024];
+    private final int[] recvLength = new int[1];
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+    private int lineLength;
+
+    private volatile long sent;
+    private volatile long timeouts;
+    private volatile long lateResponses;
+
+    private static final class Pending {
+        final String command;
+        final String key;
+        final boolean pipelined;
+        final long submitNanos;
+        final long timeoutNanos;
+        // 보낸 시점부터의 기한 (보내기 전에는 의미 없음)
+        long deadlineNanos;
+        final CompletableFuture<AtResponse> future = new CompletableFuture<>();
+        final List<String> lines = new ArrayList<>(2);
+        String value;
+        // 기한이 지나 future 는 끝났지만 늦은 결과 줄을 흡수하기 위해 남겨 둔 상태
+        boolean expired;
+
+        Pending(String command, long timeoutMs) {
+            this.command = command;
+            this.key = keyOf(command);
+            this.pipelined = isQuery(command);
+            this.submitNanos = System.nanoTime();
+            this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        }
+    }
+
+    public AtCommandEngine(AtTransport transport) {
+        this.transport = transport;
+    }
+
+    /** {@link #DEFAULT_TIMEOUT_MS} 기한으로 보낸다 */
+    public CompletableFuture<AtResponse> submit(String command) {
+        return submit(command, DEFAULT_TIMEOUT_MS);
+    }
+
+    /**
+     * 명령을 큐에 넣는다.
+     *
+     * @param command   "AT+VERSION", "AT+OBSERVER=0", "+++" 등 (줄바꿈 없이, "+++" 외에는 CRLF 를 붙여 보낸다)
+     * @param timeoutMs 보낸 시점부터의 기한
+     */
+    public CompletableFuture<AtResponse> submit(String command, long timeoutMs) {
+        Pending p = new Pending(command.trim(), timeoutMs);
+        synchronized (lock) {
+            if (closed) {
+                p.future.completeExceptionally(new IllegalStateException("AT engine closed"));
+                return p.future;
+            }
+            queue.add(p);
+            if (thread == null) {
+                thread = new Thread(this::run, "at-engine");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            lock.notifyAll();
+        }
+        return p.future;
+    }
+
+    /**
+     * 엔진 스레드를 멈춘다. 남은 명령은 {@link IllegalStateException} 으로 완료된다.
+     */
+    public void close() {
+        Thread t;
+        synchronized (lock) {
+            closed = true;
+            t = thread;
+            lock.notifyAll();
+        }
+        if (t != null) {
+            boolean interrupted = false;
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** 보낸 명령 수 */
+    public long sentCount() {
+        return sent;
+    }
+
+    /** 기한을 넘긴 명령 수 */
+    public long timeoutCount() {
+        return timeouts;
+    }
+
+    /** 기한이 지난 뒤 도착해 흡수된 결과 줄 수 */
+    public long lateResponseCount() {
+        return lateResponses;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (!closed && queue.isEmpty() && inFlight.isEmpty()) {
+                        lock.wait();
+                    }
+                    if (closed) {
+                        break;
+                    }
+                }
+                long now = System.nanoTime();
+                expire(now);
+                sendReady();
+                if (!inFlight.isEmpty()) {
+                    receive(now);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            failAll();
+        }
+    }
+
+    /** 보낼 수 있는 명령을 보낸다: 조회 명령은 이어서, 그 밖의 명령은 혼자 */
+    private void sendReady() {
+        while (true) {
+            Pending next;
+            synchronized (lock) {
+                next = queue.peek();
+                if (next == null) {
+                    return;
+                }
+                if (next.future.isDone()) {
+                    // 보내기 전에 호출자가 취소했다
+                    queue.poll();
+                    continue;
+                }
+                boolean canSend = inFlight.isEmpty()
+                        || (next.pipelined && inFlight.size() < MAX_IN_FLIGHT && allPipelined());
+                if (!canSend) {
+                    return;
+                }
+                queue.poll();
+            }
+            byte[] bytes = (next.command.equals("+++") ? next.command : next.command + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            int ret = transport.send(bytes, bytes.length);
+            sent++;
+            next.deadlineNanos = System.nanoTime() + next.timeoutNanos;
+            if (ret != 0) {
+                next.future.complete(new AtResponse(next.command, false, next.lines, null,
+                        System.nanoTime() - next.submitNanos));
+                continue;
+            }
+            inFlight.add(next);
+        }
+    }
+
+    private boolean allPipelined() {
+        for (Pending p : inFlight) {
+            if (!p.pipelined) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expire(long now) {
+        for (Iterator<Pending> it = inFlight.iterator(); it.hasNext(); ) {
+            Pending p = it.next();
+            if (!p.expired && now - p.deadlineNanos >= 0) {
+                p.expired = true;
+                if (p.future.completeExceptionally(new TimeoutException(p.command))) {
+                    timeouts++;
+                }
+            }
+            // 늦은 결과 줄을 기다리는 시간도 끝났다
+            if (p.expired && now - (p.deadlineNanos + p.timeoutNanos) >= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    private void receive(long now) {
+        long nearest = Long.MAX_VALUE;
+        for (Pending p : inFlight) {
+            long d = (p.expired ? p.deadlineNanos + p.timeoutNanos : p.deadlineNanos) - now;
+            nearest = Math.min(nearest, d);
+        }
+        int maxWait = (int) Math.max(1, Math.min(RECV_MAX_WAIT_MS, TimeUnit.NANOSECONDS.toMillis(nearest)));
+        // 실패하거나 빈 읽기에서 이전 바이트를 다시 해석하지 않도록 길이를 먼저 지운다
+        recvLength[0] = 0;
+        int ret = transport.recv(recvBuffer, recvLength, RECV_TIMEOUT_MS, maxWait);
+        if (ret != 0) {
+            return;
+        }
+        int n = recvLength[0];
+        for (int i = 0; i < n; i++) {
+            byte b = recvBuffer[i];
+            if (b == '\r' || b == '\n') {
+                if (lineLength > 0) {
+                    onLine(new String(line, 0, lineLength, StandardCharsets.US_ASCII).trim());
+                    lineLength = 0;
+                }
+            } else if (lineLength < line.length) {
+                line[lineLength++] = b;
+            }
+        }
+    }
+
+    private void onLine(String text) {
+        if (text.isEmpty() || text.startsWith("MAC:")) {
+            return;
+        }
+        boolean ok = text.equals("OK");
+        if (ok || text.equals("ERROR")) {
+            Pending p = inFlight.poll();
+            if (p == null) {
+                return;
+            }
+            if (p.expired) {
+                lateResponses++;
+                return;
+            }
+            p.future.complete(new AtResponse(p.command, ok, p.lines, p.value, System.nanoTime() - p.submitNanos));
+            return;
+        }
+        int eq = text.indexOf('=');
+        if (eq > 0) {
+            String key = text.substring(0, eq);
+            for (Pending p : inFlight) {
+                if (!p.expired && key.equals(p.key) && p.value == null) {
+                    p.value = text.substring(eq + 1);
+                    p.lines.add(text);
+                    // 값이 왔으면 결과 줄을 기다리지 않고 완료한다 (결과 줄은 이후 흡수)
+                    p.future.complete(new AtResponse(p.command, true, new ArrayList<>(p.lines), p.value,
+                            System.nanoTime() - p.submitNanos));
+                    return;
+                }
+            }
+        }
+        Pending oldest = inFlight.peek();
+        if (oldest != null && !oldest.expired) {
+            oldest.lines.add(text);
+        }
+    }
+
+    private void failAll() {
+        IllegalStateException closedError = new IllegalStateException("AT engine closed");
+        for (Pending p : inFlight) {
+            p.future.completeExceptionally(closedError);
+        }
+        inFlight.clear();
+        synchronized (lock) {
+            for (Pending p : queue) {
+                p.future.completeExceptionally(closedError);
+            }
+            queue.clear();
+            thread = null;
+        }
+    }
+
+    /** "AT+MAC?" -> "AT+MAC", "AT+OBSERVER=0" -> "AT+OBSERVER" */
+    static String keyOf(String command) {
+        int end = command.length();
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (c == '?' || c == '=') {
+                end = i;
+                break;
+            }
+        }
+        return command.substring(0, end);
+    }
+
+    /** 모듈 상태를 바꾸지 않는 조회 명령 */
+    static boolean isQuery(String command) {
+        return command.endsWith("?") || command.equals("AT+VERSION");
+    }
+}
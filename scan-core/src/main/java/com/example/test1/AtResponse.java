@@ -0,0 +1,57 @@
+package com.example.test1;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * AT 명령 하나에 대한 모듈 응답. 불변이다.
+ */
+public final class AtResponse {
+    private final String command;
+    private final boolean ok;
+    private final List<String> lines;
+    private final String value;
+    private final long latencyNanos;
+
+    AtResponse(String command, boolean ok, List<String> lines, String value, long latencyNanos) {
+        this.command = command;
+        this.ok = ok;
+        this.lines = Collections.unmodifiableList(lines);
+        this.value = value;
+        this.latencyNanos = latencyNanos;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * OK 또는 값 줄("AT+MAC=...")을 받았으면 true, ERROR 면 false
+     */
+    public boolean isOk() {
+        return ok;
+    }
+
+    /** 결과 줄(OK/ERROR)을 제외한 응답 줄 */
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * "AT+VERSION=xxx" 처럼 명령 이름과 같은 값 줄의 '=' 뒤 문자열, 없으면 null
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /** 제출부터 응답까지 걸린 시간 */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return command + " -> " + (ok ? "OK" : "ERROR") + (value != null ? " " + value : "")
+                + " (" + latencyNanos / 1_000_000 + "ms)";
+    }
+}
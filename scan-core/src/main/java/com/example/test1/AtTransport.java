@@ -0,0 +1,37 @@
+package com.example.test1;
+
+/**
+ * BLE 모듈과의 AT/UART 통신 추상화.
+ *
+ * <p>각 메서드는 {@code vpos.apipackage.At} 의 같은 이름 API 와 동일한 의미/반환값(0 = 성공)을 가진다.
+ * 실제 단말에서는 {@code VposAtTransport} (:app 모듈), JVM 테스트/벤치마크에서는 {@link SimulatedAtTransport} 를 사용한다.
+ */
+public interface AtTransport {
+    /** At.Lib_EnableMaster */
+    int enableMaster(boolean enable);
+
+    /** At.Lib_GetAtMac */
+    int getMac(String[] mac);
+
+    /** At.Lib_AtStartNewScan */
+    int startNewScan(String macAddress, String broadcastName, int rssi, String manufacturerId, String data);
+
+    /** At.Lib_AtStopScan */
+    int stopScan();
+
+    /**
+     * At.Lib_ComRecvAT
+     *
+     * @param data      수신 버퍼
+     * @param length    length[0] 에 수신 바이트 수가 기록된다
+     * @param timeoutMs 바이트 간 대기 시간
+     * @param maxWaitMs 최대 대기 시간
+     */
+    int recv(byte[] data, int[] length, int timeoutMs, int maxWaitMs);
+
+    /** At.Lib_ComSend */
+    int send(byte[] data, int length);
+
+    /** At.Lib_AtCtsCtrl */
+    int ctsCtrl();
+}
@@ -0,0 +1,192 @@
+package com.example.test1;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * {@link AdvertisementCodec} 가 페이로드 바이트에서 바로 만든 비콘 프레임 (불변).
+ *
+ * <p>{@link #type()} 으로 종류를 나누고 해당 하위 클래스로 캐스팅해 값을 읽는다.
+ * 직접 만든 코덱은 {@link #TYPE_CUSTOM} 이상의 type 으로 하위 클래스를 만든다.
+ */
+public abstract class BeaconFrame {
+    public static final int TYPE_IBEACON = 1;
+    public static final int TYPE_EDDYSTONE_UID = 2;
+    public static final int TYPE_EDDYSTONE_URL = 3;
+    public static final int TYPE_EDDYSTONE_TLM = 4;
+    public static final int TYPE_MCANDLE = 5;
+    /** 앱에서 추가하는 코덱의 type 시작 값 */
+    public static final int TYPE_CUSTOM = 100;
+
+    /** 값이 없을 때 TX power */
+    public static final int NO_TX_POWER = AdvertisementView.NO_TX_POWER;
+
+    private final int type;
+
+    protected BeaconFrame(int type) {
+        this.type = type;
+    }
+
+    public final int type() {
+        return type;
+    }
+
+    /** Apple iBeacon (제조사 0x004C, 0x02 0x15) */
+    public static final class IBeacon extends BeaconFrame {
+        private final UUID uuid;
+        private final int major;
+        private final int minor;
+        private final int txPower;
+
+        public IBeacon(UUID uuid, int major, int minor, int txPower) {
+            super(TYPE_IBEACON);
+            this.uuid = uuid;
+            this.major = major;
+            this.minor = minor;
+            this.txPower = txPower;
+        }
+
+        public UUID uuid() {
+            return uuid;
+        }
+
+        public int major() {
+            return major;
+        }
+
+        public int minor() {
+            return minor;
+        }
+
+        /** 1 m 에서 측정한 RSSI (dBm) */
+        public int txPower() {
+            return txPower;
+        }
+
+        @Override
+        public String toString() {
+            return "iBeacon " + uuid + " " + major + "/" + minor + " tx " + txPower;
+        }
+    }
+
+    /** Eddystone-UID (서비스 데이터 0xFEAA, frame 0x00) */
+    public static final class EddystoneUid extends BeaconFrame {
+        private final String namespace;
+        private final String instance;
+        private final int txPower;
+
+        public EddystoneUid(String namespace, String instance, int txPower) {
+            super(TYPE_EDDYSTONE_UID);
+            this.namespace = namespace;
+            this.instance = instance;
+            this.txPower = txPower;
+        }
+
+        /** 10 바이트 namespace (대문자 hex) */
+        public String namespace() {
+            return namespace;
+        }
+
+        /** 6 바이트 instance (대문자 hex) */
+        public String instance() {
+            return instance;
+        }
+
+        /** 0 m 에서의 TX power (dBm) */
+        public int txPower() {
+            return txPower;
+        }
+
+        @Override
+        public String toString() {
+            return "Eddystone-UID " + namespace + "/" + instance + " tx " + txPower;
+        }
+    }
+
+    /** Eddystone-URL (서비스 데이터 0xFEAA, frame 0x10) */
+    public static final class EddystoneUrl extends BeaconFrame {
+        private final String url;
+        private final int txPower;
+
+        public EddystoneUrl(String url, int txPower) {
+            super(TYPE_EDDYSTONE_URL);
+            this.url = url;
+            this.txPower = txPower;
+        }
+
+        /** 접두어/확장 코드를 풀어 쓴 URL */
+        public String url() {
+            return url;
+        }
+
+        public int txPower() {
+            return txPower;
+        }
+
+        @Override
+        public String toString() {
+            return "Eddystone-URL " + url + " tx " + txPower;
+        }
+    }
+
+    /** Eddystone-TLM 평문 (서비스 데이터 0xFEAA, frame 0x20, version 0) */
+    public static final class EddystoneTlm extends BeaconFrame {
+        private final int batteryMillivolts;
+        private final double temperature;
+        private final long advertisingCount;
+        private final long uptimeMs;
+
+        public EddystoneTlm(int batteryMillivolts, double temperature, long advertisingCount, long uptimeMs) {
+            super(TYPE_EDDYSTONE_TLM);
+            this.batteryMillivolts = batteryMillivolts;
+            this.temperature = temperature;
+            this.advertisingCount = advertisingCount;
+            this.uptimeMs = uptimeMs;
+        }
+
+        /** 배터리 전압 (mV), 지원하지 않으면 0 */
+        public int batteryMillivolts() {
+            return batteryMillivolts;
+        }
+
+        /** 온도 (°C), 지원하지 않으면 NaN */
+        public double temperature() {
+            return temperature;
+        }
+
+        /** 전원이 켜진 뒤 보낸 광고 수 */
+        public long advertisingCount() {
+            return advertisingCount;
+        }
+
+        /** 전원이 켜진 뒤 시간 (0.1 초 단위 값을 ms 로) */
+        public long uptimeMs() {
+            return uptimeMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "Eddystone-TLM %d mV %.2f C adv %d up %d ms",
+                    batteryMillivolts, temperature, advertisingCount, uptimeMs);
+        }
+    }
+
+    /** mcandle 비콘: 서비스 데이터 0x1234 에 담긴 ASCII 문자열 */
+    public static final class Mcandle extends BeaconFrame {
+        private final String text;
+
+        public Mcandle(String text) {
+            super(TYPE_MCANDLE);
+            this.text = text;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "mcandle " + text;
+        }
+    }
+}
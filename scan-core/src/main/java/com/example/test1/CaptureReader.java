@@ -0,0 +1,139 @@
+package com.example.test1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link CaptureWriter} 로 쓴 세그먼트를 순서대로 읽는다. 세그먼트는 읽기 전용으로 메모리 맵한다.
+ *
+ * <pre>
+ * try (CaptureReader r = CaptureReader.open(dir, "scan")) {
+ *     while (r.next()) {
+ *         r.read(buf, 0);   // r.length() 바이트
+ *     }
+ * }
+ * </pre>
+ * 스레드 안전하지 않다.
+ */
+public final class CaptureReader implements Closeable {
+    private final List<File> segments;
+    private int segmentIndex = -1;
+    private MappedByteBuffer map;
+
+    private long timestampNanos;
+    private int length;
+    private int dataPosition;
+    private long startEpochMs;
+
+    public CaptureReader(List<File> segments) {
+        this.segments = new ArrayList<>(segments);
+    }
+
+    /** dir 안의 prefix 세그먼트 전체 */
+    public static CaptureReader open(File dir, String prefix) {
+        return new CaptureReader(segments(dir, prefix));
+    }
+
+    /** dir 안의 prefix 세그먼트 파일, 번호 순 */
+    public static List<File> segments(File dir, String prefix) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(prefix + "-") && name.endsWith(CaptureWriter.SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(CaptureWriter.indexOf(a, prefix), CaptureWriter.indexOf(b, prefix)));
+        return Arrays.asList(files);
+    }
+
+    /**
+     * 다음 청크로 이동한다.
+     *
+     * @return 더 이상 청크가 없으면 false
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (map != null && map.remaining() >= CaptureWriter.RECORD_HEADER) {
+                long t = map.getLong();
+                int len = map.getInt();
+                if (len > 0 && len <= map.remaining()) {
+                    timestampNanos = t;
+                    length = len;
+                    dataPosition = map.position();
+                    map.position(dataPosition + len);
+                    return true;
+                }
+                // 세그먼트 끝 (비정상 종료로 남은 0 영역 또는 잘린 레코드)
+            }
+            if (!openNext()) {
+                return false;
+            }
+        }
+    }
+
+    /** 캡처 시작 기준 수신 시각 (ns) */
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    /** 캡처 시작 시각 (epoch ms) */
+    public long startEpochMs() {
+        return startEpochMs;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /** 현재 청크 전체를 dst[off] 부터 복사한다 */
+    public void read(byte[] dst, int off) {
+        read(0, dst, off, length);
+    }
+
+    /** 현재 청크의 from 부터 len 바이트를 복사한다 */
+    public void read(int from, byte[] dst, int off, int len) {
+        if (from < 0 || len < 0 || from + len > length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int saved = map.position();
+        map.position(dataPosition + from);
+        map.get(dst, off, len);
+        map.position(saved);
+    }
+
+    @Override
+    public void close() {
+        map = null;
+        segmentIndex = segments.size();
+    }
+
+    private boolean openNext() throws IOException {
+        map = null;
+        while (++segmentIndex < segments.size()) {
+            try (RandomAccessFile f = new RandomAccessFile(segments.get(segmentIndex), "r");
+                 FileChannel channel = f.getChannel()) {
+                long size = channel.size();
+                if (size < CaptureWriter.SEGMENT_HEADER) {
+                    continue;
+                }
+                MappedByteBuffer m = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                byte[] magic = new byte[CaptureWriter.MAGIC.length];
+                m.get(magic);
+                if (!Arrays.equals(magic, CaptureWriter.MAGIC)) {
+                    throw new IOException("not a capture segment: " + segments.get(segmentIndex));
+                }
+                startEpochMs = m.getLong();
+                m.getLong(); // 세그먼트 번호
+                map = m;
+                return true;
+            }
+        }
+        return false;
+    }
+}
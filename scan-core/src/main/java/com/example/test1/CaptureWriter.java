@@ -0,0 +1,181 @@
+package com.example.test1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 수신 청크를 메모리 맵 세그먼트 파일에 바이너리로 이어 쓴다.
+ *
+ * <p>파일: {@code <dir>/<prefix>-NNNNNN.cap}. 세그먼트가 차면 다음 번호로 넘어가고,
+ * {@link Config#maxSegments} 를 넘으면 가장 오래된 세그먼트를 지운다.
+ *
+ * <pre>
+ * 세그먼트 헤더 (24): magic "BLECAP01" (8) | 캡처 시작 epoch ms (8) | 세그먼트 번호 (8)
+ * 레코드        (12+n): 캡처 시작 기준 ns (8) | 길이 n (4) | 수신 바이트 (n)
+ * </pre>
+ * 숫자는 빅엔디언. 길이가 0 이하인 레코드 헤더는 세그먼트의 끝이다 (비정상 종료로 남은 0 영역 포함).
+ * 정상 종료하면 파일을 쓴 길이로 자른다.
+ *
+ * <p>{@link #append} 는 여러 스레드에서 불러도 되지만 보통 수신 스레드 하나만 쓴다.
+ */
+public final class CaptureWriter implements Closeable {
+    static final byte[] MAGIC = {'B', 'L', 'E', 'C', 'A', 'P', '0', '1'};
+    static final int SEGMENT_HEADER = 24;
+    static final int RECORD_HEADER = 12;
+    static final String SUFFIX = ".cap";
+
+    public static final class Config {
+        String prefix = "scan";
+        int segmentBytes = 16 * 1024 * 1024;
+        int maxSegments = 8;
+
+        public Config prefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        /** 세그먼트 파일 하나의 크기 (최소 64KB) */
+        public Config segmentBytes(int bytes) {
+            if (bytes < 64 * 1024) {
+                throw new IllegalArgumentException("segment too small: " + bytes);
+            }
+            this.segmentBytes = bytes;
+            return this;
+        }
+
+        /** 남겨 둘 세그먼트 수, 0 이면 지우지 않는다 */
+        public Config maxSegments(int n) {
+            this.maxSegments = n;
+            return this;
+        }
+    }
+
+    private final File dir;
+    private final Config config;
+    private final long startEpochMs;
+    private final long startNanos;
+
+    private long segmentIndex;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private boolean closed;
+
+    private long chunks;
+    private long bytes;
+    private int segmentsWritten;
+
+    public CaptureWriter(File dir, Config config) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        this.dir = dir;
+        this.config = config;
+        this.startEpochMs = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+        List<File> existing = CaptureReader.segments(dir, config.prefix);
+        segmentIndex = existing.isEmpty() ? 0 : indexOf(existing.get(existing.size() - 1), config.prefix);
+        openNext();
+    }
+
+    /**
+     * 청크 하나를 현재 시각으로 기록한다. 빈 청크는 기록하지 않는다.
+     */
+    public void append(byte[] data, int off, int len) throws IOException {
+        append(data, off, len, System.nanoTime());
+    }
+
+    /**
+     * @param nanoTime 수신 시각 ({@link System#nanoTime()} 기준)
+     */
+    public synchronized void append(byte[] data, int off, int len, long nanoTime) throws IOException {
+        if (closed) {
+            throw new IOException("capture closed");
+        }
+        if (len <= 0) {
+            return;
+        }
+        if (len > config.segmentBytes - SEGMENT_HEADER - RECORD_HEADER) {
+            throw new IllegalArgumentException("chunk larger than segment: " + len);
+        }
+        if (map.remaining() < RECORD_HEADER + len) {
+            finishSegment();
+            openNext();
+        }
+        map.putLong(nanoTime - startNanos);
+        map.putInt(len);
+        map.put(data, off, len);
+        chunks++;
+        bytes += len;
+    }
+
+    public synchronized long chunks() {
+        return chunks;
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    /** 이 writer 가 연 세그먼트 수 */
+    public synchronized int segmentsWritten() {
+        return segmentsWritten;
+    }
+
+    public File directory() {
+        return dir;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        finishSegment();
+    }
+
+    private void openNext() throws IOException {
+        segmentIndex++;
+        File f = new File(dir, String.format(Locale.US, "%s-%06d%s", config.prefix, segmentIndex, SUFFIX));
+        file = new RandomAccessFile(f, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, config.segmentBytes);
+        map.put(MAGIC);
+        map.putLong(startEpochMs);
+        map.putLong(segmentIndex);
+        segmentsWritten++;
+        deleteOldSegments();
+    }
+
+    private void finishSegment() throws IOException {
+        int written = map.position();
+        map.force();
+        channel.truncate(written);
+        channel.close();
+        file.close();
+    }
+
+    private void deleteOldSegments() {
+        if (config.maxSegments <= 0) {
+            return;
+        }
+        List<File> all = CaptureReader.segments(dir, config.prefix);
+        for (int i = 0; i < all.size() - config.maxSegments; i++) {
+            // 지우지 못하면 다음 회전 때 다시 시도한다
+            all.get(i).delete();
+        }
+    }
+
+    static long indexOf(File segment, String prefix) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+    }
+}
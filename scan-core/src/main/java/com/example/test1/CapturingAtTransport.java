@@ -0,0 +1,93 @@
+package com.example.test1;
+
+import java.io.IOException;
+
+/**
+ * recv 로 받은 청크를 {@link CaptureWriter} 에 그대로 기록하는 {@link AtTransport} 래퍼.
+ *
+ * <p>캡처가 꺼져 있으면 recv 마다 volatile 읽기 하나만 추가된다.
+ * 기록 중 I/O 오류가 나면 캡처를 끄고 수신은 계속한다.
+ */
+public final class CapturingAtTransport implements AtTransport {
+    private static final String TAG = "Capture";
+
+    private final AtTransport delegate;
+    private volatile CaptureWriter writer;
+    private volatile long errors;
+
+    public CapturingAtTransport(AtTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 캡처를 시작하거나(writer) 멈춘다(null).
+     *
+     * @return 이전 writer (닫는 것은 호출자 몫), 없으면 null
+     */
+    public synchronized CaptureWriter setWriter(CaptureWriter newWriter) {
+        CaptureWriter old = writer;
+        writer = newWriter;
+        return old;
+    }
+
+    public CaptureWriter getWriter() {
+        return writer;
+    }
+
+    /** 기록 실패 횟수 */
+    public long errors() {
+        return errors;
+    }
+
+    @Override
+    public int recv(byte[] data, int[] length, int timeoutMs, int maxWaitMs) {
+        int ret = delegate.recv(data, length, timeoutMs, maxWaitMs);
+        CaptureWriter w = writer;
+        if (w != null && length[0] > 0) {
+            try {
+                w.append(data, 0, length[0]);
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (writer != w) {
+                        // 기록 중에 캡처가 교체/종료됐다
+                        return ret;
+                    }
+                    writer = null;
+                }
+                errors++;
+                ScanLog.e(TAG, "capture stopped", e);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public int enableMaster(boolean enable) {
+        return delegate.enableMaster(enable);
+    }
+
+    @Override
+    public int getMac(String[] mac) {
+        return delegate.getMac(mac);
+    }
+
+    @Override
+    public int startNewScan(String macAddress, String broadcastName, int rssi, String manufacturerId, String data) {
+        return delegate.startNewScan(macAddress, broadcastName, rssi, manufacturerId, data);
+    }
+
+    @Override
+    public int stopScan() {
+        return delegate.stopScan();
+    }
+
+    @Override
+    public int send(byte[] data, int length) {
+        return delegate.send(data, length);
+    }
+
+    @Override
+    public int ctsCtrl() {
+        return delegate.ctsCtrl();
+    }
+}
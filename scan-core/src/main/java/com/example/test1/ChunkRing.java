@@ -0,0 +1,375 @@
+package com.example.test1;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * UART 수신 스레드(생산자 1개)와 파싱/전달 스레드(소비자 1개) 사이의 고정 크기 청크 링 버퍼.
+ *
+ * <p>슬롯 배열은 생성 시 한 번만 할당하고, 청크는 슬롯으로 복사해서 주고받는다.
+ * 락 없이 head/tail 시퀀스로 동기화하며, 링이 가득 찼을 때의 동작은 정책으로 정한다.
+ * <ul>
+ *     <li>{@link #POLICY_DROP_OLDEST}: 가장 오래된 청크를 버리고 새 청크를 넣는다.</li>
+ *     <li>{@link #POLICY_COALESCE}: 자리가 날 때까지 생산자 쪽 대기 버퍼에 이어 붙였다가 한 슬롯으로 넣는다.
+ *     대기 버퍼가 슬롯 크기를 넘으면 대기 중이던 데이터를 버린다.</li>
+ *     <li>{@link #POLICY_BLOCK}: 자리가 날 때까지 생산자가 기다린다. (데이터 손실 없음, 대신 UART 읽기가 멈춘다)</li>
+ * </ul>
+ *
+ * <p>데이터가 버려진 뒤 처음 꺼내는 청크에는 {@link #FLAG_GAP} 이 붙는다.
+ * 소비자는 이때 파서의 미완성 줄을 버려야 서로 다른 청크의 줄이 이어 붙지 않는다.
+ */
+public final class ChunkRing {
+    public static final int POLICY_DROP_OLDEST = 0;
+    public static final int POLICY_COALESCE = 1;
+    public static final int POLICY_BLOCK = 2;
+
+    /** 이 청크 앞의 데이터가 일부 버려졌음 */
+    public static final int FLAG_GAP = 1;
+
+    /** {@link #poll} 시간 초과 */
+    public static final int NONE = -1;
+
+    // BLOCK 대기 중 놓친 깨우기에 대비한 최대 park 시간
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final int[] flags;
+    private final int capacity;
+    private final int mask;
+    private final int slotSize;
+    private volatile int policy;
+
+    // 다음에 읽을 시퀀스. 소비자가 증가시키고, DROP_OLDEST 에서는 생산자도 CAS 로 증가시킨다.
+    private final AtomicLong head = new AtomicLong();
+    // 다음에 쓸 시퀀스. 생산자만 쓴다.
+    private volatile long tail;
+
+    private volatile Thread waitingConsumer;
+    private volatile Thread waitingProducer;
+    // wakeConsumer() 요청, 소비자가 poll 에서 지운다
+    private volatile boolean wakeRequested;
+
+    // 생산자 전용: COALESCE 대기 버퍼
+    private final byte[] staging;
+    private int stagingLength;
+    private int stagingChunks;
+    private int pendingFlags;
+
+    // 소비자 전용
+    private long nextExpected;
+    private int lastFlags;
+
+    // 통계 (생산자만 쓴다)
+    private volatile long offeredChunks;
+    private volatile long overruns;
+    private volatile long droppedChunks;
+    private volatile long droppedBytes;
+    private volatile long coalescedChunks;
+    private volatile long blockedNanos;
+    private volatile int highWatermark;
+
+    /**
+     * @param capacity 슬롯 수 (2의 거듭제곱으로 올림)
+     * @param slotSize 슬롯 하나의 최대 바이트 수 (한 번에 offer 할 수 있는 최대 길이)
+     */
+    public ChunkRing(int capacity, int slotSize, int policy) {
+        if (capacity < 1 || slotSize < 1) {
+            throw new IllegalArgumentException("capacity=" + capacity + ", slotSize=" + slotSize);
+        }
+        int n = Integer.highestOneBit(capacity);
+        if (n < capacity) {
+            n <<= 1;
+        }
+        this.capacity = n;
+        this.mask = n - 1;
+        this.slotSize = slotSize;
+        this.slots = new byte[n][slotSize];
+        this.lengths = new int[n];
+        this.flags = new int[n];
+        this.staging = new byte[slotSize];
+        setPolicy(policy);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int slotSize() {
+        return slotSize;
+    }
+
+    public int getPolicy() {
+        return policy;
+    }
+
+    /** 실행 중에도 바꿀 수 있다. 다음 offer 부터 적용된다. */
+    public void setPolicy(int policy) {
+        if (policy != POLICY_DROP_OLDEST && policy != POLICY_COALESCE && policy != POLICY_BLOCK) {
+            throw new IllegalArgumentException("policy=" + policy);
+        }
+        this.policy = policy;
+    }
+
+    /** 꺼내지 않은 청크 수 (생산자 대기 버퍼 제외) */
+    public int size() {
+        return (int) (tail - head.get());
+    }
+
+    // ---- 생산자 ----
+
+    /**
+     * 청크를 넣는다. 생산자 스레드에서만 호출한다.
+     *
+     * @return BLOCK 대기 중 인터럽트되어 청크를 버렸으면 false (인터럽트 상태는 유지된다)
+     */
+    public boolean offer(byte[] src, int off, int len) {
+        if (len > slotSize) {
+            throw new IllegalArgumentException("chunk " + len + " > slot " + slotSize);
+        }
+        offeredChunks++;
+        switch (policy) {
+            case POLICY_BLOCK:
+                // 정책이 바뀐 직후라면 대기 버퍼를 먼저 보내 순서를 유지한다
+                if ((stagingLength > 0 && (!awaitRoom() || !flush())) || !awaitRoom()) {
+                    // 인터럽트로 넣지 못한 청크도 손실로 기록한다
+                    droppedChunks++;
+                    droppedBytes += len;
+                    pendingFlags |= FLAG_GAP;
+                    return false;
+                }
+                break;
+            case POLICY_COALESCE:
+                offerCoalescing(src, off, len);
+                return true;
+            default:
+                if (stagingLength > 0) {
+                    dropOldestIfFull();
+                    flush();
+                }
+                dropOldestIfFull();
+                break;
+        }
+        publish(src, off, len);
+        return true;
+    }
+
+    /**
+     * COALESCE 대기 버퍼에 남은 데이터를 자리가 있으면 넣는다.
+     * 수신 데이터가 없을 때도 생산자가 주기적으로 호출해야 대기 데이터가 늦게 전달되지 않는다.
+     *
+     * @return 대기 버퍼가 비어 있으면 true
+     */
+    public boolean flush() {
+        if (stagingLength == 0) {
+            return true;
+        }
+        if (!hasRoom()) {
+            return false;
+        }
+        publish(staging, 0, stagingLength);
+        stagingLength = 0;
+        stagingChunks = 0;
+        return true;
+    }
+
+    private void dropOldestIfFull() {
+        long t = tail;
+        if (t - head.get() >= capacity) {
+            overruns++;
+            long h = t - capacity;
+            // 실패하면 그 사이 소비자가 꺼내 간 것이므로 자리가 생겼다
+            if (head.compareAndSet(h, h + 1)) {
+                droppedChunks++;
+                droppedBytes += lengths[(int) h & mask];
+            }
+        }
+    }
+
+    private void offerCoalescing(byte[] src, int off, int len) {
+        if (flush() && hasRoom()) {
+            publish(src, off, len);
+            return;
+        }
+        if (stagingLength == 0) {
+            overruns++;
+        }
+        if (stagingLength + len > slotSize) {
+            // 대기 버퍼도 넘치면 오래된 쪽을 버린다
+            droppedChunks += stagingChunks;
+            droppedBytes += stagingLength;
+            stagingLength = 0;
+            stagingChunks = 0;
+            pendingFlags |= FLAG_GAP;
+        } else if (stagingLength > 0) {
+            coalescedChunks++;
+        }
+        System.arraycopy(src, off, staging, stagingLength, len);
+        stagingLength += len;
+        stagingChunks++;
+    }
+
+    /** 자리가 날 때까지 기다린다. 인터럽트되면 false */
+    private boolean awaitRoom() {
+        if (hasRoom()) {
+            return true;
+        }
+        overruns++;
+        long start = System.nanoTime();
+        Thread self = Thread.currentThread();
+        waitingProducer = self;
+        try {
+            while (!hasRoom()) {
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                if (self.isInterrupted()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            waitingProducer = null;
+            blockedNanos += System.nanoTime() - start;
+        }
+    }
+
+    private boolean hasRoom() {
+        return tail - head.get() < capacity;
+    }
+
+    private void publish(byte[] src, int off, int len) {
+        long t = tail;
+        int i = (int) t & mask;
+        System.arraycopy(src, off, slots[i], 0, len);
+        lengths[i] = len;
+        flags[i] = pendingFlags;
+        pendingFlags = 0;
+        tail = t + 1;
+        int used = (int) (t + 1 - head.get());
+        if (used > highWatermark) {
+            highWatermark = used;
+        }
+        Thread w = waitingConsumer;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    // ---- 소비자 ----
+
+    /**
+     * 가장 오래된 청크를 dst 로 복사해 꺼낸다. 소비자 스레드에서만 호출한다.
+     *
+     * @param dst 최소 {@link #slotSize()} 바이트
+     * @return 복사한 길이, 시간 초과나 인터럽트, {@link #wakeConsumer()} 면 {@link #NONE}
+     */
+    public int poll(byte[] dst, long timeoutMs) {
+        long deadline = 0;
+        for (;;) {
+            long h = head.get();
+            if (h < tail) {
+                int i = (int) h & mask;
+                int len = lengths[i];
+                int fl = flags[i];
+                System.arraycopy(slots[i], 0, dst, 0, len);
+                // 복사하는 사이 생산자가 이 슬롯을 버렸다면 CAS 가 실패하므로 다시 읽는다
+                if (!head.compareAndSet(h, h + 1)) {
+                    continue;
+                }
+                lastFlags = h != nextExpected ? fl | FLAG_GAP : fl;
+                nextExpected = h + 1;
+                Thread w = waitingProducer;
+                if (w != null) {
+                    LockSupport.unpark(w);
+                }
+                return len;
+            }
+            if (deadline == 0) {
+                deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return NONE;
+            }
+            Thread self = Thread.currentThread();
+            waitingConsumer = self;
+            // waitingConsumer 를 기록한 뒤 다시 확인해야 publish 의 깨우기를 놓치지 않는다
+            if (head.get() >= tail && !wakeRequested) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            waitingConsumer = null;
+            if (wakeRequested) {
+                wakeRequested = false;
+                return NONE;
+            }
+            if (self.isInterrupted()) {
+                return NONE;
+            }
+        }
+    }
+
+    /**
+     * 데이터를 기다리는 {@link #poll} 을 바로 {@link #NONE} 으로 돌려보낸다. 아무 스레드에서나 호출할 수 있다.
+     * 대기 중인 소비자가 없으면 다음 대기 한 번이 바로 끝난다.
+     */
+    public void wakeConsumer() {
+        wakeRequested = true;
+        Thread w = waitingConsumer;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    /** 마지막으로 꺼낸 청크의 플래그 ({@link #FLAG_GAP}) */
+    public int lastFlags() {
+        return lastFlags;
+    }
+
+    /**
+     * 모든 청크와 대기 버퍼를 비운다. 생산자/소비자가 모두 멈춘 상태에서만 호출한다. 통계는 유지된다.
+     */
+    public void clear() {
+        long t = tail;
+        head.set(t);
+        nextExpected = t;
+        lastFlags = 0;
+        wakeRequested = false;
+        stagingLength = 0;
+        stagingChunks = 0;
+        pendingFlags = 0;
+    }
+
+    // ---- 통계 ----
+
+    public long offeredChunks() {
+        return offeredChunks;
+    }
+
+    /** offer 시점에 링이 가득 차 있던 횟수 */
+    public long overruns() {
+        return overruns;
+    }
+
+    public long droppedChunks() {
+        return droppedChunks;
+    }
+
+    public long droppedBytes() {
+        return droppedBytes;
+    }
+
+    /** COALESCE 에서 앞 청크에 이어 붙인 청크 수 */
+    public long coalescedChunks() {
+        return coalescedChunks;
+    }
+
+    /** BLOCK 에서 생산자가 기다린 누적 시간 */
+    public long blockedNanos() {
+        return blockedNanos;
+    }
+
+    /** 동시에 쌓였던 최대 청크 수 */
+    public int highWatermark() {
+        return highWatermark;
+    }
+}
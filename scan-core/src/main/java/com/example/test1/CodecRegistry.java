@@ -0,0 +1,323 @@
+package com.example.test1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 제조사 ID / 서비스 UUID 별로 등록한 {@link AdvertisementCodec} 으로 페이로드를 비콘 프레임으로 바꾼다.
+ *
+ * <p>AD structure 를 한 번 훑으면서 제조사 데이터(0xFF)와 서비스 데이터(0x16/0x20/0x21) 필드마다
+ * 키를 primitive 값으로 읽어 open addressing 표에서 코덱을 찾는다. 문자열 키나 hex 변환 없이
+ * 원본 바이트에서 바로 해석하므로, 소비자가 "Manufacturer Data" hex 를 다시 파싱할 필요가 없다.
+ * 16비트 UUID 는 32비트 UUID 와 같은 표를 쓰고, Bluetooth Base UUID 에서 나온 128비트 UUID 도 그 표로 간다.
+ * 한 키에 코덱이 여럿이면 등록 순서대로 시도해 처음 null 이 아닌 결과를 쓴다.
+ *
+ * <p>등록은 표를 복사해 바꾸고(copy-on-write) 해석은 잠금 없이 읽으므로 스캔 중에 등록해도 된다.
+ * 다만 이미 {@link DecodedPayload#frames()} 로 해석해 둔 페이로드에는 반영되지 않으므로 스캔 전에 등록한다.
+ */
+public final class CodecRegistry {
+    public static final int APPLE_COMPANY_ID = 0x004C;
+    public static final int EDDYSTONE_UUID16 = 0xFEAA;
+    public static final int MCANDLE_UUID16 = 0x1234;
+
+    // Bluetooth Base UUID 00000000-0000-1000-8000-00805F9B34FB
+    private static final long BASE_UUID_MSB = 0x0000000000001000L;
+    private static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    private static final String[] URL_SCHEMES = {"http://www.", "https://www.", "http://", "https://"};
+    private static final String[] URL_EXPANSIONS = {".com/", ".org/", ".edu/", ".net/", ".info/", ".biz/",
+            ".gov/", ".com", ".org", ".edu", ".net", ".info", ".biz", ".gov"};
+
+    /** iBeacon: 0x02 0x15 | UUID (16) | major (2) | minor (2) | TX power (1) */
+    public static final AdvertisementCodec IBEACON = (data, offset, length) -> {
+        if (length < 23 || data[offset] != 0x02 || data[offset + 1] != 0x15) {
+            return null;
+        }
+        return new BeaconFrame.IBeacon(new UUID(be64(data, offset + 2), be64(data, offset + 10)),
+                be16(data, offset + 18), be16(data, offset + 20), data[offset + 22]);
+    };
+
+    /** Eddystone UID / URL / TLM(평문). EID, 암호화 TLM 은 null. */
+    public static final AdvertisementCodec EDDYSTONE = (data, offset, length) -> {
+        if (length < 1) {
+            return null;
+        }
+        switch (data[offset] & 0xFF) {
+            case 0x00:
+                if (length < 18) {
+                    return null;
+                }
+                return new BeaconFrame.EddystoneUid(Hex.encode(data, offset + 2, 10),
+                        Hex.encode(data, offset + 12, 6), data[offset + 1]);
+            case 0x10:
+                return eddystoneUrl(data, offset, length);
+            case 0x20:
+                if (length < 14 || data[offset + 1] != 0x00) {
+                    return null;
+                }
+                int rawTemperature = be16(data, offset + 4);
+                double temperature = rawTemperature == 0x8000 ? Double.NaN : (short) rawTemperature / 256.0;
+                return new BeaconFrame.EddystoneTlm(be16(data, offset + 2), temperature,
+                        be32(data, offset + 6), be32(data, offset + 10) * 100);
+            default:
+                return null;
+        }
+    };
+
+    /** mcandle: 서비스 데이터가 출력 가능한 ASCII 문자열 ("mcandle.dev", "CH" 등) */
+    public static final AdvertisementCodec MCANDLE = (data, offset, length) -> {
+        if (length == 0) {
+            return null;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            if (data[i] < 0x20 || data[i] > 0x7E) {
+                return null;
+            }
+        }
+        return new BeaconFrame.Mcandle(new String(data, offset, length, StandardCharsets.US_ASCII));
+    };
+
+    /** {@link DecodedPayload#copyOf} 처럼 레지스트리를 받지 않는 경로가 쓴다. 밖에 내주지 않는다. */
+    static final CodecRegistry BUILT_IN = standard();
+
+    private final Object writeLock = new Object();
+    private volatile Table manufacturers = Table.EMPTY;
+    // 16/32비트 UUID (16비트는 상위 16비트가 0 인 32비트 값)
+    private volatile Table uuid32s = Table.EMPTY;
+    private volatile Table uuid128s = Table.EMPTY;
+
+    /** iBeacon, Eddystone, mcandle 코덱을 등록한 새 레지스트리 */
+    public static CodecRegistry standard() {
+        CodecRegistry r = new CodecRegistry();
+        r.registerManufacturer(APPLE_COMPANY_ID, IBEACON);
+        r.registerServiceUuid16(EDDYSTONE_UUID16, EDDYSTONE);
+        r.registerServiceUuid16(MCANDLE_UUID16, MCANDLE);
+        return r;
+    }
+
+    public CodecRegistry registerManufacturer(int companyId, AdvertisementCodec codec) {
+        if (companyId < 0 || companyId > 0xFFFF) {
+            throw new IllegalArgumentException("company id out of range: " + companyId);
+        }
+        synchronized (writeLock) {
+            manufacturers = manufacturers.with(companyId, 0, codec);
+        }
+        return this;
+    }
+
+    public CodecRegistry registerServiceUuid16(int uuid, AdvertisementCodec codec) {
+        if (uuid < 0 || uuid > 0xFFFF) {
+            throw new IllegalArgumentException("16-bit uuid out of range: " + uuid);
+        }
+        return registerServiceUuid32(uuid, codec);
+    }
+
+    public CodecRegistry registerServiceUuid32(long uuid, AdvertisementCodec codec) {
+        if (uuid < 0 || uuid > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("32-bit uuid out of range: " + uuid);
+        }
+        synchronized (writeLock) {
+            uuid32s = uuid32s.with(uuid, 0, codec);
+        }
+        return this;
+    }
+
+    /** 128비트 UUID. Base UUID 에서 나온 값이면 16/32비트 UUID 로 등록한다. */
+    public CodecRegistry registerServiceUuid(UUID uuid, AdvertisementCodec codec) {
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        if (lsb == BASE_UUID_LSB && (msb & 0xFFFFFFFFL) == BASE_UUID_MSB) {
+            return registerServiceUuid32(msb >>> 32, codec);
+        }
+        synchronized (writeLock) {
+            uuid128s = uuid128s.with(msb, lsb, codec);
+        }
+        return this;
+    }
+
+    /** data[offset..offset+length) 를 해석한다 */
+    public List<BeaconFrame> decode(byte[] data, int offset, int length) {
+        return decode(new AdvertisementView().wrap(data, offset, length));
+    }
+
+    /**
+     * 뷰의 필드 순서대로 해석한 프레임. 없으면 빈 목록 (새로 만들지 않는다).
+     * AD structure 가 잘려 있으면 잘리기 전 필드까지만 본다.
+     */
+    public List<BeaconFrame> decode(AdvertisementView view) {
+        Table m = manufacturers;
+        Table u32 = uuid32s;
+        Table u128 = uuid128s;
+        byte[] data = view.array();
+        List<BeaconFrame> frames = null;
+        int n = view.fieldCount();
+        for (int i = 0; i < n; i++) {
+            int start = view.fieldOffset(i);
+            int len = view.fieldLength(i);
+            AdvertisementCodec[] codecs;
+            int width;
+            switch (view.fieldType(i)) {
+                case AdvertisementView.AD_MANUFACTURER:
+                    width = 2;
+                    codecs = len < width || m.isEmpty() ? null : m.get(le16(data, start), 0);
+                    break;
+                case AdvertisementView.AD_SERVICE_DATA16:
+                    width = 2;
+                    codecs = len < width || u32.isEmpty() ? null : u32.get(le16(data, start), 0);
+                    break;
+                case AdvertisementView.AD_SERVICE_DATA32:
+                    width = 4;
+                    codecs = len < width || u32.isEmpty() ? null : u32.get(le32(data, start), 0);
+                    break;
+                case AdvertisementView.AD_SERVICE_DATA128:
+                    width = 16;
+                    if (len < width) {
+                        codecs = null;
+                    } else {
+                        long msb = le64(data, start + 8);
+                        long lsb = le64(data, start);
+                        if (lsb == BASE_UUID_LSB && (msb & 0xFFFFFFFFL) == BASE_UUID_MSB) {
+                            codecs = u32.isEmpty() ? null : u32.get(msb >>> 32, 0);
+                        } else {
+                            codecs = u128.isEmpty() ? null : u128.get(msb, lsb);
+                        }
+                    }
+                    break;
+                default:
+                    continue;
+            }
+            if (codecs == null) {
+                continue;
+            }
+            for (AdvertisementCodec codec : codecs) {
+                BeaconFrame frame = codec.decode(data, start + width, len - width);
+                if (frame != null) {
+                    if (frames == null) {
+                        frames = new ArrayList<>(2);
+                    }
+                    frames.add(frame);
+                    break;
+                }
+            }
+        }
+        return frames == null ? Collections.emptyList() : Collections.unmodifiableList(frames);
+    }
+
+    private static BeaconFrame eddystoneUrl(byte[] data, int offset, int length) {
+        if (length < 3 || (data[offset + 2] & 0xFF) >= URL_SCHEMES.length) {
+            return null;
+        }
+        StringBuilder url = new StringBuilder(32).append(URL_SCHEMES[data[offset + 2]]);
+        for (int i = offset + 3; i < offset + length; i++) {
+            int c = data[i] & 0xFF;
+            if (c < URL_EXPANSIONS.length) {
+                url.append(URL_EXPANSIONS[c]);
+            } else if (c > 0x20 && c < 0x7F) {
+                url.append((char) c);
+            } else {
+                return null;
+            }
+        }
+        return new BeaconFrame.EddystoneUrl(url.toString(), data[offset + 1]);
+    }
+
+    private static int be16(byte[] d, int p) {
+        return ((d[p] & 0xFF) << 8) | (d[p + 1] & 0xFF);
+    }
+
+    private static long be32(byte[] d, int p) {
+        return ((long) be16(d, p) << 16) | be16(d, p + 2);
+    }
+
+    private static long be64(byte[] d, int p) {
+        return (be32(d, p) << 32) | be32(d, p + 4);
+    }
+
+    private static int le16(byte[] d, int p) {
+        return (d[p] & 0xFF) | ((d[p + 1] & 0xFF) << 8);
+    }
+
+    private static long le32(byte[] d, int p) {
+        return (le16(d, p) | ((long) le16(d, p + 2) << 16)) & 0xFFFFFFFFL;
+    }
+
+    private static long le64(byte[] d, int p) {
+        return le32(d, p) | (le32(d, p + 4) << 32);
+    }
+
+    /**
+     * (hi, lo) 키 -> 코덱 배열. open addressing(linear probing), 만든 뒤에는 바뀌지 않는다.
+     */
+    private static final class Table {
+        static final Table EMPTY = new Table(new long[0], new long[0], new AdvertisementCodec[0][], 0);
+
+        private final long[] hi;
+        private final long[] lo;
+        private final AdvertisementCodec[][] codecs;
+        private final int mask;
+        private final int size;
+
+        private Table(long[] hi, long[] lo, AdvertisementCodec[][] codecs, int size) {
+            this.hi = hi;
+            this.lo = lo;
+            this.codecs = codecs;
+            this.mask = codecs.length - 1;
+            this.size = size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        AdvertisementCodec[] get(long h, long l) {
+            for (int i = slot(h, l, mask); ; i = (i + 1) & mask) {
+                AdvertisementCodec[] c = codecs[i];
+                if (c == null || (hi[i] == h && lo[i] == l)) {
+                    return c;
+                }
+            }
+        }
+
+        /** codec 을 덧붙인 새 표 (채움률 1/2 이하) */
+        Table with(long h, long l, AdvertisementCodec codec) {
+            if (codec == null) {
+                throw new NullPointerException("codec");
+            }
+            AdvertisementCodec[] existing = isEmpty() ? null : get(h, l);
+            int newSize = existing == null ? size + 1 : size;
+            int capacity = Integer.highestOneBit(Math.max(4, newSize * 4 - 1));
+            Table t = new Table(new long[capacity], new long[capacity], new AdvertisementCodec[capacity][], newSize);
+            for (int i = 0; i < codecs.length; i++) {
+                if (codecs[i] != null && !(hi[i] == h && lo[i] == l)) {
+                    t.put(hi[i], lo[i], codecs[i]);
+                }
+            }
+            AdvertisementCodec[] merged = existing == null ? new AdvertisementCodec[1]
+                    : Arrays.copyOf(existing, existing.length + 1);
+            merged[merged.length - 1] = codec;
+            t.put(h, l, merged);
+            return t;
+        }
+
+        private void put(long h, long l, AdvertisementCodec[] c) {
+            int i = slot(h, l, mask);
+            while (codecs[i] != null) {
+                i = (i + 1) & mask;
+            }
+            hi[i] = h;
+            lo[i] = l;
+            codecs[i] = c;
+        }
+
+        private static int slot(long h, long l, int mask) {
+            long x = h * 0x9E3779B97F4A7C15L + l;
+            x ^= x >>> 29;
+            x *= 0xBF58476D1CE4E5B9L;
+            return (int) (x ^ (x >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.test1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * {@link ScanFilter} 를 모듈 필터(Lib_AtStartNewScan 인자)와 소프트웨어 사전 필터로 나눈 결과. 불변이다.
+ *
+ * <p>Lib_AtStartNewScan 은 종류마다 값 하나만 받으므로, 값이 하나뿐인 조건 중 가장 선택적인 것 하나를
+ * 모듈로 내린다. (MAC > 3바이트 이상 이름 prefix > 제조사 ID > 짧은 이름 prefix) 최소 RSSI 는 항상 함께 내린다.
+ * 모듈로 내린 조건은 소프트웨어에서 다시 검사하지 않는다.
+ *
+ * <p>소프트웨어 검사는 두 단계다.
+ * <ul>
+ *     <li>헤더 ({@link #accept(long, int, int)}): HEX 디코딩 전에 MAC/RSSI 만 본다.
+ *     MAC 집합은 블룸 필터로 먼저 거르고 정렬 배열 이진 탐색으로 확인한다. {@link ScanLineParser#setHeaderFilter} 에 등록한다.</li>
+ *     <li>페이로드 ({@link #acceptPayload}): 디코딩된 AD 바이트에서 이름 prefix, 제조사 ID(65536비트 테이블),
+ *     서비스 UUID, 바이트 마스크를 검사한다. 객체를 만들지 않는다.</li>
+ * </ul>
+ * 페이로드 조건은 패킷(ADV 또는 RSP) 하나 안에서 모두 만족해야 한다.
+ * 이미 통과한 기기의 나머지 패킷까지 받으려면 호출자가 추적 중인 기기를 따로 통과시킨다.
+ */
+public final class CompiledScanFilter implements ScanLineParser.HeaderFilter {
+    public static final int CRITERION_NONE = 0;
+    public static final int CRITERION_MAC = 1;
+    public static final int CRITERION_NAME = 2;
+    public static final int CRITERION_MANUFACTURER = 3;
+
+    private static final int BLOOM_HASHES = 3;
+
+    // ---- 모듈 필터 ----
+    private final int pushedDown;
+    private final String moduleMac;
+    private final String moduleName;
+    private final String moduleManufacturerId;
+    private final int moduleRssi;
+
+    // ---- 헤더 ----
+    private final int minRssi;
+    private final boolean checkMac;
+    private final long[] macs;
+    private final long[] bloom;
+    private final int bloomMask;
+    // index = prefix 바이트 수 (1..5), 정렬된 prefix 값
+    private final long[][] macPrefixes = new long[6][];
+
+    // ---- 페이로드 ----
+    private final boolean checkPayload;
+    private final byte[][] namePrefixes;
+    private final long[] manufacturerBits;
+    private final long[] uuid16Bits;
+    private final long[] uuid128;
+    private final ScanFilter.PayloadMask[] masks;
+
+    CompiledScanFilter(ScanFilter f) {
+        int pushed = CRITERION_NONE;
+        int longestName = 0;
+        if (f.namePrefixes.size() == 1) {
+            longestName = f.namePrefixes.get(0).length;
+        }
+        if (f.macs.size() == 1 && f.macPrefixes.isEmpty()) {
+            pushed = CRITERION_MAC;
+        } else if (longestName >= 3) {
+            pushed = CRITERION_NAME;
+        } else if (f.manufacturerIds.size() == 1) {
+            pushed = CRITERION_MANUFACTURER;
+        } else if (longestName > 0) {
+            pushed = CRITERION_NAME;
+        }
+        pushedDown = pushed;
+        moduleMac = pushed == CRITERION_MAC ? MacAddress.toString(f.macs.iterator().next()) : "";
+        moduleName = pushed == CRITERION_NAME
+                ? new String(f.namePrefixes.get(0), StandardCharsets.UTF_8) : "";
+        moduleManufacturerId = pushed == CRITERION_MANUFACTURER
+                ? String.format("%04X", f.manufacturerIds.iterator().next()) : "";
+        moduleRssi = f.minRssi;
+        minRssi = f.minRssi;
+
+        // MAC
+        checkMac = pushed != CRITERION_MAC && (!f.macs.isEmpty() || !f.macPrefixes.isEmpty());
+        macs = new long[checkMac ? f.macs.size() : 0];
+        int i = 0;
+        for (long m : f.macs) {
+            if (i < macs.length) {
+                macs[i++] = m;
+            }
+        }
+        Arrays.sort(macs);
+        int bits = 64;
+        while (bits < macs.length * 16) {
+            bits <<= 1;
+        }
+        bloom = new long[bits >>> 6];
+        bloomMask = bits - 1;
+        for (long m : macs) {
+            long h = mix(m);
+            for (int k = 0; k < BLOOM_HASHES; k++) {
+                int bit = bloomBit(h, k);
+                bloom[bit >>> 6] |= 1L << bit;
+            }
+        }
+        for (int len = 1; len <= 5; len++) {
+            int n = 0;
+            for (long[] p : f.macPrefixes) {
+                if (p[1] == len) {
+                    n++;
+                }
+            }
+            long[] values = new long[checkMac ? n : 0];
+            n = 0;
+            for (long[] p : f.macPrefixes) {
+                if (p[1] == len && n < values.length) {
+                    values[n++] = p[0];
+                }
+            }
+            Arrays.sort(values);
+            macPrefixes[len] = values;
+        }
+
+        // 페이로드
+        namePrefixes = pushed == CRITERION_NAME || f.namePrefixes.isEmpty()
+                ? null : f.namePrefixes.toArray(new byte[0][]);
+        manufacturerBits = pushed == CRITERION_MANUFACTURER || f.manufacturerIds.isEmpty()
+                ? null : bitTable(f.manufacturerIds);
+        uuid16Bits = f.serviceUuids16.isEmpty() ? null : bitTable(f.serviceUuids16);
+        if (f.serviceUuids128.isEmpty()) {
+            uuid128 = null;
+        } else {
+            uuid128 = new long[f.serviceUuids128.size() * 2];
+            for (int k = 0; k < f.serviceUuids128.size(); k++) {
+                uuid128[2 * k] = f.serviceUuids128.get(k)[0];
+                uuid128[2 * k + 1] = f.serviceUuids128.get(k)[1];
+            }
+        }
+        masks = f.payloadMasks.isEmpty() ? null : f.payloadMasks.toArray(new ScanFilter.PayloadMask[0]);
+        checkPayload = namePrefixes != null || manufacturerBits != null || uuid16Bits != null
+                || uuid128 != null || masks != null;
+    }
+
+    // ---- 모듈 필터 ----
+
+    /** 모듈로 내린 조건 ({@link #CRITERION_MAC} 등) */
+    public int pushedDown() {
+        return pushedDown;
+    }
+
+    /** Lib_AtStartNewScan macAddress 인자, 없으면 "" */
+    public String moduleMac() {
+        return moduleMac;
+    }
+
+    /** Lib_AtStartNewScan broadcastName 인자 (이름 prefix), 없으면 "" */
+    public String moduleName() {
+        return moduleName;
+    }
+
+    /** Lib_AtStartNewScan manufacturerId 인자 (4자리 HEX), 없으면 "" */
+    public String moduleManufacturerId() {
+        return moduleManufacturerId;
+    }
+
+    /** Lib_AtStartNewScan rssi 인자 (dBm, 음수), 없으면 0 */
+    public int moduleRssi() {
+        return moduleRssi;
+    }
+
+    /** Lib_AtStartNewScan data 인자. 바이트 마스크는 모듈 형식이 확인되지 않아 내리지 않는다. */
+    public String moduleData() {
+        return "";
+    }
+
+    /** 소프트웨어 페이로드 검사가 필요한지. false 면 {@link #acceptPayload} 는 항상 true. */
+    public boolean hasPayloadCriteria() {
+        return checkPayload;
+    }
+
+    // ---- 헤더 ----
+
+    @Override
+    public boolean accept(long mac, int rssi, int type) {
+        if (minRssi != 0 && rssi < minRssi) {
+            return false;
+        }
+        return !checkMac || macMatches(mac);
+    }
+
+    private boolean macMatches(long mac) {
+        if (macs.length > 0 && mightContain(mac) && Arrays.binarySearch(macs, mac) >= 0) {
+            return true;
+        }
+        for (int len = 1; len <= 5; len++) {
+            long[] values = macPrefixes[len];
+            if (values.length > 0 && Arrays.binarySearch(values, mac >>> (8 * (6 - len))) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean mightContain(long mac) {
+        long h = mix(mac);
+        for (int k = 0; k < BLOOM_HASHES; k++) {
+            int bit = bloomBit(h, k);
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int bloomBit(long h, int k) {
+        return ((int) h + k * (int) (h >>> 32)) & bloomMask;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    // ---- 페이로드 ----
+
+    /**
+     * @param view 검사할 패킷의 AD 데이터
+     */
+    public boolean acceptPayload(AdvertisementView view) {
+        if (!checkPayload) {
+            return true;
+        }
+        byte[] a = view.array();
+        boolean name = namePrefixes == null;
+        boolean manufacturer = manufacturerBits == null;
+        boolean uuid = uuid16Bits == null && uuid128 == null;
+        if (masks != null && !masksMatch(a, view.offset(), view.length())) {
+            return false;
+        }
+        int count = view.fieldCount();
+        for (int i = 0; i < count; i++) {
+            int type = view.fieldType(i);
+            int off = view.fieldOffset(i);
+            int len = view.fieldLength(i);
+            switch (type) {
+                case AdvertisementView.AD_NAME_SHORT:
+                case AdvertisementView.AD_NAME_COMPLETE:
+                    if (!name) {
+                        name = nameMatches(a, off, len);
+                    }
+                    break;
+                case AdvertisementView.AD_MANUFACTURER:
+                    if (!manufacturer && len >= 2) {
+                        manufacturer = testBit(manufacturerBits, le16(a, off));
+                    }
+                    break;
+                case AdvertisementView.AD_UUID16_INCOMPLETE:
+                case AdvertisementView.AD_UUID16_COMPLETE:
+                    for (int p = off; !uuid && uuid16Bits != null && p + 2 <= off + len; p += 2) {
+                        uuid = testBit(uuid16Bits, le16(a, p));
+                    }
+                    break;
+                case AdvertisementView.AD_SERVICE_DATA16:
+                    if (!uuid && uuid16Bits != null && len >= 2) {
+                        uuid = testBit(uuid16Bits, le16(a, off));
+                    }
+                    break;
+                case AdvertisementView.AD_UUID128_INCOMPLETE:
+                case AdvertisementView.AD_UUID128_COMPLETE:
+                    for (int p = off; !uuid && uuid128 != null && p + 16 <= off + len; p += 16) {
+                        uuid = uuid128Matches(a, p);
+                    }
+                    break;
+                case AdvertisementView.AD_SERVICE_DATA128:
+                    if (!uuid && uuid128 != null && len >= 16) {
+                        uuid = uuid128Matches(a, off);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return name && manufacturer && uuid;
+    }
+
+    private boolean nameMatches(byte[] a, int off, int len) {
+        for (byte[] prefix : namePrefixes) {
+            if (prefix.length <= len) {
+                int k = 0;
+                while (k < prefix.length && a[off + k] == prefix[k]) {
+                    k++;
+                }
+                if (k == prefix.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean masksMatch(byte[] a, int off, int len) {
+        for (ScanFilter.PayloadMask m : masks) {
+            if (m.offset + m.value.length > len) {
+                continue;
+            }
+            int k = 0;
+            int base = off + m.offset;
+            while (k < m.value.length && ((a[base + k] ^ m.value[k]) & m.mask[k]) == 0) {
+                k++;
+            }
+            if (k == m.value.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean uuid128Matches(byte[] a, int p) {
+        // AD 의 128비트 UUID 는 little-endian
+        long lsb = le64(a, p);
+        long msb = le64(a, p + 8);
+        for (int k = 0; k < uuid128.length; k += 2) {
+            if (uuid128[k] == msb && uuid128[k + 1] == lsb) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] bitTable(Iterable<Integer> values) {
+        long[] bits = new long[65536 / 64];
+        for (int v : values) {
+            bits[v >>> 6] |= 1L << v;
+        }
+        return bits;
+    }
+
+    private static boolean testBit(long[] bits, int v) {
+        return (bits[v >>> 6] & (1L << v)) != 0;
+    }
+
+    private static int le16(byte[] a, int p) {
+        return (a[p] & 0xFF) | (a[p + 1] & 0xFF) << 8;
+    }
+
+    private static long le64(byte[] a, int p) {
+        long v = 0;
+        for (int i = 7; i >= 0; i--) {
+            v = v << 8 | (a[p + i] & 0xFF);
+        }
+        return v;
+    }
+}
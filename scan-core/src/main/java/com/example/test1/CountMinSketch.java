@@ -0,0 +1,115 @@
+package com.example.test1;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 키별 횟수를 고정 메모리로 추정하는 count-min sketch.
+ *
+ * <p>width x depth 개의 int 카운터를 쓴다. 추정값은 실제 값 이상이고, 확률 1 - e^-depth 로
+ * 오차가 전체 합의 e / width 이내다. 같은 크기끼리는 {@link #merge} 로 합칠 수 있다.
+ * 행마다 해시 두 개의 선형 결합(h1 + i * h2)으로 열을 고른다.
+ *
+ * <p>스레드 안전하지 않다.
+ */
+public final class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final int mask;
+    private final int[] counts;
+    private long total;
+
+    /**
+     * @param width 행당 카운터 수 (2의 거듭제곱)
+     * @param depth 행 수
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two");
+        }
+        if (depth <= 0 || depth > 16) {
+            throw new IllegalArgumentException("depth must be 1..16");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counts = new int[width * depth];
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    /** 더한 횟수의 합 */
+    public long total() {
+        return total;
+    }
+
+    public void add(long key, int count) {
+        long h = HyperLogLog.hash64(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < depth; i++) {
+            int c = i * width + ((h1 + i * h2) & mask);
+            counts[c] = (int) Math.min(Integer.MAX_VALUE, (long) counts[c] + count);
+        }
+        total += count;
+    }
+
+    /** key 의 추정 횟수 (실제 값 이상) */
+    public long estimate(long key) {
+        long h = HyperLogLog.hash64(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, counts[i * width + ((h1 + i * h2) & mask)]);
+        }
+        return min;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("sketch size " + other.width + "x" + other.depth
+                    + " != " + width + "x" + depth);
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = (int) Math.min(Integer.MAX_VALUE, (long) counts[i] + other.counts[i]);
+        }
+        total += other.total;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        total = 0;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(width);
+        out.writeByte(depth);
+        out.writeLong(total);
+        for (int c : counts) {
+            out.writeInt(c);
+        }
+    }
+
+    static CountMinSketch readFrom(DataInput in) throws IOException {
+        int w = in.readInt();
+        int d = in.readUnsignedByte();
+        if (w <= 0 || w > (1 << 20) || Integer.bitCount(w) != 1 || d == 0 || d > 16) {
+            throw new IOException("bad sketch size " + w + "x" + d);
+        }
+        CountMinSketch s = new CountMinSketch(w, d);
+        s.total = in.readLong();
+        for (int i = 0; i < s.counts.length; i++) {
+            s.counts[i] = in.readInt();
+        }
+        return s;
+    }
+}
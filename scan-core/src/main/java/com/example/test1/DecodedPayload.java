@@ -0,0 +1,170 @@
+package com.example.test1;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 광고 페이로드 하나와 그 해석 결과 (불변).
+ *
+ * <p>{@link PayloadCache} 가 같은 바이트열에 대해 같은 객체를 돌려주므로, 한 번 만든 hex 문자열,
+ * AD 해석 결과, JSON 을 반복 수신에서 재사용한다. hex/JSON 은 처음 요청할 때 만들며 여러 스레드에서
+ * 읽어도 된다 (경합 시 두 번 만들어질 수 있지만 결과는 같다). 비콘 프레임({@link #frames()})도 같은 방식으로 한 번만 해석한다.
+ * {@link #bytes()} 와 {@link #json()} 이 돌려주는 객체는 공유되므로 읽기만 해야 한다.
+ */
+public final class DecodedPayload {
+    public static final DecodedPayload EMPTY = new DecodedPayload(new byte[0], 0, true, AdvertisementView.NO_TX_POWER,
+            CodecRegistry.BUILT_IN);
+
+    // json() 이 null(잘린 AD) 인 경우와 아직 만들지 않은 경우를 구분한다
+    private static final Object NOT_BUILT = new Object();
+
+    private final byte[] bytes;
+    private final int hash;
+    private final boolean valid;
+    private final int txPower;
+    private final CodecRegistry codecs;
+    private volatile String hex;
+    private volatile Object json = NOT_BUILT;
+    private volatile List<BeaconFrame> frames;
+
+    DecodedPayload(byte[] bytes, int hash, boolean valid, int txPower, CodecRegistry codecs) {
+        this.bytes = bytes;
+        this.hash = hash;
+        this.valid = valid;
+        this.txPower = txPower;
+        this.codecs = codecs;
+    }
+
+    /** view 로 bytes 를 해석해 만든다 (view 는 재사용용). 비콘 프레임은 codecs 로 해석한다. */
+    static DecodedPayload decode(byte[] bytes, int hash, AdvertisementView view, CodecRegistry codecs) {
+        view.wrap(bytes, 0, bytes.length);
+        return new DecodedPayload(bytes, hash, view.isValid(), view.txPower(), codecs);
+    }
+
+    /** src 를 복사해 만든다 (캐시를 거치지 않는 경우) */
+    public static DecodedPayload copyOf(byte[] src, int off, int len) {
+        if (len == 0) {
+            return EMPTY;
+        }
+        byte[] copy = new byte[len];
+        System.arraycopy(src, off, copy, 0, len);
+        return decode(copy, PayloadCache.hash(copy, 0, len), new AdvertisementView(), CodecRegistry.BUILT_IN);
+    }
+
+    /** 원본 바이트 (공유 배열, 수정 금지) */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    /** {@link PayloadCache#hash} 값 */
+    public int hash() {
+        return hash;
+    }
+
+    /** AD structure 가 잘리지 않았으면 true ({@link AdvertisementView#isValid()}) */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /** TX Power Level, 없으면 {@link AdvertisementView#NO_TX_POWER} */
+    public int txPower() {
+        return txPower;
+    }
+
+    /** 대문자 hex (기존 ADV_org/RSP_org 형식) */
+    public String hex() {
+        String h = hex;
+        if (h == null) {
+            h = Hex.encode(bytes, 0, bytes.length);
+            hex = h;
+        }
+        return h;
+    }
+
+    /**
+     * 기존 parseAdvertisementData 형식의 JSON. AD structure 가 잘려 있으면 null.
+     */
+    public JSONObject json() throws JSONException {
+        Object j = json;
+        if (j == NOT_BUILT) {
+            j = new AdvertisementView().wrap(bytes, 0, bytes.length).toJson();
+            json = j;
+        }
+        return (JSONObject) j;
+    }
+
+    /**
+     * {@link #json()} 의 복사본. 받는 쪽이 고쳐도 캐시된 JSON 과 다른 호출자에게 영향이 없다.
+     * 값은 문자열/숫자와 문자열 배열뿐이므로 배열만 새로 만든다. AD structure 가 잘려 있으면 null.
+     */
+    public JSONObject jsonCopy() throws JSONException {
+        JSONObject source = json();
+        if (source == null) {
+            return null;
+        }
+        JSONObject copy = new JSONObject();
+        for (Iterator<String> it = source.keys(); it.hasNext(); ) {
+            String key = it.next();
+            Object value = source.get(key);
+            if (value instanceof JSONArray) {
+                JSONArray array = (JSONArray) value;
+                JSONArray arrayCopy = new JSONArray();
+                for (int i = 0; i < array.length(); i++) {
+                    arrayCopy.put(array.get(i));
+                }
+                value = arrayCopy;
+            }
+            copy.put(key, value);
+        }
+        return copy;
+    }
+
+    /**
+     * 등록된 코덱으로 해석한 비콘 프레임 (iBeacon, Eddystone, mcandle 등), 없으면 빈 목록.
+     * {@link PayloadCache} 를 거친 페이로드는 캐시의 {@link CodecRegistry} 를, 그 밖에는 기본 코덱을 쓴다.
+     */
+    public List<BeaconFrame> frames() {
+        List<BeaconFrame> f = frames;
+        if (f == null) {
+            f = codecs.decode(new AdvertisementView().wrap(bytes, 0, bytes.length));
+            frames = f;
+        }
+        return f;
+    }
+
+    /** 해당 type 의 첫 프레임, 없으면 null */
+    public BeaconFrame frame(int type) {
+        for (BeaconFrame f : frames()) {
+            if (f.type() == type) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    /** 새 뷰 (복사 없음) */
+    public AdvertisementView view() {
+        return new AdvertisementView().wrap(bytes, 0, bytes.length);
+    }
+
+    /** src[off..off+len) 과 내용이 같으면 true */
+    public boolean contentEquals(byte[] src, int off, int len) {
+        if (bytes.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (bytes[i] != src[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.test1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link DeviceTable} 의 변경분을 {@link ScanEvent} 로 변환한다.
+ *
+ * <ul>
+ *     <li>APPEARED: 새로 등록된 기기</li>
+ *     <li>CHANGED: ADV/RSP 페이로드 변경, 또는 마지막 보고값 대비 RSSI 변화가 히스테리시스 이상.
+ *     {@link ProximityEngine} 를 연결하면 평활화한 RSSI 로 비교하고, 구역 변경도 CHANGED({@link DeviceTable#CHANGE_ZONE}) 로 보고한다.</li>
+ *     <li>LOST: 테이블에서 제거된 기기 (테이블의 EvictionListener 로 등록된다)</li>
+ * </ul>
+ *
+ * 처리량은 전체 기기 수가 아니라 청크마다 갱신된 기기 수(dirty 목록)에 비례한다.
+ * 테이블과 같은 스레드에서만 사용한다.
+ */
+public final class DeltaTracker implements DeviceTable.EvictionListener {
+    private final DeviceTable table;
+    // entry 별 마지막으로 보고한 스냅샷
+    private final DeviceSnapshot[] reported;
+    private volatile int rssiHysteresis;
+    private ProximityEngine proximity;
+    private PayloadCache payloadCache;
+    private TableSnapshot.Publisher publisher;
+    private final List<ScanEvent> pending = new ArrayList<>();
+
+    public DeltaTracker(DeviceTable table, int rssiHysteresis) {
+        this.table = table;
+        this.reported = new DeviceSnapshot[table.capacity()];
+        this.rssiHysteresis = rssiHysteresis;
+        table.setEvictionListener(this);
+    }
+
+    public int getRssiHysteresis() {
+        return rssiHysteresis;
+    }
+
+    /** RSSI 변화를 CHANGED 로 보고할 최소 차이 (dB) */
+    public void setRssiHysteresis(int db) {
+        this.rssiHysteresis = db;
+    }
+
+    /**
+     * 평활화/구역 판정 엔진을 연결한다. 엔진의 update 는 호출하는 쪽(테이블 갱신 직후)이 담당한다.
+     */
+    public void setProximity(ProximityEngine proximity) {
+        this.proximity = proximity;
+    }
+
+    /**
+     * 스냅샷의 페이로드를 캐시로 공유한다. 같은 페이로드의 hex/JSON 변환은 한 번만 일어난다.
+     */
+    public void setPayloadCache(PayloadCache cache) {
+        this.payloadCache = cache;
+    }
+
+    /**
+     * collect 마다 바뀐 기기(dirty 목록, 제거된 기기)를 반영해 테이블 전체 스냅샷을 게시한다.
+     * 히스테리시스와 상관없이 갱신된 모든 기기의 최신 값이 들어간다.
+     */
+    public void setSnapshotPublisher(TableSnapshot.Publisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /** entry 에 대해 마지막으로 보고한 스냅샷, 없으면 null */
+    public DeviceSnapshot reported(int entry) {
+        return reported[entry];
+    }
+
+    /**
+     * 테이블의 dirty 목록을 검사해 이벤트를 만들고 dirty 목록을 비운다.
+     * 그 사이 제거된 기기의 LOST 이벤트도 함께 반환된다.
+     *
+     * @return 변경 불가능한 이벤트 목록, 변화가 없으면 빈 목록
+     */
+    public List<ScanEvent> collect() {
+        int hysteresis = rssiHysteresis;
+        ProximityEngine p = proximity;
+        for (int i = 0; i < table.dirtyCount(); i++) {
+            int e = table.dirtyEntry(i);
+            int changes = table.dirtyChanges(e);
+            DeviceSnapshot previous = reported[e];
+            if ((changes & DeviceTable.CHANGE_NEW) != 0 || previous == null) {
+                DeviceSnapshot s = DeviceSnapshot.capture(table, e, null, p, payloadCache);
+                reported[e] = s;
+                pending.add(new ScanEvent(ScanEvent.Type.APPEARED, changes | DeviceTable.CHANGE_NEW, s));
+                if (publisher != null) {
+                    publisher.update(table, e, p, payloadCache, s);
+                }
+                continue;
+            }
+            boolean payloadChanged = (changes & (DeviceTable.CHANGE_ADV | DeviceTable.CHANGE_RSP)) != 0;
+            boolean rssiMoved;
+            boolean zoneChanged = false;
+            if (p != null && !Double.isNaN(previous.getSmoothedRssi())) {
+                rssiMoved = Math.abs(p.smoothedRssi(e) - previous.getSmoothedRssi()) >= hysteresis;
+                zoneChanged = p.zone(e) != previous.getZone();
+            } else {
+                rssiMoved = Math.abs(table.rssi(e) - previous.getRssi()) >= hysteresis;
+            }
+            if (payloadChanged || rssiMoved || zoneChanged) {
+                DeviceSnapshot s = DeviceSnapshot.capture(table, e, previous, p, payloadCache);
+                reported[e] = s;
+                int mask = changes & (DeviceTable.CHANGE_ADV | DeviceTable.CHANGE_RSP);
+                if (rssiMoved) {
+                    mask |= DeviceTable.CHANGE_RSSI;
+                }
+                if (zoneChanged) {
+                    mask |= DeviceTable.CHANGE_ZONE;
+                }
+                pending.add(new ScanEvent(ScanEvent.Type.CHANGED, mask, s));
+                if (publisher != null) {
+                    publisher.update(table, e, p, payloadCache, s);
+                }
+            } else if (publisher != null) {
+                publisher.update(table, e, p, payloadCache, null);
+            }
+        }
+        table.clearDirty();
+        if (publisher != null) {
+            publisher.publish();
+        }
+
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ScanEvent> events = Collections.unmodifiableList(new ArrayList<>(pending));
+        pending.clear();
+        return events;
+    }
+
+    @Override
+    public void onEvict(DeviceTable t, int entry, int reason) {
+        DeviceSnapshot previous = reported[entry];
+        reported[entry] = null;
+        if (previous != null) {
+            pending.add(new ScanEvent(ScanEvent.Type.LOST, 0,
+                    DeviceSnapshot.capture(t, entry, previous, proximity, payloadCache)));
+        }
+        // 보고된 적 없는 기기는 LOST 도 보내지 않는다
+        if (publisher != null) {
+            publisher.remove(entry);
+        }
+        if (proximity != null) {
+            proximity.remove(entry, t.mac(entry));
+        }
+    }
+}
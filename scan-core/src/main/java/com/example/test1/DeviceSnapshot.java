@@ -0,0 +1,205 @@
+package com.example.test1;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * 특정 시점의 기기 상태를 담은 불변 객체.
+ *
+ * <p>여러 스레드에서 복사 없이 공유할 수 있다. 페이로드가 바뀌지 않았으면 이전 스냅샷과 같은 {@link DecodedPayload} 를
+ * 공유하고, {@link PayloadCache} 를 쓰면 같은 내용의 페이로드를 가진 모든 스냅샷이 하나를 공유한다.
+ * 따라서 {@link #advertisement()} / {@link #scanResponse()} 로 얻은 뷰의 배열은 읽기만 해야 한다.
+ */
+public final class DeviceSnapshot {
+    private final long mac;
+    private final int rssi;
+    private final long firstSeen;
+    private final long lastSeen;
+    private final int advCount;
+    private final int rspCount;
+    private final DecodedPayload adv;
+    private final DecodedPayload rsp;
+    private final double smoothedRssi;
+    private final double distance;
+    private final int zone;
+
+    DeviceSnapshot(long mac, int rssi, long firstSeen, long lastSeen,
+                   int advCount, int rspCount, DecodedPayload adv, DecodedPayload rsp,
+                   double smoothedRssi, double distance, int zone) {
+        this.mac = mac;
+        this.rssi = rssi;
+        this.firstSeen = firstSeen;
+        this.lastSeen = lastSeen;
+        this.advCount = advCount;
+        this.rspCount = rspCount;
+        this.adv = adv;
+        this.rsp = rsp;
+        this.smoothedRssi = smoothedRssi;
+        this.distance = distance;
+        this.zone = zone;
+    }
+
+    /**
+     * 테이블의 entry 상태로 스냅샷을 만든다.
+     * previous 와 페이로드가 같으면 previous 의 페이로드를 그대로 공유한다.
+     */
+    public static DeviceSnapshot capture(DeviceTable table, int entry, DeviceSnapshot previous) {
+        return capture(table, entry, previous, null, null);
+    }
+
+    /**
+     * proximity 가 있으면 평활화 RSSI, 추정 거리, 구역도 함께 담는다.
+     * cache 가 있으면 페이로드를 캐시에서 찾아 hex/JSON 변환 결과를 재사용한다.
+     */
+    public static DeviceSnapshot capture(DeviceTable table, int entry, DeviceSnapshot previous,
+                                         ProximityEngine proximity, PayloadCache cache) {
+        int base = table.payloadOffset(entry);
+        DecodedPayload adv = sharePayload(table.advArray(), base, table.advLength(entry),
+                previous != null ? previous.adv : null, cache);
+        DecodedPayload rsp = sharePayload(table.rspArray(), base, table.rspLength(entry),
+                previous != null ? previous.rsp : null, cache);
+        if (proximity == null) {
+            return new DeviceSnapshot(table.mac(entry), table.rssi(entry), table.firstSeen(entry),
+                    table.lastSeen(entry), table.advCount(entry), table.rspCount(entry), adv, rsp,
+                    Double.NaN, Double.NaN, ProximityEngine.ZONE_UNKNOWN);
+        }
+        return new DeviceSnapshot(table.mac(entry), table.rssi(entry), table.firstSeen(entry),
+                table.lastSeen(entry), table.advCount(entry), table.rspCount(entry), adv, rsp,
+                proximity.smoothedRssi(entry), proximity.distance(entry), proximity.zone(entry));
+    }
+
+    static DecodedPayload sharePayload(byte[] src, int off, int len, DecodedPayload previous,
+                                               PayloadCache cache) {
+        if (previous != null && previous.contentEquals(src, off, len)) {
+            return previous;
+        }
+        return cache != null ? cache.intern(src, off, len) : DecodedPayload.copyOf(src, off, len);
+    }
+
+    /** 패킹된 MAC (0xAABBCCDDEEFF) */
+    public long getMac() {
+        return mac;
+    }
+
+    /** "AA:BB:CC:DD:EE:FF" */
+    public String getMacString() {
+        return MacAddress.toString(mac);
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    /** 평활화한 RSSI (dBm), {@link ProximityEngine} 없이 만든 스냅샷이면 NaN */
+    public double getSmoothedRssi() {
+        return smoothedRssi;
+    }
+
+    /** 추정 거리 (m), 모르면 NaN */
+    public double getDistance() {
+        return distance;
+    }
+
+    /** {@link ProximityEngine#ZONE_IMMEDIATE} 등 */
+    public int getZone() {
+        return zone;
+    }
+
+    public long getFirstSeen() {
+        return firstSeen;
+    }
+
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    public int getAdvCount() {
+        return advCount;
+    }
+
+    public int getRspCount() {
+        return rspCount;
+    }
+
+    public int getAdvLength() {
+        return adv.length();
+    }
+
+    public int getRspLength() {
+        return rsp.length();
+    }
+
+    /** ADV 페이로드 복사본 */
+    public byte[] copyAdv() {
+        return adv.bytes().clone();
+    }
+
+    /** RSP 페이로드 복사본 */
+    public byte[] copyRsp() {
+        return rsp.bytes().clone();
+    }
+
+    /** ADV 페이로드와 해석 결과 (공유 객체) */
+    public DecodedPayload getAdv() {
+        return adv;
+    }
+
+    /** RSP 페이로드와 해석 결과 (공유 객체) */
+    public DecodedPayload getRsp() {
+        return rsp;
+    }
+
+    /** ADV 페이로드를 읽는 새 뷰 (복사 없음) */
+    public AdvertisementView advertisement() {
+        return adv.view();
+    }
+
+    /** RSP 페이로드를 읽는 새 뷰 (복사 없음) */
+    public AdvertisementView scanResponse() {
+        return rsp.view();
+    }
+
+    /** ADV 에서 해석한 해당 type 의 비콘 프레임, 없으면 RSP 에서 찾는다. 둘 다 없으면 null. */
+    public BeaconFrame getFrame(int type) {
+        BeaconFrame f = adv.frame(type);
+        return f != null ? f : rsp.frame(type);
+    }
+
+    /** 같은 ADV/RSP 를 공유하면 true (페이로드 변경 여부 확인용) */
+    public boolean samePayloads(DeviceSnapshot other) {
+        return other != null && adv == other.adv && rsp == other.rsp;
+    }
+
+    /**
+     * 기존 ScanResultListener 와 같은 JSON 형식 (MAC, ADV_org/ADV, RSP_org/RSP, RSSI, Timestamp).
+     * 부를 때마다 새 객체를 만들며, ADV/RSP 값도 {@link DecodedPayload#jsonCopy()} 라 받는 쪽에서 고쳐도 된다.
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject device = new JSONObject();
+        device.put("MAC", getMacString());
+        if (adv.length() > 0) {
+            device.put("ADV_org", adv.hex());
+            device.put("ADV", adv.jsonCopy());
+        }
+        if (rsp.length() > 0) {
+            device.put("RSP_org", rsp.hex());
+            device.put("RSP", rsp.jsonCopy());
+        }
+        device.put("RSSI", rssi);
+        if (!Double.isNaN(smoothedRssi)) {
+            device.put("RSSI_smoothed", Math.round(smoothedRssi * 10) / 10.0);
+            device.put("Distance", Math.round(distance * 100) / 100.0);
+            device.put("Zone", ProximityEngine.zoneName(zone));
+        }
+        device.put("Timestamp", lastSeen);
+        return device;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceSnapshot{" + getMacString() + ", rssi=" + rssi
+                + (Double.isNaN(smoothedRssi) ? "" : ", zone=" + ProximityEngine.zoneName(zone))
+                + ", adv=" + adv.hex()
+                + ", rsp=" + rsp.hex() + "}";
+    }
+}
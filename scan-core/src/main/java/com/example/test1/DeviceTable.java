@@ -0,0 +1,429 @@
+package com.example.test1;
+
+/**
+ * 스캔 중인 기기 상태를 보관하는 고정 용량 테이블.
+ *
+ * <p>키는 패킹된 48비트 MAC(long)이고, 해시 슬롯은 open addressing(linear probing)으로 관리한다.
+ * 기기별 상태는 entry 번호로 접근하는 primitive 배열에 저장되므로 갱신 시 객체 생성/박싱이 없다.
+ * entry 번호는 기기가 테이블에 있는 동안 바뀌지 않는다.
+ *
+ * <ul>
+ *     <li>TTL: 마지막 수신 후 ttlMs 가 지난 기기는 {@link #evictExpired(long)} 에서 제거된다.</li>
+ *     <li>용량: 가득 찬 상태에서 새 기기가 들어오면 만료 기기를 먼저 정리하고,
+ *     그래도 부족하면 가장 오래전에 수신된 기기를 제거한다.</li>
+ * </ul>
+ *
+ * <p>스레드 안전하지 않다. 수신(파싱) 스레드 하나에서만 갱신/조회해야 한다.
+ */
+public final class DeviceTable {
+    public static final int NO_ENTRY = -1;
+
+    // update() 반환값 (변경 내용 비트마스크)
+    public static final int CHANGE_NEW = 1;
+    public static final int CHANGE_ADV = 1 << 1;
+    public static final int CHANGE_RSP = 1 << 2;
+    public static final int CHANGE_RSSI = 1 << 3;
+    /** 근접 구역 변경. 테이블은 설정하지 않고 {@link DeltaTracker} 가 {@link ProximityEngine} 로 판정한다. */
+    public static final int CHANGE_ZONE = 1 << 4;
+
+    // 제거 사유
+    public static final int EVICT_EXPIRED = 1;
+    public static final int EVICT_CAPACITY = 2;
+    public static final int EVICT_REMOVED = 3;
+
+    public interface EvictionListener {
+        /** entry 가 제거되기 직전에 호출된다. 콜백 안에서는 entry 의 값을 아직 읽을 수 있다. */
+        void onEvict(DeviceTable table, int entry, int reason);
+    }
+
+    private static final int PAYLOAD = ScanLineParser.MAX_PAYLOAD_BYTES;
+
+    private final int capacity;
+    private long ttlMs;
+    private EvictionListener evictionListener;
+
+    // 해시 슬롯 -> entry 번호 (-1 = 빈 슬롯)
+    private final int[] slots;
+    private final int slotMask;
+
+    // entry 별 상태
+    private final boolean[] used;
+    private final long[] macs;
+    private final int[] rssi;
+    private final long[] firstSeen;
+    private final long[] lastSeen;
+    private final int[] advCount;
+    private final int[] rspCount;
+    private final byte[] adv;
+    private final int[] advLength;
+    private final byte[] rsp;
+    private final int[] rspLength;
+
+    private final int[] freeEntries;
+    private int freeCount;
+    private int size;
+
+    // 마지막 clearDirty() 이후 갱신된 entry 목록
+    private final int[] dirty;
+    private final int[] dirtyPos;
+    private final int[] dirtyChanges;
+    private int dirtyCount;
+
+    private int lastEntry = NO_ENTRY;
+    private long expiredEvictions;
+    private long capacityEvictions;
+
+    public DeviceTable(int capacity, long ttlMs) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+
+        int slotCount = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        slots = new int[slotCount];
+        slotMask = slotCount - 1;
+        java.util.Arrays.fill(slots, NO_ENTRY);
+
+        used = new boolean[capacity];
+        macs = new long[capacity];
+        rssi = new int[capacity];
+        firstSeen = new long[capacity];
+        lastSeen = new long[capacity];
+        advCount = new int[capacity];
+        rspCount = new int[capacity];
+        adv = new byte[capacity * PAYLOAD];
+        advLength = new int[capacity];
+        rsp = new byte[capacity * PAYLOAD];
+        rspLength = new int[capacity];
+
+        freeEntries = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            freeEntries[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+
+        dirty = new int[capacity];
+        dirtyPos = new int[capacity];
+        java.util.Arrays.fill(dirtyPos, -1);
+        dirtyChanges = new int[capacity];
+    }
+
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
+    public long getTtlMs() {
+        return ttlMs;
+    }
+
+    /** TTL 변경. 0 이하이면 만료 제거를 하지 않는다. */
+    public void setTtlMs(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long expiredEvictions() {
+        return expiredEvictions;
+    }
+
+    public long capacityEvictions() {
+        return capacityEvictions;
+    }
+
+    /**
+     * 수신한 한 줄(ADV 또는 RSP)을 반영한다.
+     *
+     * @param type {@link ScanLineParser#TYPE_ADV} 또는 {@link ScanLineParser#TYPE_RSP}
+     * @return 변경 내용 비트마스크 (CHANGE_*). 갱신된 entry 는 {@link #lastEntry()}
+     */
+    public int update(long mac, int rssiValue, int type, byte[] payload, int off, int len, long now) {
+        int changes = 0;
+        int e = find(mac);
+        if (e == NO_ENTRY) {
+            e = insert(mac, now);
+            changes = CHANGE_NEW;
+        } else if (rssi[e] != rssiValue) {
+            changes = CHANGE_RSSI;
+        }
+
+        rssi[e] = rssiValue;
+        lastSeen[e] = now;
+        if (len > PAYLOAD) {
+            len = PAYLOAD;
+        }
+        if (type == ScanLineParser.TYPE_RSP) {
+            rspCount[e]++;
+            if (storePayload(rsp, rspLength, e, payload, off, len)) {
+                changes |= CHANGE_RSP;
+            }
+        } else {
+            advCount[e]++;
+            if (storePayload(adv, advLength, e, payload, off, len)) {
+                changes |= CHANGE_ADV;
+            }
+        }
+        markDirty(e);
+        dirtyChanges[e] |= changes;
+        lastEntry = e;
+        return changes;
+    }
+
+    /** 마지막 {@link #update} 로 갱신된 entry */
+    public int lastEntry() {
+        return lastEntry;
+    }
+
+    /** MAC 에 해당하는 entry, 없으면 {@link #NO_ENTRY} */
+    public int find(long mac) {
+        int slot = hash(mac) & slotMask;
+        while (true) {
+            int e = slots[slot];
+            if (e == NO_ENTRY) {
+                return NO_ENTRY;
+            }
+            if (macs[e] == mac) {
+                return e;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    /**
+     * 마지막 수신 후 TTL 이 지난 기기를 제거한다.
+     *
+     * @return 제거된 기기 수
+     */
+    public int evictExpired(long now) {
+        if (ttlMs <= 0 || size == 0) {
+            return 0;
+        }
+        int removed = 0;
+        long deadline = now - ttlMs;
+        for (int e = 0; e < capacity; e++) {
+            if (used[e] && lastSeen[e] <= deadline) {
+                remove(e, EVICT_EXPIRED);
+                expiredEvictions++;
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /** entry 를 즉시 제거한다. */
+    public void remove(int entry) {
+        if (used[entry]) {
+            remove(entry, EVICT_REMOVED);
+        }
+    }
+
+    public void clear() {
+        for (int e = 0; e < capacity; e++) {
+            if (used[e]) {
+                remove(e, EVICT_REMOVED);
+            }
+        }
+    }
+
+    /**
+     * from 이상인 첫 번째 사용 중 entry, 없으면 {@link #NO_ENTRY}.
+     * {@code for (int e = t.nextEntry(0); e >= 0; e = t.nextEntry(e + 1))} 형태로 순회한다.
+     */
+    public int nextEntry(int from) {
+        for (int e = from; e < capacity; e++) {
+            if (used[e]) {
+                return e;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    public boolean isUsed(int entry) {
+        return used[entry];
+    }
+
+    // ---- dirty 목록: 마지막 clearDirty() 이후 갱신된 기기 ----
+
+    public int dirtyCount() {
+        return dirtyCount;
+    }
+
+    public int dirtyEntry(int i) {
+        return dirty[i];
+    }
+
+    /** 마지막 clearDirty() 이후 entry 에 누적된 변경 내용 (CHANGE_*) */
+    public int dirtyChanges(int entry) {
+        return dirtyChanges[entry];
+    }
+
+    public void clearDirty() {
+        for (int i = 0; i < dirtyCount; i++) {
+            dirtyPos[dirty[i]] = -1;
+            dirtyChanges[dirty[i]] = 0;
+        }
+        dirtyCount = 0;
+    }
+
+    // ---- entry 값 조회 ----
+
+    public long mac(int entry) {
+        return macs[entry];
+    }
+
+    public int rssi(int entry) {
+        return rssi[entry];
+    }
+
+    public long firstSeen(int entry) {
+        return firstSeen[entry];
+    }
+
+    public long lastSeen(int entry) {
+        return lastSeen[entry];
+    }
+
+    public int advCount(int entry) {
+        return advCount[entry];
+    }
+
+    public int rspCount(int entry) {
+        return rspCount[entry];
+    }
+
+    /** ADV 페이로드가 저장된 공유 배열. entry 의 데이터는 {@link #payloadOffset(int)} 부터 시작한다. */
+    public byte[] advArray() {
+        return adv;
+    }
+
+    public byte[] rspArray() {
+        return rsp;
+    }
+
+    public int payloadOffset(int entry) {
+        return entry * PAYLOAD;
+    }
+
+    /** ADV 를 아직 받지 못했으면 0 */
+    public int advLength(int entry) {
+        return advLength[entry];
+    }
+
+    /** RSP 를 아직 받지 못했으면 0 */
+    public int rspLength(int entry) {
+        return rspLength[entry];
+    }
+
+    private int insert(long mac, long now) {
+        if (freeCount == 0) {
+            evictExpired(now);
+        }
+        if (freeCount == 0) {
+            evictOldest();
+        }
+        int e = freeEntries[--freeCount];
+        used[e] = true;
+        macs[e] = mac;
+        firstSeen[e] = now;
+        lastSeen[e] = now;
+        advCount[e] = 0;
+        rspCount[e] = 0;
+        advLength[e] = 0;
+        rspLength[e] = 0;
+
+        int slot = hash(mac) & slotMask;
+        while (slots[slot] != NO_ENTRY) {
+            slot = (slot + 1) & slotMask;
+        }
+        slots[slot] = e;
+        size++;
+        return e;
+    }
+
+    private void evictOldest() {
+        int oldest = NO_ENTRY;
+        for (int e = 0; e < capacity; e++) {
+            if (used[e] && (oldest == NO_ENTRY || lastSeen[e] < lastSeen[oldest])) {
+                oldest = e;
+            }
+        }
+        remove(oldest, EVICT_CAPACITY);
+        capacityEvictions++;
+    }
+
+    private void remove(int e, int reason) {
+        if (evictionListener != null) {
+            evictionListener.onEvict(this, e, reason);
+        }
+
+        // backward shift deletion: 뒤따르는 클러스터를 당겨서 탐색 경로를 유지한다
+        int slot = hash(macs[e]) & slotMask;
+        while (slots[slot] != e) {
+            slot = (slot + 1) & slotMask;
+        }
+        int hole = slot;
+        int next = (hole + 1) & slotMask;
+        while (slots[next] != NO_ENTRY) {
+            int home = hash(macs[slots[next]]) & slotMask;
+            // home 이 (hole, next] 구간 밖이면 hole 로 옮길 수 있다
+            if (((next - home) & slotMask) >= ((next - hole) & slotMask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+            next = (next + 1) & slotMask;
+        }
+        slots[hole] = NO_ENTRY;
+
+        int pos = dirtyPos[e];
+        if (pos >= 0) {
+            int moved = dirty[--dirtyCount];
+            dirty[pos] = moved;
+            dirtyPos[moved] = pos;
+            dirtyPos[e] = -1;
+            dirtyChanges[e] = 0;
+        }
+        used[e] = false;
+        freeEntries[freeCount++] = e;
+        size--;
+        if (lastEntry == e) {
+            lastEntry = NO_ENTRY;
+        }
+    }
+
+    private void markDirty(int e) {
+        if (dirtyPos[e] < 0) {
+            dirtyPos[e] = dirtyCount;
+            dirty[dirtyCount++] = e;
+        }
+    }
+
+    private static boolean storePayload(byte[] store, int[] lengths, int e, byte[] src, int off, int len) {
+        int base = e * PAYLOAD;
+        boolean changed = lengths[e] != len;
+        if (!changed) {
+            for (int i = 0; i < len; i++) {
+                if (store[base + i] != src[off + i]) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        if (changed) {
+            System.arraycopy(src, off, store, base, len);
+            lengths[e] = len;
+        }
+        return changed;
+    }
+
+    private static int hash(long mac) {
+        long h = mac * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
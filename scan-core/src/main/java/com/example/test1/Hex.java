@@ -0,0 +1,96 @@
+package com.example.test1;
+
+/**
+ * 테이블 기반 HEX 변환 유틸리티.
+ * Character.digit / String.format 을 쓰지 않으므로 바이트 단위 파싱 경로에서 객체를 만들지 않는다.
+ */
+public final class Hex {
+    private static final char[] UPPER = "0123456789ABCDEF".toCharArray();
+
+    // ASCII 코드 -> nibble 값 (HEX 문자가 아니면 -1)
+    private static final byte[] NIBBLE = new byte[128];
+
+    static {
+        for (int i = 0; i < NIBBLE.length; i++) {
+            NIBBLE[i] = -1;
+        }
+        for (int i = 0; i < 10; i++) {
+            NIBBLE['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            NIBBLE['A' + i] = (byte) (10 + i);
+            NIBBLE['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private Hex() {
+    }
+
+    /**
+     * ASCII 바이트 하나를 nibble 값으로 변환한다. HEX 문자가 아니면 -1.
+     */
+    public static int nibble(byte c) {
+        return c >= 0 ? NIBBLE[c] : -1;
+    }
+
+    /**
+     * src[srcOff, srcOff + hexLen) 의 HEX 문자열을 dst[dstOff] 부터 디코딩한다.
+     * hexLen 은 짝수여야 하며, HEX 가 아닌 문자가 있으면 -1 을 반환한다.
+     *
+     * @return 디코딩된 바이트 수 또는 -1
+     */
+    public static int decode(byte[] src, int srcOff, int hexLen, byte[] dst, int dstOff) {
+        if ((hexLen & 1) != 0) {
+            return -1;
+        }
+        int n = hexLen >> 1;
+        for (int i = 0; i < n; i++) {
+            int hi = nibble(src[srcOff + 2 * i]);
+            int lo = nibble(src[srcOff + 2 * i + 1]);
+            if ((hi | lo) < 0) {
+                return -1;
+            }
+            dst[dstOff + i] = (byte) ((hi << 4) | lo);
+        }
+        return n;
+    }
+
+    /**
+     * bytes[off, off + len) 를 대문자 HEX 문자열로 변환한다. (예: "0201061A")
+     */
+    public static String encode(byte[] bytes, int off, int len) {
+        char[] out = new char[len * 2];
+        for (int i = 0; i < len; i++) {
+            int b = bytes[off + i] & 0xFF;
+            out[2 * i] = UPPER[b >>> 4];
+            out[2 * i + 1] = UPPER[b & 0x0F];
+        }
+        return new String(out);
+    }
+
+    /**
+     * bytes[off, off + len) 를 대문자 HEX 로 sb 뒤에 붙인다. 중간 문자열을 만들지 않는다.
+     */
+    public static StringBuilder append(StringBuilder sb, byte[] bytes, int off, int len) {
+        sb.ensureCapacity(sb.length() + len * 2);
+        for (int i = 0; i < len; i++) {
+            int b = bytes[off + i] & 0xFF;
+            sb.append(UPPER[b >>> 4]).append(UPPER[b & 0x0F]);
+        }
+        return sb;
+    }
+
+    /**
+     * 바이트마다 공백을 붙인 HEX 문자열. (예: "02 01 06 ") 기존 JSON 출력 형식과 같다.
+     */
+    public static String encodeSpaced(byte[] bytes, int off, int len) {
+        char[] out = new char[len * 3];
+        for (int i = 0; i < len; i++) {
+            int b = bytes[off + i] & 0xFF;
+            out[3 * i] = UPPER[b >>> 4];
+            out[3 * i + 1] = UPPER[b & 0x0F];
+            out[3 * i + 2] = ' ';
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.test1;
+
+import java.util.Arrays;
+
+/**
+ * 할당 없이 값을 기록하는 로그-선형 히스토그램 (HdrHistogram 과 같은 버킷 구조).
+ *
+ * <p>2의 거듭제곱 구간마다 {@value #SUB_BUCKETS} 개의 하위 버킷으로 나누므로
+ * 0..63 은 정확히, 그 이상은 상대 오차 약 3% 이내로 기록한다. 범위는 0..Long.MAX_VALUE 전체.
+ *
+ * <p>{@link #record} 는 한 스레드만 호출한다. {@link #snapshot()} 은 다른 스레드에서 불러도 되지만,
+ * 기록 중인 값 몇 개가 빠지거나 count 와 버킷 합이 잠깐 어긋날 수 있다.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private volatile long count;
+    private volatile long sum;
+    private volatile long min = Long.MAX_VALUE;
+    private volatile long max;
+
+    /** 음수는 0 으로 기록한다 */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[indexOf(value)]++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        sum += value;
+        count++;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /** 기록 스레드에서만 호출한다 */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /** 다른 히스토그램의 사본을 더한다 (병합). 기록 스레드에서만 호출한다. */
+    public void add(Snapshot other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        if (other.min < min) {
+            min = other.min;
+        }
+        if (other.max > max) {
+            max = other.max;
+        }
+        sum += other.sum;
+        count += other.count;
+    }
+
+    public Snapshot snapshot() {
+        long n = count;
+        return new Snapshot(counts.clone(), n, sum, n == 0 ? 0 : min, max);
+    }
+
+    static int indexOf(long value) {
+        int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (msb <= SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = msb - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /** index 버킷에 들어가는 가장 큰 값 */
+    static long highestValueAt(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long base = SUB_BUCKETS + index % SUB_BUCKETS;
+        long next = (base + 1) << shift;
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+
+    /** 불변 사본 */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long min, long max) {
+            if (counts.length != BUCKET_COUNT) {
+                throw new IllegalArgumentException("bucket count " + counts.length);
+            }
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long min() {
+            return min;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        long sum() {
+            return sum;
+        }
+
+        /** 버킷 i 의 개수 (직렬화용) */
+        long bucket(int i) {
+            return counts[i];
+        }
+
+        static int bucketCount() {
+            return BUCKET_COUNT;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile 0..100
+         * @return 기록된 값의 percentile 번째 값 (버킷 상한, max 를 넘지 않음). 비어 있으면 0
+         */
+        public long percentile(double percentile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "n=" + count + " min=" + min + " p50=" + percentile(50) + " p99=" + percentile(99)
+                    + " p99.9=" + percentile(99.9) + " max=" + max;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.test1;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * logcat 캡처(app/log/*.txt)의 "Lib_ComRecvAT recvData: &lt;HEX&gt;" 줄을 원본 수신 청크로 복원한다.
+ */
+public final class LogcatCapture {
+    private static final String MARKER = "Lib_ComRecvAT recvData: ";
+
+    private LogcatCapture() {
+    }
+
+    public static List<byte[]> readChunks(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return readChunks(in);
+        }
+    }
+
+    /**
+     * @return 비어 있지 않은 청크 목록 (logcat 에 기록된 순서)
+     */
+    public static List<byte[]> readChunks(InputStream in) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = r.readLine()) != null) {
+            int p = line.indexOf(MARKER);
+            if (p < 0) {
+                continue;
+            }
+            byte[] hex = line.substring(p + MARKER.length()).trim().getBytes(StandardCharsets.US_ASCII);
+            if (hex.length < 2) {
+                continue;
+            }
+            byte[] chunk = new byte[hex.length / 2];
+            if (Hex.decode(hex, 0, chunk.length * 2, chunk, 0) < 0) {
+                throw new IOException("bad hex dump: " + line);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
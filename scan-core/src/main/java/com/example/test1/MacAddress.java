@@ -0,0 +1,77 @@
+package com.example.test1;
+
+/**
+ * 48비트 MAC 주소를 long 하나로 다루기 위한 유틸리티.
+ * "AA:BB:CC:DD:EE:FF" 는 0xAABBCCDDEEFFL 로 패킹된다.
+ */
+public final class MacAddress {
+    private static final char[] UPPER = "0123456789ABCDEF".toCharArray();
+
+    /** 파싱 실패 시 반환값 (유효한 MAC 은 항상 0 이상) */
+    public static final long INVALID = -1L;
+
+    private MacAddress() {
+    }
+
+    /**
+     * buf[off, off + 17) 의 "AA:BB:CC:DD:EE:FF" 를 패킹된 long 으로 변환한다.
+     *
+     * @return 패킹된 MAC 또는 {@link #INVALID}
+     */
+    public static long parse(byte[] buf, int off, int len) {
+        if (len != 17) {
+            return INVALID;
+        }
+        long mac = 0;
+        for (int i = 0; i < 6; i++) {
+            int p = off + i * 3;
+            int hi = Hex.nibble(buf[p]);
+            int lo = Hex.nibble(buf[p + 1]);
+            if ((hi | lo) < 0 || (i < 5 && buf[p + 2] != ':')) {
+                return INVALID;
+            }
+            mac = (mac << 8) | (hi << 4) | lo;
+        }
+        return mac;
+    }
+
+    /**
+     * "AA:BB:CC:DD:EE:FF" 문자열을 패킹된 long 으로 변환한다.
+     *
+     * @return 패킹된 MAC 또는 {@link #INVALID}
+     */
+    public static long parse(String mac) {
+        if (mac == null) {
+            return INVALID;
+        }
+        String s = mac.trim();
+        if (s.length() != 17) {
+            return INVALID;
+        }
+        byte[] ascii = new byte[17];
+        for (int i = 0; i < 17; i++) {
+            char c = s.charAt(i);
+            if (c > 0x7F) {
+                return INVALID;
+            }
+            ascii[i] = (byte) c;
+        }
+        return parse(ascii, 0, 17);
+    }
+
+    /**
+     * 패킹된 MAC 을 "AA:BB:CC:DD:EE:FF" 형식으로 변환한다.
+     */
+    public static String toString(long mac) {
+        char[] out = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int b = (int) (mac >>> (40 - i * 8)) & 0xFF;
+            out[i * 3] = UPPER[b >>> 4];
+            out[i * 3 + 1] = UPPER[b & 0x0F];
+            if (i < 5) {
+                out[i * 3 + 2] = ':';
+            }
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.test1;
+
+import java.util.List;
+
+/**
+ * 스캔 목격을 시간 구간별 {@link OccupancySketch} 로 요약한다. 원본 목록을 밖으로 보내지 않고도
+ * 분/시간 단위 방문 기기 수, 체류 시간 분포, 자주 보인/신호가 센 기기를 구할 수 있다.
+ *
+ * <p>고정 길이({@link Config#windowMs}) 구간을 링으로 {@link Config#windows} 개 유지한다.
+ * {@link #current()} 는 지금 구간(tumbling), {@link #last(int)} 은 최근 n 개 구간을 합친 결과(sliding)다.
+ * 링이 돌면 가장 오래된 구간을 비워 다시 쓰므로 메모리는 처음 만든 크기 그대로다
+ * (기본 설정에서 구간당 약 28 KB, 60 구간 약 1.7 MB).
+ *
+ * <p>목격은 {@link #onSighting} 으로, 체류 시간은 {@link #onScanEvents} 의 LOST 로 받는다.
+ * 이미 링에서 빠진 구간의 늦은 목격은 버리고 센다. 모든 메서드는 스레드 안전하다.
+ */
+public final class OccupancyAnalytics implements ScanEventListener {
+
+    public static final class Config {
+        long windowMs = 60_000;
+        int windows = 60;
+        int precision = 12;
+        int cmsWidth = 512;
+        int cmsDepth = 4;
+        int topK = 10;
+
+        /** 구간 길이 */
+        public Config windowMs(long ms) {
+            if (ms <= 0) {
+                throw new IllegalArgumentException("windowMs must be > 0");
+            }
+            windowMs = ms;
+            return this;
+        }
+
+        /** 유지할 구간 수 ({@link #last(int)} 의 최대값) */
+        public Config windows(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("windows must be > 0");
+            }
+            windows = n;
+            return this;
+        }
+
+        /** HyperLogLog precision (4..16, 기본 12 = 4 KB, 오차 약 1.6%) */
+        public Config precision(int p) {
+            if (p < HyperLogLog.MIN_PRECISION || p > HyperLogLog.MAX_PRECISION) {
+                throw new IllegalArgumentException("precision must be " + HyperLogLog.MIN_PRECISION + ".."
+                        + HyperLogLog.MAX_PRECISION);
+            }
+            precision = p;
+            return this;
+        }
+
+        /** count-min 크기 (width 는 2의 거듭제곱) */
+        public Config countMin(int width, int depth) {
+            if (width <= 0 || Integer.bitCount(width) != 1 || depth <= 0 || depth > 16) {
+                throw new IllegalArgumentException("width must be a power of two, depth 1..16");
+            }
+            cmsWidth = width;
+            cmsDepth = depth;
+            return this;
+        }
+
+        /** 자주 보인/신호가 센 기기를 몇 개씩 기억할지 */
+        public Config topK(int k) {
+            if (k <= 0 || k > 0xFFFF) {
+                throw new IllegalArgumentException("topK must be 1..65535");
+            }
+            topK = k;
+            return this;
+        }
+
+        OccupancySketch newSketch() {
+            return new OccupancySketch(precision, cmsWidth, cmsDepth, topK);
+        }
+    }
+
+    private final Config config;
+    // 구간 번호 w (= 시각 / windowMs) 의 요약은 ring[w % windows]
+    private final OccupancySketch[] ring;
+    private long currentWindow = Long.MIN_VALUE;
+
+    private volatile long sightings;
+    private volatile long lateSightings;
+    private volatile long departures;
+
+    public OccupancyAnalytics(Config config) {
+        this.config = config;
+        ring = new OccupancySketch[config.windows];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = config.newSketch();
+        }
+    }
+
+    /** 목격 하나 (스캔 스레드에서 줄마다 호출) */
+    public synchronized void onSighting(long mac, int rssi, long timeMs) {
+        OccupancySketch s = windowFor(timeMs);
+        if (s == null) {
+            lateSightings++;
+            return;
+        }
+        s.addSighting(mac, rssi, timeMs);
+        sightings++;
+    }
+
+    /** LOST 이벤트의 firstSeen..lastSeen 을 떠난 구간의 체류 시간으로 기록한다 */
+    @Override
+    public synchronized void onScanEvents(List<ScanEvent> events) {
+        for (ScanEvent e : events) {
+            if (e.getType() != ScanEvent.Type.LOST) {
+                continue;
+            }
+            DeviceSnapshot d = e.getDevice();
+            OccupancySketch s = windowFor(d.getLastSeen());
+            if (s == null) {
+                s = ring[index(currentWindow)];
+            }
+            s.addDwell(d.getLastSeen() - d.getFirstSeen());
+            departures++;
+        }
+    }
+
+    /** 지금 구간의 사본. 아직 목격이 없으면 빈 요약. */
+    public synchronized OccupancySketch current() {
+        return currentWindow == Long.MIN_VALUE ? config.newSketch() : ring[index(currentWindow)].copy();
+    }
+
+    /** 지금 구간을 포함한 최근 n 개 구간을 합친 사본 (n 은 {@link Config#windows} 이하로 잘린다) */
+    public synchronized OccupancySketch last(int n) {
+        OccupancySketch merged = config.newSketch();
+        if (currentWindow == Long.MIN_VALUE) {
+            return merged;
+        }
+        n = Math.min(n, ring.length);
+        for (long w = currentWindow - n + 1; w <= currentWindow; w++) {
+            merged.merge(ring[index(w)]);
+        }
+        return merged;
+    }
+
+    public long sightings() {
+        return sightings;
+    }
+
+    /** 링에서 이미 빠진 구간이라 버린 목격 수 */
+    public long lateSightings() {
+        return lateSightings;
+    }
+
+    /** 체류 시간을 기록한 LOST 수 */
+    public long departures() {
+        return departures;
+    }
+
+    public long windowMs() {
+        return config.windowMs;
+    }
+
+    /** timeMs 가 속한 구간. 새 구간이면 그 사이 구간을 비우며 링을 돌린다. 이미 빠진 구간이면 null. */
+    private OccupancySketch windowFor(long timeMs) {
+        long w = Math.floorDiv(timeMs, config.windowMs);
+        if (currentWindow == Long.MIN_VALUE || w > currentWindow) {
+            long from = currentWindow == Long.MIN_VALUE ? w - ring.length + 1
+                    : Math.max(currentWindow + 1, w - ring.length + 1);
+            for (long x = from; x <= w; x++) {
+                ring[index(x)].clear(x * config.windowMs, (x + 1) * config.windowMs);
+            }
+            currentWindow = w;
+        } else if (w <= currentWindow - ring.length) {
+            return null;
+        }
+        return ring[index(w)];
+    }
+
+    private int index(long window) {
+        return (int) Math.floorMod(window, (long) ring.length);
+    }
+}
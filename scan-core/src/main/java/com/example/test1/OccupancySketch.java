@@ -0,0 +1,258 @@
+package com.example.test1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 한 시간 구간의 목격 요약. 크기가 고정된 sketch 만 가지므로 기기 수와 상관없이 메모리가 일정하다.
+ * <ul>
+ *     <li>서로 다른 기기 수: {@link HyperLogLog}</li>
+ *     <li>자주 보인 기기: {@link CountMinSketch} 로 센 목격 수 + {@link TopK}</li>
+ *     <li>신호가 센 기기: 기기별 최대 RSSI 의 {@link TopK}</li>
+ *     <li>체류 시간: 떠난 기기(LOST)의 firstSeen..lastSeen 을 담은 {@link Histogram}</li>
+ * </ul>
+ * 같은 크기 설정끼리는 {@link #merge} 로 합칠 수 있다. 다른 단말에서 만든 요약도 {@link #toBytes} /
+ * {@link #fromBytes} 로 옮겨 합칠 수 있다 (해시가 고정 상수라 단말마다 같은 값을 낸다).
+ *
+ * <p>스레드 안전하지 않다. {@link OccupancyAnalytics} 가 돌려주는 요약은 사본이라 마음대로 써도 된다.
+ */
+public final class OccupancySketch {
+    static final int MAGIC = 0x4F434331; // "OCC1"
+
+    private long startMs = Long.MAX_VALUE;
+    private long endMs = Long.MIN_VALUE;
+    private long sightings;
+    private final HyperLogLog devices;
+    private final CountMinSketch frequency;
+    private final TopK frequent;
+    private final TopK strongest;
+    private final Histogram dwell = new Histogram();
+
+    /**
+     * @param precision HyperLogLog precision (4..16)
+     * @param cmsWidth  count-min 행당 카운터 수 (2의 거듭제곱)
+     * @param cmsDepth  count-min 행 수
+     * @param topK      자주 보인/신호가 센 기기를 몇 개씩 기억할지
+     */
+    public OccupancySketch(int precision, int cmsWidth, int cmsDepth, int topK) {
+        this(new HyperLogLog(precision), new CountMinSketch(cmsWidth, cmsDepth), new TopK(topK), new TopK(topK));
+    }
+
+    private OccupancySketch(HyperLogLog devices, CountMinSketch frequency, TopK frequent, TopK strongest) {
+        this.devices = devices;
+        this.frequency = frequency;
+        this.frequent = frequent;
+        this.strongest = strongest;
+    }
+
+    /** 같은 크기의 빈 요약 */
+    public OccupancySketch emptyCopy() {
+        return new OccupancySketch(devices.precision(), frequency.width(), frequency.depth(), frequent.capacity());
+    }
+
+    public OccupancySketch copy() {
+        OccupancySketch c = emptyCopy();
+        c.merge(this);
+        return c;
+    }
+
+    /** 목격 하나 (ADV/RSP 한 줄) */
+    public void addSighting(long mac, int rssi, long timeMs) {
+        sightings++;
+        devices.addMac(mac);
+        frequency.add(mac, 1);
+        frequent.offer(mac, frequency.estimate(mac));
+        strongest.offer(mac, rssi);
+        cover(timeMs, timeMs + 1);
+    }
+
+    /** 떠난 기기의 체류 시간 */
+    public void addDwell(long dwellMs) {
+        dwell.record(dwellMs);
+    }
+
+    /** 요약이 다루는 구간을 [fromMs, toMs) 까지 넓힌다 */
+    void cover(long fromMs, long toMs) {
+        if (fromMs < startMs) {
+            startMs = fromMs;
+        }
+        if (toMs > endMs) {
+            endMs = toMs;
+        }
+    }
+
+    void clear(long fromMs, long toMs) {
+        startMs = fromMs;
+        endMs = toMs;
+        sightings = 0;
+        devices.clear();
+        frequency.clear();
+        frequent.clear();
+        strongest.clear();
+        dwell.reset();
+    }
+
+    /** 구간 시작 (epoch ms), 비어 있으면 Long.MAX_VALUE */
+    public long startMs() {
+        return startMs;
+    }
+
+    /** 구간 끝 (제외), 비어 있으면 Long.MIN_VALUE */
+    public long endMs() {
+        return endMs;
+    }
+
+    public long sightings() {
+        return sightings;
+    }
+
+    /** 추정한 서로 다른 기기 수 */
+    public long uniqueDevices() {
+        return devices.estimate();
+    }
+
+    /** mac 의 추정 목격 수 (실제 값 이상) */
+    public long estimateSightings(long mac) {
+        return frequency.estimate(mac);
+    }
+
+    /** 목격 수가 많은 기기 (추정 목격 수 순) */
+    public List<TopK.Entry> mostFrequent() {
+        return frequent.entries();
+    }
+
+    /** 최대 RSSI 가 높은 기기 (점수 = dBm) */
+    public List<TopK.Entry> strongest() {
+        return strongest.entries();
+    }
+
+    /** 떠난 기기의 체류 시간 분포 (ms) */
+    public Histogram.Snapshot dwell() {
+        return dwell.snapshot();
+    }
+
+    /**
+     * other 를 합친다. 자주 보인 기기는 합친 count-min 으로 양쪽 후보의 점수를 다시 매긴다.
+     *
+     * @throws IllegalArgumentException sketch 크기가 다르면. 이때 이 요약은 바뀌지 않는다.
+     */
+    public void merge(OccupancySketch other) {
+        // 구성 요소 하나라도 크기가 다르면 아무것도 바꾸기 전에 거절한다
+        if (other.devices.precision() != devices.precision()) {
+            throw new IllegalArgumentException("precision " + other.devices.precision() + " != " + devices.precision());
+        }
+        if (other.frequency.width() != frequency.width() || other.frequency.depth() != frequency.depth()) {
+            throw new IllegalArgumentException("sketch size " + other.frequency.width() + "x" + other.frequency.depth()
+                    + " != " + frequency.width() + "x" + frequency.depth());
+        }
+        if (other.frequent.capacity() != frequent.capacity()) {
+            throw new IllegalArgumentException("top-k " + other.frequent.capacity() + " != " + frequent.capacity());
+        }
+        if (other.strongest.capacity() != strongest.capacity()) {
+            throw new IllegalArgumentException("strongest top-k " + other.strongest.capacity()
+                    + " != " + strongest.capacity());
+        }
+        devices.merge(other.devices);
+        frequency.merge(other.frequency);
+        // offer 가 heap 순서를 바꾸므로 후보를 먼저 복사한다
+        long[] candidates = new long[frequent.size()];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = frequent.key(i);
+        }
+        for (long mac : candidates) {
+            frequent.offer(mac, frequency.estimate(mac));
+        }
+        for (int i = 0; i < other.frequent.size(); i++) {
+            long mac = other.frequent.key(i);
+            frequent.offer(mac, frequency.estimate(mac));
+        }
+        strongest.merge(other.strongest);
+        dwell.add(other.dwell.snapshot());
+        sightings += other.sightings;
+        if (other.startMs <= other.endMs) {
+            cover(other.startMs, other.endMs);
+        }
+    }
+
+    /** deflate 로 압축한 직렬화 형식 */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeInt(MAGIC);
+            out.writeLong(startMs);
+            out.writeLong(endMs);
+            out.writeLong(sightings);
+            devices.writeTo(out);
+            frequency.writeTo(out);
+            frequent.writeTo(out);
+            strongest.writeTo(out);
+            // 체류 히스토그램: 0 이 아닌 버킷만 (번호, 개수)
+            Histogram.Snapshot d = dwell.snapshot();
+            int nonZero = 0;
+            for (int i = 0; i < Histogram.Snapshot.bucketCount(); i++) {
+                if (d.bucket(i) != 0) {
+                    nonZero++;
+                }
+            }
+            out.writeLong(d.count());
+            out.writeLong(d.sum());
+            out.writeLong(d.min());
+            out.writeLong(d.max());
+            out.writeShort(nonZero);
+            for (int i = 0; i < Histogram.Snapshot.bucketCount(); i++) {
+                if (d.bucket(i) != 0) {
+                    out.writeShort(i);
+                    out.writeLong(d.bucket(i));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 메모리 스트림
+        }
+        return bytes.toByteArray();
+    }
+
+    public static OccupancySketch fromBytes(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not an occupancy sketch");
+            }
+            long start = in.readLong();
+            long end = in.readLong();
+            long sightings = in.readLong();
+            OccupancySketch s = new OccupancySketch(HyperLogLog.readFrom(in), CountMinSketch.readFrom(in),
+                    TopK.readFrom(in), TopK.readFrom(in));
+            if (s.frequent.capacity() != s.strongest.capacity()) {
+                throw new IOException("top-k size mismatch");
+            }
+            s.startMs = start;
+            s.endMs = end;
+            s.sightings = sightings;
+            long count = in.readLong();
+            long sum = in.readLong();
+            long min = in.readLong();
+            long max = in.readLong();
+            int nonZero = in.readUnsignedShort();
+            long[] counts = new long[Histogram.Snapshot.bucketCount()];
+            for (int i = 0; i < nonZero; i++) {
+                int bucket = in.readUnsignedShort();
+                if (bucket >= counts.length) {
+                    throw new IOException("bad dwell bucket " + bucket);
+                }
+                counts[bucket] = in.readLong();
+            }
+            s.dwell.add(new Histogram.Snapshot(counts, count, sum, min, max));
+            return s;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "sightings=" + sightings + " devices~" + uniqueDevices() + " dwell " + dwell.snapshot();
+    }
+}
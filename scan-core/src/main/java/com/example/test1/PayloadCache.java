@@ -0,0 +1,223 @@
+package com.example.test1;
+
+import java.util.Arrays;
+
+/**
+ * 같은 광고 페이로드를 하나의 {@link DecodedPayload} 로 모으는 고정 용량 캐시.
+ *
+ * <p>비콘은 같은 ADV/RSP 를 계속 반복하므로, 바뀌지 않은 패킷은 해시 한 번과 바이트 비교 한 번으로
+ * 이미 해석한 결과를 찾는다. 키는 페이로드 해시이고 충돌은 바이트 비교로 가린다.
+ * 해시 슬롯은 {@link DeviceTable} 과 같은 open addressing(linear probing) 이며,
+ * 가득 차면 가장 오래 쓰이지 않은 항목(LRU)을 버린다.
+ *
+ * <p>스레드 안전하지 않다. 스캔 스레드 하나에서만 사용한다. 돌려준 {@link DecodedPayload} 는 불변이므로
+ * 다른 스레드에 넘겨도 된다.
+ */
+public final class PayloadCache {
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final int[] slots;
+    private final int slotMask;
+
+    // 항목 별 상태
+    private final DecodedPayload[] values;
+    private final int[] hashes;
+    // LRU 목록 (head = 가장 최근)
+    private final int[] prev;
+    private final int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+
+    private final int[] freeEntries;
+    private int freeCount;
+    private int size;
+    // 새 항목 해석용
+    private final AdvertisementView view = new AdvertisementView();
+    private final CodecRegistry codecs;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PayloadCache(int capacity) {
+        this(capacity, CodecRegistry.BUILT_IN);
+    }
+
+    /**
+     * @param codecs {@link DecodedPayload#frames()} 를 해석할 레지스트리
+     */
+    public PayloadCache(int capacity, CodecRegistry codecs) {
+        this.codecs = codecs;
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        int slotCount = Integer.highestOneBit(Math.max(2, capacity * 2 - 1)) << 1;
+        slots = new int[slotCount];
+        slotMask = slotCount - 1;
+        Arrays.fill(slots, NONE);
+        values = new DecodedPayload[capacity];
+        hashes = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        freeEntries = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            freeEntries[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+    }
+
+    /**
+     * src 와 같은 내용의 {@link DecodedPayload} 를 돌려준다. 없으면 복사해 만들고 등록한다.
+     */
+    public DecodedPayload intern(byte[] src, int off, int len) {
+        if (len == 0) {
+            return DecodedPayload.EMPTY;
+        }
+        int h = hash(src, off, len);
+        int slot = h & slotMask;
+        while (true) {
+            int e = slots[slot];
+            if (e == NONE) {
+                break;
+            }
+            if (hashes[e] == h && values[e].contentEquals(src, off, len)) {
+                hits++;
+                touch(e);
+                return values[e];
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        misses++;
+        if (freeCount == 0) {
+            remove(tail);
+            evictions++;
+            // 삭제로 슬롯이 당겨졌을 수 있으므로 빈 슬롯을 다시 찾는다
+            slot = h & slotMask;
+            while (slots[slot] != NONE) {
+                slot = (slot + 1) & slotMask;
+            }
+        }
+        byte[] copy = new byte[len];
+        System.arraycopy(src, off, copy, 0, len);
+        DecodedPayload value = DecodedPayload.decode(copy, h, view, codecs);
+        int e = freeEntries[--freeCount];
+        values[e] = value;
+        hashes[e] = h;
+        slots[slot] = e;
+        linkFirst(e);
+        size++;
+        return value;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    /** 용량 때문에 버린 항목 수 */
+    public long evictions() {
+        return evictions;
+    }
+
+    /** 적중률 (0-1), 조회가 없었으면 0 */
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, NONE);
+        Arrays.fill(values, null);
+        for (int i = 0; i < capacity; i++) {
+            freeEntries[i] = capacity - 1 - i;
+        }
+        freeCount = capacity;
+        size = 0;
+        head = NONE;
+        tail = NONE;
+    }
+
+    @Override
+    public String toString() {
+        return "PayloadCache{size=" + size + "/" + capacity + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + ", hitRate=" + String.format("%.3f", hitRate()) + "}";
+    }
+
+    private void touch(int e) {
+        if (head != e) {
+            unlink(e);
+            linkFirst(e);
+        }
+    }
+
+    private void linkFirst(int e) {
+        prev[e] = NONE;
+        next[e] = head;
+        if (head != NONE) {
+            prev[head] = e;
+        }
+        head = e;
+        if (tail == NONE) {
+            tail = e;
+        }
+    }
+
+    private void unlink(int e) {
+        if (prev[e] != NONE) {
+            next[prev[e]] = next[e];
+        } else {
+            head = next[e];
+        }
+        if (next[e] != NONE) {
+            prev[next[e]] = prev[e];
+        } else {
+            tail = prev[e];
+        }
+    }
+
+    private void remove(int e) {
+        // backward shift deletion (DeviceTable 과 같은 방식)
+        int slot = hashes[e] & slotMask;
+        while (slots[slot] != e) {
+            slot = (slot + 1) & slotMask;
+        }
+        int hole = slot;
+        int n = (hole + 1) & slotMask;
+        while (slots[n] != NONE) {
+            int home = hashes[slots[n]] & slotMask;
+            if (((n - home) & slotMask) >= ((n - hole) & slotMask)) {
+                slots[hole] = slots[n];
+                hole = n;
+            }
+            n = (n + 1) & slotMask;
+        }
+        slots[hole] = NONE;
+        unlink(e);
+        values[e] = null;
+        freeEntries[freeCount++] = e;
+        size--;
+    }
+
+    /** 페이로드 해시 (FNV-1a 후 비트 섞기) */
+    public static int hash(byte[] src, int off, int len) {
+        int h = 0x811C9DC5;
+        for (int i = off; i < off + len; i++) {
+            h ^= src[i] & 0xFF;
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,361 @@
+package com.example.test1;
+
+/**
+ * 기기별 RSSI 평활화, 거리 추정, 근접 구역(zone) 판정.
+ *
+ * <p>상태는 {@link DeviceTable} entry 번호로 접근하는 primitive 배열에 있으므로 샘플마다 객체를 만들지 않는다.
+ * 테이블과 같은 스레드에서만 사용한다.
+ *
+ * <ul>
+ *     <li>필터: {@link #FILTER_EMA}, {@link #FILTER_KALMAN} (1차원, 샘플 간격만큼 불확실성 증가),
+ *     {@link #FILTER_MEDIAN} (최근 medianWindow 개 샘플의 중앙값)</li>
+ *     <li>거리: log-distance 경로 손실 모델. 1m 기준 세기는 광고의 TX Power Level(0x0A) 에서
+ *     {@link Config#referenceLossDb} 를 뺀 값, 없으면 {@link Config#defaultMeasuredPower}</li>
+ *     <li>구역: IMMEDIATE / NEAR / FAR. 경계를 hysteresis 비율만큼 넘어야 바뀌므로 경계 근처에서 흔들리지 않는다.</li>
+ * </ul>
+ */
+public final class ProximityEngine {
+    public static final int FILTER_NONE = 0;
+    public static final int FILTER_EMA = 1;
+    public static final int FILTER_KALMAN = 2;
+    public static final int FILTER_MEDIAN = 3;
+
+    public static final int ZONE_UNKNOWN = 0;
+    public static final int ZONE_IMMEDIATE = 1;
+    public static final int ZONE_NEAR = 2;
+    public static final int ZONE_FAR = 3;
+
+    private static final int MAX_MEDIAN_WINDOW = 31;
+
+    public static final class Config {
+        int filter = FILTER_KALMAN;
+        double emaAlpha = 0.25;
+        double kalmanProcessNoise = 1.0;
+        double kalmanMeasurementNoise = 16.0;
+        int medianWindow = 7;
+        int defaultMeasuredPower = -59;
+        int referenceLossDb = 41;
+        double pathLossExponent = 2.0;
+        double immediateMeters = 0.5;
+        double nearMeters = 3.0;
+        double zoneHysteresis = 0.2;
+        int minSamples = 3;
+
+        public Config filter(int filter) {
+            if (filter < FILTER_NONE || filter > FILTER_MEDIAN) {
+                throw new IllegalArgumentException("unknown filter: " + filter);
+            }
+            this.filter = filter;
+            return this;
+        }
+
+        /** EMA 가중치 (0, 1]. 클수록 새 샘플을 빨리 따라간다. */
+        public Config emaAlpha(double alpha) {
+            if (!(alpha > 0 && alpha <= 1)) {
+                throw new IllegalArgumentException("alpha out of range: " + alpha);
+            }
+            this.emaAlpha = alpha;
+            return this;
+        }
+
+        /**
+         * @param processNoise     초당 늘어나는 RSSI 분산 (dB²/s)
+         * @param measurementNoise 샘플 하나의 분산 (dB²)
+         */
+        public Config kalman(double processNoise, double measurementNoise) {
+            this.kalmanProcessNoise = processNoise;
+            this.kalmanMeasurementNoise = measurementNoise;
+            return this;
+        }
+
+        /** 중앙값 창 크기 (1-31) */
+        public Config medianWindow(int n) {
+            if (n < 1 || n > MAX_MEDIAN_WINDOW) {
+                throw new IllegalArgumentException("median window out of range: " + n);
+            }
+            this.medianWindow = n;
+            return this;
+        }
+
+        /** TX Power 가 없는 기기의 1m 기준 RSSI (dBm) */
+        public Config defaultMeasuredPower(int dbm) {
+            this.defaultMeasuredPower = dbm;
+            return this;
+        }
+
+        /** TX Power Level(0m) 과 1m 기준 세기의 차이 (dB) */
+        public Config referenceLossDb(int db) {
+            this.referenceLossDb = db;
+            return this;
+        }
+
+        /** 경로 손실 지수 (자유 공간 2, 실내 2.5-4) */
+        public Config pathLossExponent(double n) {
+            this.pathLossExponent = n;
+            return this;
+        }
+
+        /** 구역 경계 (m): immediate 미만 IMMEDIATE, near 미만 NEAR, 나머지 FAR */
+        public Config zones(double immediateMeters, double nearMeters) {
+            if (!(immediateMeters > 0 && nearMeters > immediateMeters)) {
+                throw new IllegalArgumentException("bad zone bounds: " + immediateMeters + ", " + nearMeters);
+            }
+            this.immediateMeters = immediateMeters;
+            this.nearMeters = nearMeters;
+            return this;
+        }
+
+        /** 구역이 바뀌려면 경계를 넘어야 하는 비율 (0.2 = 경계의 ±20%) */
+        public Config zoneHysteresis(double ratio) {
+            this.zoneHysteresis = ratio;
+            return this;
+        }
+
+        /** 구역을 정하기 전에 받을 최소 샘플 수 */
+        public Config minSamples(int n) {
+            this.minSamples = Math.max(1, n);
+            return this;
+        }
+    }
+
+    public interface ZoneListener {
+        /**
+         * 구역이 바뀔 때 스캔 스레드에서 호출된다. 기기가 테이블에서 제거되면 to 가 {@link #ZONE_UNKNOWN} 이다.
+         */
+        void onZoneChange(long mac, int from, int to, double distanceMeters);
+    }
+
+    private final int capacity;
+    private Config config;
+    private volatile ZoneListener zoneListener;
+
+    // entry 별 상태
+    private final double[] smoothed;
+    private final double[] variance;
+    private final long[] lastUpdate;
+    private final int[] samples;
+    private final int[] txPower;
+    private final double[] distance;
+    private final int[] zone;
+    // 중앙값 창: entry 마다 MAX_MEDIAN_WINDOW 칸
+    private final byte[] window;
+    private final int[] windowPos;
+    private final int[] scratch = new int[MAX_MEDIAN_WINDOW];
+
+    private long zoneChanges;
+
+    public ProximityEngine(int capacity, Config config) {
+        this.capacity = capacity;
+        this.config = config;
+        smoothed = new double[capacity];
+        variance = new double[capacity];
+        lastUpdate = new long[capacity];
+        samples = new int[capacity];
+        txPower = new int[capacity];
+        distance = new double[capacity];
+        zone = new int[capacity];
+        window = new byte[capacity * MAX_MEDIAN_WINDOW];
+        windowPos = new int[capacity];
+        reset();
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /** 설정을 바꾸고 모든 기기의 상태를 초기화한다 (구역 이벤트는 보내지 않는다). */
+    public void setConfig(Config config) {
+        this.config = config;
+        reset();
+    }
+
+    /** 다른 스레드에서 바꿔도 된다 */
+    public void setZoneListener(ZoneListener listener) {
+        this.zoneListener = listener;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** 지금까지 보낸 구역 변경 수 */
+    public long zoneChanges() {
+        return zoneChanges;
+    }
+
+    /**
+     * RSSI 샘플 하나를 반영한다.
+     *
+     * @param isNew   테이블에 새로 들어온 entry ({@link DeviceTable#CHANGE_NEW}) 면 이전 상태를 버린다
+     * @param txPower 이 패킷의 TX Power Level, 없으면 {@link AdvertisementView#NO_TX_POWER} (이전 값 유지)
+     * @param now     수신 시각 (ms)
+     * @return 구역이 바뀌었으면 true
+     */
+    public boolean update(int entry, long mac, boolean isNew, int rssi, int txPower, long now) {
+        Config c = config;
+        if (isNew) {
+            clear(entry);
+        }
+        if (txPower != AdvertisementView.NO_TX_POWER) {
+            this.txPower[entry] = txPower;
+        }
+        int n = ++samples[entry];
+        double s;
+        switch (c.filter) {
+            case FILTER_EMA:
+                s = n == 1 ? rssi : smoothed[entry] + c.emaAlpha * (rssi - smoothed[entry]);
+                break;
+            case FILTER_KALMAN:
+                s = kalman(entry, c, rssi, now);
+                break;
+            case FILTER_MEDIAN:
+                s = median(entry, c, rssi);
+                break;
+            default:
+                s = rssi;
+        }
+        smoothed[entry] = s;
+        lastUpdate[entry] = now;
+
+        int tx = this.txPower[entry];
+        int measured = tx != AdvertisementView.NO_TX_POWER ? tx - c.referenceLossDb : c.defaultMeasuredPower;
+        double d = Math.pow(10, (measured - s) / (10 * c.pathLossExponent));
+        distance[entry] = d;
+
+        if (n < c.minSamples) {
+            return false;
+        }
+        int from = zone[entry];
+        int to = nextZone(c, from, d);
+        if (to == from) {
+            return false;
+        }
+        zone[entry] = to;
+        zoneChanges++;
+        ZoneListener l = zoneListener;
+        if (l != null) {
+            l.onZoneChange(mac, from, to, d);
+        }
+        return true;
+    }
+
+    /**
+     * 테이블에서 제거된 entry 의 상태를 지운다. 구역이 있었으면 {@link #ZONE_UNKNOWN} 으로의 변경을 보낸다.
+     */
+    public void remove(int entry, long mac) {
+        int from = zone[entry];
+        double d = distance[entry];
+        clear(entry);
+        if (from != ZONE_UNKNOWN) {
+            zoneChanges++;
+            ZoneListener l = zoneListener;
+            if (l != null) {
+                l.onZoneChange(mac, from, ZONE_UNKNOWN, d);
+            }
+        }
+    }
+
+    /** 평활화한 RSSI (dBm), 샘플이 없으면 NaN */
+    public double smoothedRssi(int entry) {
+        return samples[entry] == 0 ? Double.NaN : smoothed[entry];
+    }
+
+    /** 추정 거리 (m), 샘플이 없으면 NaN */
+    public double distance(int entry) {
+        return samples[entry] == 0 ? Double.NaN : distance[entry];
+    }
+
+    public int zone(int entry) {
+        return zone[entry];
+    }
+
+    public int samples(int entry) {
+        return samples[entry];
+    }
+
+    /** 마지막으로 받은 TX Power Level, 없으면 {@link AdvertisementView#NO_TX_POWER} */
+    public int txPower(int entry) {
+        return txPower[entry];
+    }
+
+    public static String zoneName(int zone) {
+        switch (zone) {
+            case ZONE_IMMEDIATE:
+                return "IMMEDIATE";
+            case ZONE_NEAR:
+                return "NEAR";
+            case ZONE_FAR:
+                return "FAR";
+            default:
+                return "UNKNOWN";
+        }
+    }
+
+    private void reset() {
+        for (int e = 0; e < capacity; e++) {
+            clear(e);
+        }
+    }
+
+    private void clear(int e) {
+        smoothed[e] = 0;
+        variance[e] = 0;
+        lastUpdate[e] = 0;
+        samples[e] = 0;
+        txPower[e] = AdvertisementView.NO_TX_POWER;
+        distance[e] = 0;
+        zone[e] = ZONE_UNKNOWN;
+        windowPos[e] = 0;
+    }
+
+    private double kalman(int e, Config c, int rssi, long now) {
+        if (samples[e] == 1) {
+            variance[e] = c.kalmanMeasurementNoise;
+            return rssi;
+        }
+        // 샘플 간격이 길수록 이전 추정을 덜 믿는다
+        double dt = Math.max(0, now - lastUpdate[e]) / 1000.0;
+        double p = variance[e] + c.kalmanProcessNoise * Math.max(dt, 0.001);
+        double k = p / (p + c.kalmanMeasurementNoise);
+        variance[e] = (1 - k) * p;
+        return smoothed[e] + k * (rssi - smoothed[e]);
+    }
+
+    private double median(int e, Config c, int rssi) {
+        int w = c.medianWindow;
+        int base = e * MAX_MEDIAN_WINDOW;
+        window[base + windowPos[e]] = (byte) Math.max(-128, Math.min(127, rssi));
+        windowPos[e] = (windowPos[e] + 1) % w;
+        int n = Math.min(samples[e], w);
+        // 창이 작으므로 삽입 정렬
+        for (int i = 0; i < n; i++) {
+            int v = window[base + i];
+            int j = i - 1;
+            while (j >= 0 && scratch[j] > v) {
+                scratch[j + 1] = scratch[j];
+                j--;
+            }
+            scratch[j + 1] = v;
+        }
+        return (n & 1) != 0 ? scratch[n / 2] : (scratch[n / 2 - 1] + scratch[n / 2]) / 2.0;
+    }
+
+    private static int nextZone(Config c, int current, double d) {
+        if (current == ZONE_UNKNOWN) {
+            return d < c.immediateMeters ? ZONE_IMMEDIATE : d < c.nearMeters ? ZONE_NEAR : ZONE_FAR;
+        }
+        // 경계를 hysteresis 비율만큼 넘을 때마다 한 구역씩 이동한다
+        int z = current;
+        while (z > ZONE_IMMEDIATE && d < outerBound(c, z - 1) * (1 - c.zoneHysteresis)) {
+            z--;
+        }
+        while (z == current && z < ZONE_FAR && d > outerBound(c, z) * (1 + c.zoneHysteresis)) {
+            current = ++z;
+        }
+        return z;
+    }
+
+    private static double outerBound(Config c, int zone) {
+        return zone == ZONE_IMMEDIATE ? c.immediateMeters : c.nearMeters;
+    }
+}
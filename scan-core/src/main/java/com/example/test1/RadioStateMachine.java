@@ -0,0 +1,399 @@
+package com.example.test1;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * BLE 모듈의 동작 모드를 추적하고, 이미 만족된 명령은 보내지 않는 상태 기계.
+ *
+ * <pre>
+ *   UNKNOWN ──enableMaster(true)──▶ MASTER ──startNewScan──▶ SCANNING
+ *      │                            ▲   │ ◀────stopScan────────┘
+ *      │                            │   └─enableMaster(false)─▶ BEACON
+ *      └──────ctsCtrl──▶ AT_COMMAND ─┘      (SCANNING/BEACON 에서 ctsCtrl 도 AT_COMMAND)
+ *   명령이 실패하면 ERROR. ERROR 에서는 아무것도 건너뛰지 않고 모드를 다시 맞춘다.
+ * </pre>
+ *
+ * <p>같은 조건으로 스캔을 멈췄다 다시 시작하면 MASTER 가 유지되어 Lib_AtStartNewScan 하나만 보낸다.
+ * 모듈 MAC, 펌웨어 버전, 마지막으로 적용한 스캔 조건은 바뀌지 않는 값으로 보고 기억하며,
+ * {@link #setCacheFile} 로 파일을 주면 앱을 다시 시작해도 이어서 쓴다. 동작 모드는 파일에 남기지 않는다
+ * (모듈이 그 사이 리셋됐을 수 있으므로 시작 상태는 항상 UNKNOWN).
+ *
+ * <p>AtCommandEngine 으로 직접 보낸 명령(AT+OBSERVER 등)은 {@link #onCommandApplied} 로 알린다.
+ * 허용되지 않은 전이는 {@link IllegalStateException} 이다. 스레드 안전하다.
+ */
+public final class RadioStateMachine {
+    public static final int STATE_UNKNOWN = 0;
+    /** AT 명령 모드 (ctsCtrl 로 비콘/스캔을 끝낸 상태) */
+    public static final int STATE_AT_COMMAND = 1;
+    /** 마스터(옵저버) 모드, 스캔은 멈춰 있다 */
+    public static final int STATE_MASTER = 2;
+    /** 마스터 해제 (비콘 광고 모드) */
+    public static final int STATE_BEACON = 3;
+    public static final int STATE_SCANNING = 4;
+    public static final int STATE_ERROR = 5;
+
+    private static final String TAG = "RadioState";
+    private static final String[] NAMES = {"UNKNOWN", "AT_COMMAND", "MASTER", "BEACON", "SCANNING", "ERROR"};
+
+    // ALLOWED[from] 의 비트 to 가 켜져 있으면 허용된다. ERROR 는 어디서나 갈 수 있다.
+    private static final int[] ALLOWED = {
+            bits(STATE_AT_COMMAND, STATE_MASTER, STATE_BEACON),
+            bits(STATE_AT_COMMAND, STATE_MASTER, STATE_BEACON),
+            bits(STATE_AT_COMMAND, STATE_MASTER, STATE_BEACON, STATE_SCANNING),
+            bits(STATE_AT_COMMAND, STATE_MASTER, STATE_BEACON),
+            bits(STATE_AT_COMMAND, STATE_MASTER),
+            bits(STATE_UNKNOWN, STATE_AT_COMMAND, STATE_MASTER, STATE_BEACON),
+    };
+
+    private static int bits(int... states) {
+        int b = 1 << STATE_ERROR;
+        for (int s : states) {
+            b |= 1 << s;
+        }
+        return b;
+    }
+
+    private final AtTransport transport;
+
+    // this 로 보호
+    private int state = STATE_UNKNOWN;
+    private String mac;
+    private String version;
+    private ScanParams lastScan;
+    private File cacheFile;
+
+    private volatile long commandsSent;
+    private volatile long commandsSkipped;
+    private volatile long errors;
+
+    public RadioStateMachine(AtTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Lib_AtStartNewScan 인자. 같은 값이면 같은 스캔 조건이다.
+     */
+    public static final class ScanParams {
+        final String macAddress;
+        final String broadcastName;
+        final int rssi;
+        final String manufacturerId;
+        final String data;
+
+        public ScanParams(String macAddress, String broadcastName, int rssi, String manufacturerId, String data) {
+            this.macAddress = macAddress == null ? "" : macAddress;
+            this.broadcastName = broadcastName == null ? "" : broadcastName;
+            this.rssi = rssi;
+            this.manufacturerId = manufacturerId == null ? "" : manufacturerId;
+            this.data = data == null ? "" : data;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ScanParams)) {
+                return false;
+            }
+            ScanParams p = (ScanParams) o;
+            return rssi == p.rssi && macAddress.equals(p.macAddress) && broadcastName.equals(p.broadcastName)
+                    && manufacturerId.equals(p.manufacturerId) && data.equals(p.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(macAddress, broadcastName, rssi, manufacturerId, data);
+        }
+
+        @Override
+        public String toString() {
+            return "mac=" + macAddress + " name=" + broadcastName + " rssi=" + rssi
+                    + " manufacturerId=" + manufacturerId + " data=" + data;
+        }
+    }
+
+    public static String stateName(int state) {
+        return state >= 0 && state < NAMES.length ? NAMES[state] : Integer.toString(state);
+    }
+
+    public synchronized int state() {
+        return state;
+    }
+
+    /** 마스터 모드이면 true (스캔 중 포함) */
+    public synchronized boolean isMaster() {
+        return state == STATE_MASTER || state == STATE_SCANNING;
+    }
+
+    /** 모듈로 보낸 명령 수 */
+    public long commandsSent() {
+        return commandsSent;
+    }
+
+    /** 이미 만족되어 보내지 않은 명령 수 */
+    public long commandsSkipped() {
+        return commandsSkipped;
+    }
+
+    /** 실패해 ERROR 로 간 횟수 */
+    public long errors() {
+        return errors;
+    }
+
+    // ---- 모드 전이 ----
+
+    /** Lib_EnableMaster(true). 이미 마스터(스캔 중 포함)면 보내지 않는다. */
+    public synchronized int enterMaster() {
+        if (isMaster()) {
+            skipped("enableMaster(true)");
+            return 0;
+        }
+        checkTransition(STATE_MASTER);
+        return result(transport.enableMaster(true), STATE_MASTER);
+    }
+
+    /** Lib_EnableMaster(false). 스캔 중이면 먼저 멈춘다. */
+    public synchronized int enterBeacon() {
+        if (state == STATE_BEACON) {
+            skipped("enableMaster(false)");
+            return 0;
+        }
+        if (state == STATE_SCANNING) {
+            int ret = stopScan();
+            if (ret != 0) {
+                return ret;
+            }
+        }
+        checkTransition(STATE_BEACON);
+        return result(transport.enableMaster(false), STATE_BEACON);
+    }
+
+    /** Lib_AtCtsCtrl. 비콘/스캔을 끝내고 AT 명령 모드로 간다. */
+    public synchronized int enterAtCommand() {
+        if (state == STATE_AT_COMMAND) {
+            skipped("ctsCtrl");
+            return 0;
+        }
+        checkTransition(STATE_AT_COMMAND);
+        return result(transport.ctsCtrl(), STATE_AT_COMMAND);
+    }
+
+    /**
+     * 필요하면 마스터 모드로 바꾼 뒤 스캔을 시작한다. 같은 조건으로 이미 스캔 중이면 아무것도 보내지 않고,
+     * 다른 조건으로 스캔 중이면 멈췄다가 다시 시작한다.
+     */
+    public synchronized int startScan(ScanParams params) {
+        if (state == STATE_SCANNING) {
+            if (params.equals(lastScan)) {
+                skipped("startNewScan");
+                return 0;
+            }
+            int ret = stopScan();
+            if (ret != 0) {
+                return ret;
+            }
+        }
+        int ret = enterMaster();
+        if (ret != 0) {
+            return ret;
+        }
+        checkTransition(STATE_SCANNING);
+        ret = result(transport.startNewScan(params.macAddress, params.broadcastName, params.rssi,
+                params.manufacturerId, params.data), STATE_SCANNING);
+        if (ret == 0 && !params.equals(lastScan)) {
+            lastScan = params;
+            saveCache();
+        }
+        return ret;
+    }
+
+    /**
+     * Lib_AtStopScan. 스캔 중이 아닌 것이 확실하면(MASTER/BEACON/AT_COMMAND) 보내지 않는다.
+     * 상태를 모르면 보내되 상태는 그대로 둔다.
+     */
+    public synchronized int stopScan() {
+        if (state == STATE_MASTER || state == STATE_BEACON || state == STATE_AT_COMMAND) {
+            skipped("stopScan");
+            return 0;
+        }
+        if (state != STATE_SCANNING) {
+            commandsSent++;
+            return transport.stopScan();
+        }
+        return result(transport.stopScan(), STATE_MASTER);
+    }
+
+    /**
+     * 다른 경로(AtCommandEngine 등)로 보낸 명령의 결과를 알린다.
+     *
+     * @param to 명령이 성공했을 때의 상태. 실패했으면 {@link #STATE_ERROR}.
+     */
+    public synchronized void onCommandApplied(int to) {
+        if (to == STATE_ERROR) {
+            toError();
+            return;
+        }
+        checkTransition(to);
+        state = to;
+    }
+
+    /** 모듈이 리셋되었을 때. 기억한 모듈 정보는 유지하고 모드만 UNKNOWN 으로 되돌린다. */
+    public synchronized void reset() {
+        state = STATE_UNKNOWN;
+    }
+
+    private void checkTransition(int to) {
+        if ((ALLOWED[state] & (1 << to)) == 0) {
+            throw new IllegalStateException(stateName(state) + " -> " + stateName(to));
+        }
+    }
+
+    private int result(int ret, int to) {
+        commandsSent++;
+        if (ret == 0) {
+            state = to;
+        } else {
+            ScanLog.w(TAG, stateName(state) + " -> " + stateName(to) + " failed: " + ret);
+            toError();
+        }
+        return ret;
+    }
+
+    private void toError() {
+        state = STATE_ERROR;
+        errors++;
+    }
+
+    private void skipped(String command) {
+        commandsSkipped++;
+        if (ScanLog.isEnabled(ScanLog.DEBUG)) {
+            ScanLog.d(TAG, command + " skipped in " + stateName(state));
+        }
+    }
+
+    // ---- 모듈 정보 ----
+
+    /** 모듈 MAC. 처음 한 번만 Lib_GetAtMac 으로 묻는다. 실패하면 null. */
+    public synchronized String mac() {
+        if (mac != null) {
+            commandsSkipped++;
+            return mac;
+        }
+        String[] out = new String[1];
+        commandsSent++;
+        if (transport.getMac(out) != 0 || out[0] == null) {
+            return null;
+        }
+        setMac(out[0]);
+        return mac;
+    }
+
+    /** 기억한 MAC, 없으면 null (모듈에 묻지 않는다) */
+    public synchronized String cachedMac() {
+        return mac;
+    }
+
+    /** AT+MAC? 등 다른 경로로 얻은 MAC 을 기억한다 */
+    public synchronized void setMac(String value) {
+        if (value != null && !value.equals(mac)) {
+            mac = value;
+            saveCache();
+        }
+    }
+
+    /** 기억한 AT+VERSION 값, 없으면 null */
+    public synchronized String version() {
+        return version;
+    }
+
+    public synchronized void setVersion(String value) {
+        if (value != null && !value.equals(version)) {
+            version = value;
+            saveCache();
+        }
+    }
+
+    /** 마지막으로 시작에 성공한 스캔 조건, 없으면 null */
+    public synchronized ScanParams lastScan() {
+        return lastScan;
+    }
+
+    /**
+     * 모듈 정보를 저장할 파일. 파일이 있으면 아직 모르는 값을 읽어 온다. null 이면 저장하지 않는다.
+     */
+    public synchronized void setCacheFile(File file) {
+        cacheFile = file;
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        Properties p = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            p.load(in);
+        } catch (IOException e) {
+            ScanLog.e(TAG, "cannot read " + file, e);
+            return;
+        }
+        if (mac == null) {
+            mac = p.getProperty("mac");
+        }
+        if (version == null) {
+            version = p.getProperty("version");
+        }
+        if (lastScan == null && p.getProperty("scan.rssi") != null) {
+            try {
+                lastScan = new ScanParams(p.getProperty("scan.mac"), p.getProperty("scan.name"),
+                        Integer.parseInt(p.getProperty("scan.rssi")), p.getProperty("scan.manufacturerId"),
+                        p.getProperty("scan.data"));
+            } catch (NumberFormatException e) {
+                ScanLog.w(TAG, "bad scan.rssi in " + file);
+            }
+        }
+    }
+
+    /** 기억한 모듈 정보를 지운다 (모듈 교체 등) */
+    public synchronized void clearCache() {
+        mac = null;
+        version = null;
+        lastScan = null;
+        if (cacheFile != null) {
+            cacheFile.delete();
+        }
+    }
+
+    private void saveCache() {
+        if (cacheFile == null) {
+            return;
+        }
+        Properties p = new Properties();
+        if (mac != null) {
+            p.setProperty("mac", mac);
+        }
+        if (version != null) {
+            p.setProperty("version", version);
+        }
+        if (lastScan != null) {
+            p.setProperty("scan.mac", lastScan.macAddress);
+            p.setProperty("scan.name", lastScan.broadcastName);
+            p.setProperty("scan.rssi", Integer.toString(lastScan.rssi));
+            p.setProperty("scan.manufacturerId", lastScan.manufacturerId);
+            p.setProperty("scan.data", lastScan.data);
+        }
+        File tmp = new File(cacheFile.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                p.store(out, null);
+                out.getFD().sync();
+            }
+            if (!tmp.renameTo(cacheFile)) {
+                throw new IOException("cannot rename " + tmp);
+            }
+        } catch (IOException e) {
+            ScanLog.e(TAG, "cannot write " + cacheFile, e);
+            tmp.delete();
+        }
+    }
+}
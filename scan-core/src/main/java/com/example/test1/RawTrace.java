@@ -0,0 +1,185 @@
+package com.example.test1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * 최근 UART 원본 청크를 그대로 보관하는 고정 크기 바이너리 링.
+ *
+ * <p>기존에는 청크마다 HEX 문자열을 만들어 logcat 에 남겼다. 여기서는 바이트를 복사만 하고,
+ * 디버깅이 필요할 때 {@link #toHexDump()} / {@link #writeTo} 로 꺼낸다.
+ * 공간이 모자라면 가장 오래된 청크부터 지운다.
+ *
+ * <p>레코드 형식: [시각 ms (8)][길이 (4)][바이트]. 기록과 덤프는 서로 다른 스레드에서 해도 된다.
+ */
+public final class RawTrace {
+    private static final int HEADER = 12;
+
+    private final byte[] buffer;
+    // 절대 위치 (buffer 안의 위치는 % capacity)
+    private long head;
+    private long tail;
+    private int records;
+    private long recordedChunks;
+    private long truncatedChunks;
+    private volatile boolean enabled = true;
+
+    /**
+     * @param capacity 링 크기 (바이트, 헤더 포함)
+     */
+    public RawTrace(int capacity) {
+        if (capacity < HEADER * 2) {
+            throw new IllegalArgumentException("capacity " + capacity);
+        }
+        buffer = new byte[capacity];
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * 청크 하나를 보관한다. 링보다 큰 청크는 앞부분만 남긴다.
+     */
+    public void record(byte[] data, int off, int len, long timeMs) {
+        if (!enabled || len < 0) {
+            return;
+        }
+        synchronized (this) {
+            int max = buffer.length - HEADER;
+            if (len > max) {
+                len = max;
+                truncatedChunks++;
+            }
+            int size = HEADER + len;
+            while (buffer.length - (tail - head) < size) {
+                head += HEADER + readInt(head + 8);
+                records--;
+            }
+            writeLong(tail, timeMs);
+            writeInt(tail + 8, len);
+            copyIn(tail + HEADER, data, off, len);
+            tail += size;
+            records++;
+            recordedChunks++;
+        }
+    }
+
+    /** 링에 남아 있는 청크 수 */
+    public synchronized int size() {
+        return records;
+    }
+
+    /** 지금까지 기록한 청크 수 (지워진 것 포함) */
+    public synchronized long recordedChunks() {
+        return recordedChunks;
+    }
+
+    public synchronized long truncatedChunks() {
+        return truncatedChunks;
+    }
+
+    public synchronized void clear() {
+        head = tail;
+        records = 0;
+    }
+
+    /**
+     * 남아 있는 청크를 오래된 순서로 한 줄씩 "HH:mm:ss.SSS len=N HEX" 형식으로 만든다.
+     */
+    public String toHexDump() {
+        byte[] copy;
+        synchronized (this) {
+            copy = snapshot();
+        }
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS", Locale.US);
+        StringBuilder sb = new StringBuilder(copy.length * 2 + 64);
+        int p = 0;
+        while (p < copy.length) {
+            long time = getLong(copy, p);
+            int len = getInt(copy, p + 8);
+            sb.append(format.format(new Date(time))).append(" len=").append(len).append(' ');
+            Hex.append(sb, copy, p + HEADER, len);
+            sb.append('\n');
+            p += HEADER + len;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 남아 있는 청크를 레코드 형식(빅엔디언) 그대로 쓴다.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        byte[] copy;
+        synchronized (this) {
+            copy = snapshot();
+        }
+        out.write(copy);
+        out.flush();
+    }
+
+    // 잠금 안에서 호출
+    private byte[] snapshot() {
+        int n = (int) (tail - head);
+        byte[] copy = new byte[n];
+        int start = (int) (head % buffer.length);
+        int first = Math.min(n, buffer.length - start);
+        System.arraycopy(buffer, start, copy, 0, first);
+        System.arraycopy(buffer, 0, copy, first, n - first);
+        return copy;
+    }
+
+    private void copyIn(long pos, byte[] src, int off, int len) {
+        int start = (int) (pos % buffer.length);
+        int first = Math.min(len, buffer.length - start);
+        System.arraycopy(src, off, buffer, start, first);
+        System.arraycopy(src, off + first, buffer, 0, len - first);
+    }
+
+    private void writeLong(long pos, long v) {
+        for (int i = 0; i < 8; i++) {
+            buffer[(int) ((pos + i) % buffer.length)] = (byte) (v >>> (56 - 8 * i));
+        }
+    }
+
+    private void writeInt(long pos, int v) {
+        for (int i = 0; i < 4; i++) {
+            buffer[(int) ((pos + i) % buffer.length)] = (byte) (v >>> (24 - 8 * i));
+        }
+    }
+
+    private int readInt(long pos) {
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            v = v << 8 | (buffer[(int) ((pos + i) % buffer.length)] & 0xFF);
+        }
+        return v;
+    }
+
+    private static long getLong(byte[] a, int p) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            v = v << 8 | (a[p + i] & 0xFF);
+        }
+        return v;
+    }
+
+    private static int getInt(byte[] a, int p) {
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            v = v << 8 | (a[p + i] & 0xFF);
+        }
+        return v;
+    }
+}
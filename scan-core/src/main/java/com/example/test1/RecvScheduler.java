@@ -0,0 +1,270 @@
+package com.example.test1;
+
+/**
+ * {@link AtTransport#recv} 호출 파라미터(버퍼 크기, timeout, maxWait)와 호출 사이 휴식 시간을
+ * 관측한 도착률과 청크 충전율에 맞춰 조정한다.
+ *
+ * <ul>
+ *     <li>{@link #MODE_BUSY}: 청크가 버퍼를 거의 채운다. 버퍼를 키우고 바이트 간 timeout 을 줄여 쉬지 않고 읽는다.</li>
+ *     <li>{@link #MODE_NORMAL}: maxWait 를 현재 도착률로 버퍼의 목표 충전량을 채우는 시간에 맞춘다.</li>
+ *     <li>{@link #MODE_IDLE}: 빈 읽기가 이어진다. maxWait 와 (recv 가 바로 돌아오는 경우) 호출 사이 휴식을
+ *     두 배씩 늘린다.</li>
+ * </ul>
+ *
+ * 수신 스레드 하나에서만 사용한다. 시간은 호출자가 넘기므로 시계 없이 테스트할 수 있다.
+ */
+public final class RecvScheduler {
+    public static final int MODE_IDLE = 0;
+    public static final int MODE_NORMAL = 1;
+    public static final int MODE_BUSY = 2;
+
+    // 청크 충전율 기준: 이 이상이면 버퍼를 키우고, 이하이면 줄인다
+    private static final double GROW_FILL = 0.9;
+    private static final double SHRINK_FILL = 0.25;
+    private static final double BUSY_FILL = 0.75;
+    // maxWait 계산 시 목표 충전율
+    private static final double TARGET_FILL = 0.75;
+    // EMA 가중치
+    private static final double ALPHA = 0.25;
+
+    public static final class Config {
+        int minBufferSize = 512;
+        int maxBufferSize = 4096;
+        int timeoutMs = 20;
+        int busyTimeoutMs = 10;
+        int minWaitMs = 20;
+        int maxWaitMs = 1000;
+        int idleReads = 3;
+        int idleSleepMs = 10;
+        int maxIdleSleepMs = 500;
+
+        /** 버퍼 크기 범위 (2의 거듭제곱 단계로 조정) */
+        public Config bufferSize(int min, int max) {
+            if (min < 1 || max < min) {
+                throw new IllegalArgumentException("bufferSize " + min + ".." + max);
+            }
+            this.minBufferSize = min;
+            this.maxBufferSize = max;
+            return this;
+        }
+
+        /** 바이트 간 timeout (NORMAL/IDLE, BUSY) */
+        public Config timeoutMs(int normal, int busy) {
+            this.timeoutMs = normal;
+            this.busyTimeoutMs = busy;
+            return this;
+        }
+
+        /** maxWait 범위. IDLE 에서는 빈 읽기마다 두 배씩 max 까지 늘어난다. */
+        public Config maxWaitMs(int min, int max) {
+            if (min < 0 || max < min) {
+                throw new IllegalArgumentException("maxWait " + min + ".." + max);
+            }
+            this.minWaitMs = min;
+            this.maxWaitMs = max;
+            return this;
+        }
+
+        /** 이 횟수만큼 빈 읽기가 이어지면 IDLE */
+        public Config idleReads(int n) {
+            this.idleReads = n;
+            return this;
+        }
+
+        /**
+         * recv 가 maxWait 를 기다리지 않고 빈 채로 돌아왔을 때 쉬는 시간. IDLE 동안 base 부터 두 배씩 max 까지.
+         * max 가 0 이면 쉬지 않는다.
+         */
+        public Config idleSleepMs(int base, int max) {
+            this.idleSleepMs = base;
+            this.maxIdleSleepMs = max;
+            return this;
+        }
+    }
+
+    private final Config config;
+    private final int[] bufferSizes;
+
+    private int bufferIndex;
+    private int mode = MODE_NORMAL;
+    private int emptyStreak;
+    private double rate;       // bytes/ms EMA
+    private double fill = 0.5; // 0..1 EMA, 첫 청크로 버퍼가 바로 줄지 않도록 중간값에서 시작
+    private int maxWait;
+    private int sleepMs;
+
+    // 통계
+    private volatile long reads;
+    private volatile long emptyReads;
+    private volatile long modeChanges;
+    private volatile long bufferResizes;
+    private final long[] readsByMode = new long[3];
+
+    public RecvScheduler() {
+        this(new Config());
+    }
+
+    public RecvScheduler(Config config) {
+        this.config = config;
+        int n = 1;
+        while ((config.minBufferSize << (n - 1)) < config.maxBufferSize) {
+            n++;
+        }
+        bufferSizes = new int[n];
+        for (int i = 0; i < n; i++) {
+            bufferSizes[i] = Math.min(config.minBufferSize << i, config.maxBufferSize);
+        }
+        // 기존 고정값(2048)에 가장 가까운 크기에서 시작한다
+        while (bufferIndex < n - 1 && bufferSizes[bufferIndex] < 2048) {
+            bufferIndex++;
+        }
+        maxWait = config.maxWaitMs;
+    }
+
+    /** 항상 같은 파라미터를 돌려주는 스케줄러 (조정 없음) */
+    public static RecvScheduler fixed(int bufferSize, int timeoutMs, int maxWaitMs) {
+        return new RecvScheduler(new Config()
+                .bufferSize(bufferSize, bufferSize)
+                .timeoutMs(timeoutMs, timeoutMs)
+                .maxWaitMs(maxWaitMs, maxWaitMs)
+                .idleSleepMs(0, 0));
+    }
+
+    /** 사용할 수 있는 버퍼 크기 (오름차순). 호출자는 미리 이 크기들의 버퍼를 만들어 둔다. */
+    public int[] bufferSizes() {
+        return bufferSizes.clone();
+    }
+
+    public int bufferIndex() {
+        return bufferIndex;
+    }
+
+    public int bufferSize() {
+        return bufferSizes[bufferIndex];
+    }
+
+    /** 다음 recv 의 바이트 간 timeout */
+    public int timeoutMs() {
+        return mode == MODE_BUSY ? config.busyTimeoutMs : config.timeoutMs;
+    }
+
+    /** 다음 recv 의 maxWait */
+    public int maxWaitMs() {
+        return maxWait;
+    }
+
+    /**
+     * recv 결과를 반영한다.
+     *
+     * @param bytes     읽은 바이트 수
+     * @param elapsedMs recv 에 걸린 시간
+     * @return 다음 recv 전에 쉴 시간 (ms), 0 이면 바로 읽는다
+     */
+    public int onRecv(int bytes, long elapsedMs) {
+        reads++;
+        readsByMode[mode]++;
+        int size = bufferSize();
+        int waited = maxWait;
+        if (bytes > 0) {
+            emptyStreak = 0;
+            rate += ALPHA * ((double) bytes / Math.max(1, elapsedMs) - rate);
+            fill += ALPHA * ((double) bytes / size - fill);
+            if (fill >= GROW_FILL && bufferIndex < bufferSizes.length - 1) {
+                bufferIndex++;
+                bufferResizes++;
+                // 버퍼가 커졌으니 충전율은 같은 바이트 수 기준으로 다시 잡는다
+                fill /= 2;
+            } else if (fill <= SHRINK_FILL && bufferIndex > 0) {
+                bufferIndex--;
+                bufferResizes++;
+                fill = Math.min(1, fill * 2);
+            }
+        } else {
+            emptyReads++;
+            emptyStreak++;
+            rate -= ALPHA * rate;
+            fill -= ALPHA * fill;
+        }
+
+        int next;
+        if (emptyStreak >= config.idleReads) {
+            next = MODE_IDLE;
+        } else if (fill >= BUSY_FILL || (bufferIndex == bufferSizes.length - 1 && fill >= SHRINK_FILL * 2)) {
+            next = MODE_BUSY;
+        } else {
+            next = MODE_NORMAL;
+        }
+        if (next != mode) {
+            mode = next;
+            modeChanges++;
+        }
+
+        if (mode == MODE_IDLE) {
+            maxWait = (int) Math.min(config.maxWaitMs, Math.max(1L, waited) * 2);
+            if (elapsedMs * 2 < waited && config.maxIdleSleepMs > 0) {
+                // 모듈이 maxWait 만큼 기다리지 않고 바로 돌아오면 호출 사이를 직접 늘린다
+                sleepMs = sleepMs == 0 ? config.idleSleepMs : Math.min(config.maxIdleSleepMs, sleepMs * 2);
+            } else {
+                sleepMs = 0;
+            }
+        } else {
+            double fillTime = rate > 0 ? bufferSize() * TARGET_FILL / rate : config.maxWaitMs;
+            maxWait = (int) Math.max(config.minWaitMs, Math.min(config.maxWaitMs, fillTime));
+            sleepMs = 0;
+        }
+        return sleepMs;
+    }
+
+    public int mode() {
+        return mode;
+    }
+
+    public static String modeName(int mode) {
+        switch (mode) {
+            case MODE_IDLE:
+                return "idle";
+            case MODE_BUSY:
+                return "busy";
+            default:
+                return "normal";
+        }
+    }
+
+    /** 도착률 추정치 (bytes/s) */
+    public double arrivalRate() {
+        return rate * 1000;
+    }
+
+    /** 청크 충전율 추정치 (0..1) */
+    public double fillRatio() {
+        return fill;
+    }
+
+    public long reads() {
+        return reads;
+    }
+
+    public long emptyReads() {
+        return emptyReads;
+    }
+
+    public long modeChanges() {
+        return modeChanges;
+    }
+
+    public long bufferResizes() {
+        return bufferResizes;
+    }
+
+    /** 해당 모드에서 수행한 recv 횟수 */
+    public long readsInMode(int mode) {
+        return readsByMode[mode];
+    }
+
+    @Override
+    public String toString() {
+        return "RecvScheduler{mode=" + modeName(mode) + ", buffer=" + bufferSize()
+                + ", timeout=" + timeoutMs() + ", maxWait=" + maxWait
+                + ", rate=" + Math.round(arrivalRate()) + "B/s, fill=" + Math.round(fill * 100) + "%}";
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.test1;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link CaptureReader} 의 청크를 recv 로 다시 내보내는 {@link AtTransport}.
+ * {@code new BleScan(new ReplayAtTransport(...))} 처럼 스캔 파이프라인에 그대로 넣어 현장 상황을 재현한다.
+ *
+ * <p>재생 속도:
+ * <ul>
+ *     <li>1.0: 캡처된 시각 간격 그대로</li>
+ *     <li>&gt; 1: 그만큼 빠르게 (간격을 나눈다)</li>
+ *     <li>{@link #MAX_SPEED}: 기다리지 않고 recv 마다 다음 청크</li>
+ * </ul>
+ * 청크 경계는 캡처 그대로 유지한다 (recv 버퍼가 작으면 나머지는 다음 recv 로 넘긴다).
+ * 첫 청크는 첫 recv 시점에 나가고, 이후 청크는 그 시점 기준으로 예약된다.
+ * 시각이 거꾸로 가면(다른 캡처 세션의 세그먼트) 그 청크부터 다시 기준을 잡는다.
+ *
+ * <p>AT 명령에는 응답하지 않는다 (명령은 성공으로 처리, 캡처에 담긴 응답이 그대로 재생된다).
+ * recv 는 한 스레드에서만 호출한다.
+ */
+public final class ReplayAtTransport implements AtTransport {
+    /** 간격 없이 최대 속도로 재생 */
+    public static final double MAX_SPEED = 0;
+
+    private final CaptureReader reader;
+    private final double speed;
+
+    private byte[] pending = new byte[8192];
+    private int pendingOffset;
+    private int pendingLength;
+    private long pendingDueNanos;
+    private boolean hasPending;
+
+    private long baseWallNanos;
+    private long baseCaptureNanos;
+    private long lastCaptureNanos = Long.MIN_VALUE;
+
+    private volatile boolean finished;
+    private volatile long chunks;
+    private volatile long bytes;
+
+    /**
+     * @param speed 1.0 = 원래 속도, 2.0 = 두 배, {@link #MAX_SPEED} = 최대 속도
+     */
+    public ReplayAtTransport(CaptureReader reader, double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("speed " + speed);
+        }
+        this.reader = reader;
+        this.speed = speed;
+    }
+
+    /** 모든 청크를 내보냈으면 true */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** 내보낸 청크 수 (recv 버퍼보다 커서 나뉜 청크도 하나로 센다) */
+    public long chunks() {
+        return chunks;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public int recv(byte[] data, int[] length, int timeoutMs, int maxWaitMs) {
+        length[0] = 0;
+        if (!hasPending && !loadNext()) {
+            finished = true;
+            if (speed != MAX_SPEED) {
+                // 실제 UART 처럼 데이터가 없으면 maxWait 동안 기다린다
+                LockSupport.parkNanos(maxWaitMs * 1_000_000L);
+            }
+            return 0;
+        }
+        if (speed != MAX_SPEED && pendingOffset == 0) {
+            long wait = pendingDueNanos - System.nanoTime();
+            if (wait > 0) {
+                long maxWaitNanos = maxWaitMs * 1_000_000L;
+                LockSupport.parkNanos(Math.min(wait, maxWaitNanos));
+                if (pendingDueNanos - System.nanoTime() > 0) {
+                    return 0;
+                }
+            }
+        }
+        int n = Math.min(data.length, pendingLength - pendingOffset);
+        System.arraycopy(pending, pendingOffset, data, 0, n);
+        pendingOffset += n;
+        length[0] = n;
+        bytes += n;
+        if (pendingOffset == pendingLength) {
+            hasPending = false;
+            chunks++;
+        }
+        return 0;
+    }
+
+    private boolean loadNext() {
+        try {
+            if (!reader.next()) {
+                return false;
+            }
+        } catch (IOException e) {
+            ScanLog.e("Replay", "capture read failed", e);
+            return false;
+        }
+        int len = reader.length();
+        if (len > pending.length) {
+            pending = new byte[Math.max(len, pending.length * 2)];
+        }
+        reader.read(pending, 0);
+        pendingOffset = 0;
+        pendingLength = len;
+        hasPending = true;
+
+        long t = reader.timestampNanos();
+        long now = System.nanoTime();
+        if (lastCaptureNanos == Long.MIN_VALUE || t < lastCaptureNanos) {
+            baseWallNanos = now;
+            baseCaptureNanos = t;
+        }
+        lastCaptureNanos = t;
+        pendingDueNanos = speed == MAX_SPEED ? now
+                : baseWallNanos + (long) ((t - baseCaptureNanos) / speed);
+        return true;
+    }
+
+    @Override
+    public int enableMaster(boolean enable) {
+        return 0;
+    }
+
+    @Override
+    public int getMac(String[] mac) {
+        mac[0] = "00:00:00:00:00:00";
+        return 0;
+    }
+
+    @Override
+    public int startNewScan(String macAddress, String broadcastName, int rssi, String manufacturerId, String data) {
+        return 0;
+    }
+
+    @Override
+    public int stopScan() {
+        return 0;
+    }
+
+    @Override
+    public int send(byte[] data, int length) {
+        return 0;
+    }
+
+    @Override
+    public int ctsCtrl() {
+        return 0;
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.test1;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+/**
+ * 스캔 이벤트를 여러 구독자에게 나눠 주는 분배기.
+ *
+ * <p>스캔 스레드는 {@link #onScanEvents} 에서 구독자별 조건을 확인하고 이벤트 참조를 구독자의
+ * 고정 크기 큐에 넣기만 한다. 이벤트와 스냅샷은 불변이라 복사하지 않고 모든 구독자가 공유한다.
+ * 구독자마다 전용 스레드가 큐를 비우며 리스너를 호출하므로, 느리거나 예외를 던지는 구독자가
+ * 스캔 루프나 다른 구독자를 막지 않는다. 큐가 가득 차면 가장 오래된 이벤트를 버리고 센다.
+ *
+ * <p>전달 주기({@link Config#minIntervalMs})와 한 번에 넘길 최대 개수({@link Config#maxBatch})는
+ * 구독자별로 정한다. 주기 사이에 들어온 이벤트는 큐에 모였다가 한 번에 전달된다.
+ */
+public final class ScanDispatcher implements ScanEventListener, Closeable {
+    private static final String TAG = "ScanDispatcher";
+
+    public static final class Config {
+        Predicate<ScanEvent> filter;
+        int queueCapacity = 1024;
+        int maxBatch = 256;
+        long minIntervalMs;
+
+        /**
+         * 받을 이벤트 조건 (null 이면 전부). 스캔 스레드에서 호출되므로 가벼워야 한다.
+         */
+        public Config filter(Predicate<ScanEvent> filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /** 전달을 기다리는 최대 이벤트 수. 넘치면 가장 오래된 것부터 버린다. */
+        public Config queueCapacity(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("queueCapacity must be > 0");
+            }
+            this.queueCapacity = n;
+            return this;
+        }
+
+        /** 리스너 호출 한 번에 넘길 최대 이벤트 수 */
+        public Config maxBatch(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("maxBatch must be > 0");
+            }
+            this.maxBatch = n;
+            return this;
+        }
+
+        /** 리스너 호출 사이의 최소 간격 (0 이면 들어오는 대로 전달) */
+        public Config minIntervalMs(long ms) {
+            if (ms < 0) {
+                throw new IllegalArgumentException("minIntervalMs must be >= 0");
+            }
+            this.minIntervalMs = ms;
+            return this;
+        }
+    }
+
+    /**
+     * 구독 하나. 큐와 전달 스레드를 가진다.
+     */
+    public final class Subscription implements Closeable {
+        private final String name;
+        private final ScanEventListener listener;
+        private final Predicate<ScanEvent> filter;
+        private final int maxBatch;
+        private final long minIntervalNanos;
+        private final Thread thread;
+
+        // 원형 큐 (잠금 안에서만 접근)
+        private final ScanEvent[] queue;
+        private int head;
+        private int count;
+        private boolean closed;
+
+        // 스캔 스레드만 갱신
+        private volatile long accepted;
+        private volatile long rejected;
+        private volatile long dropped;
+        private volatile long filterErrors;
+        // 전달 스레드만 갱신
+        private volatile long delivered;
+        private volatile long batches;
+        private volatile long listenerErrors;
+
+        Subscription(String name, ScanEventListener listener, Config config) {
+            this.name = name;
+            this.listener = listener;
+            this.filter = config.filter;
+            this.maxBatch = config.maxBatch;
+            this.minIntervalNanos = config.minIntervalMs * 1_000_000L;
+            this.queue = new ScanEvent[config.queueCapacity];
+            thread = new Thread(this::run, "scan-sub-" + name);
+            thread.setDaemon(true);
+        }
+
+        /** 스캔 스레드에서 호출된다 */
+        void offer(List<ScanEvent> events) {
+            int added = 0;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                for (int i = 0; i < events.size(); i++) {
+                    ScanEvent event = events.get(i);
+                    if (!accept(event)) {
+                        continue;
+                    }
+                    if (count == queue.length) {
+                        // 가장 오래된 이벤트를 버린다
+                        queue[head] = null;
+                        head = (head + 1) % queue.length;
+                        count--;
+                        dropped++;
+                    }
+                    queue[(head + count) % queue.length] = event;
+                    count++;
+                    added++;
+                }
+                if (added > 0) {
+                    accepted += added;
+                    notify();
+                }
+            }
+        }
+
+        private boolean accept(ScanEvent event) {
+            if (filter == null) {
+                return true;
+            }
+            try {
+                if (filter.test(event)) {
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                filterErrors++;
+                ScanLog.e(TAG, "Subscriber " + name + " filter failed", e);
+            }
+            rejected++;
+            return false;
+        }
+
+        private void run() {
+            long lastDelivery = System.nanoTime() - minIntervalNanos;
+            try {
+                while (true) {
+                    List<ScanEvent> batch;
+                    synchronized (this) {
+                        while (!closed && count == 0) {
+                            wait();
+                        }
+                        // 주기 제한: 기다리는 동안 들어온 이벤트는 같은 배치로 모인다
+                        long remaining;
+                        while (!closed && (remaining = lastDelivery + minIntervalNanos - System.nanoTime()) > 0) {
+                            wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+                        }
+                        if (closed) {
+                            return;
+                        }
+                        int n = Math.min(count, maxBatch);
+                        batch = new ArrayList<>(n);
+                        for (int i = 0; i < n; i++) {
+                            batch.add(queue[head]);
+                            queue[head] = null;
+                            head = (head + 1) % queue.length;
+                        }
+                        count -= n;
+                    }
+                    lastDelivery = System.nanoTime();
+                    try {
+                        listener.onScanEvents(Collections.unmodifiableList(batch));
+                    } catch (RuntimeException e) {
+                        listenerErrors++;
+                        ScanLog.e(TAG, "Subscriber " + name + " failed", e);
+                    }
+                    delivered += batch.size();
+                    batches++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /** 조건을 통과해 큐에 들어간 이벤트 수 */
+        public long accepted() {
+            return accepted;
+        }
+
+        /** 조건에 맞지 않아 넣지 않은 이벤트 수 */
+        public long rejected() {
+            return rejected;
+        }
+
+        /** 큐가 넘쳐 버린 이벤트 수 */
+        public long dropped() {
+            return dropped;
+        }
+
+        public long delivered() {
+            return delivered;
+        }
+
+        /** 리스너 호출 횟수 */
+        public long batches() {
+            return batches;
+        }
+
+        /** 조건 또는 리스너에서 난 예외 수 */
+        public long errors() {
+            return filterErrors + listenerErrors;
+        }
+
+        /** 전달을 기다리는 이벤트 수 */
+        public synchronized int queued() {
+            return count;
+        }
+
+        public synchronized boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * 구독을 끝낸다. 아직 전달하지 않은 이벤트는 버린다. 리스너 안에서 호출해도 된다.
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                for (int i = 0; i < count; i++) {
+                    queue[(head + i) % queue.length] = null;
+                }
+                count = 0;
+                notify();
+            }
+            subscriptions.remove(this);
+        }
+
+        @Override
+        public String toString() {
+            return "Subscription{" + name + ", accepted=" + accepted + ", rejected=" + rejected
+                    + ", dropped=" + dropped + ", delivered=" + delivered + ", batches=" + batches
+                    + ", errors=" + errors() + ", queued=" + queued() + "}";
+        }
+    }
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /** 기본 설정(조건 없음, 큐 1024, 즉시 전달)으로 구독한다 */
+    public Subscription subscribe(String name, ScanEventListener listener) {
+        return subscribe(name, listener, new Config());
+    }
+
+    /**
+     * 구독자를 추가한다. 어느 스레드에서 호출해도 되고, 다음 {@link #onScanEvents} 부터 받는다.
+     *
+     * @param name 로그와 스레드 이름에 쓴다
+     */
+    public Subscription subscribe(String name, ScanEventListener listener, Config config) {
+        Subscription s = new Subscription(name, listener, config);
+        subscriptions.add(s);
+        s.thread.start();
+        return s;
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /** 현재 구독 목록 (복사본) */
+    public List<Subscription> subscriptions() {
+        return new ArrayList<>(subscriptions);
+    }
+
+    /**
+     * 구독자 큐에 이벤트를 넣는다. 스캔 스레드 하나에서만 호출한다. 블록되지 않는다.
+     */
+    @Override
+    public void onScanEvents(List<ScanEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Subscription s : subscriptions) {
+            s.offer(events);
+        }
+    }
+
+    /** 모든 구독을 끝낸다 */
+    @Override
+    public void close() {
+        for (Subscription s : subscriptions) {
+            s.close();
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.test1;
+
+import java.util.List;
+
+/**
+ * 스캔을 주기(interval)마다 창(window) 동안만 켜는 duty cycle 스케줄러.
+ *
+ * <ul>
+ *     <li>{@link #PROFILE_CONTINUOUS}: 계속 켠다 (기존 동작).</li>
+ *     <li>{@link #PROFILE_BALANCED}: 5초마다 3초.</li>
+ *     <li>{@link #PROFILE_LOW_POWER}: 10초마다 2초.</li>
+ *     <li>{@link #PROFILE_BURST}: {@link #trigger} 뒤 {@link Config#burstMs} 동안 계속 켜고, 원래 프로필로 돌아간다.</li>
+ * </ul>
+ *
+ * 호출자는 루프마다 {@link #update} 를 부르고, {@link #ACTION_START} 이면 Lib_AtStartNewScan 과 수신 스레드를,
+ * {@link #ACTION_STOP} 이면 Lib_AtStopScan 과 수신 스레드 정지를 수행한다. 꺼져 있는 동안은
+ * {@link #waitMs} 만큼 쉬면 되므로 UART 읽기도 깨어나기도 하지 않는다.
+ *
+ * <p>자동 모드에서는 주기마다 APPEARED + LOST 수(분당, EMA)로 프로필을 고른다. 더 자주 켜는 쪽으로는 바로 바꾸고,
+ * 덜 켜는 쪽으로는 {@link Config#settleCycles} 주기 연속 같은 판단이 나와야 바꾼다 (기기를 놓치지 않도록).
+ * 저전력 중 새 기기가 보이면 버스트로 올릴 수 있다 ({@link Config#burstOnAppear}).
+ *
+ * <p>시간은 호출자가 넘기므로 시계 없이 테스트할 수 있다. 스레드 안전하다.
+ */
+public final class ScanDutyCycle {
+    public static final int PROFILE_CONTINUOUS = 0;
+    public static final int PROFILE_BALANCED = 1;
+    public static final int PROFILE_LOW_POWER = 2;
+    public static final int PROFILE_BURST = 3;
+
+    /** 바꿀 것 없음 */
+    public static final int ACTION_NONE = 0;
+    /** 스캔을 시작하고 수신을 재개한다 */
+    public static final int ACTION_START = 1;
+    /** 스캔을 멈추고 수신을 쉰다 */
+    public static final int ACTION_STOP = 2;
+
+    private static final String TAG = "ScanDutyCycle";
+    private static final String[] NAMES = {"continuous", "balanced", "low-power", "burst"};
+    // 분당 churn EMA 가중치
+    private static final double ALPHA = 0.5;
+
+    public static final class Config {
+        final long[] windowMs = {10_000, 3_000, 2_000, 0};
+        final long[] intervalMs = {10_000, 5_000, 10_000, 0};
+        int profile = PROFILE_CONTINUOUS;
+        boolean auto;
+        double lowChurn = 2;
+        double highChurn = 20;
+        int settleCycles = 3;
+        long burstMs = 10_000;
+        boolean burstOnAppear = true;
+
+        /**
+         * 프로필의 창과 주기. window == interval 이면 끄지 않는다 (interval 은 churn 을 평가하는 주기).
+         * {@link #PROFILE_BURST} 는 {@link #burstMs} 로 정한다.
+         */
+        public Config profile(int profile, long windowMs, long intervalMs) {
+            if (profile < PROFILE_CONTINUOUS || profile > PROFILE_LOW_POWER) {
+                throw new IllegalArgumentException("profile " + profile);
+            }
+            if (windowMs <= 0 || intervalMs < windowMs) {
+                throw new IllegalArgumentException("window " + windowMs + " / interval " + intervalMs);
+            }
+            this.windowMs[profile] = windowMs;
+            this.intervalMs[profile] = intervalMs;
+            return this;
+        }
+
+        /** 처음 (또는 자동이 아닐 때 계속) 쓸 프로필 */
+        public Config initialProfile(int profile) {
+            if (profile < PROFILE_CONTINUOUS || profile > PROFILE_LOW_POWER) {
+                throw new IllegalArgumentException("profile " + profile);
+            }
+            this.profile = profile;
+            return this;
+        }
+
+        /** churn 에 따라 프로필을 고른다 */
+        public Config auto(boolean auto) {
+            this.auto = auto;
+            return this;
+        }
+
+        /**
+         * 자동 모드 기준 (분당 APPEARED + LOST). low 이하면 저전력, high 이상이면 연속, 그 사이는 균형.
+         */
+        public Config churnPerMinute(double low, double high) {
+            if (low < 0 || high < low) {
+                throw new IllegalArgumentException("churn " + low + ".." + high);
+            }
+            this.lowChurn = low;
+            this.highChurn = high;
+            return this;
+        }
+
+        /** 덜 켜는 프로필로 바꾸기 전에 같은 판단이 이어져야 하는 주기 수 */
+        public Config settleCycles(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("settleCycles must be > 0");
+            }
+            this.settleCycles = n;
+            return this;
+        }
+
+        /** 버스트 길이 */
+        public Config burstMs(long ms) {
+            if (ms <= 0) {
+                throw new IllegalArgumentException("burstMs must be > 0");
+            }
+            this.burstMs = ms;
+            return this;
+        }
+
+        /** 저전력 중 APPEARED 가 오면 버스트로 올린다 */
+        public Config burstOnAppear(boolean enable) {
+            this.burstOnAppear = enable;
+            return this;
+        }
+    }
+
+    private final Config config;
+
+    // this 로 보호
+    private boolean auto;
+    private int base;           // 버스트가 끝나면 돌아갈 프로필
+    private int active;
+    private long cycleStart;
+    private long burstUntil;
+    private boolean on;
+    private boolean started;
+    private long offStart;
+    private long lastGapMs;
+    private long onSince;
+    private long onMs;
+    private long startedAt;
+    private int cycleEvents;
+    private double churn = -1;  // 분당, 첫 주기 전에는 -1
+    private int pending = -1;   // 덜 켜는 쪽으로 바꿀 후보
+    private int pendingCycles;
+
+    private volatile long cycles;
+    private volatile long starts;
+    private volatile long stops;
+    private volatile long profileChanges;
+    private volatile long bursts;
+
+    public ScanDutyCycle() {
+        this(new Config());
+    }
+
+    public ScanDutyCycle(Config config) {
+        this.config = config;
+        this.auto = config.auto;
+        this.base = config.profile;
+        this.active = config.profile;
+    }
+
+    public static String profileName(int profile) {
+        return profile >= 0 && profile < NAMES.length ? NAMES[profile] : Integer.toString(profile);
+    }
+
+    /** 스캔을 켠 상태로 첫 주기를 시작한다 (스캔 시작 직후 호출) */
+    public synchronized void start(long now) {
+        started = true;
+        on = true;
+        cycleStart = now;
+        startedAt = now;
+        onSince = now;
+        onMs = 0;
+        lastGapMs = 0;
+        cycleEvents = 0;
+        if (active == PROFILE_BURST && now >= burstUntil) {
+            active = base;
+        }
+    }
+
+    /**
+     * 지금 해야 할 일. 주기가 끝났으면 churn 을 평가하고 프로필을 바꾼다.
+     *
+     * @return {@link #ACTION_NONE}, {@link #ACTION_START}, {@link #ACTION_STOP}
+     */
+    public synchronized int update(long now) {
+        if (!started) {
+            return ACTION_NONE;
+        }
+        if (active == PROFILE_BURST && now >= burstUntil) {
+            endCycle(now);
+            switchTo(base, now);
+        }
+        long interval = intervalMs(active);
+        if (now - cycleStart >= interval) {
+            int before = active;
+            endCycle(now);
+            if (active == before) {
+                // 오래 못 불렸으면 밀린 주기를 따라잡지 않고 지금부터 새로 센다
+                cycleStart = now - cycleStart >= 2 * interval ? now : cycleStart + interval;
+            }
+        }
+        boolean want = windowMs(active) >= intervalMs(active) || now - cycleStart < windowMs(active);
+        if (want == on) {
+            return ACTION_NONE;
+        }
+        on = want;
+        if (on) {
+            starts++;
+            lastGapMs = now - offStart;
+            onSince = now;
+            return ACTION_START;
+        }
+        stops++;
+        offStart = now;
+        onMs += now - onSince;
+        return ACTION_STOP;
+    }
+
+    /** 켜져 있으면 다음 주기까지, 꺼져 있으면 다시 켤 때까지 남은 시간 (ms) */
+    public synchronized long waitMs(long now) {
+        if (!started) {
+            return 0;
+        }
+        long next = cycleStart + intervalMs(active);
+        if (on && windowMs(active) < intervalMs(active)) {
+            next = cycleStart + windowMs(active);
+        }
+        if (active == PROFILE_BURST || (!on && burstUntil > now)) {
+            next = Math.min(next, burstUntil);
+        }
+        return Math.max(0, next - now);
+    }
+
+    public synchronized boolean isOn() {
+        return !started || on;
+    }
+
+    /**
+     * 기기 만료 판단에 쓸 시각. 마지막으로 꺼져 있던 시간만큼 늦춰, 스캔을 쉬는 동안 못 본 기기를
+     * LOST 로 내지 않는다. 꺼져 있는 동안은 끈 시점에 멈춰 있다.
+     */
+    public synchronized long evictionTime(long now) {
+        if (!started) {
+            return now;
+        }
+        return on ? now - lastGapMs : offStart - lastGapMs;
+    }
+
+    /**
+     * churn 을 센다. 저전력 중 새 기기가 보이면 ({@link Config#burstOnAppear}) 버스트로 올린다.
+     */
+    public synchronized void onScanEvents(List<ScanEvent> events, long now) {
+        int appeared = 0;
+        for (ScanEvent e : events) {
+            if (e.getType() == ScanEvent.Type.APPEARED) {
+                appeared++;
+                cycleEvents++;
+            } else if (e.getType() == ScanEvent.Type.LOST) {
+                cycleEvents++;
+            }
+        }
+        if (appeared > 0 && config.burstOnAppear && active == PROFILE_LOW_POWER) {
+            trigger(now);
+        }
+    }
+
+    /** {@link Config#burstMs} 동안 계속 스캔한다. 이미 버스트 중이면 늘린다. */
+    public synchronized void trigger(long now) {
+        bursts++;
+        burstUntil = now + config.burstMs;
+        if (active != PROFILE_BURST) {
+            switchTo(PROFILE_BURST, now);
+        }
+    }
+
+    /** 프로필을 직접 정한다. 자동 선택은 끈다. */
+    public synchronized void setProfile(int profile, long now) {
+        if (profile < PROFILE_CONTINUOUS || profile > PROFILE_LOW_POWER) {
+            throw new IllegalArgumentException("profile " + profile);
+        }
+        auto = false;
+        base = profile;
+        pending = -1;
+        if (active != PROFILE_BURST) {
+            switchTo(profile, now);
+        }
+    }
+
+    public synchronized void setAuto(boolean enable) {
+        auto = enable;
+        pending = -1;
+    }
+
+    public synchronized boolean isAuto() {
+        return auto;
+    }
+
+    /** 지금 쓰는 프로필 (버스트 포함) */
+    public synchronized int profile() {
+        return active;
+    }
+
+    /** 분당 APPEARED + LOST (EMA), 아직 주기가 끝나지 않았으면 0 */
+    public synchronized double churnPerMinute() {
+        return Math.max(0, churn);
+    }
+
+    /** 시작 이후 스캔을 켜 둔 비율 (0..1) */
+    public synchronized double dutyRatio(long now) {
+        if (!started || now <= startedAt) {
+            return 1;
+        }
+        long total = onMs + (on ? now - onSince : 0);
+        return (double) total / (now - startedAt);
+    }
+
+    /** 끝난 주기 수 */
+    public long cycles() {
+        return cycles;
+    }
+
+    /** {@link #ACTION_START} 횟수 */
+    public long starts() {
+        return starts;
+    }
+
+    /** {@link #ACTION_STOP} 횟수 */
+    public long stops() {
+        return stops;
+    }
+
+    public long profileChanges() {
+        return profileChanges;
+    }
+
+    public long bursts() {
+        return bursts;
+    }
+
+    private long windowMs(int profile) {
+        return profile == PROFILE_BURST ? config.burstMs : config.windowMs[profile];
+    }
+
+    private long intervalMs(int profile) {
+        return profile == PROFILE_BURST ? config.burstMs : config.intervalMs[profile];
+    }
+
+    private void switchTo(int profile, long now) {
+        if (profile == active) {
+            return;
+        }
+        ScanLog.i(TAG, profileName(active) + " -> " + profileName(profile));
+        active = profile;
+        cycleStart = now;
+        profileChanges++;
+    }
+
+    private void endCycle(long now) {
+        cycles++;
+        long length = Math.max(1, now - cycleStart);
+        double rate = cycleEvents * 60_000.0 / length;
+        churn = churn < 0 ? rate : churn + ALPHA * (rate - churn);
+        cycleEvents = 0;
+        if (!auto || active == PROFILE_BURST) {
+            return;
+        }
+        int target = churn >= config.highChurn ? PROFILE_CONTINUOUS
+                : churn <= config.lowChurn ? PROFILE_LOW_POWER : PROFILE_BALANCED;
+        if (target == base) {
+            pending = -1;
+            return;
+        }
+        if (target < base) {
+            // 더 자주 켜는 쪽은 바로
+            pending = -1;
+            base = target;
+            switchTo(target, now);
+            return;
+        }
+        if (target != pending) {
+            pending = target;
+            pendingCycles = 0;
+        }
+        if (++pendingCycles >= config.settleCycles) {
+            pending = -1;
+            base = target;
+            switchTo(target, now);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScanDutyCycle{profile=" + profileName(active) + (auto ? " (auto)" : "")
+                + ", on=" + on + ", churn=" + Math.round(churnPerMinute()) + "/min, cycles=" + cycles + "}";
+    }
+}
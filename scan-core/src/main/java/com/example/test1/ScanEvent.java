@@ -0,0 +1,47 @@
+package com.example.test1;
+
+/**
+ * 기기 상태 변화 이벤트 (불변).
+ */
+public final class ScanEvent {
+    public enum Type {
+        /** 테이블에 처음 등록된 기기 */
+        APPEARED,
+        /** ADV/RSP 페이로드가 바뀌었거나 RSSI 가 히스테리시스 이상 움직인 기기 */
+        CHANGED,
+        /** TTL 만료/용량 초과로 테이블에서 제거된 기기 */
+        LOST
+    }
+
+    private final Type type;
+    private final int changes;
+    private final DeviceSnapshot device;
+
+    public ScanEvent(Type type, int changes, DeviceSnapshot device) {
+        this.type = type;
+        this.changes = changes;
+        this.device = device;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** 변경 내용 비트마스크 ({@link DeviceTable#CHANGE_NEW} 등) */
+    public int getChanges() {
+        return changes;
+    }
+
+    public boolean isPayloadChanged() {
+        return (changes & (DeviceTable.CHANGE_ADV | DeviceTable.CHANGE_RSP)) != 0;
+    }
+
+    public DeviceSnapshot getDevice() {
+        return device;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + device;
+    }
+}
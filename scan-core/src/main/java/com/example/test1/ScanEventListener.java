@@ -0,0 +1,14 @@
+package com.example.test1;
+
+import java.util.List;
+
+/**
+ * 변경된 기기만 전달받는 스캔 결과 리스너.
+ * 수신 청크 하나를 처리한 뒤 이벤트가 있을 때만 한 번 호출된다.
+ */
+public interface ScanEventListener {
+    /**
+     * @param events 변경 불가능한 이벤트 목록 (스냅샷 포함). 복사 없이 보관해도 된다.
+     */
+    void onScanEvents(List<ScanEvent> events);
+}
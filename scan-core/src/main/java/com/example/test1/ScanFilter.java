@@ -0,0 +1,147 @@
+package com.example.test1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 스캔 필터 조건.
+ *
+ * <p>같은 종류의 조건끼리는 OR, 지정한 종류끼리는 AND 로 평가한다.
+ * 예) MAC 두 개 + 제조사 ID 하나 = (MAC1 또는 MAC2) 이면서 제조사 ID 일치.
+ * 지정하지 않은 종류는 검사하지 않는다.
+ *
+ * <p>{@link #compile()} 은 조건 중 하나를 Lib_AtStartNewScan 인자로 내리고(모듈 필터),
+ * 나머지는 파싱 직후 바이트 단위로 검사하는 {@link CompiledScanFilter} 로 만든다.
+ */
+public final class ScanFilter {
+    final Set<Long> macs = new LinkedHashSet<>();
+    // 상위 바이트 prefix: value 는 오른쪽 정렬, bytes 는 1..5
+    final List<long[]> macPrefixes = new ArrayList<>();
+    final List<byte[]> namePrefixes = new ArrayList<>();
+    final Set<Integer> manufacturerIds = new LinkedHashSet<>();
+    final Set<Integer> serviceUuids16 = new LinkedHashSet<>();
+    final List<long[]> serviceUuids128 = new ArrayList<>();
+    final List<PayloadMask> payloadMasks = new ArrayList<>();
+    int minRssi;
+
+    /** AD 페이로드의 offset 부터 (payload & mask) == (value & mask) */
+    static final class PayloadMask {
+        final int offset;
+        final byte[] value;
+        final byte[] mask;
+
+        PayloadMask(int offset, byte[] value, byte[] mask) {
+            this.offset = offset;
+            this.value = value;
+            this.mask = mask;
+        }
+    }
+
+    /** "AA:BB:CC:DD:EE:FF" */
+    public ScanFilter addMac(String mac) {
+        return addMac(parseMac(mac));
+    }
+
+    /** 패킹된 MAC (0xAABBCCDDEEFF) */
+    public ScanFilter addMac(long mac) {
+        macs.add(mac);
+        return this;
+    }
+
+    /** "AA:BB:CC" 처럼 1~5바이트 MAC prefix (OUI 등) */
+    public ScanFilter addMacPrefix(String prefix) {
+        byte[] b = parseHexBytes(prefix);
+        if (b.length < 1 || b.length > 5) {
+            throw new IllegalArgumentException("MAC prefix must be 1..5 bytes: " + prefix);
+        }
+        long value = 0;
+        for (byte x : b) {
+            value = value << 8 | (x & 0xFF);
+        }
+        macPrefixes.add(new long[]{value, b.length});
+        return this;
+    }
+
+    /** 광고 이름(Local Name) prefix */
+    public ScanFilter addNamePrefix(String prefix) {
+        if (prefix.isEmpty()) {
+            throw new IllegalArgumentException("empty name prefix");
+        }
+        namePrefixes.add(prefix.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    /** Manufacturer Specific Data 의 Company ID (0..0xFFFF) */
+    public ScanFilter addManufacturerId(int id) {
+        checkU16(id);
+        manufacturerIds.add(id);
+        return this;
+    }
+
+    /** 16비트 서비스 UUID. 서비스 UUID 목록과 서비스 데이터(0x16) 모두 검사한다. */
+    public ScanFilter addServiceUuid16(int uuid) {
+        checkU16(uuid);
+        serviceUuids16.add(uuid);
+        return this;
+    }
+
+    /** 128비트 서비스 UUID. 서비스 UUID 목록과 서비스 데이터(0x21) 모두 검사한다. */
+    public ScanFilter addServiceUuid128(UUID uuid) {
+        serviceUuids128.add(new long[]{uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()});
+        return this;
+    }
+
+    /**
+     * AD 페이로드 바이트 마스크.
+     *
+     * @param offset AD 페이로드 안의 시작 위치
+     * @param value  비교할 값
+     * @param mask   value 와 같은 길이, 1 비트만 비교한다
+     */
+    public ScanFilter addPayloadMask(int offset, byte[] value, byte[] mask) {
+        if (offset < 0 || value.length != mask.length || value.length == 0
+                || offset + value.length > ScanLineParser.MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException("bad payload mask");
+        }
+        payloadMasks.add(new PayloadMask(offset, value.clone(), mask.clone()));
+        return this;
+    }
+
+    /** 이 값(dBm, 음수) 미만은 버린다. 0 이면 제한 없음. */
+    public ScanFilter minRssi(int dbm) {
+        this.minRssi = dbm;
+        return this;
+    }
+
+    public CompiledScanFilter compile() {
+        return new CompiledScanFilter(this);
+    }
+
+    private static void checkU16(int v) {
+        if (v < 0 || v > 0xFFFF) {
+            throw new IllegalArgumentException("not a 16-bit value: " + v);
+        }
+    }
+
+    private static long parseMac(String mac) {
+        long v = MacAddress.parse(mac);
+        if (v == MacAddress.INVALID) {
+            throw new IllegalArgumentException("bad MAC: " + mac);
+        }
+        return v;
+    }
+
+    private static byte[] parseHexBytes(String s) {
+        String hex = s.replace(":", "").replace("-", "");
+        byte[] ascii = hex.getBytes(StandardCharsets.US_ASCII);
+        byte[] out = new byte[ascii.length / 2];
+        if ((ascii.length & 1) != 0 || Hex.decode(ascii, 0, ascii.length, out, 0) < 0) {
+            throw new IllegalArgumentException("bad hex: " + s);
+        }
+        return out;
+    }
+}
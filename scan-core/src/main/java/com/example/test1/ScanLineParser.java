@@ -0,0 +1,300 @@
+package com.example.test1;
+
+/**
+ * Lib_ComRecvAT 로 받은 바이트 스트림을 줄 단위로 파싱하는 스트리밍 파서.
+ *
+ * <p>"MAC:AA:BB:CC:DD:EE:FF,RSSI:-50,ADV:0201..." 형식의 줄을 String 변환 없이 recvData 배열 위에서 바로 해석한다.
+ * 파싱 결과(MAC, RSSI, 페이로드)는 파서 내부의 재사용 필드에 저장되고 {@link Callback#onRecord} 로 전달되므로,
+ * 콜백 밖으로 값을 보관하려면 복사해야 한다.
+ * 청크 경계에 걸린 마지막 줄은 기존 lineLeft 문자열 대신 고정 크기 carry 버퍼에 보관했다가 다음 청크와 이어 붙인다.
+ *
+ * <p>스레드 안전하지 않다. 수신 루프 하나당 인스턴스 하나를 사용한다.
+ */
+public final class ScanLineParser {
+    public static final int TYPE_ADV = 1;
+    public static final int TYPE_RSP = 2;
+
+    /** 광고 페이로드 최대 길이 (HEX 62자) */
+    public static final int MAX_PAYLOAD_BYTES = 31;
+    /** carry 버퍼 크기. 이보다 긴 줄은 버린다. */
+    public static final int MAX_LINE_LENGTH = 256;
+
+    // 거부 사유
+    public static final int REJECT_MALFORMED = 1;
+    public static final int REJECT_BAD_MAC = 2;
+    public static final int REJECT_BAD_RSSI = 3;
+    /** HEX 가 아닌 문자가 섞인 페이로드 */
+    public static final int REJECT_BAD_PAYLOAD = 4;
+    public static final int REJECT_UNKNOWN_TYPE = 5;
+    public static final int REJECT_LINE_TOO_LONG = 6;
+    /** HEX 62자 초과 */
+    public static final int REJECT_PAYLOAD_TOO_LONG = 7;
+    /** HEX 길이가 홀수 */
+    public static final int REJECT_ODD_PAYLOAD = 8;
+
+    public interface Callback {
+        /** 정상 파싱된 줄. parser 의 필드는 콜백이 끝나면 재사용된다. */
+        void onRecord(ScanLineParser parser);
+
+        /** "MAC:" 으로 시작하지만 형식이 잘못된 줄 */
+        default void onReject(int reason) {
+        }
+    }
+
+    /**
+     * HEX 페이로드를 디코딩하기 전에 줄을 거르는 필터. false 면 콜백 없이 버리고 {@link #filteredLines()} 를 센다.
+     */
+    public interface HeaderFilter {
+        boolean accept(long mac, int rssi, int type);
+    }
+
+    /** 로그/계측 출력용 거부 사유 이름 */
+    public static String rejectName(int reason) {
+        switch (reason) {
+            case REJECT_MALFORMED:
+                return "malformed";
+            case REJECT_BAD_MAC:
+                return "badMac";
+            case REJECT_BAD_RSSI:
+                return "badRssi";
+            case REJECT_BAD_PAYLOAD:
+                return "badHex";
+            case REJECT_UNKNOWN_TYPE:
+                return "unknownType";
+            case REJECT_LINE_TOO_LONG:
+                return "lineTooLong";
+            case REJECT_PAYLOAD_TOO_LONG:
+                return "payloadTooLong";
+            case REJECT_ODD_PAYLOAD:
+                return "oddPayload";
+            default:
+                return "reason" + reason;
+        }
+    }
+
+    private final byte[] carry = new byte[MAX_LINE_LENGTH];
+    private int carryLen;
+    private boolean carryOverflow;
+
+    private final byte[] payload = new byte[MAX_PAYLOAD_BYTES];
+    private int payloadLength;
+    private long mac;
+    private int rssi;
+    private int type;
+
+    private HeaderFilter headerFilter;
+    private long filteredLines;
+
+    /** 패킹된 MAC (0xAABBCCDDEEFF) */
+    public long mac() {
+        return mac;
+    }
+
+    public int rssi() {
+        return rssi;
+    }
+
+    /** {@link #TYPE_ADV} 또는 {@link #TYPE_RSP} */
+    public int type() {
+        return type;
+    }
+
+    /** 디코딩된 페이로드. 유효 길이는 {@link #payloadLength()} */
+    public byte[] payload() {
+        return payload;
+    }
+
+    public int payloadLength() {
+        return payloadLength;
+    }
+
+    /** null 이면 모든 줄을 디코딩한다 */
+    public void setHeaderFilter(HeaderFilter filter) {
+        this.headerFilter = filter;
+    }
+
+    /** 헤더 필터로 버린 줄 수 */
+    public long filteredLines() {
+        return filteredLines;
+    }
+
+    /** carry 에 남아 있는 미완성 줄의 길이 */
+    public int pendingLength() {
+        return carryLen;
+    }
+
+    /**
+     * 남아 있는 미완성 줄을 버린다. 스트림이 끊겼을 때(청크 유실 등) 호출한다.
+     */
+    public void reset() {
+        carryLen = 0;
+        carryOverflow = false;
+    }
+
+    /**
+     * 수신 청크 하나를 처리한다. 완성된 줄마다 callback 이 호출된다.
+     */
+    public void feed(byte[] buf, int off, int len, Callback callback) {
+        final int end = off + len;
+        int lineStart = off;
+        for (int i = off; i < end; i++) {
+            byte b = buf[i];
+            if (b != '\r' && b != '\n') {
+                continue;
+            }
+            if (carryLen > 0 || carryOverflow) {
+                // 이전 청크에서 이어지는 줄
+                appendCarry(buf, lineStart, i - lineStart);
+                if (carryOverflow) {
+                    callback.onReject(REJECT_LINE_TOO_LONG);
+                } else {
+                    parseLine(carry, 0, carryLen, callback);
+                }
+                reset();
+            } else if (i > lineStart) {
+                parseLine(buf, lineStart, i - lineStart, callback);
+            }
+            lineStart = i + 1;
+        }
+        // 마지막 미완성 줄은 다음 청크까지 보관
+        appendCarry(buf, lineStart, end - lineStart);
+    }
+
+    private void appendCarry(byte[] buf, int off, int len) {
+        if (len <= 0 || carryOverflow) {
+            return;
+        }
+        if (carryLen + len > carry.length) {
+            carryOverflow = true;
+            carryLen = 0;
+            return;
+        }
+        System.arraycopy(buf, off, carry, carryLen, len);
+        carryLen += len;
+    }
+
+    private void parseLine(byte[] a, int start, int len, Callback callback) {
+        int end = start + len;
+        if (len < 4 || a[start] != 'M' || a[start + 1] != 'A' || a[start + 2] != 'C' || a[start + 3] != ':') {
+            return; // "OK" 등 스캔 데이터가 아닌 줄은 무시
+        }
+
+        // MAC:<mac>,<label>:<rssi>,<type>:<payload>
+        int p = start + 4;
+        int comma1 = indexOf(a, p, end, (byte) ',');
+        int comma2 = comma1 < 0 ? -1 : indexOf(a, comma1 + 1, end, (byte) ',');
+        if (comma2 < 0) {
+            callback.onReject(REJECT_MALFORMED);
+            return;
+        }
+
+        int macStart = skipSpaces(a, p, comma1);
+        int macEnd = trimEnd(a, macStart, comma1);
+        long parsedMac = MacAddress.parse(a, macStart, macEnd - macStart);
+        if (parsedMac == MacAddress.INVALID) {
+            callback.onReject(REJECT_BAD_MAC);
+            return;
+        }
+
+        int colon = indexOf(a, comma1 + 1, comma2, (byte) ':');
+        int parsedRssi = colon < 0 ? Integer.MIN_VALUE : parseRssi(a, colon + 1, comma2);
+        if (parsedRssi == Integer.MIN_VALUE) {
+            callback.onReject(REJECT_BAD_RSSI);
+            return;
+        }
+
+        int typeStart = skipSpaces(a, comma2 + 1, end);
+        colon = indexOf(a, typeStart, end, (byte) ':');
+        if (colon < 0) {
+            callback.onReject(REJECT_MALFORMED);
+            return;
+        }
+        int parsedType;
+        if (startsWith(a, typeStart, colon, 'A', 'D', 'V')) {
+            parsedType = TYPE_ADV;
+        } else if (startsWith(a, typeStart, colon, 'R', 'S', 'P')) {
+            parsedType = TYPE_RSP;
+        } else {
+            callback.onReject(REJECT_UNKNOWN_TYPE);
+            return;
+        }
+
+        if (headerFilter != null && !headerFilter.accept(parsedMac, parsedRssi, parsedType)) {
+            filteredLines++;
+            return;
+        }
+
+        int hexStart = skipSpaces(a, colon + 1, end);
+        int hexLen = trimEnd(a, hexStart, end) - hexStart;
+        if (hexLen > MAX_PAYLOAD_BYTES * 2) {
+            callback.onReject(REJECT_PAYLOAD_TOO_LONG);
+            return;
+        }
+        if ((hexLen & 1) != 0) {
+            callback.onReject(REJECT_ODD_PAYLOAD);
+            return;
+        }
+        int n = Hex.decode(a, hexStart, hexLen, payload, 0);
+        if (n < 0) {
+            callback.onReject(REJECT_BAD_PAYLOAD);
+            return;
+        }
+
+        mac = parsedMac;
+        rssi = parsedRssi;
+        type = parsedType;
+        payloadLength = n;
+        callback.onRecord(this);
+    }
+
+    /** 부호 있는 10진 정수 파싱. 실패하거나 범위(-128..127)를 벗어나면 Integer.MIN_VALUE */
+    private static int parseRssi(byte[] a, int start, int end) {
+        int p = skipSpaces(a, start, end);
+        int e = trimEnd(a, p, end);
+        boolean negative = false;
+        if (p < e && (a[p] == '-' || a[p] == '+')) {
+            negative = a[p] == '-';
+            p++;
+        }
+        if (p == e || e - p > 3) {
+            return Integer.MIN_VALUE;
+        }
+        int v = 0;
+        for (; p < e; p++) {
+            int d = a[p] - '0';
+            if (d < 0 || d > 9) {
+                return Integer.MIN_VALUE;
+            }
+            v = v * 10 + d;
+        }
+        v = negative ? -v : v;
+        return (v < -128 || v > 127) ? Integer.MIN_VALUE : v;
+    }
+
+    private static int indexOf(byte[] a, int from, int end, byte c) {
+        for (int i = from; i < end; i++) {
+            if (a[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(byte[] a, int from, int end) {
+        while (from < end && (a[from] == ' ' || a[from] == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(byte[] a, int start, int end) {
+        while (end > start && (a[end - 1] == ' ' || a[end - 1] == '\t')) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean startsWith(byte[] a, int start, int end, char c0, char c1, char c2) {
+        return end - start >= 3 && a[start] == c0 && a[start + 1] == c1 && a[start + 2] == c2;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.test1;
+
+/**
+ * 스캔 경로용 로그. 레벨은 실행 중에 바꿀 수 있고, 꺼진 레벨은 메시지를 만들지 않는다.
+ *
+ * <p>메시지 조립 비용이 큰 경우 {@link Message} 람다를 넘기면 레벨이 켜졌을 때만 호출된다.
+ * 반복 루프 안의 로그는 {@link RateLimit} 으로 간격을 제한한다.
+ * 실제 출력은 {@link Sink} 가 담당한다 (앱: android.util.Log, 기본: System.err).
+ */
+public final class ScanLog {
+    // android.util.Log 와 같은 값
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    /** 모든 로그를 끈다 */
+    public static final int NONE = 7;
+
+    public interface Sink {
+        void write(int level, String tag, String message, Throwable error);
+    }
+
+    /** 레벨이 켜졌을 때만 호출되는 메시지 */
+    public interface Message {
+        String build();
+    }
+
+    private static final Sink STDERR = (level, tag, message, error) -> {
+        System.err.println("VVDIWE".charAt(Math.min(level, ERROR) - 1) + "/" + tag + ": " + message);
+        if (error != null) {
+            error.printStackTrace();
+        }
+    };
+
+    private static volatile int level = INFO;
+    private static volatile Sink sink = STDERR;
+
+    private ScanLog() {
+    }
+
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    public static void setSink(Sink newSink) {
+        sink = newSink != null ? newSink : STDERR;
+    }
+
+    public static boolean isEnabled(int l) {
+        return l >= level;
+    }
+
+    public static void log(int l, String tag, String message) {
+        if (l >= level) {
+            sink.write(l, tag, message, null);
+        }
+    }
+
+    public static void log(int l, String tag, Message message) {
+        if (l >= level) {
+            sink.write(l, tag, message.build(), null);
+        }
+    }
+
+    public static void v(String tag, String message) {
+        log(VERBOSE, tag, message);
+    }
+
+    public static void v(String tag, Message message) {
+        log(VERBOSE, tag, message);
+    }
+
+    public static void d(String tag, String message) {
+        log(DEBUG, tag, message);
+    }
+
+    public static void d(String tag, Message message) {
+        log(DEBUG, tag, message);
+    }
+
+    public static void i(String tag, String message) {
+        log(INFO, tag, message);
+    }
+
+    public static void w(String tag, String message) {
+        log(WARN, tag, message);
+    }
+
+    public static void e(String tag, String message) {
+        log(ERROR, tag, message);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        if (ERROR >= level) {
+            sink.write(ERROR, tag, message, error);
+        }
+    }
+
+    /**
+     * intervalMs 에 한 번만 통과시키는 제한기. 막힌 횟수는 다음에 통과한 메시지 뒤에 붙는다.
+     * 한 스레드에서만 사용한다.
+     */
+    public static final class RateLimit {
+        private final long intervalNanos;
+        private long nextNanos = Long.MIN_VALUE;
+        private long suppressed;
+
+        public RateLimit(long intervalMs) {
+            this.intervalNanos = intervalMs * 1_000_000;
+        }
+
+        /** 막힌 횟수 (마지막 통과 이후) */
+        public long suppressed() {
+            return suppressed;
+        }
+
+        boolean tryAcquire() {
+            long now = System.nanoTime();
+            if (nextNanos != Long.MIN_VALUE && now - nextNanos < 0) {
+                suppressed++;
+                return false;
+            }
+            nextNanos = now + intervalNanos;
+            return true;
+        }
+
+        /**
+         * 레벨이 켜져 있고 간격이 지났으면 기록한다.
+         */
+        public void log(int l, String tag, Message message) {
+            if (l < level || !tryAcquire()) {
+                return;
+            }
+            String text = message.build();
+            if (suppressed > 0) {
+                text += " (+" + suppressed + " suppressed)";
+                suppressed = 0;
+            }
+            sink.write(l, tag, text, null);
+        }
+    }
+}
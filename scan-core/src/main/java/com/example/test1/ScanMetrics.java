@@ -0,0 +1,344 @@
+package com.example.test1;
+
+/**
+ * 스캔 경로의 계측값. 갱신은 할당 없이 필드 증가/히스토그램 기록만 한다.
+ *
+ * <p>쓰기 스레드는 두 개로 나뉜다.
+ * <ul>
+ *     <li>수신 스레드({@link UartReader}): {@link #onRecv}, {@link #onScheduler}</li>
+ *     <li>파싱 스레드: 그 밖의 on* 메서드와 {@link #parseNanos}, {@link #callbackNanos}</li>
+ * </ul>
+ * 각 값은 한 스레드만 쓰므로 volatile 로 충분하다. 읽기는 {@link #snapshot()} 으로 아무 스레드에서나 한다.
+ */
+public final class ScanMetrics {
+    /** 거부 사유별 카운터 크기 ({@link ScanLineParser} REJECT_* 값을 index 로 사용) */
+    static final int REJECT_SLOTS = 16;
+
+    // 수신 스레드
+    private volatile long recvCalls;
+    private volatile long emptyReads;
+    private volatile long bytesRead;
+    private final Histogram recvBytes = new Histogram();
+    private final Histogram recvNanos = new Histogram();
+    // RecvScheduler 게이지 (-1 이면 아직 recv 전)
+    private volatile int schedulerMode = -1;
+    private volatile int recvBufferSize;
+    private volatile int recvMaxWaitMs;
+
+    // 파싱 스레드
+    private volatile long lines;
+    private volatile long records;
+    private volatile long filtered;
+    private volatile long truncatedAd;
+    private volatile long gaps;
+    private final long[] rejects = new long[REJECT_SLOTS];
+    private volatile long rejectTotal;
+    private final Histogram parseNanos = new Histogram();
+    private final Histogram callbackNanos = new Histogram();
+    private volatile int tableSize;
+    private volatile long expiredEvictions;
+    private volatile long capacityEvictions;
+
+    private final long startNanos = System.nanoTime();
+
+    private Thread dumpThread;
+
+    public interface Sink {
+        void onSnapshot(Snapshot snapshot);
+    }
+
+    /** Lib_ComRecvAT 호출 하나 */
+    public void onRecv(int bytes, long elapsedNanos) {
+        recvCalls++;
+        if (bytes <= 0) {
+            emptyReads++;
+        } else {
+            bytesRead += bytes;
+        }
+        recvBytes.record(bytes);
+        recvNanos.record(elapsedNanos);
+    }
+
+    /** recv 뒤 {@link RecvScheduler} 가 정한 다음 읽기 방식 */
+    public void onScheduler(RecvScheduler scheduler) {
+        schedulerMode = scheduler.mode();
+        recvBufferSize = scheduler.bufferSize();
+        recvMaxWaitMs = scheduler.maxWaitMs();
+    }
+
+    /** 정상 파싱된 줄 */
+    public void onRecord() {
+        records++;
+        lines++;
+    }
+
+    /** 사전 필터에서 버린 줄 */
+    public void onFiltered(long count) {
+        filtered += count;
+        lines += count;
+    }
+
+    /** 형식이 잘못된 줄 ({@link ScanLineParser} REJECT_*) */
+    public void onReject(int reason) {
+        rejects[reason >= 0 && reason < REJECT_SLOTS ? reason : 0]++;
+        lines++;
+        rejectTotal++;
+    }
+
+    /** AD structure 가 잘린 페이로드 (기존 parseAdvertisementData 가 null 을 반환하던 경우) */
+    public void onTruncatedAd() {
+        truncatedAd++;
+    }
+
+    /** 링 오버런으로 앞 데이터가 버려진 청크 */
+    public void onGap() {
+        gaps++;
+    }
+
+    /** 청크 하나의 파싱(테이블 반영 포함) 시간 */
+    public Histogram parseNanos() {
+        return parseNanos;
+    }
+
+    /** 리스너 호출 시간 */
+    public Histogram callbackNanos() {
+        return callbackNanos;
+    }
+
+    /** 청크 처리 후 기기 테이블 상태 */
+    public void onTable(DeviceTable table) {
+        tableSize = table.size();
+        expiredEvictions = table.expiredEvictions();
+        capacityEvictions = table.capacityEvictions();
+    }
+
+    public Snapshot snapshot() {
+        // rejectTotal 을 먼저 읽어 rejects[] 갱신이 보이게 한다
+        long rejectCount = rejectTotal;
+        long[] rejectCopy = rejects.clone();
+        return new Snapshot(System.nanoTime() - startNanos, recvCalls, emptyReads, bytesRead,
+                recvBytes.snapshot(), recvNanos.snapshot(), schedulerMode, recvBufferSize, recvMaxWaitMs,
+                lines, records, filtered, truncatedAd, gaps,
+                rejectCount, rejectCopy, parseNanos.snapshot(), callbackNanos.snapshot(),
+                tableSize, expiredEvictions, capacityEvictions);
+    }
+
+    /**
+     * periodMs 마다 스냅샷을 sink 로 보내는 데몬 스레드를 시작한다. 이미 돌고 있으면 바꾼다.
+     */
+    public synchronized void startDump(long periodMs, Sink sink) {
+        stopDump();
+        Thread t = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(periodMs);
+                    sink.onSnapshot(snapshot());
+                }
+            } catch (InterruptedException ignored) {
+                // stopDump
+            }
+        }, "metrics-dump");
+        t.setDaemon(true);
+        t.start();
+        dumpThread = t;
+    }
+
+    public synchronized void stopDump() {
+        if (dumpThread != null) {
+            dumpThread.interrupt();
+            dumpThread = null;
+        }
+    }
+
+    /** 특정 시점의 계측값 */
+    public static final class Snapshot {
+        private final long uptimeNanos;
+        private final long recvCalls;
+        private final long emptyReads;
+        private final long bytesRead;
+        private final Histogram.Snapshot recvBytes;
+        private final Histogram.Snapshot recvNanos;
+        private final int schedulerMode;
+        private final int recvBufferSize;
+        private final int recvMaxWaitMs;
+        private final long lines;
+        private final long records;
+        private final long filtered;
+        private final long truncatedAd;
+        private final long gaps;
+        private final long rejectTotal;
+        private final long[] rejects;
+        private final Histogram.Snapshot parseNanos;
+        private final Histogram.Snapshot callbackNanos;
+        private final int tableSize;
+        private final long expiredEvictions;
+        private final long capacityEvictions;
+
+        Snapshot(long uptimeNanos, long recvCalls, long emptyReads, long bytesRead,
+                 Histogram.Snapshot recvBytes, Histogram.Snapshot recvNanos,
+                 int schedulerMode, int recvBufferSize, int recvMaxWaitMs, long lines, long records,
+                 long filtered, long truncatedAd, long gaps, long rejectTotal, long[] rejects,
+                 Histogram.Snapshot parseNanos, Histogram.Snapshot callbackNanos,
+                 int tableSize, long expiredEvictions, long capacityEvictions) {
+            this.uptimeNanos = uptimeNanos;
+            this.recvCalls = recvCalls;
+            this.emptyReads = emptyReads;
+            this.bytesRead = bytesRead;
+            this.recvBytes = recvBytes;
+            this.recvNanos = recvNanos;
+            this.schedulerMode = schedulerMode;
+            this.recvBufferSize = recvBufferSize;
+            this.recvMaxWaitMs = recvMaxWaitMs;
+            this.lines = lines;
+            this.records = records;
+            this.filtered = filtered;
+            this.truncatedAd = truncatedAd;
+            this.gaps = gaps;
+            this.rejectTotal = rejectTotal;
+            this.rejects = rejects;
+            this.parseNanos = parseNanos;
+            this.callbackNanos = callbackNanos;
+            this.tableSize = tableSize;
+            this.expiredEvictions = expiredEvictions;
+            this.capacityEvictions = capacityEvictions;
+        }
+
+        /** 계측 시작부터 이 스냅샷까지의 시간 */
+        public long uptimeNanos() {
+            return uptimeNanos;
+        }
+
+        public long recvCalls() {
+            return recvCalls;
+        }
+
+        public long emptyReads() {
+            return emptyReads;
+        }
+
+        public double emptyReadRatio() {
+            return recvCalls == 0 ? 0 : (double) emptyReads / recvCalls;
+        }
+
+        public long bytesRead() {
+            return bytesRead;
+        }
+
+        /** recv 한 번에 읽은 바이트 수 분포 (빈 읽기 포함) */
+        public Histogram.Snapshot recvBytes() {
+            return recvBytes;
+        }
+
+        /** recv 한 번의 소요 시간 분포 */
+        public Histogram.Snapshot recvNanos() {
+            return recvNanos;
+        }
+
+        /** 마지막 recv 뒤 {@link RecvScheduler} 모드 (MODE_*), recv 전이면 -1 */
+        public int schedulerMode() {
+            return schedulerMode;
+        }
+
+        /** 다음 recv 에 쓸 버퍼 크기 */
+        public int recvBufferSize() {
+            return recvBufferSize;
+        }
+
+        /** 다음 recv 의 maxWait (ms) */
+        public int recvMaxWaitMs() {
+            return recvMaxWaitMs;
+        }
+
+        /** "MAC:" 줄 수 (정상 + 필터 + 거부) */
+        public long lines() {
+            return lines;
+        }
+
+        public long records() {
+            return records;
+        }
+
+        public long filtered() {
+            return filtered;
+        }
+
+        public long truncatedAd() {
+            return truncatedAd;
+        }
+
+        public long gaps() {
+            return gaps;
+        }
+
+        public long rejects() {
+            return rejectTotal;
+        }
+
+        /** @param reason {@link ScanLineParser} REJECT_* */
+        public long rejects(int reason) {
+            return reason >= 0 && reason < rejects.length ? rejects[reason] : 0;
+        }
+
+        public Histogram.Snapshot parseNanos() {
+            return parseNanos;
+        }
+
+        public Histogram.Snapshot callbackNanos() {
+            return callbackNanos;
+        }
+
+        public int tableSize() {
+            return tableSize;
+        }
+
+        public long expiredEvictions() {
+            return expiredEvictions;
+        }
+
+        public long capacityEvictions() {
+            return capacityEvictions;
+        }
+
+        /** 계측 시작 이후 평균 */
+        public double linesPerSecond() {
+            return uptimeNanos == 0 ? 0 : lines * 1e9 / uptimeNanos;
+        }
+
+        /** previous 스냅샷 이후 구간의 초당 줄 수 */
+        public double linesPerSecond(Snapshot previous) {
+            long dt = uptimeNanos - previous.uptimeNanos;
+            return dt <= 0 ? 0 : (lines - previous.lines) * 1e9 / dt;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("recv calls=").append(recvCalls)
+                    .append(" bytes=").append(bytesRead)
+                    .append(String.format(" empty=%.1f%%", emptyReadRatio() * 100))
+                    .append(" size[").append(recvBytes).append(']')
+                    .append("\nscheduler mode=")
+                    .append(schedulerMode < 0 ? "-" : RecvScheduler.modeName(schedulerMode))
+                    .append(" buffer=").append(recvBufferSize)
+                    .append(" maxWait=").append(recvMaxWaitMs).append("ms")
+                    .append(String.format("\nlines=%d (%.1f/s) records=%d filtered=%d truncatedAd=%d gaps=%d",
+                            lines, linesPerSecond(), records, filtered, truncatedAd, gaps))
+                    .append(" rejects=").append(rejectTotal);
+            if (rejectTotal > 0) {
+                sb.append(" {");
+                for (int i = 0; i < rejects.length; i++) {
+                    if (rejects[i] > 0) {
+                        sb.append(' ').append(ScanLineParser.rejectName(i)).append('=').append(rejects[i]);
+                    }
+                }
+                sb.append(" }");
+            }
+            sb.append("\nparseNs[").append(parseNanos).append(']')
+                    .append("\ncallbackNs[").append(callbackNanos).append(']')
+                    .append("\ntable size=").append(tableSize)
+                    .append(" expired=").append(expiredEvictions)
+                    .append(" capacity=").append(capacityEvictions);
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.test1;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 모듈 모드를 다시 맞추는 명령 순서. AT 명령으로 옵저버 모드를 설정하고({@link #setObserverMode}),
+ * {@link ScanWatchdog} 이 정한 조치를 수행한다({@link #recover}).
+ *
+ * <p>조치는 기기 테이블, 구독자, 필터, 리스너를 건드리지 않고 모듈과 수신 경로만 다시 세운다.
+ * 조치에 걸린 시간은 모아 두었다가 {@link #evictionTime} 에서 빼므로, 기기 만료는 벽시계를 따르되
+ * 명령을 보내느라 수신하지 못한 시간만큼만 늦춰진다. 스캔 스레드 하나에서만 사용한다.
+ */
+public final class ScanRecovery {
+    /** AT+OBSERVER, AT+EXIT 응답 기한 */
+    public static final long AT_COMMAND_TIMEOUT_MS = 500;
+    // +++ 뒤 기존 대기 시간 (응답이 없어도 실패로 보지 않는다)
+    private static final long AT_REENTER_TIMEOUT_MS = 100;
+
+    private static final String TAG = "ScanRecovery";
+
+    private final RadioStateMachine radio;
+    private final AtCommandEngine atEngine;
+    private final ChunkRing ring;
+    private long pausedMs;
+
+    public ScanRecovery(RadioStateMachine radio, AtCommandEngine atEngine, ChunkRing ring) {
+        this.radio = radio;
+        this.atEngine = atEngine;
+        this.ring = ring;
+    }
+
+    /** 스캔 시작. 이전 스캔에서 쌓인 조치 시간을 잊는다. */
+    public void start() {
+        pausedMs = 0;
+    }
+
+    /**
+     * Lib_AtCtsCtrl 뒤 AT+OBSERVER 로 마스터(옵저버) 모드를 켜거나 끈다. 응답이 오는 즉시 다음 단계로 진행하고,
+     * 실패하면 상태를 ERROR 로 둔다. 이미 요청한 모드면 명령을 보내지 않는다.
+     */
+    public int setObserverMode(boolean enable) {
+        if (enable ? radio.isMaster() : radio.state() == RadioStateMachine.STATE_BEACON) {
+            ScanLog.d(TAG, "Already in the requested mode. No changes made.");
+            return 0;
+        }
+
+        try {
+            // Step 1: CTS 컨트롤 호출 (beacon 모드 종료)
+            ScanLog.d(TAG, "Calling Lib_AtCtsCtrl()...");
+            int ret = radio.enterAtCommand();
+            if (ret != 0) {
+                ScanLog.e(TAG, "Lib_AtCtsCtrl() failed with code: " + ret); // 상태는 이미 ERROR
+                return ret;
+            }
+
+            // Step 2: OBSERVER 모드 설정 (0 = Master mode, 1 = Observer mode)
+            String observerCommand = enable ? "AT+OBSERVER=0" : "AT+OBSERVER=1";
+            ScanLog.d(TAG, "Sending command: " + observerCommand);
+            AtResponse response = atEngine.submit(observerCommand, AT_COMMAND_TIMEOUT_MS).get();
+            ScanLog.d(TAG, "OBSERVER response: " + response);
+            if (!response.isOk()) {
+                ScanLog.e(TAG, "OBSERVER command did not return OK");
+                radio.onCommandApplied(RadioStateMachine.STATE_ERROR);
+                return -1;
+            }
+
+            // Step 3: AT 모드 종료, Step 4: AT 모드 재진입
+            // 두 응답은 기록만 하고 결과와 상관없이 진행한다 (기존 동작과 같음).
+            // +++ 는 AT+EXIT 응답 뒤에 보내고 기존 대기 시간만큼만 기다린다.
+            logAtResult("EXIT", atEngine.submit("AT+EXIT", AT_COMMAND_TIMEOUT_MS));
+            logAtResult("+++", atEngine.submit("+++", AT_REENTER_TIMEOUT_MS));
+
+            // 상태 업데이트
+            radio.onCommandApplied(enable ? RadioStateMachine.STATE_MASTER : RadioStateMachine.STATE_BEACON);
+            ScanLog.d(TAG, "Master mode updated successfully via manual AT commands");
+            return 0;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ScanLog.e(TAG, "setObserverMode interrupted");
+            radio.onCommandApplied(RadioStateMachine.STATE_ERROR);
+            return -1;
+        } catch (Exception e) {
+            ScanLog.e(TAG, "Error in setObserverMode: " + e.getMessage());
+            radio.onCommandApplied(RadioStateMachine.STATE_ERROR);
+            return -1;
+        }
+    }
+
+    private static void logAtResult(String name, CompletableFuture<AtResponse> future) throws InterruptedException {
+        try {
+            ScanLog.d(TAG, name + " response: " + future.get());
+        } catch (ExecutionException e) {
+            ScanLog.e(TAG, name + " failed: " + e.getCause());
+        }
+    }
+
+    /**
+     * 워치독 조치를 수행하고 params 로 스캔을 다시 시작한다.
+     * <ul>
+     *     <li>{@link ScanWatchdog#ACTION_RESTART_SCAN}: Lib_AtStopScan + Lib_AtStartNewScan</li>
+     *     <li>{@link ScanWatchdog#ACTION_RESET_RADIO}: 수신 스레드를 멈추고 Lib_AtCtsCtrl + AT+OBSERVER 재설정</li>
+     *     <li>{@link ScanWatchdog#ACTION_REOPEN}: 수신 스레드를 멈추고 모드를 모르는 상태에서부터 다시 맞춘 뒤
+     *     청크 링을 비운다 (포트를 다시 여는 API 가 없으므로)</li>
+     * </ul>
+     *
+     * @param params 다시 시작할 스캔 조건, null 이면 스캔을 시작하지 못해 실패한다
+     * @return 0 이면 스캔을 다시 시작했다
+     */
+    public int recover(int action, RadioStateMachine.ScanParams params, UartReader reader, ScanLineParser parser) {
+        long start = System.nanoTime();
+        try {
+            return run(action, params, reader, parser);
+        } finally {
+            pausedMs += (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    private int run(int action, RadioStateMachine.ScanParams params, UartReader reader, ScanLineParser parser) {
+        if (params == null) {
+            ScanLog.e(TAG, "no scan parameters to restart with");
+            return -1;
+        }
+        int ret;
+        switch (action) {
+            case ScanWatchdog.ACTION_RESTART_SCAN:
+                ret = radio.stopScan();
+                if (ret == 0) {
+                    ret = radio.startScan(params);
+                }
+                parser.reset();
+                return ret;
+            case ScanWatchdog.ACTION_RESET_RADIO:
+                // AT 명령 응답을 엔진이 읽도록 수신 스레드를 먼저 멈춘다
+                reader.stop();
+                ret = radio.enterAtCommand();
+                if (ret == 0) {
+                    ret = setObserverMode(true); // AT+OBSERVER 재설정
+                }
+                break;
+            default:
+                reader.stop();
+                radio.reset();
+                ret = radio.enterBeacon();
+                if (ret == 0) {
+                    ret = radio.enterMaster();
+                }
+                ring.clear();
+                break;
+        }
+        if (ret == 0) {
+            ret = radio.startScan(params);
+        }
+        parser.reset();
+        reader.start();
+        return ret;
+    }
+
+    /** 조치를 수행하느라 수신하지 못한 시간을 뺀 만료 기준 시각 */
+    public long evictionTime(long now) {
+        return now - pausedMs;
+    }
+
+    /** 지금까지 조치에 쓴 시간 (ms) */
+    public long pausedMs() {
+        return pausedMs;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.test1;
+
+/**
+ * 스캔 수신이 멈추거나 깨졌는지 판단하고, 단계별 복구 조치를 정한다.
+ *
+ * <p>장애:
+ * <ul>
+ *     <li>{@link #FAULT_STALL}: {@link Config#stallMs} 동안 UART 에서 한 바이트도 오지 않는다.</li>
+ *     <li>{@link #FAULT_GARBAGE}: {@link Config#garbage} 줄 묶음마다 거부된 줄 비율이 기준 이상이다.</li>
+ *     <li>{@link #FAULT_COMMAND}: 모듈 명령이 실패하거나 응답 기한을 넘겼다 ({@link #onCommandFailed}).</li>
+ * </ul>
+ * 조치는 장애가 이어질 때마다 한 단계씩 올린다: {@link #ACTION_RESTART_SCAN} (스캔 재시작) →
+ * {@link #ACTION_RESET_RADIO} (Lib_AtCtsCtrl + 옵저버 재설정) → {@link #ACTION_REOPEN} (모듈 모드 초기화와
+ * 수신 경로 재생성). 마지막 단계는 성공할 때까지 {@link Config#backoffMs} 로 간격을 늘리며 되풀이한다.
+ * 조치 뒤 처음으로 깨끗한 줄 묶음을 받으면 복구로 보고 장애 발생부터 걸린 시간을 {@link #recoveryMs()} 에 남긴다.
+ *
+ * <p>기기가 전혀 없는 곳에서는 모듈이 정상이어도 데이터가 없으므로 {@link Config#stallMs} 를 기기 TTL 이상으로
+ * 넉넉히 잡는다. 복구 중({@link #isRecovering()})이어도 기기 만료는 멈추지 않는다 ({@link ScanRecovery#evictionTime}).
+ * 조치는 {@link ScanRecovery#recover} 로 수행한다.
+ * 시간은 호출자가 넘기므로 시계 없이 테스트할 수 있다. 판단은 스캔 스레드 하나에서만 하고, 통계는 아무
+ * 스레드에서나 읽는다.
+ */
+public final class ScanWatchdog {
+    public static final int FAULT_NONE = 0;
+    public static final int FAULT_STALL = 1;
+    public static final int FAULT_GARBAGE = 2;
+    public static final int FAULT_COMMAND = 3;
+
+    public static final int ACTION_NONE = 0;
+    /** Lib_AtStopScan + Lib_AtStartNewScan */
+    public static final int ACTION_RESTART_SCAN = 1;
+    /** Lib_AtCtsCtrl, 옵저버 재설정, 스캔 시작 */
+    public static final int ACTION_RESET_RADIO = 2;
+    /** 모듈 모드를 처음부터 다시 맞추고 수신 스레드와 청크 링을 새로 시작한다 */
+    public static final int ACTION_REOPEN = 3;
+
+    private static final String TAG = "ScanWatchdog";
+    private static final String[] FAULT_NAMES = {"none", "stall", "garbage", "command"};
+    private static final String[] ACTION_NAMES = {"none", "restart-scan", "reset-radio", "reopen"};
+
+    public static final class Config {
+        long stallMs = 10_000;
+        int minLines = 50;
+        double rejectRatio = 0.5;
+        long minBackoffMs = 5_000;
+        long maxBackoffMs = 300_000;
+
+        /** 이 시간 동안 데이터가 없으면 멈춘 것으로 본다 */
+        public Config stallMs(long ms) {
+            if (ms <= 0) {
+                throw new IllegalArgumentException("stallMs must be > 0");
+            }
+            stallMs = ms;
+            return this;
+        }
+
+        /** minLines 줄마다 거부 비율이 ratio 이상이면 깨진 스트림으로 본다 */
+        public Config garbage(int minLines, double ratio) {
+            if (minLines <= 0 || ratio <= 0 || ratio > 1) {
+                throw new IllegalArgumentException("garbage " + minLines + " lines / " + ratio);
+            }
+            this.minLines = minLines;
+            this.rejectRatio = ratio;
+            return this;
+        }
+
+        /** {@link #ACTION_REOPEN} 을 되풀이하는 간격 (두 배씩 max 까지) */
+        public Config backoffMs(long min, long max) {
+            if (min <= 0 || max < min) {
+                throw new IllegalArgumentException("backoff " + min + ".." + max);
+            }
+            minBackoffMs = min;
+            maxBackoffMs = max;
+            return this;
+        }
+    }
+
+    private final Config config;
+
+    // 스캔 스레드 전용
+    private long lastDataMs;
+    private int lines;
+    private int rejects;
+    private boolean commandFault;
+    private int level;
+    private long faultStartMs;
+    private long nextAttemptMs;
+    private long backoffMs;
+
+    private final Histogram recoveryMs = new Histogram();
+    private final long[] faults = new long[FAULT_NAMES.length];
+    private final long[] attempts = new long[ACTION_NAMES.length];
+    private volatile long recoveries;
+    private volatile long commandFailures;
+
+    public ScanWatchdog() {
+        this(new Config());
+    }
+
+    public ScanWatchdog(Config config) {
+        this.config = config;
+        this.backoffMs = config.minBackoffMs;
+    }
+
+    public static String faultName(int fault) {
+        return fault >= 0 && fault < FAULT_NAMES.length ? FAULT_NAMES[fault] : Integer.toString(fault);
+    }
+
+    public static String actionName(int action) {
+        return action >= 0 && action < ACTION_NAMES.length ? ACTION_NAMES[action] : Integer.toString(action);
+    }
+
+    /** 스캔 시작. 진행 중이던 장애는 잊는다 (통계는 유지). */
+    public void start(long now) {
+        level = 0;
+        commandFault = false;
+        nextAttemptMs = 0;
+        backoffMs = config.minBackoffMs;
+        resume(now);
+    }
+
+    /** 쉬던 스캔을 다시 켰을 때 (duty cycle 창 시작). 멈춤 판단을 지금부터 다시 센다. */
+    public void resume(long now) {
+        lastDataMs = now;
+        lines = 0;
+        rejects = 0;
+    }
+
+    /** recv 결과 (0 이면 빈 읽기) */
+    public void onData(int bytes, long now) {
+        if (bytes > 0) {
+            lastDataMs = now;
+        }
+    }
+
+    /** 파싱한 줄 수 (필터로 거른 줄 포함)와 거부된 줄 수 */
+    public void onLines(int accepted, int rejected) {
+        lines += accepted + rejected;
+        rejects += rejected;
+    }
+
+    /** 모듈 명령 실패나 응답 기한 초과. 다음 {@link #check} 에서 바로 조치한다 (재시도 간격 중이면 간격이 끝난 뒤). */
+    public void onCommandFailed() {
+        commandFault = true;
+        commandFailures++;
+    }
+
+    /**
+     * 장애를 판단하고 필요한 조치를 돌려준다. 조치를 돌려준 뒤에는 판단을 처음부터 다시 센다.
+     *
+     * @return {@link #ACTION_NONE} 이나 수행할 조치
+     */
+    public int check(long now) {
+        int fault = FAULT_NONE;
+        if (commandFault) {
+            // 조치를 돌려줄 때까지 지우지 않는다 (재시도 간격 중에 실패해도 잊지 않는다)
+            fault = FAULT_COMMAND;
+        } else if (now - lastDataMs >= config.stallMs) {
+            fault = FAULT_STALL;
+        } else if (lines >= config.minLines) {
+            boolean garbage = rejects >= lines * config.rejectRatio;
+            lines = 0;
+            rejects = 0;
+            if (garbage) {
+                fault = FAULT_GARBAGE;
+            } else if (level > 0) {
+                recovered(now);
+            }
+        }
+        if (fault == FAULT_NONE || now < nextAttemptMs) {
+            return ACTION_NONE;
+        }
+        commandFault = false;
+        if (level == 0) {
+            faultStartMs = now;
+            synchronized (faults) {
+                faults[fault]++;
+            }
+        }
+        level = Math.min(level + 1, ACTION_REOPEN);
+        synchronized (attempts) {
+            attempts[level]++;
+        }
+        if (level == ACTION_REOPEN) {
+            nextAttemptMs = now + backoffMs;
+            backoffMs = Math.min(config.maxBackoffMs, backoffMs * 2);
+        }
+        ScanLog.w(TAG, faultName(fault) + " -> " + actionName(level)
+                + " (" + (now - faultStartMs) + " ms since fault)");
+        resume(now);
+        return level;
+    }
+
+    private void recovered(long now) {
+        long took = now - faultStartMs;
+        recoveryMs.record(took);
+        recoveries++;
+        ScanLog.i(TAG, "recovered by " + actionName(level) + " in " + took + " ms");
+        level = 0;
+        nextAttemptMs = 0;
+        backoffMs = config.minBackoffMs;
+    }
+
+    /** 장애가 나서 아직 복구를 확인하지 못했으면 true */
+    public boolean isRecovering() {
+        return level > 0;
+    }
+
+    /** 마지막으로 수행한 조치 단계, 정상이면 {@link #ACTION_NONE} */
+    public int level() {
+        return level;
+    }
+
+    /** 종류별 장애 횟수 (조치로 이어진 장애 한 건을 한 번으로 센다) */
+    public long faults(int fault) {
+        synchronized (faults) {
+            return faults[fault];
+        }
+    }
+
+    /** 단계별 조치 횟수 */
+    public long attempts(int action) {
+        synchronized (attempts) {
+            return attempts[action];
+        }
+    }
+
+    /** 복구를 확인한 횟수 */
+    public long recoveries() {
+        return recoveries;
+    }
+
+    public long commandFailures() {
+        return commandFailures;
+    }
+
+    /** 장애 발생부터 복구 확인까지 걸린 시간 (ms) */
+    public Histogram.Snapshot recoveryMs() {
+        return recoveryMs.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "ScanWatchdog{level=" + actionName(level) + ", stall=" + faults(FAULT_STALL)
+                + ", garbage=" + faults(FAULT_GARBAGE) + ", command=" + faults(FAULT_COMMAND)
+                + ", recoveries=" + recoveries + ", recoveryMs " + recoveryMs() + "}";
+    }
+}
@@ -0,0 +1,456 @@
+package com.example.test1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * 기기 목격(sighting) 기록을 디스크에 남기는 저널.
+ *
+ * <p>스캔 스레드는 {@link #append} 로 미리 할당한 배치 버퍼에 기록만 하고, 배치가 차거나
+ * {@link Config#flushIntervalMs} 가 지나면 전용 writer 스레드에 넘긴다. writer 는 배치 하나를
+ * 블록 하나로 인코딩(선택적으로 deflate 압축)해 쓰고 블록마다 한 번 fsync 한다(group commit).
+ * 빈 배치 버퍼가 없으면 기다리지 않고 버린 뒤 {@link #droppedRecords()} 를 센다.
+ *
+ * <pre>
+ * 파일 헤더 (16): magic "BLESJ001" (8) | 생성 epoch ms (8)
+ * 블록 헤더 (25): magic 0x534A424B (4) | 기준 시각 epoch ms (8) | 레코드 수 (4) | flags (1, 1 = deflate)
+ *                 | 저장 길이 (4) | 원본 CRC32 (4)
+ * 레코드    (16): MAC (6) | RSSI (1, signed) | type (1) | 기준 시각 이후 ms (4) | 페이로드 해시 (4)
+ * </pre>
+ * 파일은 {@link Config#maxFileBytes} 또는 {@link Config#maxFileAgeMs} 를 넘으면 바꾸고,
+ * {@link Config#retentionMs} 보다 오래됐거나 {@link Config#maxFiles} 를 넘는 파일은 지운다.
+ * 읽기는 {@link SightingReader}.
+ *
+ * <p>{@link #append}, {@link #flushIfDue}, {@link #close} 는 경합 없는 잠금으로 보호되므로
+ * 스캔 스레드가 아닌 곳에서 close 해도 된다.
+ */
+public final class SightingJournal implements Closeable {
+    static final byte[] FILE_MAGIC = {'B', 'L', 'E', 'S', 'J', '0', '0', '1'};
+    static final int FILE_HEADER = 16;
+    static final int BLOCK_MAGIC = 0x534A424B;
+    static final int BLOCK_HEADER = 25;
+    static final int RECORD_SIZE = 16;
+    static final int FLAG_DEFLATE = 1;
+    static final String SUFFIX = ".sj";
+
+    private static final String TAG = "SightingJournal";
+
+    public static final class Config {
+        String prefix = "sightings";
+        int batchRecords = 512;
+        int batches = 4;
+        long flushIntervalMs = 1000;
+        boolean compress = true;
+        boolean sync = true;
+        long maxFileBytes = 8L * 1024 * 1024;
+        long maxFileAgeMs = 60 * 60 * 1000L;
+        long retentionMs = 7L * 24 * 60 * 60 * 1000;
+        int maxFiles;
+
+        public Config prefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        /** 블록 하나의 최대 레코드 수 */
+        public Config batchRecords(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("batchRecords must be > 0");
+            }
+            this.batchRecords = n;
+            return this;
+        }
+
+        /** 배치 버퍼 수 (writer 가 밀렸을 때 버틸 수 있는 배치 수) */
+        public Config batches(int n) {
+            if (n < 2) {
+                throw new IllegalArgumentException("batches must be >= 2");
+            }
+            this.batches = n;
+            return this;
+        }
+
+        /** 배치가 덜 차도 이 시간이 지나면 쓴다 */
+        public Config flushIntervalMs(long ms) {
+            this.flushIntervalMs = ms;
+            return this;
+        }
+
+        /** 블록 deflate 압축 (압축 결과가 더 크면 원본으로 쓴다) */
+        public Config compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        /** 블록마다 fsync */
+        public Config sync(boolean sync) {
+            this.sync = sync;
+            return this;
+        }
+
+        public Config maxFileBytes(long bytes) {
+            this.maxFileBytes = bytes;
+            return this;
+        }
+
+        public Config maxFileAgeMs(long ms) {
+            this.maxFileAgeMs = ms;
+            return this;
+        }
+
+        /** 이보다 오래된(마지막 수정 기준) 파일은 지운다. 0 이면 시간으로 지우지 않는다. */
+        public Config retentionMs(long ms) {
+            this.retentionMs = ms;
+            return this;
+        }
+
+        /** 남겨 둘 최대 파일 수, 0 이면 제한 없음 */
+        public Config maxFiles(int n) {
+            this.maxFiles = n;
+            return this;
+        }
+    }
+
+    /** 배치 버퍼. 스캔 스레드가 채우고 writer 가 비운다. */
+    private static final class Batch {
+        final long[] macs;
+        final byte[] rssi;
+        final byte[] types;
+        final long[] times;
+        final int[] hashes;
+        int count;
+        long firstTimeMs;
+
+        Batch(int n) {
+            macs = new long[n];
+            rssi = new byte[n];
+            types = new byte[n];
+            times = new long[n];
+            hashes = new int[n];
+        }
+    }
+
+    private static final Batch CLOSE = new Batch(0);
+
+    private final File dir;
+    private final Config config;
+    private final ArrayBlockingQueue<Batch> free;
+    private final ArrayBlockingQueue<Batch> full;
+    private final Thread writer;
+
+    // append 쪽 (잠금 안)
+    private Batch current;
+    private boolean closed;
+
+    // writer 스레드 전용
+    private final byte[] raw;
+    private final byte[] compressed;
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER);
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private FileOutputStream out;
+    // 쓰기에 실패한 파일. 깨진 블록 뒤에 이어 쓰지 않도록 다음 배치는 새 파일에 쓴다.
+    private boolean outFailed;
+    private long fileIndex;
+    private long fileBytes;
+    private long fileOpenedMs;
+
+    private volatile long appended;
+    private volatile long dropped;
+    private volatile long written;
+    private volatile long blocks;
+    private volatile long storedBytes;
+    private volatile long writeErrors;
+
+    public SightingJournal(File dir, Config config) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        this.dir = dir;
+        this.config = config;
+        free = new ArrayBlockingQueue<>(config.batches);
+        full = new ArrayBlockingQueue<>(config.batches + 1);
+        for (int i = 0; i < config.batches; i++) {
+            free.add(new Batch(config.batchRecords));
+        }
+        raw = new byte[config.batchRecords * RECORD_SIZE];
+        // deflate 가 원본보다 커지는 경우를 고려한 여유
+        compressed = new byte[raw.length + raw.length / 100 + 64];
+        List<File> existing = SightingReader.files(dir, config.prefix);
+        fileIndex = existing.isEmpty() ? 0 : indexOf(existing.get(existing.size() - 1), config.prefix);
+        openNextFile();
+        writer = new Thread(this::runWriter, "sighting-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 목격 하나를 기록한다. 블록되지 않는다.
+     *
+     * @param timeMs 수신 시각 (epoch ms)
+     */
+    public synchronized void append(long mac, int rssi, int type, byte[] payload, int off, int len, long timeMs) {
+        if (closed) {
+            return;
+        }
+        Batch b = current;
+        if (b == null) {
+            b = free.poll();
+            if (b == null) {
+                dropped++;
+                return;
+            }
+            b.count = 0;
+            b.firstTimeMs = timeMs;
+            current = b;
+        }
+        int i = b.count++;
+        b.macs[i] = mac;
+        b.rssi[i] = (byte) Math.max(-128, Math.min(127, rssi));
+        b.types[i] = (byte) type;
+        b.times[i] = timeMs;
+        b.hashes[i] = payloadHash(payload, off, len);
+        appended++;
+        if (b.count == b.macs.length) {
+            submit();
+        }
+    }
+
+    /**
+     * 배치가 덜 찼어도 flushIntervalMs 가 지났으면 writer 에 넘긴다. 스캔 루프에서 주기적으로 호출한다.
+     */
+    public synchronized void flushIfDue(long nowMs) {
+        Batch b = current;
+        if (b != null && b.count > 0 && nowMs - b.firstTimeMs >= config.flushIntervalMs) {
+            submit();
+        }
+    }
+
+    /** 잠금 안에서 호출 */
+    private void submit() {
+        // full 은 배치 수보다 크므로 항상 들어간다
+        full.add(current);
+        current = null;
+    }
+
+    /**
+     * 남은 배치를 모두 쓰고 파일을 닫는다.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (current != null && current.count > 0) {
+                submit();
+            }
+            full.add(CLOSE);
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** append 된 레코드 수 */
+    public long appendedRecords() {
+        return appended;
+    }
+
+    /** 빈 배치 버퍼가 없어 버린 레코드 수 */
+    public long droppedRecords() {
+        return dropped;
+    }
+
+    /** 파일에 쓴 레코드 수 */
+    public long writtenRecords() {
+        return written;
+    }
+
+    public long blocks() {
+        return blocks;
+    }
+
+    /** 파일에 쓴 블록 바이트 (헤더 포함) */
+    public long storedBytes() {
+        return storedBytes;
+    }
+
+    public long writeErrors() {
+        return writeErrors;
+    }
+
+    public File directory() {
+        return dir;
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                Batch b;
+                try {
+                    b = full.poll(config.flushIntervalMs, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                try {
+                    if (b == null) {
+                        rotateIfNeeded(System.currentTimeMillis());
+                        continue;
+                    }
+                    if (b == CLOSE) {
+                        break;
+                    }
+                    try {
+                        writeBlock(b);
+                    } finally {
+                        free.add(b);
+                    }
+                } catch (IOException e) {
+                    writeErrors++;
+                    outFailed = true;
+                    ScanLog.e(TAG, "journal write failed", e);
+                }
+            }
+        } finally {
+            deflater.end();
+            try {
+                out.close();
+            } catch (IOException e) {
+                ScanLog.e(TAG, "journal close failed", e);
+            }
+        }
+    }
+
+    private void writeBlock(Batch b) throws IOException {
+        rotateIfNeeded(System.currentTimeMillis());
+        long base = b.firstTimeMs;
+        int n = b.count;
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            long mac = b.macs[i];
+            for (int s = 40; s >= 0; s -= 8) {
+                raw[p++] = (byte) (mac >>> s);
+            }
+            raw[p++] = b.rssi[i];
+            raw[p++] = b.types[i];
+            p = putInt(raw, p, (int) Math.max(0, Math.min(0xFFFFFFFFL, b.times[i] - base)));
+            p = putInt(raw, p, b.hashes[i]);
+        }
+        crc.reset();
+        crc.update(raw, 0, p);
+
+        byte[] data = raw;
+        int length = p;
+        int flags = 0;
+        if (config.compress) {
+            deflater.reset();
+            deflater.setInput(raw, 0, p);
+            deflater.finish();
+            int c = deflater.deflate(compressed);
+            if (deflater.finished() && c < p) {
+                data = compressed;
+                length = c;
+                flags = FLAG_DEFLATE;
+            }
+        }
+
+        header.clear();
+        header.putInt(BLOCK_MAGIC).putLong(base).putInt(n).put((byte) flags).putInt(length)
+                .putInt((int) crc.getValue());
+        out.write(header.array(), 0, BLOCK_HEADER);
+        out.write(data, 0, length);
+        if (config.sync) {
+            out.getFD().sync();
+        }
+        fileBytes += BLOCK_HEADER + length;
+        storedBytes += BLOCK_HEADER + length;
+        written += n;
+        blocks++;
+    }
+
+    private void rotateIfNeeded(long nowMs) throws IOException {
+        if (outFailed) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                ScanLog.w(TAG, "closing failed journal file: " + e);
+            }
+            openNextFile();
+            outFailed = false;
+            return;
+        }
+        if (fileBytes > FILE_HEADER
+                && (fileBytes >= config.maxFileBytes || nowMs - fileOpenedMs >= config.maxFileAgeMs)) {
+            out.close();
+            openNextFile();
+        }
+    }
+
+    private void openNextFile() throws IOException {
+        fileIndex++;
+        File f = new File(dir, String.format(Locale.US, "%s-%06d%s", config.prefix, fileIndex, SUFFIX));
+        out = new FileOutputStream(f);
+        fileOpenedMs = System.currentTimeMillis();
+        ByteBuffer h = ByteBuffer.allocate(FILE_HEADER);
+        h.put(FILE_MAGIC).putLong(fileOpenedMs);
+        out.write(h.array());
+        fileBytes = FILE_HEADER;
+        applyRetention(fileOpenedMs);
+    }
+
+    private void applyRetention(long nowMs) {
+        List<File> files = SightingReader.files(dir, config.prefix);
+        // 마지막 파일은 지금 쓰고 있는 파일
+        int removable = files.size() - 1;
+        for (int i = 0; i < removable; i++) {
+            File f = files.get(i);
+            boolean overCount = config.maxFiles > 0 && files.size() - i > config.maxFiles;
+            boolean expired = config.retentionMs > 0 && nowMs - f.lastModified() > config.retentionMs;
+            if ((overCount || expired) && !f.delete()) {
+                ScanLog.w(TAG, "cannot delete " + f);
+            }
+        }
+    }
+
+    private static int putInt(byte[] a, int p, int v) {
+        a[p] = (byte) (v >>> 24);
+        a[p + 1] = (byte) (v >>> 16);
+        a[p + 2] = (byte) (v >>> 8);
+        a[p + 3] = (byte) v;
+        return p + 4;
+    }
+
+    /** 페이로드 FNV-1a 32비트 해시 */
+    public static int payloadHash(byte[] payload, int off, int len) {
+        int h = 0x811C9DC5;
+        for (int i = off; i < off + len; i++) {
+            h ^= payload[i] & 0xFF;
+            h *= 0x01000193;
+        }
+        return h;
+    }
+
+    static long indexOf(File file, String prefix) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+    }
+}
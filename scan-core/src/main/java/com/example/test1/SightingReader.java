@@ -0,0 +1,251 @@
+package com.example.test1;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * {@link SightingJournal} 파일을 오래된 순서로 한 레코드씩 읽는다. 블록 단위로 읽으므로 파일 크기와 상관없이
+ * 메모리는 블록 하나만큼 쓴다.
+ *
+ * <p>끝이 잘린 블록(쓰는 중 종료)이나 CRC 가 맞지 않는 블록을 만나면 그 파일의 나머지를 건너뛰고
+ * {@link #corruptBlocks()} 를 센다. 스레드 안전하지 않다.
+ */
+public final class SightingReader implements Closeable {
+    // 손상된 헤더로 큰 배열을 만들지 않도록 하는 상한
+    private static final int MAX_BLOCK_RECORDS = 1 << 20;
+
+    private final List<File> files;
+    private int fileIndex = -1;
+    private DataInputStream in;
+
+    private final Inflater inflater = new Inflater();
+    private final CRC32 crc = new CRC32();
+    private byte[] stored = new byte[0];
+    private byte[] raw = new byte[0];
+    private int count;
+    private int index;
+    private long baseTimeMs;
+    private long corruptBlocks;
+
+    private long mac;
+    private int rssi;
+    private int type;
+    private long timeMs;
+    private int payloadHash;
+
+    public SightingReader(List<File> files) {
+        this.files = new ArrayList<>(files);
+    }
+
+    public static SightingReader open(File dir, String prefix) {
+        return new SightingReader(files(dir, prefix));
+    }
+
+    /** dir 안의 prefix 저널 파일, 번호 순 */
+    public static List<File> files(File dir, String prefix) {
+        File[] found = dir.listFiles((d, name) -> name.startsWith(prefix + "-") && name.endsWith(SightingJournal.SUFFIX));
+        if (found == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(found, (a, b) -> Long.compare(SightingJournal.indexOf(a, prefix), SightingJournal.indexOf(b, prefix)));
+        return Arrays.asList(found);
+    }
+
+    /**
+     * 다음 레코드로 이동한다.
+     *
+     * @return 더 이상 없으면 false
+     */
+    public boolean next() throws IOException {
+        while (index >= count) {
+            if (!readBlock()) {
+                return false;
+            }
+        }
+        int p = index++ * SightingJournal.RECORD_SIZE;
+        long m = 0;
+        for (int i = 0; i < 6; i++) {
+            m = m << 8 | (raw[p + i] & 0xFF);
+        }
+        mac = m;
+        rssi = raw[p + 6];
+        type = raw[p + 7] & 0xFF;
+        timeMs = baseTimeMs + (getInt(raw, p + 8) & 0xFFFFFFFFL);
+        payloadHash = getInt(raw, p + 12);
+        return true;
+    }
+
+    /** 패킹된 MAC (0xAABBCCDDEEFF) */
+    public long mac() {
+        return mac;
+    }
+
+    public int rssi() {
+        return rssi;
+    }
+
+    /** {@link ScanLineParser#TYPE_ADV} / {@link ScanLineParser#TYPE_RSP} */
+    public int type() {
+        return type;
+    }
+
+    /** 수신 시각 (epoch ms) */
+    public long timeMs() {
+        return timeMs;
+    }
+
+    public int payloadHash() {
+        return payloadHash;
+    }
+
+    /** 건너뛴 손상 블록 수 */
+    public long corruptBlocks() {
+        return corruptBlocks;
+    }
+
+    /**
+     * 남은 레코드를 CSV ("time_ms,mac,rssi,type,payload_hash") 로 내보낸다.
+     *
+     * @return 내보낸 레코드 수
+     */
+    public long exportCsv(Appendable out) throws IOException {
+        out.append("time_ms,mac,rssi,type,payload_hash\n");
+        long n = 0;
+        while (next()) {
+            out.append(Long.toString(timeMs)).append(',')
+                    .append(MacAddress.toString(mac)).append(',')
+                    .append(Integer.toString(rssi)).append(',')
+                    .append(type == ScanLineParser.TYPE_RSP ? "RSP" : "ADV").append(',')
+                    .append(String.format("%08x", payloadHash)).append('\n');
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+        fileIndex = files.size();
+    }
+
+    private boolean readBlock() throws IOException {
+        while (true) {
+            if (in == null && !openNextFile()) {
+                return false;
+            }
+            int first = in.read();
+            if (first < 0) {
+                // 파일의 정상 끝
+                nextFile();
+                continue;
+            }
+            try {
+                int magic = first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedShort();
+                if (magic != SightingJournal.BLOCK_MAGIC) {
+                    skipFile();
+                    continue;
+                }
+                long base = in.readLong();
+                int n = in.readInt();
+                int flags = in.readByte();
+                int length = in.readInt();
+                int expectedCrc = in.readInt();
+                if (n < 0 || n > MAX_BLOCK_RECORDS) {
+                    skipFile();
+                    continue;
+                }
+                int rawLength = n * SightingJournal.RECORD_SIZE;
+                if (length < 0 || length > rawLength + rawLength / 100 + 64) {
+                    skipFile();
+                    continue;
+                }
+                if (stored.length < length) {
+                    stored = new byte[length];
+                }
+                if (raw.length < rawLength) {
+                    raw = new byte[rawLength];
+                }
+                in.readFully(stored, 0, length);
+                if ((flags & SightingJournal.FLAG_DEFLATE) != 0) {
+                    inflater.reset();
+                    inflater.setInput(stored, 0, length);
+                    if (inflater.inflate(raw, 0, rawLength) != rawLength) {
+                        skipFile();
+                        continue;
+                    }
+                } else if (length == rawLength) {
+                    System.arraycopy(stored, 0, raw, 0, length);
+                } else {
+                    skipFile();
+                    continue;
+                }
+                crc.reset();
+                crc.update(raw, 0, rawLength);
+                if ((int) crc.getValue() != expectedCrc) {
+                    skipFile();
+                    continue;
+                }
+                baseTimeMs = base;
+                count = n;
+                index = 0;
+                return true;
+            } catch (EOFException e) {
+                // 쓰다 만 블록
+                skipFile();
+            } catch (DataFormatException e) {
+                skipFile();
+            }
+        }
+    }
+
+    private void skipFile() throws IOException {
+        corruptBlocks++;
+        nextFile();
+    }
+
+    private void nextFile() throws IOException {
+        in.close();
+        in = null;
+    }
+
+    private boolean openNextFile() throws IOException {
+        while (++fileIndex < files.size()) {
+            DataInputStream d = new DataInputStream(new BufferedInputStream(new FileInputStream(files.get(fileIndex))));
+            byte[] magic = new byte[SightingJournal.FILE_MAGIC.length];
+            try {
+                d.readFully(magic);
+                d.readLong();
+            } catch (EOFException e) {
+                d.close();
+                continue;
+            }
+            if (!Arrays.equals(magic, SightingJournal.FILE_MAGIC)) {
+                d.close();
+                throw new IOException("not a sighting journal: " + files.get(fileIndex));
+            }
+            in = d;
+            return true;
+        }
+        return false;
+    }
+
+    private static int getInt(byte[] a, int p) {
+        return (a[p] & 0xFF) << 24 | (a[p + 1] & 0xFF) << 16 | (a[p + 2] & 0xFF) << 8 | (a[p + 3] & 0xFF);
+    }
+}
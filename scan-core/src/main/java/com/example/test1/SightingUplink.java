@@ -0,0 +1,491 @@
+package com.example.test1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Deflater;
+
+/**
+ * 스캔 이벤트를 묶어 서버로 올리는 업링크.
+ *
+ * <p>{@link #onScanEvents} 는 목격을 현재 {@link UplinkBatch} 에 넣기만 한다. 묶음이
+ * {@link Config#batchSightings} 만큼 차거나 {@link Config#batchAgeMs} 가 지나면 전용 스레드가 인코딩/압축해
+ * 스풀 디렉터리에 파일 하나로 쓰고, 가장 오래된 파일부터 {@link Sender} 로 보낸 뒤 지운다.
+ * 전송이 실패하면 지수 백오프(지터 포함)로 다시 시도하며, 그동안 새 묶음은 디스크에 쌓인다.
+ * 스풀이 {@link Config#maxSpoolBytes} 를 넘으면 가장 오래된 묶음부터 버린다.
+ * 스풀 파일은 프로세스가 다시 시작돼도 남아 있다가 다음 업링크가 이어서 보낸다.
+ *
+ * <p>{@link ScanDispatcher} 구독자로 붙이는 것을 전제로 한다 (스캔 스레드에서 직접 불러도 블록되지 않는다).
+ */
+public final class SightingUplink implements ScanEventListener, Closeable {
+    static final String SUFFIX = ".blu";
+    /** {@link #http} 가 보내는 Content-Type */
+    public static final String CONTENT_TYPE = "application/x-ble-sightings";
+
+    private static final String TAG = "SightingUplink";
+    private static final long LOG_INTERVAL_MS = 10_000;
+
+    /** 묶음 하나를 서버로 보낸다. 성공하면 정상 반환한다. */
+    public interface Sender {
+        /**
+         * @throws RejectedException 다시 보내도 받아들여지지 않는 묶음 (버린다)
+         * @throws IOException       나중에 다시 시도한다
+         */
+        void send(byte[] body) throws IOException;
+    }
+
+    /** 서버가 묶음 자체를 거부함 (재시도하지 않는다) */
+    public static final class RejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    public static final class Config {
+        String prefix = "uplink";
+        int batchSightings = 500;
+        long batchAgeMs = 5000;
+        boolean compress = true;
+        long maxSpoolBytes = 16L * 1024 * 1024;
+        long retryBaseMs = 1000;
+        long retryMaxMs = 5 * 60 * 1000L;
+
+        public Config prefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        /** 묶음 하나의 최대 목격 수 */
+        public Config batchSightings(int n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("batchSightings must be > 0");
+            }
+            this.batchSightings = n;
+            return this;
+        }
+
+        /** 묶음이 덜 차도 첫 목격 후 이 시간이 지나면 보낸다 */
+        public Config batchAgeMs(long ms) {
+            this.batchAgeMs = ms;
+            return this;
+        }
+
+        public Config compress(boolean compress) {
+            this.compress = compress;
+            return this;
+        }
+
+        /** 보내지 못한 묶음을 디스크에 쌓아 둘 최대 크기 */
+        public Config maxSpoolBytes(long bytes) {
+            this.maxSpoolBytes = bytes;
+            return this;
+        }
+
+        /** 재시도 간격: 실패할 때마다 base 부터 두 배씩, max 까지 (각각 절반 범위 지터) */
+        public Config retry(long baseMs, long maxMs) {
+            if (baseMs <= 0 || maxMs < baseMs) {
+                throw new IllegalArgumentException("0 < base <= max");
+            }
+            this.retryBaseMs = baseMs;
+            this.retryMaxMs = maxMs;
+            return this;
+        }
+    }
+
+    private final File dir;
+    private final Config config;
+    private final Sender sender;
+    private final Thread thread;
+
+    // 잠금 안에서만 접근
+    private UplinkBatch current;
+    private long currentStartNanos;
+    private final ArrayDeque<UplinkBatch> sealed = new ArrayDeque<>();
+    private boolean closed;
+
+    // 업링크 스레드 전용
+    private final ArrayDeque<File> spool = new ArrayDeque<>();
+    private final Deflater deflater;
+    private long fileIndex;
+    private int failures;
+    private long nextAttemptNanos;
+    private final ScanLog.RateLimit failureLog = new ScanLog.RateLimit(LOG_INTERVAL_MS);
+
+    // onScanEvents 쪽만 갱신
+    private volatile long sightings;
+    // 업링크 스레드만 갱신
+    private volatile long batches;
+    private volatile long encodedBytes;
+    private volatile long sentBatches;
+    private volatile long sentSightings;
+    private volatile long sentBytes;
+    private volatile long sendFailures;
+    private volatile long rejectedBatches;
+    private volatile long droppedBatches;
+    private volatile long spoolErrors;
+    private volatile long spoolBytes;
+    private volatile int spoolFiles;
+
+    public SightingUplink(File spoolDir, Sender sender, Config config) throws IOException {
+        if (!spoolDir.isDirectory() && !spoolDir.mkdirs()) {
+            throw new IOException("cannot create " + spoolDir);
+        }
+        this.dir = spoolDir;
+        this.sender = sender;
+        this.config = config;
+        this.deflater = config.compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        current = new UplinkBatch(config.batchSightings);
+        // 이전 실행에서 보내지 못한 묶음부터 보낸다
+        for (File f : files(spoolDir, config.prefix)) {
+            spool.add(f);
+            spoolBytes += f.length();
+            fileIndex = indexOf(f, config.prefix);
+        }
+        spoolFiles = spool.size();
+        thread = new Thread(this::run, "sighting-uplink");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * POST 로 묶음을 보내는 {@link Sender}. 2xx 는 성공, 408/429/5xx 와 연결 오류는 재시도,
+     * 나머지 4xx 는 {@link RejectedException}.
+     */
+    public static Sender http(URL url, int timeoutMs) {
+        return body -> {
+            HttpURLConnection c = (HttpURLConnection) url.openConnection();
+            c.setConnectTimeout(timeoutMs);
+            c.setReadTimeout(timeoutMs);
+            c.setRequestMethod("POST");
+            c.setDoOutput(true);
+            c.setFixedLengthStreamingMode(body.length);
+            c.setRequestProperty("Content-Type", CONTENT_TYPE);
+            try (OutputStream out = c.getOutputStream()) {
+                out.write(body);
+            }
+            int code = c.getResponseCode();
+            // 응답을 끝까지 읽어야 연결이 재사용된다
+            try (InputStream in = code >= 400 ? c.getErrorStream() : c.getInputStream()) {
+                if (in != null) {
+                    byte[] skip = new byte[512];
+                    while (in.read(skip) != -1) {
+                        // 버린다
+                    }
+                }
+            }
+            if (code / 100 == 2) {
+                return;
+            }
+            if (code == 408 || code == 429 || code >= 500) {
+                throw new IOException("HTTP " + code);
+            }
+            throw new RejectedException("HTTP " + code);
+        };
+    }
+
+    /**
+     * 목격을 현재 묶음에 넣는다. 블록되지 않는다 (디스크/네트워크는 업링크 스레드에서).
+     */
+    @Override
+    public synchronized void onScanEvents(List<ScanEvent> events) {
+        if (closed) {
+            return;
+        }
+        for (int i = 0; i < events.size(); i++) {
+            if (current.isEmpty()) {
+                currentStartNanos = System.nanoTime();
+                // 업링크 스레드가 묶음 기한에 맞춰 깨어나도록 알린다
+                notifyAll();
+            }
+            if (current.add(events.get(i))) {
+                seal();
+            }
+        }
+        sightings += events.size();
+    }
+
+    /** 덜 찬 묶음도 바로 보내도록 넘긴다 */
+    public synchronized void flush() {
+        if (!current.isEmpty()) {
+            seal();
+        }
+    }
+
+    /** 잠금 안에서 호출 */
+    private void seal() {
+        sealed.add(current);
+        current = new UplinkBatch(config.batchSightings);
+        notifyAll();
+    }
+
+    /**
+     * 남은 목격을 스풀에 쓰고 스레드를 멈춘다. 아직 보내지 못한 묶음은 디스크에 남는다.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            flush();
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                UplinkBatch b;
+                synchronized (this) {
+                    waitForWork();
+                    b = sealed.poll();
+                    if (b == null && closed) {
+                        return;
+                    }
+                }
+                if (b != null) {
+                    writeSpool(b);
+                } else {
+                    sendOldest();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /** 잠금 안에서 호출. 쓸 묶음이 생기거나, 보낼 때가 되거나, 닫힐 때까지 기다린다. */
+    private void waitForWork() throws InterruptedException {
+        while (sealed.isEmpty() && !closed) {
+            long now = System.nanoTime();
+            long waitNanos = Long.MAX_VALUE;
+            if (!current.isEmpty()) {
+                long age = currentStartNanos + config.batchAgeMs * 1_000_000L - now;
+                if (age <= 0) {
+                    seal();
+                    return;
+                }
+                waitNanos = age;
+            }
+            if (!spool.isEmpty()) {
+                long retry = nextAttemptNanos - now;
+                if (retry <= 0) {
+                    return;
+                }
+                waitNanos = Math.min(waitNanos, retry);
+            }
+            if (waitNanos == Long.MAX_VALUE) {
+                wait();
+            } else {
+                wait(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+            }
+        }
+    }
+
+    private void writeSpool(UplinkBatch b) {
+        byte[] encoded = b.encode(deflater);
+        fileIndex++;
+        File f = new File(dir, String.format(Locale.US, "%s-%012d%s", config.prefix, fileIndex, SUFFIX));
+        File tmp = new File(dir, f.getName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(encoded);
+                out.getFD().sync();
+            }
+            if (!tmp.renameTo(f)) {
+                throw new IOException("cannot rename " + tmp);
+            }
+        } catch (IOException e) {
+            spoolErrors++;
+            droppedBatches++;
+            ScanLog.e(TAG, "spool write failed", e);
+            tmp.delete();
+            return;
+        }
+        spool.add(f);
+        spoolBytes += encoded.length;
+        // 오래된 묶음부터 버린다 (방금 쓴 것은 남긴다)
+        while (spoolBytes > config.maxSpoolBytes && spool.size() > 1) {
+            removeOldest();
+            droppedBatches++;
+        }
+        spoolFiles = spool.size();
+        encodedBytes += encoded.length;
+        batches++;
+    }
+
+    private void sendOldest() {
+        File f = spool.peek();
+        byte[] body;
+        int count;
+        try {
+            body = Files.readAllBytes(f.toPath());
+            count = UplinkBatch.sightings(body);
+        } catch (IOException e) {
+            ScanLog.e(TAG, "dropping unreadable spool file " + f, e);
+            spoolErrors++;
+            droppedBatches++;
+            removeOldest();
+            return;
+        }
+        try {
+            sender.send(body);
+            sentBatches++;
+            sentSightings += count;
+            sentBytes += body.length;
+            failures = 0;
+            nextAttemptNanos = 0;
+        } catch (RejectedException e) {
+            ScanLog.w(TAG, "batch rejected: " + e.getMessage());
+            rejectedBatches++;
+        } catch (IOException | RuntimeException e) {
+            sendFailures++;
+            failures++;
+            long delayMs = backoffMs(failures);
+            nextAttemptNanos = System.nanoTime() + delayMs * 1_000_000L;
+            failureLog.log(ScanLog.WARN, TAG, () -> "upload failed (" + e + "), "
+                    + spool.size() + " batches queued, retry in " + delayMs + " ms");
+            return;
+        }
+        removeOldest();
+    }
+
+    private void removeOldest() {
+        File f = spool.poll();
+        spoolBytes -= f.length();
+        if (!f.delete() && f.exists()) {
+            ScanLog.w(TAG, "cannot delete " + f);
+        }
+        spoolFiles = spool.size();
+    }
+
+    /** failures 번째 실패 뒤 기다릴 시간 (지정 간격의 절반~전체) */
+    long backoffMs(int failures) {
+        long max = config.retryBaseMs << Math.min(failures - 1, 30);
+        if (max <= 0 || max > config.retryMaxMs) {
+            max = config.retryMaxMs;
+        }
+        return max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+    }
+
+    /** 받은 목격 수 */
+    public long sightings() {
+        return sightings;
+    }
+
+    /** 스풀에 쓴 묶음 수 */
+    public long batches() {
+        return batches;
+    }
+
+    /** 인코딩/압축 후 바이트 (헤더 포함) */
+    public long encodedBytes() {
+        return encodedBytes;
+    }
+
+    public long sentBatches() {
+        return sentBatches;
+    }
+
+    public long sentSightings() {
+        return sentSightings;
+    }
+
+    public long sentBytes() {
+        return sentBytes;
+    }
+
+    /** 보낸 목격 하나당 평균 바이트, 보낸 것이 없으면 0 */
+    public double bytesPerSighting() {
+        long n = sentSightings;
+        return n == 0 ? 0 : (double) sentBytes / n;
+    }
+
+    /** 재시도할 전송 실패 수 */
+    public long sendFailures() {
+        return sendFailures;
+    }
+
+    /** 서버가 거부해 버린 묶음 수 */
+    public long rejectedBatches() {
+        return rejectedBatches;
+    }
+
+    /** 스풀 용량 초과나 디스크 오류로 버린 묶음 수 */
+    public long droppedBatches() {
+        return droppedBatches;
+    }
+
+    public long spoolErrors() {
+        return spoolErrors;
+    }
+
+    /** 보내지 못하고 디스크에 남아 있는 묶음 수 */
+    public int spooledBatches() {
+        return spoolFiles;
+    }
+
+    public long spooledBytes() {
+        return spoolBytes;
+    }
+
+    public File directory() {
+        return dir;
+    }
+
+    @Override
+    public String toString() {
+        return "SightingUplink{sightings=" + sightings + ", batches=" + batches + ", sent=" + sentBatches
+                + " (" + sentBytes + " B), failures=" + sendFailures + ", rejected=" + rejectedBatches
+                + ", dropped=" + droppedBatches + ", spooled=" + spoolFiles + " (" + spoolBytes + " B)}";
+    }
+
+    /** dir 안의 prefix 스풀 파일, 번호 순 */
+    static List<File> files(File dir, String prefix) {
+        File[] found = dir.listFiles((d, name) -> name.startsWith(prefix + "-") && name.endsWith(SUFFIX));
+        if (found == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(found, (a, b) -> Long.compare(indexOf(a, prefix), indexOf(b, prefix)));
+        return Arrays.asList(found);
+    }
+
+    static long indexOf(File f, String prefix) {
+        String name = f.getName();
+        try {
+            return Long.parseLong(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
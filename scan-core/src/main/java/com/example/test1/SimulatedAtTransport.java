@@ -0,0 +1,493 @@
+package com.example.test1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 단말 없이 스캔 파이프라인을 실행/측정하기 위한 {@link AtTransport} 시뮬레이터.
+ *
+ * <p>두 가지 소스를 지원한다.
+ * <ul>
+ *     <li>생성: 설정한 기기 수/광고 주기로 "MAC:..,RSSI:..,ADV:.." / "RSP:" 줄을 만들어
+ *     청크 크기와 줄 분할 방식에 맞춰 {@link #recv} 로 돌려준다.</li>
+ *     <li>재생: {@link LogcatCapture} 등으로 읽은 실제 수신 청크를 순서대로 돌려준다.</li>
+ * </ul>
+ *
+ * <p>realtime 이면 벽시계 기준으로 광고 시각이 된 줄만 내보낸다. recv 는 UART 읽기처럼 버퍼가 차거나,
+ * 데이터가 들어온 뒤 timeout 동안 다음 데이터가 없거나, maxWait 가 지나면 돌아온다.
+ * 아니면 가상 시계를 사용해 recv 를 호출할 때마다 청크를 가득 채워 최대 속도로 공급한다.
+ *
+ * <p>AT 명령(AT+VERSION, AT+MAC?, AT+OBSERVER=.., AT+EXIT, +++ 등)에는 모듈과 같은 형식으로 응답한다.
+ */
+public class SimulatedAtTransport implements AtTransport {
+
+    public enum Fragmentation {
+        /** 청크가 항상 줄 끝에서 끊긴다 */
+        LINE_ALIGNED,
+        /** 청크 크기에서 그대로 끊는다 (줄이 두 청크에 걸칠 수 있음, 실제 UART 와 같음) */
+        ANY
+    }
+
+    public static final class Config {
+        int deviceCount = 50;
+        int advIntervalMs = 100;
+        double rspRatio = 0.5;
+        int chunkSize = 1000;
+        Fragmentation fragmentation = Fragmentation.ANY;
+        boolean realtime;
+        long seed = 1;
+        int commandDelayMs;
+        int replayIntervalMs;
+        boolean replayLoop;
+
+        public Config deviceCount(int n) {
+            this.deviceCount = n;
+            return this;
+        }
+
+        /** 기기별 광고 주기 */
+        public Config advIntervalMs(int ms) {
+            this.advIntervalMs = ms;
+            return this;
+        }
+
+        /** ADV 뒤에 RSP 가 이어질 확률 (0..1) */
+        public Config rspRatio(double ratio) {
+            this.rspRatio = ratio;
+            return this;
+        }
+
+        /** recv 한 번에 돌려줄 최대 바이트 수 */
+        public Config chunkSize(int bytes) {
+            this.chunkSize = bytes;
+            return this;
+        }
+
+        public Config fragmentation(Fragmentation f) {
+            this.fragmentation = f;
+            return this;
+        }
+
+        public Config realtime(boolean realtime) {
+            this.realtime = realtime;
+            return this;
+        }
+
+        public Config seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** AT 명령 응답 지연 (realtime 일 때만 적용) */
+        public Config commandDelayMs(int ms) {
+            this.commandDelayMs = ms;
+            return this;
+        }
+
+        /** 재생 시 청크 사이 간격 (realtime 일 때만 적용) */
+        public Config replayIntervalMs(int ms) {
+            this.replayIntervalMs = ms;
+            return this;
+        }
+
+        /** 재생 청크를 끝까지 보낸 뒤 처음부터 반복 */
+        public Config replayLoop(boolean loop) {
+            this.replayLoop = loop;
+            return this;
+        }
+    }
+
+    private static final byte[] OK = "OK\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    protected final Config config;
+    private final Random random;
+
+    // 생성 모드 기기 정보
+    private final long[] macs;
+    private final int[] baseRssi;
+    private final int[] phaseMs;
+    private final byte[][] adv;
+    private final byte[][] rsp;
+    private long sequence;
+
+    // 재생 모드
+    private final List<byte[]> replayChunks;
+    private int replayIndex;
+    private int replayOffset;
+    private long nextReplayMs;
+
+    // 아직 recv 로 나가지 않은 바이트
+    private byte[] out = new byte[16 * 1024];
+    private int outStart;
+    private int outEnd;
+
+    private final ArrayDeque<byte[]> responses = new ArrayDeque<>();
+    private final ArrayDeque<Long> responseReadyMs = new ArrayDeque<>();
+
+    private boolean master;
+    private boolean scanning;
+    private long scanStartMs;
+    private final long createdNanos = System.nanoTime();
+
+    private long linesGenerated;
+    private long bytesDelivered;
+    private long recvCalls;
+
+    public SimulatedAtTransport(Config config) {
+        this(config, null);
+    }
+
+    /**
+     * 녹화된 청크를 재생하는 시뮬레이터. 스캔이 시작된 뒤부터 recv 호출마다 청크 하나씩 돌려준다.
+     */
+    public static SimulatedAtTransport replay(List<byte[]> chunks, Config config) {
+        return new SimulatedAtTransport(config, chunks);
+    }
+
+    private SimulatedAtTransport(Config config, List<byte[]> replayChunks) {
+        this.config = config;
+        this.replayChunks = replayChunks;
+        this.random = new Random(config.seed);
+
+        int n = replayChunks == null ? config.deviceCount : 0;
+        macs = new long[n];
+        baseRssi = new int[n];
+        phaseMs = new int[n];
+        adv = new byte[n][];
+        rsp = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            macs[i] = random.nextLong() & 0xFFFFFFFFFFFFL;
+            baseRssi[i] = -45 - random.nextInt(50);
+            phaseMs[i] = random.nextInt(Math.max(1, config.advIntervalMs));
+            adv[i] = advertisement(i);
+            rsp[i] = scanResponse(i);
+        }
+        Arrays.sort(phaseMs);
+    }
+
+    /** 생성 모드에서 i 번째 기기의 MAC */
+    public long deviceMac(int i) {
+        return macs[i];
+    }
+
+    /** i 번째 기기의 ADV 페이로드를 바꾼다 (페이로드 변경 시나리오용) */
+    public synchronized void setAdvertisement(int i, byte[] payload) {
+        adv[i] = payload.clone();
+    }
+
+    public synchronized long linesGenerated() {
+        return linesGenerated;
+    }
+
+    public synchronized long bytesDelivered() {
+        return bytesDelivered;
+    }
+
+    public synchronized long recvCalls() {
+        return recvCalls;
+    }
+
+    public synchronized boolean isScanning() {
+        return scanning;
+    }
+
+    // ---- AtTransport ----
+
+    @Override
+    public synchronized int enableMaster(boolean enable) {
+        master = enable;
+        return 0;
+    }
+
+    @Override
+    public synchronized int getMac(String[] mac) {
+        mac[0] = "00:3C:84:2A:C8:6B";
+        return 0;
+    }
+
+    @Override
+    public synchronized int startNewScan(String macAddress, String broadcastName, int rssi,
+                                         String manufacturerId, String data) {
+        if (!master) {
+            return -1;
+        }
+        scanning = true;
+        scanStartMs = nowMs();
+        sequence = 0;
+        nextReplayMs = scanStartMs;
+        enqueueResponse(OK);
+        return 0;
+    }
+
+    @Override
+    public synchronized int stopScan() {
+        scanning = false;
+        return 0;
+    }
+
+    @Override
+    public synchronized int send(byte[] data, int length) {
+        String cmd = new String(data, 0, length, StandardCharsets.US_ASCII).trim();
+        enqueueResponse(respond(cmd).getBytes(StandardCharsets.US_ASCII));
+        return 0;
+    }
+
+    @Override
+    public synchronized int ctsCtrl() {
+        scanning = false;
+        return 0;
+    }
+
+    @Override
+    public synchronized int recv(byte[] data, int[] length, int timeoutMs, int maxWaitMs) {
+        recvCalls++;
+        long deadline = nowMs() + maxWaitMs;
+        int n;
+        int limit = Math.min(data.length, config.chunkSize);
+        while (true) {
+            fill();
+            n = available(data.length);
+            if (!config.realtime || n >= limit) {
+                break;
+            }
+            long now = nowMs();
+            long next = nextDataMs();
+            // 첫 바이트 이후에는 바이트 간 timeout 안에 다음 데이터가 오는 동안만 계속 모은다
+            if (now >= deadline || (n > 0 && next - now > timeoutMs)) {
+                break;
+            }
+            long wait = Math.min(deadline, next) - now;
+            try {
+                wait(Math.max(1, wait));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        System.arraycopy(out, outStart, data, 0, n);
+        outStart += n;
+        length[0] = n;
+        bytesDelivered += n;
+        return 0;
+    }
+
+    /**
+     * AT 명령에 대한 모듈 응답 (줄바꿈 포함)
+     */
+    protected String respond(String cmd) {
+        if (cmd.equals("AT+VERSION")) {
+            return "AT+VERSION=RF_BM_BG22A3_SIM\r\nOK\r\n";
+        } else if (cmd.equals("AT+MAC?")) {
+            return "AT+MAC=00:3C:84:2A:C8:6B\r\nOK\r\n";
+        } else if (cmd.equals("AT+ROLE?")) {
+            return "AT+ROLE=" + (master ? 1 : 0) + "\r\nOK\r\n";
+        } else if (cmd.startsWith("AT+OBSERVER") || cmd.equals("AT+EXIT") || cmd.equals("+++")) {
+            return "OK\r\n";
+        }
+        return "ERROR\r\n";
+    }
+
+    private void enqueueResponse(byte[] response) {
+        responses.add(response);
+        responseReadyMs.add(nowMs() + (config.realtime ? config.commandDelayMs : 0));
+        notifyAll();
+    }
+
+    /** 현재 시각까지 나와야 할 데이터를 out 버퍼에 채운다. */
+    private void fill() {
+        long now = nowMs();
+        while (!responses.isEmpty() && responseReadyMs.peek() <= now) {
+            responseReadyMs.poll();
+            append(responses.poll());
+        }
+        if (!scanning) {
+            return;
+        }
+        if (replayChunks != null) {
+            fillReplay(now);
+            return;
+        }
+        long elapsed = now - scanStartMs;
+        int target = config.chunkSize * 2;
+        while (macs.length > 0 && (outEnd - outStart) < target
+                && (!config.realtime || eventTimeMs(sequence) <= elapsed)) {
+            emit((int) (sequence % macs.length));
+            sequence++;
+        }
+    }
+
+    private void fillReplay(long now) {
+        if (outEnd > outStart || replayChunks.isEmpty()) {
+            return;
+        }
+        if (replayIndex >= replayChunks.size()) {
+            if (!config.replayLoop) {
+                return;
+            }
+            replayIndex = 0;
+        }
+        if (config.realtime && now < nextReplayMs) {
+            return;
+        }
+        append(replayChunks.get(replayIndex++));
+        nextReplayMs = now + config.replayIntervalMs;
+    }
+
+    /** 이번 recv 로 내보낼 바이트 수 */
+    private int available(int bufferLength) {
+        int n = Math.min(outEnd - outStart, Math.min(bufferLength, config.chunkSize));
+        if (replayChunks != null) {
+            return n;
+        }
+        if (config.fragmentation == Fragmentation.LINE_ALIGNED && n < outEnd - outStart) {
+            int end = outStart + n;
+            while (end > outStart && out[end - 1] != '\n') {
+                end--;
+            }
+            if (end > outStart) {
+                n = end - outStart;
+            }
+        }
+        return n;
+    }
+
+    private long nextDataMs() {
+        long next = Long.MAX_VALUE;
+        if (!responseReadyMs.isEmpty()) {
+            next = responseReadyMs.peek();
+        }
+        if (scanning) {
+            if (replayChunks != null) {
+                next = Math.min(next, nextReplayMs);
+            } else if (macs.length > 0) {
+                next = Math.min(next, scanStartMs + eventTimeMs(sequence));
+            }
+        }
+        return next;
+    }
+
+    /** n 번째 광고 이벤트 시각 (스캔 시작 기준 ms) */
+    private long eventTimeMs(long n) {
+        return (n / macs.length) * config.advIntervalMs + phaseMs[(int) (n % macs.length)];
+    }
+
+    private void emit(int device) {
+        int rssi = baseRssi[device] + random.nextInt(7) - 3;
+        appendLine(device, rssi, "ADV:", adv[device]);
+        if (random.nextDouble() < config.rspRatio) {
+            appendLine(device, rssi + random.nextInt(3) - 1, "RSP:", rsp[device]);
+        }
+    }
+
+    private void appendLine(int device, int rssi, String type, byte[] payload) {
+        ensureRoom(4 + 17 + 6 + 4 + 4 + payload.length * 2 + 2);
+        appendAscii("MAC:");
+        long mac = macs[device];
+        for (int i = 0; i < 6; i++) {
+            int b = (int) (mac >>> (40 - 8 * i)) & 0xFF;
+            out[outEnd++] = (byte) HEX[b >>> 4];
+            out[outEnd++] = (byte) HEX[b & 0x0F];
+            if (i < 5) {
+                out[outEnd++] = ':';
+            }
+        }
+        appendAscii(",RSSI:");
+        appendAscii(Integer.toString(rssi));
+        out[outEnd++] = ',';
+        appendAscii(type);
+        for (byte value : payload) {
+            out[outEnd++] = (byte) HEX[(value >>> 4) & 0x0F];
+            out[outEnd++] = (byte) HEX[value & 0x0F];
+        }
+        out[outEnd++] = '\r';
+        out[outEnd++] = '\n';
+        linesGenerated++;
+    }
+
+    private void appendAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            out[outEnd++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void append(byte[] bytes) {
+        ensureRoom(bytes.length);
+        System.arraycopy(bytes, 0, out, outEnd, bytes.length);
+        outEnd += bytes.length;
+    }
+
+    private void ensureRoom(int n) {
+        if (outEnd + n <= out.length) {
+            return;
+        }
+        int pending = outEnd - outStart;
+        if (pending + n > out.length) {
+            out = Arrays.copyOf(out, Math.max(out.length * 2, pending + n));
+        }
+        System.arraycopy(out, outStart, out, 0, pending);
+        outStart = 0;
+        outEnd = pending;
+    }
+
+    private long nowMs() {
+        return (System.nanoTime() - createdNanos) / 1_000_000L;
+    }
+
+    // ---- 페이로드 템플릿 ----
+
+    private byte[] advertisement(int i) {
+        byte[] p;
+        switch (i % 4) {
+            case 0: // iBeacon
+                p = new byte[30];
+                put(p, 0, 0x02, 0x01, 0x06, 0x1A, 0xFF, 0x4C, 0x00, 0x02, 0x15);
+                randomBytes(p, 9, 16);
+                p[25] = (byte) (i >> 8);
+                p[26] = (byte) i;
+                p[27] = 0x00;
+                p[28] = (byte) (i & 0x0F);
+                p[29] = (byte) 0xC5;
+                return p;
+            case 1: // Eddystone-UID
+                p = new byte[31];
+                put(p, 0, 0x02, 0x01, 0x06, 0x03, 0x03, 0xAA, 0xFE, 0x17, 0x16, 0xAA, 0xFE, 0x00, 0xEE);
+                randomBytes(p, 13, 16);
+                return p;
+            case 2: // "mcandle" 이름 + 서비스 데이터 (app/log 와 같은 구성)
+                return new byte[]{0x08, 0x09, 'm', 'c', 'a', 'n', 'd', 'l', 'e', 0x02, 0x0A, (byte) 0xF9,
+                        0x03, 0x03, 0x34, 0x12, 0x05, 0x16, 0x34, 0x12, (byte) (i >> 8), (byte) i};
+            default: // 제조사 데이터
+                p = new byte[15];
+                put(p, 0, 0x02, 0x01, 0x06, 0x0B, 0xFF, 0x75, 0x00);
+                randomBytes(p, 7, 8);
+                return p;
+        }
+    }
+
+    private byte[] scanResponse(int i) {
+        String name = "SIM_" + i;
+        byte[] p = new byte[2 + name.length()];
+        p[0] = (byte) (name.length() + 1);
+        p[1] = 0x09;
+        for (int k = 0; k < name.length(); k++) {
+            p[2 + k] = (byte) name.charAt(k);
+        }
+        return p;
+    }
+
+    private void randomBytes(byte[] p, int off, int len) {
+        for (int k = 0; k < len; k++) {
+            p[off + k] = (byte) random.nextInt(256);
+        }
+    }
+
+    private static void put(byte[] p, int off, int... values) {
+        for (int k = 0; k < values.length; k++) {
+            p[off + k] = (byte) values[k];
+        }
+    }
+}
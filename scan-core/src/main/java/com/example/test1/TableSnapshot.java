@@ -0,0 +1,375 @@
+package com.example.test1;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link DeviceTable} 전체의 불변 스냅샷.
+ *
+ * <p>기기 상태는 entry 번호 순으로 {@value #PAGE_SIZE} 개씩 페이지에 나뉘어 평평한 배열로 저장된다.
+ * {@link Publisher} 는 스캔 스레드에서 바뀐 기기가 속한 페이지만 복사해 고치고(copy-on-write),
+ * 나머지 페이지는 이전 스냅샷과 공유한 채 새 스냅샷을 volatile 참조 하나로 바꿔 게시한다.
+ * 페이지는 {@value #NODE_SIZE} 개씩 노드로 묶인 2 단계 디렉터리로 찾으며, 게시할 때는 바뀐 페이지가
+ * 속한 노드와 루트만 복사한다. 따라서 게시 비용은 바뀐 페이지 수 × ({@value #PAGE_SIZE} entry +
+ * {@value #NODE_SIZE} 참조)에 루트 길이 (capacity / {@value #PAGE_SIZE} / {@value #NODE_SIZE}) 를 더한
+ * 것으로, 65536 기기 테이블도 루트는 64 참조다. 읽는 쪽은 잠금이나 복사 없이 어느 스레드에서든
+ * {@link Publisher#current()} 를 읽으면 된다.
+ *
+ * <p>{@link DeviceSnapshot} 객체와 기존 JSON 형식은 요청할 때 만들며, 바뀌지 않은 기기의
+ * {@link DeviceSnapshot} 은 다음 스냅샷에서도 그대로 재사용된다.
+ */
+public final class TableSnapshot {
+    static final int PAGE_SHIFT = 4;
+    /** 페이지 하나의 entry 수 */
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int NODE_SHIFT = 6;
+    /** 디렉터리 노드 하나의 페이지 수 */
+    public static final int NODE_SIZE = 1 << NODE_SHIFT;
+    private static final int NODE_MASK = NODE_SIZE - 1;
+    private static final int ROOT_SHIFT = PAGE_SHIFT + NODE_SHIFT;
+
+    /** entry {@value #PAGE_SIZE} 개의 상태. 게시된 뒤에는 바뀌지 않는다 (devices 캐시 제외). */
+    static final class Page {
+        static final Page EMPTY = new Page();
+
+        final boolean[] used = new boolean[PAGE_SIZE];
+        final long[] macs = new long[PAGE_SIZE];
+        final byte[] rssi = new byte[PAGE_SIZE];
+        final long[] firstSeen = new long[PAGE_SIZE];
+        final long[] lastSeen = new long[PAGE_SIZE];
+        final int[] advCount = new int[PAGE_SIZE];
+        final int[] rspCount = new int[PAGE_SIZE];
+        final double[] smoothedRssi = new double[PAGE_SIZE];
+        final double[] distance = new double[PAGE_SIZE];
+        final byte[] zone = new byte[PAGE_SIZE];
+        final DecodedPayload[] adv = new DecodedPayload[PAGE_SIZE];
+        final DecodedPayload[] rsp = new DecodedPayload[PAGE_SIZE];
+        // 요청할 때 만드는 DeviceSnapshot (불변 객체라 경합 시 두 번 만들어져도 결과는 같다)
+        final DeviceSnapshot[] devices = new DeviceSnapshot[PAGE_SIZE];
+        int count;
+
+        Page copy() {
+            Page p = new Page();
+            System.arraycopy(used, 0, p.used, 0, PAGE_SIZE);
+            System.arraycopy(macs, 0, p.macs, 0, PAGE_SIZE);
+            System.arraycopy(rssi, 0, p.rssi, 0, PAGE_SIZE);
+            System.arraycopy(firstSeen, 0, p.firstSeen, 0, PAGE_SIZE);
+            System.arraycopy(lastSeen, 0, p.lastSeen, 0, PAGE_SIZE);
+            System.arraycopy(advCount, 0, p.advCount, 0, PAGE_SIZE);
+            System.arraycopy(rspCount, 0, p.rspCount, 0, PAGE_SIZE);
+            System.arraycopy(smoothedRssi, 0, p.smoothedRssi, 0, PAGE_SIZE);
+            System.arraycopy(distance, 0, p.distance, 0, PAGE_SIZE);
+            System.arraycopy(zone, 0, p.zone, 0, PAGE_SIZE);
+            System.arraycopy(adv, 0, p.adv, 0, PAGE_SIZE);
+            System.arraycopy(rsp, 0, p.rsp, 0, PAGE_SIZE);
+            System.arraycopy(devices, 0, p.devices, 0, PAGE_SIZE);
+            p.count = count;
+            return p;
+        }
+    }
+
+    // root[노드][페이지]
+    private final Page[][] root;
+    private final int capacity;
+    private final int size;
+    private final long version;
+    private volatile JSONArray json;
+
+    private TableSnapshot(Page[][] root, int capacity, int size, long version) {
+        this.root = root;
+        this.capacity = capacity;
+        this.size = size;
+        this.version = version;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** 기기 수 */
+    public int size() {
+        return size;
+    }
+
+    /** 게시 번호 (처음 0, 바뀔 때마다 1 씩 증가) */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * from 이상인 첫 번째 사용 중 entry, 없으면 {@link DeviceTable#NO_ENTRY}.
+     * {@link DeviceTable#nextEntry} 와 같은 방식으로 순회한다. 빈 페이지는 건너뛴다.
+     */
+    public int nextEntry(int from) {
+        for (int e = from; e < capacity; ) {
+            Page p = page(e);
+            if (p.count == 0) {
+                e = (e | PAGE_MASK) + 1;
+                continue;
+            }
+            if (p.used[e & PAGE_MASK]) {
+                return e;
+            }
+            e++;
+        }
+        return DeviceTable.NO_ENTRY;
+    }
+
+    public boolean isUsed(int entry) {
+        return page(entry).used[entry & PAGE_MASK];
+    }
+
+    /** MAC 에 해당하는 entry, 없으면 {@link DeviceTable#NO_ENTRY} (선형 탐색) */
+    public int find(long mac) {
+        for (int e = nextEntry(0); e >= 0; e = nextEntry(e + 1)) {
+            if (mac(e) == mac) {
+                return e;
+            }
+        }
+        return DeviceTable.NO_ENTRY;
+    }
+
+    public long mac(int entry) {
+        return page(entry).macs[entry & PAGE_MASK];
+    }
+
+    public int rssi(int entry) {
+        return page(entry).rssi[entry & PAGE_MASK];
+    }
+
+    public long firstSeen(int entry) {
+        return page(entry).firstSeen[entry & PAGE_MASK];
+    }
+
+    public long lastSeen(int entry) {
+        return page(entry).lastSeen[entry & PAGE_MASK];
+    }
+
+    public int advCount(int entry) {
+        return page(entry).advCount[entry & PAGE_MASK];
+    }
+
+    public int rspCount(int entry) {
+        return page(entry).rspCount[entry & PAGE_MASK];
+    }
+
+    /** 평활화한 RSSI, {@link ProximityEngine} 없이 게시했으면 NaN */
+    public double smoothedRssi(int entry) {
+        return page(entry).smoothedRssi[entry & PAGE_MASK];
+    }
+
+    public double distance(int entry) {
+        return page(entry).distance[entry & PAGE_MASK];
+    }
+
+    public int zone(int entry) {
+        return page(entry).zone[entry & PAGE_MASK];
+    }
+
+    public DecodedPayload adv(int entry) {
+        return page(entry).adv[entry & PAGE_MASK];
+    }
+
+    public DecodedPayload rsp(int entry) {
+        return page(entry).rsp[entry & PAGE_MASK];
+    }
+
+    /**
+     * entry 의 {@link DeviceSnapshot}. 처음 요청할 때 만들고, 기기가 바뀌지 않으면 다음 스냅샷에서도 같은 객체다.
+     */
+    public DeviceSnapshot device(int entry) {
+        Page p = page(entry);
+        int i = entry & PAGE_MASK;
+        if (!p.used[i]) {
+            throw new IllegalArgumentException("entry " + entry + " is not used");
+        }
+        DeviceSnapshot d = p.devices[i];
+        if (d == null) {
+            d = new DeviceSnapshot(p.macs[i], p.rssi[i], p.firstSeen[i], p.lastSeen[i], p.advCount[i],
+                    p.rspCount[i], p.adv[i], p.rsp[i], p.smoothedRssi[i], p.distance[i], p.zone[i]);
+            p.devices[i] = d;
+        }
+        return d;
+    }
+
+    /** 모든 기기의 {@link DeviceSnapshot}, entry 순 */
+    public List<DeviceSnapshot> devices() {
+        List<DeviceSnapshot> list = new ArrayList<>(size);
+        for (int e = nextEntry(0); e >= 0; e = nextEntry(e + 1)) {
+            list.add(device(e));
+        }
+        return list;
+    }
+
+    /**
+     * 기존 ScanResultListener 형식의 전체 기기 JSON. 처음 요청할 때 만들고 이 스냅샷에서는 재사용한다 (수정 금지).
+     */
+    public JSONArray toJson() throws JSONException {
+        JSONArray j = json;
+        if (j == null) {
+            j = new JSONArray();
+            for (int e = nextEntry(0); e >= 0; e = nextEntry(e + 1)) {
+                j.put(device(e).toJson());
+            }
+            json = j;
+        }
+        return j;
+    }
+
+    Page page(int entry) {
+        return root[entry >>> ROOT_SHIFT][(entry >>> PAGE_SHIFT) & NODE_MASK];
+    }
+
+    Page[] node(int entry) {
+        return root[entry >>> ROOT_SHIFT];
+    }
+
+    @Override
+    public String toString() {
+        return "TableSnapshot{version=" + version + ", size=" + size + "/" + capacity + "}";
+    }
+
+    /**
+     * 테이블 변경을 받아 새 스냅샷을 게시한다. 테이블과 같은 스레드에서만 사용한다 ({@link #current()} 제외).
+     * {@link DeltaTracker#setSnapshotPublisher} 로 연결하면 collect 마다 자동으로 게시된다.
+     */
+    public static final class Publisher {
+        private final int capacity;
+        // 게시할 때마다 복제해 넘기는 작업용 루트 (노드와 페이지는 복사한 것만 이 Publisher 소유)
+        private final Page[][] root;
+        // 이번 게시에서 이미 복사한 페이지와 노드
+        private final boolean[] copied;
+        private final int[] touched;
+        private int touchedCount;
+        private final boolean[] nodeCopied;
+        private final int[] touchedNodes;
+        private int touchedNodeCount;
+        private int size;
+        private long version;
+        private volatile TableSnapshot current;
+
+        public Publisher(int capacity) {
+            this.capacity = capacity;
+            int pageCount = (capacity + PAGE_SIZE - 1) >>> PAGE_SHIFT;
+            int nodeCount = (pageCount + NODE_SIZE - 1) >>> NODE_SHIFT;
+            root = new Page[nodeCount][];
+            for (int n = 0; n < nodeCount; n++) {
+                root[n] = new Page[Math.min(NODE_SIZE, pageCount - (n << NODE_SHIFT))];
+                Arrays.fill(root[n], Page.EMPTY);
+            }
+            copied = new boolean[pageCount];
+            touched = new int[pageCount];
+            nodeCopied = new boolean[nodeCount];
+            touchedNodes = new int[nodeCount];
+            current = new TableSnapshot(root.clone(), capacity, 0, 0);
+        }
+
+        /** 마지막으로 게시한 스냅샷. 어느 스레드에서 불러도 된다. */
+        public TableSnapshot current() {
+            return current;
+        }
+
+        /**
+         * entry 의 현재 상태를 다음 스냅샷에 반영한다.
+         *
+         * @param proximity null 이면 평활화 값은 NaN
+         * @param cache     페이로드가 바뀌었을 때 찾을 캐시, null 이면 복사한다
+         * @param reported  같은 시점에 만든 스냅샷이 있으면 그 페이로드와 객체를 공유한다 (없으면 null)
+         */
+        public void update(DeviceTable table, int entry, ProximityEngine proximity, PayloadCache cache,
+                           DeviceSnapshot reported) {
+            Page p = writable(entry);
+            int i = entry & PAGE_MASK;
+            if (!p.used[i]) {
+                p.used[i] = true;
+                p.count++;
+                size++;
+                p.adv[i] = null;
+                p.rsp[i] = null;
+            }
+            p.macs[i] = table.mac(entry);
+            p.rssi[i] = (byte) Math.max(-128, Math.min(127, table.rssi(entry)));
+            p.firstSeen[i] = table.firstSeen(entry);
+            p.lastSeen[i] = table.lastSeen(entry);
+            p.advCount[i] = table.advCount(entry);
+            p.rspCount[i] = table.rspCount(entry);
+            if (proximity != null) {
+                p.smoothedRssi[i] = proximity.smoothedRssi(entry);
+                p.distance[i] = proximity.distance(entry);
+                p.zone[i] = (byte) proximity.zone(entry);
+            } else {
+                p.smoothedRssi[i] = Double.NaN;
+                p.distance[i] = Double.NaN;
+                p.zone[i] = ProximityEngine.ZONE_UNKNOWN;
+            }
+            if (reported != null) {
+                p.adv[i] = reported.getAdv();
+                p.rsp[i] = reported.getRsp();
+            } else {
+                int base = table.payloadOffset(entry);
+                p.adv[i] = DeviceSnapshot.sharePayload(table.advArray(), base, table.advLength(entry), p.adv[i], cache);
+                p.rsp[i] = DeviceSnapshot.sharePayload(table.rspArray(), base, table.rspLength(entry), p.rsp[i], cache);
+            }
+            p.devices[i] = reported;
+        }
+
+        /** entry 를 다음 스냅샷에서 뺀다 */
+        public void remove(int entry) {
+            if (!root[entry >>> ROOT_SHIFT][(entry >>> PAGE_SHIFT) & NODE_MASK].used[entry & PAGE_MASK]) {
+                return;
+            }
+            Page p = writable(entry);
+            int i = entry & PAGE_MASK;
+            p.used[i] = false;
+            p.adv[i] = null;
+            p.rsp[i] = null;
+            p.devices[i] = null;
+            p.count--;
+            size--;
+        }
+
+        /**
+         * 지금까지의 변경을 새 스냅샷으로 게시한다. 바뀐 것이 없으면 현재 스냅샷을 그대로 돌려준다.
+         * 복사하는 것은 루트 하나뿐이다 (바뀐 노드와 페이지는 {@link #update}/{@link #remove} 에서 이미 복사했다).
+         */
+        public TableSnapshot publish() {
+            if (touchedCount == 0) {
+                return current;
+            }
+            for (int k = 0; k < touchedCount; k++) {
+                copied[touched[k]] = false;
+            }
+            touchedCount = 0;
+            for (int k = 0; k < touchedNodeCount; k++) {
+                nodeCopied[touchedNodes[k]] = false;
+            }
+            touchedNodeCount = 0;
+            TableSnapshot s = new TableSnapshot(root.clone(), capacity, size, ++version);
+            current = s;
+            return s;
+        }
+
+        /** 이번 게시에서 처음 고치는 페이지면 페이지와 (아직 복사하지 않았으면) 그 노드를 복사한다 */
+        private Page writable(int entry) {
+            int n = entry >>> PAGE_SHIFT;
+            int r = entry >>> ROOT_SHIFT;
+            if (!nodeCopied[r]) {
+                root[r] = root[r].clone();
+                nodeCopied[r] = true;
+                touchedNodes[touchedNodeCount++] = r;
+            }
+            Page[] node = root[r];
+            if (!copied[n]) {
+                node[n & NODE_MASK] = node[n & NODE_MASK].copy();
+                copied[n] = true;
+                touched[touchedCount++] = n;
+            }
+            return node[n & NODE_MASK];
+        }
+    }
+}
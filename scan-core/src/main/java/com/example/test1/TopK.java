@@ -0,0 +1,173 @@
+package com.example.test1;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 점수가 가장 높은 키 k 개를 고정 배열 min-heap 으로 유지한다.
+ *
+ * <p>키의 점수는 줄지 않는다고 가정한다 (누적 횟수, 최대 RSSI 등). 이미 있는 키에 더 큰 점수를 주면
+ * 그 자리에서 올리고, 없는 키는 heap 의 최솟값보다 클 때만 들어간다. k 는 작게(수십 개) 쓰므로
+ * 키 검색은 선형으로 한다.
+ *
+ * <p>스레드 안전하지 않다.
+ */
+public final class TopK {
+    private final int k;
+    private final long[] keys;
+    private final long[] scores;
+    private int size;
+
+    /** 키와 점수 (불변) */
+    public static final class Entry {
+        private final long key;
+        private final long score;
+
+        Entry(long key, long score) {
+            this.key = key;
+            this.score = score;
+        }
+
+        public long key() {
+            return key;
+        }
+
+        public long score() {
+            return score;
+        }
+
+        @Override
+        public String toString() {
+            return MacAddress.toString(key) + "=" + score;
+        }
+    }
+
+    public TopK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be > 0");
+        }
+        this.k = k;
+        keys = new long[k];
+        scores = new long[k];
+    }
+
+    public int capacity() {
+        return k;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** key 의 점수를 score 로 올린다 (작으면 무시) */
+    public void offer(long key, long score) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                if (score > scores[i]) {
+                    scores[i] = score;
+                    siftDown(i);
+                }
+                return;
+            }
+        }
+        if (size < k) {
+            keys[size] = key;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            keys[0] = key;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /** 점수가 높은 순서 */
+    public List<Entry> entries() {
+        List<Entry> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Entry(keys[i], scores[i]));
+        }
+        list.sort((a, b) -> Long.compare(b.score, a.score));
+        return Collections.unmodifiableList(list);
+    }
+
+    /** other 의 키를 점수 그대로 넣는다 */
+    public void merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.keys[i], other.scores[i]);
+        }
+    }
+
+    long key(int i) {
+        return keys[i];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[parent] <= scores[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            if (right < size && scores[right] < scores[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+        long score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeShort(k);
+        out.writeShort(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(keys[i]);
+            out.writeLong(scores[i]);
+        }
+    }
+
+    static TopK readFrom(DataInput in) throws IOException {
+        int k = in.readUnsignedShort();
+        int n = in.readUnsignedShort();
+        if (k == 0 || n > k) {
+            throw new IOException("bad top-k size " + n + "/" + k);
+        }
+        TopK t = new TopK(k);
+        for (int i = 0; i < n; i++) {
+            t.offer(in.readLong(), in.readLong());
+        }
+        return t;
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.test1;
+
+/**
+ * UART 수신 전용 스레드. {@link AtTransport#recv} 로 읽은 바이트를 그대로 {@link ChunkRing} 에 넣기만 한다.
+ *
+ * <p>파싱과 리스너 호출은 링의 소비자 스레드에서 하므로, 리스너가 느려도 UART 읽기가 멈추지 않는다.
+ * (링이 가득 찼을 때의 동작은 {@link ChunkRing} 정책을 따른다)
+ * recv 의 버퍼 크기/timeout/maxWait 와 호출 사이 휴식은 {@link RecvScheduler} 가 정한다.
+ */
+public final class UartReader implements Runnable {
+    /** Lib_ComRecvAT 바이트 간 타임아웃 */
+    public static final int RECV_TIMEOUT_MS = 20;
+    /** Lib_ComRecvAT 최대 대기 시간 */
+    public static final int RECV_MAX_WAIT_MS = 1000;
+
+    private final AtTransport transport;
+    private final ChunkRing ring;
+    private final RecvScheduler scheduler;
+    private final ScanMetrics metrics;
+    // 스케줄러의 버퍼 크기별로 미리 만든 버퍼
+    private final byte[][] buffers;
+    private final int[] length = new int[1];
+
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile long recvCalls;
+    private volatile long bytesRead;
+    private volatile long emptyReads;
+
+    /**
+     * 고정 파라미터({@link #RECV_TIMEOUT_MS}, {@link #RECV_MAX_WAIT_MS})로 읽는다.
+     *
+     * @param bufferSize recv 한 번에 읽을 최대 바이트 수 (링의 슬롯 크기 이하)
+     */
+    public UartReader(AtTransport transport, ChunkRing ring, int bufferSize) {
+        this(transport, ring, RecvScheduler.fixed(bufferSize, RECV_TIMEOUT_MS, RECV_MAX_WAIT_MS));
+    }
+
+    /**
+     * @param scheduler 수신 스레드 전용. 최대 버퍼 크기는 링의 슬롯 크기 이하여야 한다.
+     */
+    public UartReader(AtTransport transport, ChunkRing ring, RecvScheduler scheduler) {
+        this(transport, ring, scheduler, null);
+    }
+
+    /**
+     * @param metrics recv 호출마다 {@link ScanMetrics#onRecv} 를 기록한다. null 이면 기록하지 않는다.
+     */
+    public UartReader(AtTransport transport, ChunkRing ring, RecvScheduler scheduler, ScanMetrics metrics) {
+        int[] sizes = scheduler.bufferSizes();
+        int max = sizes[sizes.length - 1];
+        if (max > ring.slotSize()) {
+            throw new IllegalArgumentException("buffer " + max + " > slot " + ring.slotSize());
+        }
+        this.transport = transport;
+        this.ring = ring;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.buffers = new byte[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            buffers[i] = new byte[sizes[i]];
+        }
+    }
+
+    public RecvScheduler scheduler() {
+        return scheduler;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "uart-reader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 수신 스레드를 멈추고 진행 중인 recv 가 끝날 때까지 기다린다.
+     */
+    public synchronized void stop() {
+        Thread t = thread;
+        if (t == null) {
+            return;
+        }
+        running = false;
+        // BLOCK 정책으로 대기 중이면 깨운다. recv 안에서는 최대 RECV_MAX_WAIT_MS 뒤에 빠져나온다.
+        t.interrupt();
+        boolean interrupted = false;
+        while (t.isAlive()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        thread = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            byte[] buffer = buffers[scheduler.bufferIndex()];
+            long start = System.nanoTime();
+            // 실패한 recv 는 length 를 건드리지 않을 수 있으므로 이전 청크를 다시 넣지 않도록 먼저 지운다
+            length[0] = 0;
+            int ret = transport.recv(buffer, length, scheduler.timeoutMs(), scheduler.maxWaitMs());
+            long elapsedNanos = System.nanoTime() - start;
+            long elapsedMs = elapsedNanos / 1_000_000;
+            recvCalls++;
+            int n = ret == 0 ? length[0] : 0;
+            if (metrics != null) {
+                metrics.onRecv(n, elapsedNanos);
+            }
+            if (n > 0) {
+                bytesRead += n;
+                if (!ring.offer(buffer, 0, n)) {
+                    break;
+                }
+            } else {
+                emptyReads++;
+                ring.flush();
+            }
+            int sleepMs = scheduler.onRecv(n, elapsedMs);
+            if (metrics != null) {
+                metrics.onScheduler(scheduler);
+            }
+            if (sleepMs > 0) {
+                try {
+                    Thread.sleep(sleepMs);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+    }
+
+    public long recvCalls() {
+        return recvCalls;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    /** 데이터 없이 돌아온 recv 횟수 */
+    public long emptyReads() {
+        return emptyReads;
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.test1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 서버로 보낼 목격(sighting) 묶음과 그 전송 형식.
+ *
+ * <p>기존 JSON(ADV_org hex + 해석 결과 중복) 대신 열 단위 바이너리로 쓰고 deflate 로 압축한다.
+ * 같은 열의 값이 모여 있어 압축이 잘 되고, 같은 페이로드는 묶음 안에서 한 번만 싣는다.
+ * 페이로드는 새 기기이거나 페이로드가 바뀐 이벤트에만 싣는다 (RSSI 변화, LOST 는 생략).
+ *
+ * <pre>
+ * 헤더 (21): magic "BLU1" (4) | flags (1, 1 = deflate) | 목격 수 (4) | 기준 시각 epoch ms (8) | 본문 원본 길이 (4)
+ * 본문 (열 순서):
+ *   MAC (6 x n) | 이벤트 종류 (1 x n, ScanEvent.Type 순서) | RSSI (1 x n, signed)
+ *   | 시각 (varint x n, 직전 목격과의 차이 ms, zigzag) | ADV 번호 (varint x n, 0 = 없음) | RSP 번호 (varint x n)
+ *   | 페이로드 수 (varint) | 페이로드 (길이 varint + 바이트) ...
+ * </pre>
+ *
+ * <p>스레드 안전하지 않다.
+ */
+public final class UplinkBatch {
+    static final int MAGIC = 0x424C5531;
+    static final int HEADER = 21;
+    static final int FLAG_DEFLATE = 1;
+    // 손상된 헤더로 큰 배열을 만들지 않도록 하는 상한
+    private static final int MAX_SIGHTINGS = 1 << 20;
+    private static final byte[] NONE = new byte[0];
+
+    private final int capacity;
+    private final long[] macs;
+    private final byte[] types;
+    private final byte[] rssi;
+    private final long[] times;
+    private final int[] adv;
+    private final int[] rsp;
+    private final List<byte[]> payloads = new ArrayList<>();
+    // 페이로드 해시 -> payloads 번호 (묶음 안 중복 제거)
+    private final Map<Integer, Integer> payloadIndex = new HashMap<>();
+    private int count;
+
+    public UplinkBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        macs = new long[capacity];
+        types = new byte[capacity];
+        rssi = new byte[capacity];
+        times = new long[capacity];
+        adv = new int[capacity];
+        rsp = new int[capacity];
+    }
+
+    /**
+     * 이벤트 하나를 목격으로 추가한다.
+     *
+     * @return 추가 후 가득 찼으면 true
+     */
+    public boolean add(ScanEvent event) {
+        DeviceSnapshot d = event.getDevice();
+        boolean withPayload = event.getType() == ScanEvent.Type.APPEARED || event.isPayloadChanged();
+        return add(d.getMac(), event.getType().ordinal(), d.getRssi(), d.getLastSeen(),
+                withPayload ? d.getAdv() : null, withPayload ? d.getRsp() : null);
+    }
+
+    /**
+     * @param type {@link ScanEvent.Type#ordinal()}
+     * @param advPayload 싣지 않으면 null
+     * @return 추가 후 가득 찼으면 true
+     */
+    public boolean add(long mac, int type, int rssiValue, long timeMs, DecodedPayload advPayload,
+                       DecodedPayload rspPayload) {
+        if (count == capacity) {
+            throw new IllegalStateException("batch is full");
+        }
+        int i = count++;
+        macs[i] = mac;
+        types[i] = (byte) type;
+        rssi[i] = (byte) Math.max(-128, Math.min(127, rssiValue));
+        times[i] = timeMs;
+        adv[i] = payloadNumber(advPayload);
+        rsp[i] = payloadNumber(rspPayload);
+        return count == capacity;
+    }
+
+    private int payloadNumber(DecodedPayload p) {
+        if (p == null || p.length() == 0) {
+            return 0;
+        }
+        Integer n = payloadIndex.get(p.hash());
+        if (n != null) {
+            byte[] b = payloads.get(n - 1);
+            if (p.contentEquals(b, 0, b.length)) {
+                return n;
+            }
+            // 해시 충돌: 중복 제거 없이 따로 싣는다
+        }
+        payloads.add(p.bytes());
+        int number = payloads.size();
+        if (n == null) {
+            payloadIndex.put(p.hash(), number);
+        }
+        return number;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void clear() {
+        count = 0;
+        payloads.clear();
+        payloadIndex.clear();
+    }
+
+    public long mac(int i) {
+        return macs[i];
+    }
+
+    public ScanEvent.Type type(int i) {
+        return ScanEvent.Type.values()[types[i]];
+    }
+
+    public int rssi(int i) {
+        return rssi[i];
+    }
+
+    public long timeMs(int i) {
+        return times[i];
+    }
+
+    /** 실린 ADV, 없으면 빈 배열 */
+    public byte[] adv(int i) {
+        return adv[i] == 0 ? NONE : payloads.get(adv[i] - 1);
+    }
+
+    public byte[] rsp(int i) {
+        return rsp[i] == 0 ? NONE : payloads.get(rsp[i] - 1);
+    }
+
+    /** 묶음 안의 서로 다른 페이로드 수 */
+    public int payloadCount() {
+        return payloads.size();
+    }
+
+    /**
+     * 전송 형식으로 인코딩한다.
+     *
+     * @param deflater null 이면 압축하지 않는다. 압축 결과가 더 크면 원본으로 쓴다.
+     */
+    public byte[] encode(Deflater deflater) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(count * 12 + 64);
+        for (int i = 0; i < count; i++) {
+            for (int s = 40; s >= 0; s -= 8) {
+                body.write((int) (macs[i] >>> s));
+            }
+        }
+        body.write(types, 0, count);
+        body.write(rssi, 0, count);
+        long base = count == 0 ? 0 : times[0];
+        long previous = base;
+        for (int i = 0; i < count; i++) {
+            long delta = times[i] - previous;
+            writeVarint(body, (delta << 1) ^ (delta >> 63));
+            previous = times[i];
+        }
+        for (int i = 0; i < count; i++) {
+            writeVarint(body, adv[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            writeVarint(body, rsp[i]);
+        }
+        writeVarint(body, payloads.size());
+        for (byte[] p : payloads) {
+            writeVarint(body, p.length);
+            body.write(p, 0, p.length);
+        }
+        byte[] raw = body.toByteArray();
+
+        byte[] data = raw;
+        int length = raw.length;
+        int flags = 0;
+        if (deflater != null) {
+            byte[] compressed = new byte[raw.length + raw.length / 100 + 64];
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            int c = deflater.deflate(compressed);
+            if (deflater.finished() && c < raw.length) {
+                data = compressed;
+                length = c;
+                flags = FLAG_DEFLATE;
+            }
+        }
+        ByteBuffer out = ByteBuffer.allocate(HEADER + length);
+        out.putInt(MAGIC).put((byte) flags).putInt(count).putLong(base).putInt(raw.length);
+        out.put(data, 0, length);
+        return out.array();
+    }
+
+    /** 인코딩된 묶음의 목격 수 (헤더만 읽는다) */
+    public static int sightings(byte[] encoded) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        if (encoded.length < HEADER || in.getInt() != MAGIC) {
+            throw new IOException("not an uplink batch");
+        }
+        return in.getInt(5);
+    }
+
+    /**
+     * {@link #encode} 결과를 읽는다.
+     */
+    public static UplinkBatch decode(byte[] data, int off, int len) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(data, off, len);
+        if (len < HEADER || in.getInt() != MAGIC) {
+            throw new IOException("not an uplink batch");
+        }
+        int flags = in.get();
+        int n = in.getInt();
+        long base = in.getLong();
+        int rawLength = in.getInt();
+        if (n < 0 || n > MAX_SIGHTINGS || rawLength < 0 || rawLength > MAX_SIGHTINGS * 64) {
+            throw new IOException("bad uplink batch header");
+        }
+        byte[] raw;
+        if ((flags & FLAG_DEFLATE) != 0) {
+            raw = new byte[rawLength];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data, off + HEADER, len - HEADER);
+                if (inflater.inflate(raw) != rawLength) {
+                    throw new IOException("truncated uplink batch");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("corrupt uplink batch", e);
+            } finally {
+                inflater.end();
+            }
+        } else {
+            if (len - HEADER != rawLength) {
+                throw new IOException("truncated uplink batch");
+            }
+            raw = new byte[rawLength];
+            System.arraycopy(data, off + HEADER, raw, 0, rawLength);
+        }
+
+        UplinkBatch b = new UplinkBatch(Math.max(1, n));
+        ByteBuffer body = ByteBuffer.wrap(raw);
+        try {
+            for (int i = 0; i < n; i++) {
+                long m = 0;
+                for (int k = 0; k < 6; k++) {
+                    m = m << 8 | (body.get() & 0xFF);
+                }
+                b.macs[i] = m;
+            }
+            body.get(b.types, 0, n);
+            body.get(b.rssi, 0, n);
+            long previous = base;
+            for (int i = 0; i < n; i++) {
+                long z = readVarint(body);
+                previous += (z >>> 1) ^ -(z & 1);
+                b.times[i] = previous;
+            }
+            for (int i = 0; i < n; i++) {
+                b.adv[i] = (int) readVarint(body);
+            }
+            for (int i = 0; i < n; i++) {
+                b.rsp[i] = (int) readVarint(body);
+            }
+            int payloadCount = (int) readVarint(body);
+            for (int i = 0; i < payloadCount; i++) {
+                long length = readVarint(body);
+                if (length > body.remaining()) {
+                    throw new IOException("truncated uplink batch");
+                }
+                byte[] p = new byte[(int) length];
+                body.get(p);
+                b.payloads.add(p);
+            }
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, 음수 길이 등
+            throw new IOException("corrupt uplink batch", e);
+        }
+        for (int i = 0; i < n; i++) {
+            if (b.types[i] < 0 || b.types[i] >= ScanEvent.Type.values().length
+                    || b.adv[i] > b.payloads.size() || b.rsp[i] > b.payloads.size()) {
+                throw new IOException("corrupt uplink batch");
+            }
+        }
+        b.count = n;
+        return b;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarint(ByteBuffer in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("varint too long");
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.test1;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdvertisementViewTest {
+
+    private static AdvertisementView view(String hex) {
+        byte[] ascii = hex.getBytes(StandardCharsets.US_ASCII);
+        // 앞뒤에 여분을 두어 offset 처리를 함께 확인한다
+        byte[] data = new byte[ascii.length / 2 + 4];
+        Hex.decode(ascii, 0, ascii.length, data, 2);
+        return new AdvertisementView().wrap(data, 2, ascii.length / 2);
+    }
+
+    @Test
+    public void flagsAndServiceData16() {
+        AdvertisementView v = view("0201061916F7FD01E2F3215B67EA536490A5E95D803A91EC0000000003");
+        assertTrue(v.isValid());
+        assertEquals(0x06, v.flags());
+        int f = v.findServiceData16(0xFDF7);
+        assertTrue(f >= 0);
+        assertEquals(22, v.serviceDataLength(f));
+        assertEquals(0x01, v.array()[v.serviceDataOffset(f)]);
+        assertEquals(-1, v.findServiceData16(0xFEAA));
+        assertEquals(-1, v.manufacturerId());
+    }
+
+    @Test
+    public void uuid16AndManufacturerData() {
+        AdvertisementView v = view("030378FE06FF650001C905");
+        assertEquals(1, v.serviceUuid16Count());
+        assertEquals(0xFE78, v.serviceUuid16(0));
+        assertEquals(0x0065, v.manufacturerId());
+        assertEquals(3, v.manufacturerDataLength());
+        assertEquals((byte) 0xC9, v.array()[v.manufacturerDataOffset() + 1]);
+    }
+
+    @Test
+    public void localNameTxPowerAndUuid32() {
+        AdvertisementView v = view("020A0511094456325F443842433338343339463341");
+        assertEquals(5, v.txPower());
+        assertTrue(v.isLocalNameComplete());
+        assertEquals("DV2_D8BC38439F3A", v.localName());
+
+        v = view("08096D63616E646C65050578562401");
+        assertEquals("mcandle", v.localName());
+        assertEquals(1, v.serviceUuid32Count());
+        assertEquals(0x01245678L, v.serviceUuid32(0));
+        assertEquals(AdvertisementView.NO_TX_POWER, v.txPower());
+    }
+
+    @Test
+    public void uuid128() {
+        AdvertisementView v = view("1107CFCFCFCFCFCFCFCF869E8F909E949E94");
+        assertEquals(1, v.serviceUuid128Count());
+        assertEquals("949e949e-908f-9e86-cfcf-cfcfcfcfcfcf", v.serviceUuid128(0).toString());
+    }
+
+    @Test
+    public void serviceData128IsNotReportedAsUnknown() throws Exception {
+        AdvertisementView v = view("1321" + "000102030405060708090A0B0C0D0E0F" + "AABB");
+        int f = v.findServiceData128(0x0F0E0D0C0B0A0908L, 0x0706050403020100L);
+        assertTrue(f >= 0);
+        assertEquals(2, v.serviceDataLength(f));
+
+        JSONObject json = v.toJson();
+        assertEquals(1, json.length());
+        assertEquals("AA BB ", json.getJSONArray(
+                "Service Data UUID 00 01 02 03 04 05 06 07 08 09 0A 0B 0C 0D 0E 0F ").getString(0));
+    }
+
+    @Test
+    public void truncatedPayloadIsInvalid() throws Exception {
+        AdvertisementView v = view("0201060501020304");
+        assertFalse(v.isValid());
+        assertNull(v.toJson());
+        // length 바이트만 있고 type 이 없는 경우
+        assertFalse(view("020106" + "03").isValid());
+    }
+
+    @Test
+    public void jsonMatchesLegacyFormat() throws Exception {
+        JSONObject json = view("030378FE06FF650001C905").toJson();
+        assertEquals("78 FE ", json.getString("Service UUIDs"));
+        assertEquals("65 00 01 C9 05 ", json.getString("Manufacturer Data"));
+
+        json = view("0201061916F7FD01E2F3215B67EA536490A5E95D803A91EC0000000003").toJson();
+        assertEquals("06 ", json.getString("Flags"));
+        assertEquals("01 E2 F3 21 5B 67 EA 53 64 90 A5 E9 5D 80 3A 91 EC 00 00 00 00 03 ",
+                json.getJSONArray("Service Data UUID FDF7").getString(0));
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AtCommandEngineTest {
+
+    /** 보낸 명령과 시각을 기록하고, AT+HANG 에는 응답하지 않는 시뮬레이터 */
+    private static class RecordingTransport extends SimulatedAtTransport {
+        final List<String> commands = new ArrayList<>();
+        final List<Long> sendNanos = new ArrayList<>();
+
+        RecordingTransport(int commandDelayMs) {
+            super(new Config().realtime(true).commandDelayMs(commandDelayMs));
+        }
+
+        @Override
+        public synchronized int send(byte[] data, int length) {
+            commands.add(new String(data, 0, length, StandardCharsets.US_ASCII));
+            sendNanos.add(System.nanoTime());
+            return super.send(data, length);
+        }
+
+        @Override
+        protected String respond(String cmd) {
+            return cmd.equals("AT+HANG") ? "" : super.respond(cmd);
+        }
+
+        synchronized long sendMs(int i) {
+            return TimeUnit.NANOSECONDS.toMillis(sendNanos.get(i) - sendNanos.get(0));
+        }
+    }
+
+    @Test
+    public void correlatesValuesAndResults() throws Exception {
+        RecordingTransport t = new RecordingTransport(5);
+        AtCommandEngine engine = new AtCommandEngine(t);
+        try {
+            AtResponse version = engine.submit("AT+VERSION").get(2, TimeUnit.SECONDS);
+            assertTrue(version.isOk());
+            assertEquals("RF_BM_BG22A3_SIM", version.getValue());
+
+            AtResponse error = engine.submit("AT+UNKNOWN").get(2, TimeUnit.SECONDS);
+            assertFalse(error.isOk());
+            assertNull(error.getValue());
+
+            AtResponse observer = engine.submit("AT+OBSERVER=0").get(2, TimeUnit.SECONDS);
+            assertTrue(observer.isOk());
+
+            assertEquals("AT+VERSION\r\n", t.commands.get(0));
+            engine.submit("+++").get(2, TimeUnit.SECONDS);
+            assertEquals("+++", t.commands.get(3));
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void pipelinesQueries() throws Exception {
+        RecordingTransport t = new RecordingTransport(150);
+        AtCommandEngine engine = new AtCommandEngine(t);
+        try {
+            long start = System.nanoTime();
+            CompletableFuture<AtResponse> version = engine.submit("AT+VERSION");
+            CompletableFuture<AtResponse> mac = engine.submit("AT+MAC?");
+            assertEquals("00:3C:84:2A:C8:6B", mac.get(2, TimeUnit.SECONDS).getValue());
+            assertEquals("RF_BM_BG22A3_SIM", version.get(2, TimeUnit.SECONDS).getValue());
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // 순서대로 보냈다면 300ms 이상
+            assertTrue("elapsed " + elapsedMs, elapsedMs < 280);
+            assertTrue(t.sendMs(1) < 100);
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void serializesModeCommands() throws Exception {
+        RecordingTransport t = new RecordingTransport(50);
+        AtCommandEngine engine = new AtCommandEngine(t);
+        try {
+            CompletableFuture<AtResponse> observer = engine.submit("AT+OBSERVER=0");
+            CompletableFuture<AtResponse> version = engine.submit("AT+VERSION");
+            CompletableFuture<AtResponse> exit = engine.submit("AT+EXIT");
+            assertTrue(observer.get(2, TimeUnit.SECONDS).isOk());
+            assertTrue(version.get(2, TimeUnit.SECONDS).isOk());
+            assertTrue(exit.get(2, TimeUnit.SECONDS).isOk());
+            // 모드 명령의 응답 전에는 다음 명령을 보내지 않는다
+            assertTrue(t.sendMs(1) >= 45);
+            assertTrue(t.sendMs(2) - t.sendMs(1) >= 45);
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void unansweredCommandTimesOutWithoutBlockingOthers() throws Exception {
+        RecordingTransport t = new RecordingTransport(5);
+        AtCommandEngine engine = new AtCommandEngine(t);
+        try {
+            CompletableFuture<AtResponse> hang = engine.submit("AT+HANG", 50);
+            CompletableFuture<AtResponse> version = engine.submit("AT+VERSION", 1000);
+            try {
+                hang.get(2, TimeUnit.SECONDS);
+                fail("expected timeout");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+            assertEquals("RF_BM_BG22A3_SIM", version.get(2, TimeUnit.SECONDS).getValue());
+            assertEquals(1, engine.timeoutCount());
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void lateResultIsNotAttributedToNextCommand() throws Exception {
+        RecordingTransport t = new RecordingTransport(150);
+        AtCommandEngine engine = new AtCommandEngine(t);
+        try {
+            CompletableFuture<AtResponse> observer = engine.submit("AT+OBSERVER=0", 100);
+            CompletableFuture<AtResponse> unknown = engine.submit("AT+UNKNOWN", 2000);
+            try {
+                observer.get(2, TimeUnit.SECONDS);
+                fail("expected timeout");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+            // 늦게 온 OBSERVER 의 OK 가 아니라 자기 ERROR 를 받아야 한다
+            assertFalse(unknown.get(2, TimeUnit.SECONDS).isOk());
+            assertEquals(1, engine.lateResponseCount());
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void queuedCommandDeadlineStartsWhenSent() throws Exception {
+        RecordingTransport t = new RecordingTransport(5);
+        AtCommandEngine engine = new AtCommandEngine(t);
+        try {
+            // AT+EXIT 가 응답하지 않아도 뒤의 +++ 는 보내지고 자기 기한 안에 응답을 받는다
+            CompletableFuture<AtResponse> hang = engine.submit("AT+HANG", 100);
+            CompletableFuture<AtResponse> reenter = engine.submit("+++", 100);
+            try {
+                hang.get(2, TimeUnit.SECONDS);
+                fail("expected timeout");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+            assertTrue(reenter.get(2, TimeUnit.SECONDS).isOk());
+            assertEquals("+++", t.commands.get(1));
+            assertEquals(1, engine.timeoutCount());
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void failedRecvDoesNotReparseStaleBytes() throws Exception {
+        RecordingTransport t = new RecordingTransport(5) {
+            volatile boolean failing;
+
+            @Override
+            public synchronized int recv(byte[] data, int[] length, int timeoutMs, int maxWaitMs) {
+                if (failing) {
+                    return -1; // length 를 건드리지 않는다
+                }
+                return super.recv(data, length, timeoutMs, maxWaitMs);
+            }
+
+            @Override
+            public synchronized int send(byte[] data, int length) {
+                int ret = super.send(data, length);
+                failing = commands.size() > 1;
+                return ret;
+            }
+        };
+        AtCommandEngine engine = new AtCommandEngine(t);
+        try {
+            assertTrue(engine.submit("AT+VERSION").get(2, TimeUnit.SECONDS).isOk());
+            // 두 번째 명령부터 recv 가 실패한다. 버퍼에 남은 "OK" 로 완료되면 안 된다.
+            CompletableFuture<AtResponse> observer = engine.submit("AT+OBSERVER=0", 100);
+            try {
+                observer.get(2, TimeUnit.SECONDS);
+                fail("expected timeout");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+        } finally {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void closeFailsPendingCommands() throws Exception {
+        RecordingTransport t = new RecordingTransport(5);
+        AtCommandEngine engine = new AtCommandEngine(t);
+        CompletableFuture<AtResponse> hang = engine.submit("AT+HANG", 10_000);
+        engine.close();
+        try {
+            hang.get(2, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            engine.submit("AT+VERSION").get(2, TimeUnit.SECONDS);
+            fail("expected failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.test1;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] chunk(int i, int size) {
+        byte[] b = new byte[size];
+        Arrays.fill(b, (byte) i);
+        b[0] = (byte) (i >> 8);
+        return b;
+    }
+
+    private static List<byte[]> readAll(CaptureReader r, List<Long> times) throws Exception {
+        List<byte[]> out = new ArrayList<>();
+        while (r.next()) {
+            byte[] b = new byte[r.length()];
+            r.read(b, 0);
+            out.add(b);
+            if (times != null) {
+                times.add(r.timestampNanos());
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void rotatesSegmentsAndReadsBackInOrder() throws Exception {
+        File dir = tmp.newFolder();
+        CaptureWriter w = new CaptureWriter(dir, new CaptureWriter.Config().segmentBytes(64 * 1024).maxSegments(0));
+        for (int i = 0; i < 300; i++) {
+            w.append(chunk(i, 1000), 0, 1000, 1_000_000L * i);
+        }
+        w.append(new byte[0], 0, 0);
+        w.close();
+        assertEquals(300, w.chunks());
+        List<File> segments = CaptureReader.segments(dir, "scan");
+        assertEquals(w.segmentsWritten(), segments.size());
+        assertTrue(segments.size() >= 4);
+
+        List<Long> times = new ArrayList<>();
+        List<byte[]> chunks = readAll(CaptureReader.open(dir, "scan"), times);
+        assertEquals(300, chunks.size());
+        for (int i = 0; i < 300; i++) {
+            assertArrayEquals(chunk(i, 1000), chunks.get(i));
+            if (i > 0) {
+                assertEquals(1_000_000L, times.get(i) - times.get(i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void keepsOnlyNewestSegments() throws Exception {
+        File dir = tmp.newFolder();
+        CaptureWriter w = new CaptureWriter(dir, new CaptureWriter.Config().segmentBytes(64 * 1024).maxSegments(2));
+        for (int i = 0; i < 300; i++) {
+            w.append(chunk(i, 1000), 0, 1000);
+        }
+        w.close();
+        assertEquals(2, CaptureReader.segments(dir, "scan").size());
+        List<byte[]> chunks = readAll(CaptureReader.open(dir, "scan"), null);
+        assertTrue(chunks.size() < 300 && chunks.size() > 60);
+        assertArrayEquals(chunk(299, 1000), chunks.get(chunks.size() - 1));
+
+        // 새 writer 는 기존 번호 뒤에 이어 쓴다
+        CaptureWriter next = new CaptureWriter(dir, new CaptureWriter.Config().maxSegments(2));
+        next.append(chunk(1, 10), 0, 10);
+        next.close();
+        List<File> segments = CaptureReader.segments(dir, "scan");
+        assertEquals(2, segments.size());
+        assertEquals(10, segments.get(1).length() - CaptureWriter.SEGMENT_HEADER - CaptureWriter.RECORD_HEADER);
+    }
+
+    @Test
+    public void readsSegmentLeftByCrash() throws Exception {
+        File dir = tmp.newFolder();
+        CaptureWriter w = new CaptureWriter(dir, new CaptureWriter.Config().segmentBytes(64 * 1024));
+        for (int i = 0; i < 5; i++) {
+            w.append(chunk(i, 100), 0, 100);
+        }
+        // close 하지 않으면 파일은 세그먼트 크기 그대로 0 으로 채워져 있다
+        File segment = CaptureReader.segments(dir, "scan").get(0);
+        try (RandomAccessFile f = new RandomAccessFile(segment, "r")) {
+            assertEquals(64 * 1024, f.length());
+        }
+        assertEquals(5, readAll(CaptureReader.open(dir, "scan"), null).size());
+        w.close();
+    }
+
+    @Test
+    public void capturingTransportRecordsWhatScanReads() throws Exception {
+        File dir = tmp.newFolder();
+        SimulatedAtTransport sim = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(50).chunkSize(700));
+        CapturingAtTransport t = new CapturingAtTransport(sim);
+        t.enableMaster(true);
+        t.startNewScan("", "", 0, "", "");
+        byte[] buf = new byte[1024];
+        int[] len = new int[1];
+        t.recv(buf, len, 20, 1000); // 캡처 전
+        assertTrue(t.setWriter(new CaptureWriter(dir, new CaptureWriter.Config())) == null);
+        List<byte[]> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            t.recv(buf, len, 20, 1000);
+            expected.add(Arrays.copyOf(buf, len[0]));
+        }
+        t.setWriter(null).close();
+        t.recv(buf, len, 20, 1000); // 캡처 후
+
+        List<byte[]> captured = readAll(CaptureReader.open(dir, "scan"), null);
+        assertEquals(expected.size(), captured.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), captured.get(i));
+        }
+        assertEquals(0, t.errors());
+    }
+
+    @Test
+    public void replayAtMaxSpeedReproducesParse() throws Exception {
+        List<byte[]> corpus = LogCorpus.chunks("orginal.txt");
+        File dir = tmp.newFolder();
+        CaptureWriter w = new CaptureWriter(dir, new CaptureWriter.Config());
+        for (byte[] c : corpus) {
+            w.append(c, 0, c.length);
+        }
+        w.close();
+
+        ReplayAtTransport replay = new ReplayAtTransport(CaptureReader.open(dir, "scan"), ReplayAtTransport.MAX_SPEED);
+        List<String> replayed = new ArrayList<>();
+        ScanLineParser parser = new ScanLineParser();
+        ScanLineParser.Callback cb = p -> replayed.add(MacAddress.toString(p.mac()) + p.rssi()
+                + Hex.encode(p.payload(), 0, p.payloadLength()));
+        byte[] buf = new byte[4096];
+        int[] len = new int[1];
+        while (!replay.isFinished()) {
+            replay.recv(buf, len, 20, 1000);
+            parser.feed(buf, 0, len[0], cb);
+        }
+        assertEquals(corpus.size(), replay.chunks());
+
+        List<String> direct = new ArrayList<>();
+        ScanLineParser p2 = new ScanLineParser();
+        for (byte[] c : corpus) {
+            p2.feed(c, 0, c.length, p -> direct.add(MacAddress.toString(p.mac()) + p.rssi()
+                    + Hex.encode(p.payload(), 0, p.payloadLength())));
+        }
+        assertFalse(direct.isEmpty());
+        assertEquals(direct, replayed);
+    }
+
+    @Test
+    public void replayHonoursCapturedTimingAndSpeed() throws Exception {
+        File dir = tmp.newFolder();
+        CaptureWriter w = new CaptureWriter(dir, new CaptureWriter.Config());
+        for (int i = 0; i < 11; i++) {
+            w.append(chunk(i, 20), 0, 20, 20_000_000L * i); // 20ms 간격, 총 200ms
+        }
+        w.close();
+
+        assertTrue(replayMillis(dir, 1.0) >= 190);
+        long fast = replayMillis(dir, 4.0);
+        assertTrue(String.valueOf(fast), fast >= 45 && fast < 150);
+
+        // recv 버퍼보다 큰 청크는 나눠서 내보낸다
+        ReplayAtTransport replay = new ReplayAtTransport(CaptureReader.open(dir, "scan"), ReplayAtTransport.MAX_SPEED);
+        byte[] small = new byte[8];
+        int[] len = new int[1];
+        int total = 0;
+        while (!replay.isFinished()) {
+            replay.recv(small, len, 20, 1000);
+            total += len[0];
+        }
+        assertEquals(11 * 20, total);
+        assertEquals(11, replay.chunks());
+    }
+
+    private static long replayMillis(File dir, double speed) {
+        ReplayAtTransport replay = new ReplayAtTransport(CaptureReader.open(dir, "scan"), speed);
+        byte[] buf = new byte[64];
+        int[] len = new int[1];
+        long start = System.nanoTime();
+        while (replay.chunks() < 11) {
+            replay.recv(buf, len, 20, 1000);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkRingTest {
+
+    private static byte[] chunk(int value, int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) {
+            b[i] = (byte) value;
+        }
+        return b;
+    }
+
+    private static void offer(ChunkRing ring, int value, int len) {
+        assertTrue(ring.offer(chunk(value, len), 0, len));
+    }
+
+    @Test
+    public void deliversChunksInOrder() {
+        ChunkRing ring = new ChunkRing(3, 16, ChunkRing.POLICY_DROP_OLDEST);
+        assertEquals(4, ring.capacity());
+        byte[] out = new byte[16];
+        for (int i = 0; i < 10; i++) {
+            offer(ring, i, i + 1);
+            assertEquals(i + 1, ring.poll(out, 0));
+            assertEquals(i, out[i]);
+            assertEquals(0, ring.lastFlags());
+        }
+        assertEquals(ChunkRing.NONE, ring.poll(out, 0));
+        assertEquals(0, ring.overruns());
+    }
+
+    @Test
+    public void dropOldestKeepsNewestAndFlagsGap() {
+        ChunkRing ring = new ChunkRing(4, 8, ChunkRing.POLICY_DROP_OLDEST);
+        for (int i = 0; i < 6; i++) {
+            offer(ring, i, 3);
+        }
+        assertEquals(4, ring.size());
+        assertEquals(2, ring.overruns());
+        assertEquals(2, ring.droppedChunks());
+        assertEquals(6, ring.droppedBytes());
+
+        byte[] out = new byte[8];
+        assertEquals(3, ring.poll(out, 0));
+        assertEquals(2, out[0]);
+        assertEquals(ChunkRing.FLAG_GAP, ring.lastFlags());
+        assertEquals(3, ring.poll(out, 0));
+        assertEquals(3, out[0]);
+        assertEquals(0, ring.lastFlags());
+    }
+
+    @Test
+    public void coalesceMergesWhileFullAndDropsOnStagingOverflow() {
+        ChunkRing ring = new ChunkRing(2, 8, ChunkRing.POLICY_COALESCE);
+        offer(ring, 1, 4);
+        offer(ring, 2, 4);
+        // 링이 가득 차서 대기 버퍼에 합쳐진다
+        offer(ring, 3, 3);
+        offer(ring, 4, 3);
+        assertEquals(2, ring.size());
+        assertEquals(1, ring.overruns());
+        assertEquals(1, ring.coalescedChunks());
+        assertEquals(0, ring.droppedChunks());
+
+        byte[] out = new byte[8];
+        assertEquals(4, ring.poll(out, 0));
+        assertTrue(ring.flush());
+        assertEquals(4, ring.poll(out, 0));
+        assertEquals(6, ring.poll(out, 0));
+        assertEquals(3, out[0]);
+        assertEquals(4, out[5]);
+        assertEquals(0, ring.lastFlags());
+
+        // 대기 버퍼(8)를 넘으면 대기 중이던 데이터를 버린다
+        offer(ring, 5, 4);
+        offer(ring, 6, 4);
+        offer(ring, 7, 6);
+        offer(ring, 8, 6);
+        assertEquals(1, ring.droppedChunks());
+        assertEquals(6, ring.droppedBytes());
+        ring.poll(out, 0);
+        ring.poll(out, 0);
+        assertEquals(ChunkRing.NONE, ring.poll(out, 0));
+        assertTrue(ring.flush());
+        assertEquals(6, ring.poll(out, 0));
+        assertEquals(8, out[0]);
+        assertEquals(ChunkRing.FLAG_GAP, ring.lastFlags());
+    }
+
+    @Test
+    public void blockWaitsForConsumer() throws Exception {
+        final ChunkRing ring = new ChunkRing(2, 4, ChunkRing.POLICY_BLOCK);
+        offer(ring, 1, 1);
+        offer(ring, 2, 1);
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread producer = new Thread(() -> done.set(ring.offer(chunk(3, 1), 0, 1)));
+        producer.start();
+        Thread.sleep(50);
+        assertFalse(done.get());
+
+        byte[] out = new byte[4];
+        assertEquals(1, ring.poll(out, 0));
+        producer.join(1000);
+        assertTrue(done.get());
+        assertEquals(1, ring.overruns());
+        assertTrue(ring.blockedNanos() > 0);
+        assertEquals(2, ring.size());
+    }
+
+    @Test
+    public void blockedProducerGivesUpOnInterrupt() throws Exception {
+        final ChunkRing ring = new ChunkRing(1, 4, ChunkRing.POLICY_BLOCK);
+        offer(ring, 1, 1);
+        final AtomicBoolean result = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> result.set(ring.offer(chunk(2, 1), 0, 1)));
+        producer.start();
+        Thread.sleep(20);
+        producer.interrupt();
+        producer.join(1000);
+        assertFalse(result.get());
+        assertEquals(1, ring.droppedChunks());
+    }
+
+    @Test
+    public void pollTimesOut() {
+        ChunkRing ring = new ChunkRing(2, 4, ChunkRing.POLICY_BLOCK);
+        long start = System.nanoTime();
+        assertEquals(ChunkRing.NONE, ring.poll(new byte[4], 20));
+        assertTrue(System.nanoTime() - start >= 15_000_000L);
+    }
+
+    @Test
+    public void wakeConsumerEndsPollImmediately() throws Exception {
+        final ChunkRing ring = new ChunkRing(2, 4, ChunkRing.POLICY_BLOCK);
+        Thread waker = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            ring.wakeConsumer();
+        });
+        long start = System.nanoTime();
+        waker.start();
+        assertEquals(ChunkRing.NONE, ring.poll(new byte[4], 10_000));
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        waker.join();
+
+        // 대기 전에 요청해도 다음 poll 이 바로 끝나고, 그 다음 poll 은 평소대로 데이터를 받는다
+        ring.wakeConsumer();
+        assertEquals(ChunkRing.NONE, ring.poll(new byte[4], 10_000));
+        offer(ring, 1, 2);
+        assertEquals(2, ring.poll(new byte[4], 10_000));
+    }
+
+    /** 생산자/소비자를 동시에 돌려도 청크가 찢어지지 않고, BLOCK 이면 순서대로 모두 전달된다 */
+    @Test
+    public void concurrentTransferKeepsChunksIntact() throws Exception {
+        for (int policy : new int[]{ChunkRing.POLICY_BLOCK, ChunkRing.POLICY_DROP_OLDEST}) {
+            final ChunkRing ring = new ChunkRing(8, 64, policy);
+            final int count = 200_000;
+            Thread producer = new Thread(() -> {
+                byte[] buf = new byte[64];
+                for (int i = 0; i < count; i++) {
+                    // 앞 4바이트는 순번, 나머지는 순번의 하위 바이트로 채운다
+                    int len = 4 + i % 60;
+                    buf[0] = (byte) (i >>> 24);
+                    buf[1] = (byte) (i >>> 16);
+                    buf[2] = (byte) (i >>> 8);
+                    for (int k = 3; k < len; k++) {
+                        buf[k] = (byte) i;
+                    }
+                    ring.offer(buf, 0, len);
+                }
+            });
+            producer.start();
+
+            byte[] out = new byte[64];
+            int received = 0;
+            int last = -1;
+            while (true) {
+                int len = ring.poll(out, 200);
+                if (len == ChunkRing.NONE) {
+                    break;
+                }
+                int seq = (out[0] & 0xFF) << 24 | (out[1] & 0xFF) << 16 | (out[2] & 0xFF) << 8 | (out[3] & 0xFF);
+                assertTrue(seq > last);
+                assertEquals(seq != last + 1, (ring.lastFlags() & ChunkRing.FLAG_GAP) != 0);
+                assertEquals(4 + seq % 60, len);
+                for (int k = 3; k < len; k++) {
+                    assertEquals((byte) seq, out[k]);
+                }
+                last = seq;
+                received++;
+            }
+            producer.join();
+            assertEquals(count - 1, last);
+            assertEquals(count, received + ring.droppedChunks());
+            if (policy == ChunkRing.POLICY_BLOCK) {
+                assertEquals(count, received);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CodecRegistryTest {
+    private final CodecRegistry registry = CodecRegistry.standard();
+
+    private static byte[] hex(String hex) {
+        byte[] ascii = hex.getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[ascii.length / 2];
+        Hex.decode(ascii, 0, ascii.length, data, 0);
+        return data;
+    }
+
+    private static final class Custom extends BeaconFrame {
+        final int value;
+
+        Custom(int value) {
+            super(TYPE_CUSTOM);
+            this.value = value;
+        }
+    }
+
+    @Test
+    public void decodesIBeacon() {
+        byte[] p = hex("0201061AFF4C000215E2C56DB5DFFB48D2B060D0F5A71096E000010002C5");
+        List<BeaconFrame> frames = registry.decode(p, 0, p.length);
+        assertEquals(1, frames.size());
+        BeaconFrame.IBeacon b = (BeaconFrame.IBeacon) frames.get(0);
+        assertEquals(BeaconFrame.TYPE_IBEACON, b.type());
+        assertEquals(UUID.fromString("E2C56DB5-DFFB-48D2-B060-D0F5A71096E0"), b.uuid());
+        assertEquals(1, b.major());
+        assertEquals(2, b.minor());
+        assertEquals(-59, b.txPower());
+
+        // 다른 Apple 광고 (0x10 = Nearby) 는 프레임이 아니다
+        byte[] nearby = hex("02011A020A070AFF4C0010050318C08736");
+        assertTrue(registry.decode(nearby, 0, nearby.length).isEmpty());
+    }
+
+    @Test
+    public void decodesEddystoneFrames() {
+        byte[] uid = hex("0201060303AAFE1716AAFE00EE00112233445566778899AABBCCDDEEFF0000");
+        BeaconFrame.EddystoneUid u = (BeaconFrame.EddystoneUid) registry.decode(uid, 0, uid.length).get(0);
+        assertEquals("00112233445566778899", u.namespace());
+        assertEquals("AABBCCDDEEFF", u.instance());
+        assertEquals(-18, u.txPower());
+
+        // https://www. + "google" + .com/
+        byte[] url = hex("0303AAFE0D16AAFE10EB01676F6F676C6500");
+        BeaconFrame.EddystoneUrl l = (BeaconFrame.EddystoneUrl) registry.decode(url, 0, url.length).get(0);
+        assertEquals("https://www.google.com/", l.url());
+        assertEquals(-21, l.txPower());
+
+        // 3000 mV, 23.5 C, 1000 광고, 3600 초
+        byte[] tlm = hex("0303AAFE1116AAFE20000BB81780000003E800008CA0");
+        BeaconFrame.EddystoneTlm t = (BeaconFrame.EddystoneTlm) registry.decode(tlm, 0, tlm.length).get(0);
+        assertEquals(3000, t.batteryMillivolts());
+        assertEquals(23.5, t.temperature(), 1e-9);
+        assertEquals(1000, t.advertisingCount());
+        assertEquals(3_600_000, t.uptimeMs());
+
+        byte[] noTemperature = hex("0303AAFE1116AAFE20000BB88000000003E800008CA0");
+        t = (BeaconFrame.EddystoneTlm) registry.decode(noTemperature, 0, noTemperature.length).get(0);
+        assertTrue(Double.isNaN(t.temperature()));
+
+        // 암호화 TLM, 잘린 UID 는 해석하지 않는다
+        byte[] encrypted = hex("0303AAFE1116AAFE20010BB81780000003E800008CA0");
+        assertTrue(registry.decode(encrypted, 0, encrypted.length).isEmpty());
+        byte[] shortUid = hex("0716AAFE00EE0011");
+        assertTrue(registry.decode(shortUid, 0, shortUid.length).isEmpty());
+    }
+
+    @Test
+    public void decodesMcandleFramesFromRecordedPayloads() {
+        // app/log 에 녹화된 mcandle 광고
+        byte[] dev = hex("08096D63616E646C65020AF9030334120E1634126D63616E646C652E646576");
+        BeaconFrame.Mcandle m = (BeaconFrame.Mcandle) registry.decode(dev, 0, dev.length).get(0);
+        assertEquals(BeaconFrame.TYPE_MCANDLE, m.type());
+        assertEquals("mcandle.dev", m.text());
+
+        // 0x4567 서비스 데이터는 등록되지 않아 무시된다
+        byte[] ch = hex("08096D63616E646C65050334126745051634124348061667454D4341");
+        List<BeaconFrame> frames = registry.decode(ch, 0, ch.length);
+        assertEquals(1, frames.size());
+        assertEquals("CH", ((BeaconFrame.Mcandle) frames.get(0)).text());
+
+        // 바이너리 서비스 데이터는 mcandle 문자열이 아니다
+        byte[] binary = hex("0516341200FF");
+        assertTrue(registry.decode(binary, 0, binary.length).isEmpty());
+    }
+
+    @Test
+    public void customCodecsByUuidAndManufacturer() {
+        UUID service = UUID.fromString("6E400001-B5A3-F393-E0A9-E50E24DCCA9E");
+        registry.registerServiceUuid(service, (data, offset, length) -> new Custom(data[offset]));
+        // Base UUID 로 적은 0x4567 은 16비트 UUID 와 같다
+        registry.registerServiceUuid(UUID.fromString("00004567-0000-1000-8000-00805F9B34FB"),
+                (data, offset, length) -> new Custom(length));
+        // 같은 제조사에 코덱을 더하면 기존 코덱이 null 일 때 시도된다
+        registry.registerManufacturer(CodecRegistry.APPLE_COMPANY_ID,
+                (data, offset, length) -> data[offset] == 0x10 ? new Custom(0x10) : null);
+
+        byte[] p = hex("12219ECADC240EE5A9E093F3A3B50100406E07");
+        assertEquals(7, ((Custom) registry.decode(p, 0, p.length).get(0)).value);
+
+        byte[] ch = hex("08096D63616E646C65050334126745051634124348061667454D4341");
+        List<BeaconFrame> frames = registry.decode(ch, 0, ch.length);
+        assertEquals(2, frames.size());
+        assertEquals(3, ((Custom) frames.get(1)).value);
+
+        byte[] nearby = hex("02011A020A070AFF4C0010050318C08736");
+        assertEquals(0x10, ((Custom) registry.decode(nearby, 0, nearby.length).get(0)).value);
+        byte[] beacon = hex("0201061AFF4C000215E2C56DB5DFFB48D2B060D0F5A71096E000010002C5");
+        assertEquals(BeaconFrame.TYPE_IBEACON, registry.decode(beacon, 0, beacon.length).get(0).type());
+
+        // 기본 레지스트리는 바뀌지 않는다
+        assertTrue(CodecRegistry.standard().decode(nearby, 0, nearby.length).isEmpty());
+    }
+
+    @Test
+    public void framesAreDecodedOncePerCachedPayload() {
+        int[] calls = new int[1];
+        CodecRegistry counting = new CodecRegistry().registerServiceUuid16(CodecRegistry.MCANDLE_UUID16,
+                (data, offset, length) -> {
+                    calls[0]++;
+                    return CodecRegistry.MCANDLE.decode(data, offset, length);
+                });
+        PayloadCache cache = new PayloadCache(16, counting);
+        byte[] dev = hex("08096D63616E646C65020AF9030334120E1634126D63616E646C652E646576");
+        DecodedPayload first = cache.intern(dev, 0, dev.length);
+        DecodedPayload again = cache.intern(dev.clone(), 0, dev.length);
+        assertSame(first, again);
+        assertSame(first.frames(), again.frames());
+        assertEquals("mcandle.dev", ((BeaconFrame.Mcandle) again.frame(BeaconFrame.TYPE_MCANDLE)).text());
+        assertNull(again.frame(BeaconFrame.TYPE_IBEACON));
+        assertEquals(1, calls[0]);
+
+        // 스냅샷은 ADV 다음 RSP 에서 찾는다
+        DeviceTable table = new DeviceTable(4, 1000);
+        byte[] beacon = hex("0201061AFF4C000215E2C56DB5DFFB48D2B060D0F5A71096E000010002C5");
+        table.update(1, -60, ScanLineParser.TYPE_ADV, beacon, 0, beacon.length, 0);
+        table.update(1, -60, ScanLineParser.TYPE_RSP, dev, 0, dev.length, 0);
+        DeviceSnapshot s = DeviceSnapshot.capture(table, table.find(1), null);
+        assertEquals(BeaconFrame.TYPE_IBEACON, s.getFrame(BeaconFrame.TYPE_IBEACON).type());
+        assertEquals("mcandle.dev", ((BeaconFrame.Mcandle) s.getFrame(BeaconFrame.TYPE_MCANDLE)).text());
+        assertNull(s.getFrame(BeaconFrame.TYPE_EDDYSTONE_UID));
+    }
+}
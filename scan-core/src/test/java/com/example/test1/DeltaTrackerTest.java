@@ -0,0 +1,78 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeltaTrackerTest {
+    private static final byte[] ADV1 = {0x02, 0x01, 0x06};
+    private static final byte[] ADV2 = {0x02, 0x01, 0x1A};
+    private static final byte[] RSP = {0x03, 0x03, 0x78, (byte) 0xFE};
+    private static final long MAC = 0x5E60BA251ABFL;
+
+    private final DeviceTable table = new DeviceTable(16, 1000);
+    private final DeltaTracker tracker = new DeltaTracker(table, 5);
+
+    private void adv(long mac, int rssi, byte[] payload, long now) {
+        table.update(mac, rssi, ScanLineParser.TYPE_ADV, payload, 0, payload.length, now);
+    }
+
+    @Test
+    public void reportsOnlyChanges() {
+        adv(MAC, -80, ADV1, 0);
+        table.update(MAC, -80, ScanLineParser.TYPE_RSP, RSP, 0, RSP.length, 0);
+        List<ScanEvent> events = tracker.collect();
+        assertEquals(1, events.size());
+        assertEquals(ScanEvent.Type.APPEARED, events.get(0).getType());
+        DeviceSnapshot first = events.get(0).getDevice();
+        assertEquals(RSP.length, first.getRspLength());
+
+        // 같은 페이로드, 히스테리시스 이내의 RSSI 변화는 보고하지 않는다
+        adv(MAC, -83, ADV1, 10);
+        adv(MAC, -76, ADV1, 20);
+        assertTrue(tracker.collect().isEmpty());
+
+        // 마지막 보고값(-80) 대비 5dB 이상
+        adv(MAC, -86, ADV1, 30);
+        events = tracker.collect();
+        assertEquals(1, events.size());
+        assertEquals(ScanEvent.Type.CHANGED, events.get(0).getType());
+        assertEquals(DeviceTable.CHANGE_RSSI, events.get(0).getChanges());
+        assertTrue(events.get(0).getDevice().samePayloads(first));
+
+        adv(MAC, -86, ADV2, 40);
+        events = tracker.collect();
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).isPayloadChanged());
+        assertEquals(0x1A, events.get(0).getDevice().advertisement().flags());
+    }
+
+    @Test
+    public void reportsLostDevices() {
+        adv(MAC, -80, ADV1, 0);
+        adv(MAC + 1, -70, ADV1, 500);
+        assertEquals(2, tracker.collect().size());
+
+        table.evictExpired(1200);
+        List<ScanEvent> events = tracker.collect();
+        assertEquals(1, events.size());
+        assertEquals(ScanEvent.Type.LOST, events.get(0).getType());
+        assertEquals(MAC, events.get(0).getDevice().getMac());
+
+        // 같은 MAC 이 다시 나타나면 APPEARED
+        adv(MAC, -80, ADV1, 1300);
+        events = tracker.collect();
+        assertEquals(ScanEvent.Type.APPEARED, events.get(0).getType());
+    }
+
+    @Test
+    public void snapshotsAreShared() {
+        adv(MAC, -80, ADV1, 0);
+        DeviceSnapshot s = tracker.collect().get(0).getDevice();
+        assertSame(s, tracker.reported(table.find(MAC)));
+    }
+}
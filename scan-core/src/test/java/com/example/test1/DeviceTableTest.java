@@ -0,0 +1,111 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceTableTest {
+    private static final byte[] ADV = {0x02, 0x01, 0x06};
+    private static final byte[] RSP = {0x03, 0x03, 0x78, (byte) 0xFE};
+
+    @Test
+    public void mergesAdvAndRspInPlace() {
+        DeviceTable t = new DeviceTable(8, 0);
+        long mac = 0x5E60BA251ABFL;
+
+        int c = t.update(mac, -85, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 100);
+        assertEquals(DeviceTable.CHANGE_NEW | DeviceTable.CHANGE_ADV, c);
+        int e = t.lastEntry();
+
+        c = t.update(mac, -84, ScanLineParser.TYPE_RSP, RSP, 0, RSP.length, 200);
+        assertEquals(DeviceTable.CHANGE_RSSI | DeviceTable.CHANGE_RSP, c);
+        assertEquals(e, t.lastEntry());
+
+        c = t.update(mac, -84, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 300);
+        assertEquals(0, c);
+
+        assertEquals(1, t.size());
+        assertEquals(-84, t.rssi(e));
+        assertEquals(100, t.firstSeen(e));
+        assertEquals(300, t.lastSeen(e));
+        assertEquals(2, t.advCount(e));
+        assertEquals(1, t.rspCount(e));
+        assertEquals(RSP.length, t.rspLength(e));
+        assertEquals(0x78, t.rspArray()[t.payloadOffset(e) + 2]);
+        assertEquals(1, t.dirtyCount());
+    }
+
+    @Test
+    public void evictsExpiredDevices() {
+        DeviceTable t = new DeviceTable(8, 1000);
+        final List<Integer> reasons = new ArrayList<>();
+        t.setEvictionListener((table, entry, reason) -> reasons.add(reason));
+
+        t.update(1, -50, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 0);
+        t.update(2, -50, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 600);
+        assertEquals(0, t.evictExpired(999));
+        assertEquals(1, t.evictExpired(1000));
+        assertEquals(DeviceTable.NO_ENTRY, t.find(1));
+        assertTrue(t.find(2) >= 0);
+        assertEquals(1, t.dirtyCount());
+        assertEquals("[" + DeviceTable.EVICT_EXPIRED + "]", reasons.toString());
+    }
+
+    @Test
+    public void capacityCapEvictsLeastRecentlySeen() {
+        DeviceTable t = new DeviceTable(4, 0);
+        for (int i = 0; i < 4; i++) {
+            t.update(10 + i, -60, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, i);
+        }
+        t.update(10, -60, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 10);
+        t.update(99, -60, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 11);
+
+        assertEquals(4, t.size());
+        assertEquals(DeviceTable.NO_ENTRY, t.find(11));
+        assertTrue(t.find(10) >= 0);
+        assertTrue(t.find(99) >= 0);
+        assertEquals(1, t.capacityEvictions());
+    }
+
+    @Test
+    public void randomOperationsMatchHashMap() {
+        DeviceTable t = new DeviceTable(64, 0);
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long mac = random.nextInt(200) * 0x10001L;
+            if (random.nextInt(3) == 0) {
+                int e = t.find(mac);
+                if (e >= 0) {
+                    t.remove(e);
+                }
+                reference.remove(mac);
+            } else if (reference.containsKey(mac) || reference.size() < 64) {
+                int rssi = -random.nextInt(100);
+                t.update(mac, rssi, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, i);
+                reference.put(mac, rssi);
+            }
+            if (i % 100 == 0) {
+                t.clearDirty();
+            }
+        }
+        assertEquals(reference.size(), t.size());
+        for (Map.Entry<Long, Integer> r : reference.entrySet()) {
+            int e = t.find(r.getKey());
+            assertTrue(e >= 0);
+            assertEquals((int) r.getValue(), t.rssi(e));
+        }
+        int count = 0;
+        for (int e = t.nextEntry(0); e >= 0; e = t.nextEntry(e + 1)) {
+            count++;
+        }
+        assertEquals(reference.size(), count);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.test1;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 장애를 흉내 내는 시뮬레이터. 장애마다 어느 복구 단계의 명령으로 풀리는지 정한다.
+ * <ul>
+ *     <li>1: Lib_AtStartNewScan</li>
+ *     <li>2: Lib_AtCtsCtrl</li>
+ *     <li>3: Lib_EnableMaster(false)</li>
+ * </ul>
+ * 단계가 높은 명령은 낮은 단계 장애도 푼다.
+ */
+final class FaultInjectingAtTransport extends SimulatedAtTransport {
+    private static final byte[] GARBAGE = "MAC:zz:zz,RSSI:-1,ADV:0\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private int muteClearedBy;
+    private int garbleClearedBy;
+    private int failStarts;
+    private int startCalls;
+
+    FaultInjectingAtTransport(Config config) {
+        super(config);
+    }
+
+    /** recv 가 빈 채로만 돌아온다 */
+    synchronized void mute(int clearedBy) {
+        muteClearedBy = clearedBy;
+    }
+
+    /** recv 가 형식이 깨진 줄만 돌려준다 */
+    synchronized void garble(int clearedBy) {
+        garbleClearedBy = clearedBy;
+    }
+
+    /** 다음 n 번의 Lib_AtStartNewScan 이 실패한다 */
+    synchronized void failStartScan(int n) {
+        failStarts = n;
+    }
+
+    synchronized void clearFaults() {
+        clear(Integer.MAX_VALUE);
+    }
+
+    synchronized int startCalls() {
+        return startCalls;
+    }
+
+    private void clear(int level) {
+        if (muteClearedBy <= level) {
+            muteClearedBy = 0;
+        }
+        if (garbleClearedBy <= level) {
+            garbleClearedBy = 0;
+        }
+    }
+
+    @Override
+    public synchronized int startNewScan(String macAddress, String broadcastName, int rssi,
+                                         String manufacturerId, String data) {
+        startCalls++;
+        if (failStarts > 0) {
+            failStarts--;
+            return -1;
+        }
+        clear(1);
+        return super.startNewScan(macAddress, broadcastName, rssi, manufacturerId, data);
+    }
+
+    @Override
+    public synchronized int ctsCtrl() {
+        clear(2);
+        return super.ctsCtrl();
+    }
+
+    @Override
+    public synchronized int enableMaster(boolean enable) {
+        if (!enable) {
+            clear(3);
+        }
+        return super.enableMaster(enable);
+    }
+
+    @Override
+    public synchronized int recv(byte[] data, int[] length, int timeoutMs, int maxWaitMs) {
+        int ret = super.recv(data, length, timeoutMs, maxWaitMs);
+        if (muteClearedBy != 0) {
+            length[0] = 0;
+        } else if (garbleClearedBy != 0) {
+            int n = 0;
+            while (n + GARBAGE.length <= length[0]) {
+                System.arraycopy(GARBAGE, 0, data, n, GARBAGE.length);
+                n += GARBAGE.length;
+            }
+            length[0] = n;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndBounded() {
+        for (long v = 0; v < 100_000; v++) {
+            int i = Histogram.indexOf(v);
+            assertTrue(v + " -> " + i, Histogram.highestValueAt(i) >= v);
+            assertTrue(i == 0 || Histogram.highestValueAt(i - 1) < v);
+        }
+        int last = Histogram.indexOf(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, Histogram.highestValueAt(last));
+    }
+
+    @Test
+    public void percentilesWithinRelativeError() {
+        Histogram h = new Histogram();
+        Random random = new Random(3);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.abs(random.nextGaussian() * 1_000_000) + 100;
+            h.record(values[i]);
+        }
+        java.util.Arrays.sort(values);
+        Histogram.Snapshot s = h.snapshot();
+        assertEquals(values.length, s.count());
+        assertEquals(values[0], s.min());
+        assertEquals(values[values.length - 1], s.max());
+        for (double p : new double[]{50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(values.length * p / 100) - 1];
+            long approx = s.percentile(p);
+            assertTrue(p + ": " + approx + " vs " + exact,
+                    approx >= exact && approx <= exact + exact / Histogram.SUB_BUCKETS + 1);
+        }
+        assertEquals(values[values.length - 1], s.percentile(100));
+    }
+
+    @Test
+    public void emptyAndReset() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.snapshot().percentile(99));
+        assertEquals(0, h.snapshot().min());
+        h.record(-5);
+        h.record(42);
+        assertEquals(0, h.snapshot().min());
+        assertEquals(42, h.snapshot().percentile(100));
+        h.reset();
+        assertEquals(0, h.snapshot().count());
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.test1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 테스트용 app/log 캡처 파일 위치 탐색 및 청크 로딩.
+ */
+final class LogCorpus {
+    private LogCorpus() {
+    }
+
+    static File file(String name) {
+        String[] candidates = {"log/" + name, "app/log/" + name, "../app/log/" + name};
+        for (String c : candidates) {
+            File f = new File(c);
+            if (f.isFile()) {
+                return f;
+            }
+        }
+        throw new IllegalStateException("corpus not found: " + name);
+    }
+
+    static List<byte[]> chunks(String name) throws IOException {
+        return LogcatCapture.readChunks(file(name));
+    }
+
+    static byte[] concat(List<byte[]> chunks) {
+        int total = 0;
+        for (byte[] c : chunks) {
+            total += c.length;
+        }
+        byte[] all = new byte[total];
+        int p = 0;
+        for (byte[] c : chunks) {
+            System.arraycopy(c, 0, all, p, c.length);
+            p += c.length;
+        }
+        return all;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OccupancyAnalyticsTest {
+    private static final long T0 = 1_700_000_000_000L;
+
+    private final DeviceTable table = new DeviceTable(64, 1000);
+    private final DeltaTracker tracker = new DeltaTracker(table, 5);
+
+    @Test
+    public void hyperLogLogEstimatesDistinctDevices() {
+        HyperLogLog small = new HyperLogLog(12);
+        for (int i = 0; i < 20; i++) {
+            small.addMac(0xA0000000L + i);
+            small.addMac(0xA0000000L + i); // 중복은 세지 않는다
+        }
+        assertEquals(20, small.estimate());
+
+        HyperLogLog large = new HyperLogLog(12);
+        for (int i = 0; i < 100_000; i++) {
+            large.addMac(0xB00000000000L + i * 7919L);
+        }
+        long e = large.estimate();
+        assertTrue("estimate " + e, Math.abs(e - 100_000) < 5_000);
+    }
+
+    @Test
+    public void heavyHittersSurviveBackgroundTraffic() {
+        OccupancySketch s = new OccupancySketch(12, 512, 4, 5);
+        Random random = new Random(1);
+        Set<Long> distinct = new HashSet<>();
+        // 지나가는 기기 (2000 대 중 무작위) 사이에 오래 머무는 기기 5 대 (기기마다 250 + 50 * (i + 1) 회)
+        for (int round = 0; round < 300; round++) {
+            for (int i = 0; i < 5; i++) {
+                int times = round < 250 ? 1 : (i + 1);
+                for (int t = 0; t < times; t++) {
+                    s.addSighting(0xFEED00 + i, -80 + random.nextInt(10), T0 + round);
+                    distinct.add(0xFEED00L + i);
+                }
+            }
+            for (int k = 0; k < 7; k++) {
+                long passer = 0x100000 + random.nextInt(2000);
+                s.addSighting(passer, -90 + random.nextInt(20), T0 + round);
+                distinct.add(passer);
+            }
+        }
+        s.addSighting(0xC105E, -30, T0 + 300);
+        distinct.add(0xC105EL);
+
+        List<TopK.Entry> top = s.mostFrequent();
+        assertEquals(5, top.size());
+        for (int i = 0; i < 5; i++) {
+            long mac = 0xFEED00 + 4 - i;
+            assertEquals(mac, top.get(i).key());
+            long actual = 250 + 50 * (5 - i);
+            assertTrue(top.get(i).score() >= actual);
+            assertTrue(top.get(i).score() <= actual + s.sightings() / 100);
+        }
+        assertEquals(0xC105E, s.strongest().get(0).key());
+        assertEquals(-30, s.strongest().get(0).score());
+        long unique = s.uniqueDevices();
+        assertTrue("unique " + unique + " / " + distinct.size(),
+                Math.abs(unique - distinct.size()) < distinct.size() * 0.05);
+    }
+
+    @Test
+    public void tumblingAndSlidingWindows() {
+        OccupancyAnalytics a = new OccupancyAnalytics(new OccupancyAnalytics.Config().windowMs(1000).windows(3));
+        for (int w = 0; w < 5; w++) {
+            // 구간 w 에는 기기 10 * (w + 1) 대
+            for (int i = 0; i < 10 * (w + 1); i++) {
+                a.onSighting(i, -60, T0 + w * 1000L + i);
+            }
+        }
+        OccupancySketch current = a.current();
+        assertEquals(50, current.uniqueDevices());
+        assertEquals(50, current.sightings());
+        assertEquals(T0 + 4000, current.startMs());
+        assertEquals(T0 + 5000, current.endMs());
+
+        // 최근 3 구간 (30 + 40 + 50 목격, 기기는 0..49)
+        OccupancySketch last = a.last(10);
+        assertEquals(120, last.sightings());
+        assertEquals(50, last.uniqueDevices());
+        assertEquals(T0 + 2000, last.startMs());
+        assertEquals(50, a.last(1).sightings());
+
+        // 링에서 빠진 구간의 늦은 목격은 버린다, 아직 남은 구간이면 그 구간에 넣는다
+        a.onSighting(99, -60, T0 + 1500);
+        assertEquals(1, a.lateSightings());
+        a.onSighting(99, -60, T0 + 2500);
+        assertEquals(121, a.last(3).sightings());
+
+        // 오래 비어 있다가 다시 오면 지난 구간은 모두 비워진다
+        a.onSighting(1, -60, T0 + 60_000);
+        assertEquals(1, a.last(3).sightings());
+        assertEquals(152, a.sightings());
+    }
+
+    @Test
+    public void dwellFromLostEvents() {
+        OccupancyAnalytics a = new OccupancyAnalytics(new OccupancyAnalytics.Config().windowMs(60_000));
+        byte[] adv = {0x02, 0x01, 0x06};
+        for (int i = 0; i < 4; i++) {
+            // 기기 i 는 (i + 1) * 100 ms 머문다
+            table.update(i, -60, ScanLineParser.TYPE_ADV, adv, 0, adv.length, T0);
+            table.update(i, -60, ScanLineParser.TYPE_ADV, adv, 0, adv.length, T0 + (i + 1) * 100L);
+            a.onSighting(i, -60, T0);
+        }
+        a.onScanEvents(tracker.collect());
+        assertEquals(0, a.departures());
+        table.evictExpired(T0 + 5000);
+        a.onScanEvents(tracker.collect());
+        assertEquals(4, a.departures());
+        Histogram.Snapshot dwell = a.current().dwell();
+        assertEquals(4, dwell.count());
+        assertEquals(100, dwell.min());
+        assertEquals(400, dwell.max());
+        assertEquals(250.0, dwell.mean(), 1e-9);
+    }
+
+    @Test
+    public void sketchesMergeAcrossTerminals() throws Exception {
+        OccupancyAnalytics.Config config = new OccupancyAnalytics.Config().windowMs(60_000).topK(3);
+        OccupancyAnalytics lobby = new OccupancyAnalytics(config);
+        OccupancyAnalytics hall = new OccupancyAnalytics(config);
+        Set<Long> all = new HashSet<>();
+        // 두 단말이 기기 1000..2999 / 2000..3999 를 본다 (1000 대 겹침)
+        for (int i = 1000; i < 3000; i++) {
+            lobby.onSighting(i, -70, T0 + i);
+            all.add((long) i);
+        }
+        for (int i = 2000; i < 4000; i++) {
+            hall.onSighting(i, -75, T0 + i);
+            all.add((long) i);
+        }
+        for (int k = 0; k < 40; k++) {
+            lobby.onSighting(7, -40, T0 + 5000);
+            hall.onSighting(7, -45, T0 + 5000);
+            hall.onSighting(8, -50, T0 + 5000);
+        }
+        lobby.onScanEvents(Collections.emptyList());
+
+        byte[] fromLobby = lobby.current().toBytes();
+        byte[] fromHall = hall.current().toBytes();
+        assertTrue("serialized " + fromLobby.length, fromLobby.length < 16 * 1024);
+
+        OccupancySketch server = OccupancySketch.fromBytes(fromLobby);
+        assertEquals(lobby.current().uniqueDevices(), server.uniqueDevices());
+        server.merge(OccupancySketch.fromBytes(fromHall));
+        long unique = server.uniqueDevices();
+        assertTrue("unique " + unique, Math.abs(unique - all.size()) < all.size() * 0.05);
+        assertEquals(2000 + 2000 + 120, server.sightings());
+        List<TopK.Entry> top = server.mostFrequent();
+        assertEquals(7, top.get(0).key());
+        assertTrue(top.get(0).score() >= 80);
+        assertEquals(8, top.get(1).key());
+        assertEquals(-40, server.strongest().get(0).score());
+
+        // 다시 직렬화해도 같다
+        OccupancySketch again = OccupancySketch.fromBytes(server.toBytes());
+        assertEquals(server.uniqueDevices(), again.uniqueDevices());
+        assertEquals(server.mostFrequent().get(0).score(), again.mostFrequent().get(0).score());
+
+        try {
+            server.merge(new OccupancySketch(10, 512, 4, 3));
+            fail("precision mismatch");
+        } catch (IllegalArgumentException expected) {
+            // 크기가 다른 sketch 는 합칠 수 없다
+        }
+        try {
+            OccupancySketch.fromBytes(new byte[]{1, 2, 3});
+            fail("corrupt");
+        } catch (java.io.IOException expected) {
+            // 손상된 입력
+        }
+    }
+
+    @Test
+    public void rejectedMergeLeavesSketchUnchanged() throws Exception {
+        OccupancySketch target = new OccupancySketch(12, 512, 4, 5);
+        OccupancySketch wide = new OccupancySketch(12, 1024, 4, 5);
+        OccupancySketch deep = new OccupancySketch(12, 512, 3, 5);
+        for (int i = 0; i < 200; i++) {
+            target.addSighting(0xC0000000L + i % 20, -50 - i % 30, T0 + i);
+            wide.addSighting(0xD0000000L + i, -45, T0 + 1000 + i);
+            deep.addSighting(0xD0000000L + i, -45, T0 + 1000 + i);
+        }
+        target.addDwell(30_000);
+        byte[] before = target.toBytes();
+
+        // HyperLogLog 와 top-k 는 맞고 count-min 크기만 다르다
+        for (OccupancySketch other : new OccupancySketch[]{wide, deep}) {
+            try {
+                target.merge(other);
+                fail("count-min size mismatch");
+            } catch (IllegalArgumentException expected) {
+                // 거절되면 어떤 구성 요소도 바뀌지 않아야 한다
+            }
+            assertArrayEquals(before, target.toBytes());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.test1;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadCacheTest {
+    private static final byte[] ADV = bytes("0201061AFF4C000215E2C56DB5DFFB48D2B060D0F5A71096E000010002C5");
+
+    private static byte[] bytes(String hex) {
+        byte[] ascii = hex.getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[ascii.length / 2];
+        Hex.decode(ascii, 0, ascii.length, data, 0);
+        return data;
+    }
+
+    private static byte[] payload(int i) {
+        return new byte[]{0x05, (byte) 0xFF, 0x59, 0x00, (byte) (i >> 8), (byte) i};
+    }
+
+    @Test
+    public void returnsSameInstanceForSameBytes() {
+        PayloadCache cache = new PayloadCache(16);
+        // 다른 배열, 다른 offset 이라도 내용이 같으면 같은 객체
+        byte[] shifted = new byte[ADV.length + 3];
+        System.arraycopy(ADV, 0, shifted, 3, ADV.length);
+        DecodedPayload a = cache.intern(ADV, 0, ADV.length);
+        DecodedPayload b = cache.intern(shifted, 3, ADV.length);
+        assertSame(a, b);
+        assertNotSame(ADV, a.bytes());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+        assertEquals(0.5, cache.hitRate(), 0);
+        assertSame(DecodedPayload.EMPTY, cache.intern(ADV, 0, 0));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void cachesDecodedRepresentation() throws Exception {
+        PayloadCache cache = new PayloadCache(4);
+        DecodedPayload d = cache.intern(ADV, 0, ADV.length);
+        assertTrue(d.isValid());
+        assertEquals(AdvertisementView.NO_TX_POWER, d.txPower());
+        assertEquals(Hex.encode(ADV, 0, ADV.length), d.hex());
+        assertSame(d.hex(), d.hex());
+        JSONObject json = d.json();
+        assertSame(json, d.json());
+        assertEquals(new AdvertisementView().wrap(ADV, 0, ADV.length).toJson().toString(), json.toString());
+
+        byte[] truncated = {0x05, (byte) 0xFF, 0x4C};
+        DecodedPayload t = cache.intern(truncated, 0, truncated.length);
+        assertFalse(t.isValid());
+        assertNull(t.json());
+        assertNull(t.json());
+
+        byte[] tx = {0x02, 0x0A, (byte) 0xF4};
+        assertEquals(-12, cache.intern(tx, 0, tx.length).txPower());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        PayloadCache cache = new PayloadCache(3);
+        DecodedPayload p0 = cache.intern(payload(0), 0, 6);
+        cache.intern(payload(1), 0, 6);
+        cache.intern(payload(2), 0, 6);
+        assertSame(p0, cache.intern(payload(0), 0, 6)); // 0 이 가장 최근
+        cache.intern(payload(3), 0, 6);                  // 1 이 밀려난다
+        assertEquals(1, cache.evictions());
+        assertEquals(3, cache.size());
+        assertSame(p0, cache.intern(payload(0), 0, 6));
+        long misses = cache.misses();
+        cache.intern(payload(1), 0, 6);
+        assertEquals(misses + 1, cache.misses());
+    }
+
+    @Test
+    public void staysConsistentUnderChurn() {
+        PayloadCache cache = new PayloadCache(64);
+        DecodedPayload[] last = new DecodedPayload[1000];
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            // 앞쪽 32개는 자주, 나머지는 가끔 나타난다
+            int k = random.nextInt(4) != 0 ? random.nextInt(32) : 32 + random.nextInt(968);
+            byte[] p = payload(k);
+            DecodedPayload d = cache.intern(p, 0, p.length);
+            assertTrue(d.contentEquals(p, 0, p.length));
+            // 삭제로 슬롯이 당겨진 뒤에도 바로 찾을 수 있어야 한다
+            assertSame(d, cache.intern(p, 0, p.length));
+            last[k] = d;
+        }
+        assertEquals(64, cache.size());
+        assertEquals(200_000, cache.hits() + cache.misses());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNotSame(last[0], cache.intern(payload(0), 0, 6));
+    }
+
+    @Test
+    public void jsonCopyDoesNotShareArrays() throws Exception {
+        PayloadCache cache = new PayloadCache(4);
+        byte[] eddystone = bytes("0303AAFE0516AAFE1000");
+        DecodedPayload d = cache.intern(eddystone, 0, eddystone.length);
+        JSONObject copy = d.jsonCopy();
+        assertTrue(d.json().similar(copy));
+        boolean array = false;
+        for (String key : copy.keySet()) {
+            if (copy.get(key) instanceof JSONArray) {
+                copy.getJSONArray(key).put("extra");
+                array = true;
+            } else {
+                copy.put(key, "changed");
+            }
+        }
+        assertTrue(array);
+        assertFalse(d.json().similar(copy));
+        assertTrue(d.json().similar(d.jsonCopy()));
+    }
+
+    @Test
+    public void snapshotsShareCachedPayloads() throws Exception {
+        DeviceTable table = new DeviceTable(8, 1000);
+        DeltaTracker tracker = new DeltaTracker(table, 5);
+        PayloadCache cache = new PayloadCache(16);
+        tracker.setPayloadCache(cache);
+        // 같은 비콘 두 대가 같은 페이로드를 보낸다
+        table.update(1, -60, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 0);
+        table.update(2, -70, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 0);
+        List<ScanEvent> events = tracker.collect();
+        assertEquals(2, events.size());
+        DeviceSnapshot a = events.get(0).getDevice();
+        DeviceSnapshot b = events.get(1).getDevice();
+        assertSame(a.getAdv(), b.getAdv());
+        // JSON 은 캐시된 해석 결과의 복사본이라 한 리스너가 고쳐도 다른 쪽에 보이지 않는다
+        JSONObject advA = a.toJson().getJSONObject("ADV");
+        JSONObject advB = b.toJson().getJSONObject("ADV");
+        assertNotSame(advA, advB);
+        assertEquals(a.getAdv().json().toString(), advB.toString());
+        advA.put("Flags", "changed");
+        assertTrue(advB.similar(b.toJson().getJSONObject("ADV")));
+        assertTrue(advB.similar(a.getAdv().json()));
+        assertEquals(Hex.encode(ADV, 0, ADV.length), a.toJson().getString("ADV_org"));
+        assertEquals(1, cache.misses());
+    }
+}
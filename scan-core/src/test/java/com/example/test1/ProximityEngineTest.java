@@ -0,0 +1,193 @@
+package com.example.test1;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProximityEngineTest {
+    private static final int NO_TX = AdvertisementView.NO_TX_POWER;
+    private static final long MAC = 0x5E60BA251ABFL;
+
+    private static ProximityEngine raw() {
+        return new ProximityEngine(4, new ProximityEngine.Config()
+                .filter(ProximityEngine.FILTER_NONE).minSamples(1));
+    }
+
+    @Test
+    public void estimatesDistanceFromTxPower() {
+        ProximityEngine p = raw();
+        // TX Power -18 -> 1m 기준 -59
+        p.update(0, MAC, true, -59, -18, 0);
+        assertEquals(1.0, p.distance(0), 1e-9);
+        p.update(0, MAC, false, -79, NO_TX, 100);
+        assertEquals(10.0, p.distance(0), 1e-9);
+        assertEquals(-18, p.txPower(0));
+
+        // TX Power 가 없으면 기본 1m 세기 (-59)
+        p.update(1, MAC + 1, true, -65, NO_TX, 0);
+        assertEquals(Math.pow(10, 6 / 20.0), p.distance(1), 1e-9);
+        assertTrue(Double.isNaN(p.distance(2)));
+    }
+
+    @Test
+    public void medianRejectsSpikes() {
+        ProximityEngine median = new ProximityEngine(1, new ProximityEngine.Config()
+                .filter(ProximityEngine.FILTER_MEDIAN).medianWindow(5));
+        ProximityEngine ema = new ProximityEngine(1, new ProximityEngine.Config()
+                .filter(ProximityEngine.FILTER_EMA).emaAlpha(0.5));
+        int[] samples = {-70, -70, -70, -20, -70};
+        for (int i = 0; i < samples.length; i++) {
+            median.update(0, MAC, i == 0, samples[i], NO_TX, i * 100L);
+            ema.update(0, MAC, i == 0, samples[i], NO_TX, i * 100L);
+        }
+        assertEquals(-70, median.smoothedRssi(0), 0);
+        assertTrue(ema.smoothedRssi(0) > -60);
+
+        // 새 entry 는 이전 창을 이어받지 않는다
+        median.update(0, MAC + 1, true, -50, NO_TX, 1000);
+        assertEquals(-50, median.smoothedRssi(0), 0);
+        assertEquals(1, median.samples(0));
+    }
+
+    @Test
+    public void filtersReduceNoise() {
+        for (int filter : new int[]{ProximityEngine.FILTER_EMA, ProximityEngine.FILTER_KALMAN,
+                ProximityEngine.FILTER_MEDIAN}) {
+            ProximityEngine p = new ProximityEngine(1, new ProximityEngine.Config().filter(filter));
+            Random random = new Random(42);
+            double sum = 0;
+            double sumSq = 0;
+            for (int i = 0; i < 400; i++) {
+                p.update(0, MAC, i == 0, (int) Math.round(-70 + random.nextGaussian() * 4), NO_TX, i * 100L);
+                if (i >= 200) {
+                    double s = p.smoothedRssi(0);
+                    sum += s;
+                    sumSq += s * s;
+                }
+            }
+            double mean = sum / 200;
+            double sd = Math.sqrt(sumSq / 200 - mean * mean);
+            assertEquals("filter " + filter, -70, mean, 1.5);
+            assertTrue("filter " + filter + " sd " + sd, sd < 2.5);
+        }
+    }
+
+    @Test
+    public void zonesUseHysteresis() {
+        ProximityEngine p = raw();
+        List<String> changes = new ArrayList<>();
+        p.setZoneListener((mac, from, to, d) ->
+                changes.add(ProximityEngine.zoneName(from) + ">" + ProximityEngine.zoneName(to)));
+        // 기본 1m -59dBm, 경계 0.5m/3m, ±20%
+        int[] rssi = {-60, -69, -68, -69, -70, -71, -69, -67, -66, -40, -80, -59};
+        int[] expected = {
+                ProximityEngine.ZONE_NEAR,
+                ProximityEngine.ZONE_NEAR, ProximityEngine.ZONE_NEAR, ProximityEngine.ZONE_NEAR,
+                ProximityEngine.ZONE_NEAR,       // 3.55m: 3.6m 를 넘지 않았다
+                ProximityEngine.ZONE_FAR,        // 3.98m
+                ProximityEngine.ZONE_FAR,        // 3.16m: 2.4m 안으로 들어오지 않았다
+                ProximityEngine.ZONE_FAR,        // 2.51m
+                ProximityEngine.ZONE_NEAR,       // 2.24m
+                ProximityEngine.ZONE_IMMEDIATE,  // 0.11m
+                ProximityEngine.ZONE_FAR,        // 11m: 두 구역을 한 번에
+                ProximityEngine.ZONE_NEAR,       // 1m
+        };
+        for (int i = 0; i < rssi.length; i++) {
+            p.update(0, MAC, i == 0, rssi[i], NO_TX, i * 100L);
+            assertEquals("sample " + i, expected[i], p.zone(0));
+        }
+        p.remove(0, MAC);
+        assertEquals(ProximityEngine.ZONE_UNKNOWN, p.zone(0));
+        assertEquals("[UNKNOWN>NEAR, NEAR>FAR, FAR>NEAR, NEAR>IMMEDIATE, IMMEDIATE>FAR, FAR>NEAR, NEAR>UNKNOWN]",
+                changes.toString());
+        assertEquals(7, p.zoneChanges());
+    }
+
+    @Test
+    public void waitsForMinSamplesBeforeZone() {
+        ProximityEngine p = new ProximityEngine(1, new ProximityEngine.Config()
+                .filter(ProximityEngine.FILTER_NONE).minSamples(3));
+        assertFalse(p.update(0, MAC, true, -60, NO_TX, 0));
+        assertFalse(p.update(0, MAC, false, -60, NO_TX, 100));
+        assertEquals(ProximityEngine.ZONE_UNKNOWN, p.zone(0));
+        assertTrue(p.update(0, MAC, false, -60, NO_TX, 200));
+        assertEquals(ProximityEngine.ZONE_NEAR, p.zone(0));
+    }
+
+    @Test
+    public void smoothedRssiSuppressesSpuriousChanges() {
+        DeviceTable table = new DeviceTable(8, 1000);
+        DeltaTracker tracker = new DeltaTracker(table, 5);
+        ProximityEngine p = new ProximityEngine(8, new ProximityEngine.Config());
+        tracker.setProximity(p);
+        byte[] adv = {0x02, 0x0A, (byte) 0xEE}; // TX Power -18
+
+        int changed = 0;
+        for (int i = 0; i < 50; i++) {
+            int rssi = (i & 1) == 0 ? -64 : -76;
+            int c = table.update(MAC, rssi, ScanLineParser.TYPE_ADV, adv, 0, adv.length, i * 100L);
+            p.update(table.lastEntry(), MAC, (c & DeviceTable.CHANGE_NEW) != 0, rssi, -18, i * 100L);
+            for (ScanEvent e : tracker.collect()) {
+                if (e.getType() == ScanEvent.Type.CHANGED) {
+                    changed++;
+                }
+            }
+        }
+        // 원시 RSSI 로 비교하면 매 샘플(49번)이 CHANGED 가 된다. 수렴하는 동안의 몇 번만 남는다.
+        assertTrue("changed " + changed, changed <= 4);
+
+        // 가까이 다가오면 구역 변경이 CHANGED 로 보고된다 (FAR -> NEAR -> IMMEDIATE)
+        ScanEvent zoneEvent = null;
+        for (int i = 50; i < 150 && (zoneEvent == null
+                || zoneEvent.getDevice().getZone() != ProximityEngine.ZONE_IMMEDIATE); i++) {
+            table.update(MAC, -45, ScanLineParser.TYPE_ADV, adv, 0, adv.length, i * 100L);
+            p.update(table.lastEntry(), MAC, false, -45, -18, i * 100L);
+            for (ScanEvent e : tracker.collect()) {
+                if ((e.getChanges() & DeviceTable.CHANGE_ZONE) != 0) {
+                    zoneEvent = e;
+                }
+            }
+        }
+        assertTrue(zoneEvent != null);
+        assertEquals(ProximityEngine.ZONE_IMMEDIATE, zoneEvent.getDevice().getZone());
+        assertTrue(zoneEvent.getDevice().getDistance() < 0.5);
+
+        // 제거되면 구역도 사라진다
+        List<Integer> exits = new ArrayList<>();
+        p.setZoneListener((mac, from, to, d) -> exits.add(to));
+        table.evictExpired(100_000);
+        assertEquals(1, exits.size());
+        assertEquals(ProximityEngine.ZONE_UNKNOWN, (int) exits.get(0));
+    }
+
+    @Test
+    public void updatesDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+
+        for (int filter = ProximityEngine.FILTER_NONE; filter <= ProximityEngine.FILTER_MEDIAN; filter++) {
+            ProximityEngine p = new ProximityEngine(1024, new ProximityEngine.Config().filter(filter));
+            for (int round = 0; round < 2; round++) {
+                long before = mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+                for (int i = 0; i < 100_000; i++) {
+                    int e = i & 1023;
+                    p.update(e, e, i < 1024, -40 - (i % 50), (i & 1) == 0 ? -18 : NO_TX, i);
+                }
+                long allocated = mx.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+                if (round == 1) {
+                    assertTrue("filter " + filter + " allocated " + allocated, allocated < 1024);
+                }
+            }
+        }
+    }
+}
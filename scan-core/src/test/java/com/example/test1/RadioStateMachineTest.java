@@ -0,0 +1,198 @@
+package com.example.test1;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RadioStateMachineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final RadioStateMachine.ScanParams MCANDLE =
+            new RadioStateMachine.ScanParams("", "mcandle", 0, "", "");
+    private static final RadioStateMachine.ScanParams STRONG =
+            new RadioStateMachine.ScanParams("", "mcandle", -60, "", "");
+
+    /** 모듈로 간 명령을 기록하는 시뮬레이터. failNext 이름의 명령은 한 번 실패한다. */
+    static final class RecordingTransport extends SimulatedAtTransport {
+        final List<String> commands = new ArrayList<>();
+        String failNext;
+
+        RecordingTransport() {
+            super(new SimulatedAtTransport.Config().realtime(false));
+        }
+
+        private boolean record(String command) {
+            commands.add(command);
+            if (command.equals(failNext)) {
+                failNext = null;
+                return false;
+            }
+            return true;
+        }
+
+        /** AtCommandEngine 으로 보낸 AT+OBSERVER=0 이 적용된 것처럼 */
+        synchronized void applyObserver() {
+            super.enableMaster(true);
+        }
+
+        @Override
+        public synchronized int enableMaster(boolean enable) {
+            return record("enableMaster(" + enable + ")") ? super.enableMaster(enable) : -1;
+        }
+
+        @Override
+        public synchronized int getMac(String[] mac) {
+            return record("getMac") ? super.getMac(mac) : -1;
+        }
+
+        @Override
+        public synchronized int startNewScan(String macAddress, String broadcastName, int rssi,
+                                             String manufacturerId, String data) {
+            return record("startNewScan") ? super.startNewScan(macAddress, broadcastName, rssi, manufacturerId, data) : -1;
+        }
+
+        @Override
+        public synchronized int stopScan() {
+            return record("stopScan") ? super.stopScan() : -1;
+        }
+
+        @Override
+        public synchronized int ctsCtrl() {
+            return record("ctsCtrl") ? super.ctsCtrl() : -1;
+        }
+    }
+
+    private final RecordingTransport transport = new RecordingTransport();
+    private final RadioStateMachine radio = new RadioStateMachine(transport);
+
+    @Test
+    public void restartWithSameParamsCostsOneCommand() {
+        assertEquals(RadioStateMachine.STATE_UNKNOWN, radio.state());
+        assertEquals(0, radio.startScan(MCANDLE));
+        assertEquals(RadioStateMachine.STATE_SCANNING, radio.state());
+        assertTrue(transport.isScanning());
+        assertEquals(List.of("enableMaster(true)", "startNewScan"), transport.commands);
+
+        // 이미 같은 조건으로 스캔 중이면 아무것도 보내지 않는다
+        assertEquals(0, radio.startScan(MCANDLE));
+        assertEquals(2, transport.commands.size());
+
+        assertEquals(0, radio.stopScan());
+        assertEquals(RadioStateMachine.STATE_MASTER, radio.state());
+        assertEquals(0, radio.stopScan());
+        transport.commands.clear();
+        long skippedBefore = radio.commandsSkipped();
+        assertEquals(0, radio.startScan(MCANDLE));
+        assertEquals(List.of("startNewScan"), transport.commands);
+        assertTrue(radio.commandsSkipped() > skippedBefore);
+
+        // 조건이 바뀌면 멈췄다가 다시 시작한다 (모드는 그대로)
+        transport.commands.clear();
+        assertEquals(0, radio.startScan(STRONG));
+        assertEquals(List.of("stopScan", "startNewScan"), transport.commands);
+        assertEquals(STRONG, radio.lastScan());
+    }
+
+    @Test
+    public void disablingMasterLeavesMasterState() {
+        assertEquals(0, radio.enterMaster());
+        assertTrue(radio.isMaster());
+        assertEquals(0, radio.enterMaster());
+        assertEquals(0, radio.startScan(MCANDLE));
+
+        // 스캔 중에 마스터를 끄면 먼저 스캔을 멈춘다
+        transport.commands.clear();
+        assertEquals(0, radio.enterBeacon());
+        assertEquals(RadioStateMachine.STATE_BEACON, radio.state());
+        assertFalse(radio.isMaster());
+        assertFalse(transport.isScanning());
+        assertEquals(List.of("stopScan", "enableMaster(false)"), transport.commands);
+        assertEquals(0, radio.enterBeacon());
+        assertEquals(2, transport.commands.size());
+
+        // 비콘에서 스캔하려면 마스터 모드부터 다시 켠다
+        assertEquals(0, radio.startScan(MCANDLE));
+        assertEquals(List.of("stopScan", "enableMaster(false)", "enableMaster(true)", "startNewScan"),
+                transport.commands);
+    }
+
+    @Test
+    public void failureForcesRenegotiation() {
+        assertEquals(0, radio.startScan(MCANDLE));
+        assertEquals(0, radio.stopScan());
+
+        // 모듈이 몰래 리셋되어 시작이 실패하면 ERROR 로 가고, 다음에는 모드부터 다시 맞춘다
+        transport.failNext = "startNewScan";
+        assertEquals(-1, radio.startScan(MCANDLE));
+        assertEquals(RadioStateMachine.STATE_ERROR, radio.state());
+        assertEquals(1, radio.errors());
+        transport.commands.clear();
+        assertEquals(0, radio.startScan(MCANDLE));
+        assertEquals(List.of("enableMaster(true)", "startNewScan"), transport.commands);
+
+        transport.failNext = "enableMaster(false)";
+        assertEquals(-1, radio.enterBeacon());
+        assertEquals(RadioStateMachine.STATE_ERROR, radio.state());
+    }
+
+    @Test
+    public void rejectsInvalidTransitions() {
+        try {
+            radio.onCommandApplied(RadioStateMachine.STATE_SCANNING);
+            fail("UNKNOWN -> SCANNING");
+        } catch (IllegalStateException expected) {
+            // 스캔은 마스터 모드에서만 시작한다
+        }
+        assertEquals(0, radio.enterAtCommand());
+        assertEquals(0, radio.enterAtCommand());
+        assertEquals(List.of("ctsCtrl"), transport.commands);
+        transport.applyObserver();
+        radio.onCommandApplied(RadioStateMachine.STATE_MASTER);
+        assertEquals(0, radio.startScan(MCANDLE));
+        assertEquals(List.of("ctsCtrl", "startNewScan"), transport.commands);
+        try {
+            radio.onCommandApplied(RadioStateMachine.STATE_BEACON);
+            fail("SCANNING -> BEACON");
+        } catch (IllegalStateException expected) {
+            assertEquals(RadioStateMachine.STATE_SCANNING, radio.state());
+        }
+    }
+
+    @Test
+    public void cachesModuleInfoAcrossRestarts() throws Exception {
+        File file = new File(folder.getRoot(), "radio-module.properties");
+        radio.setCacheFile(file);
+        assertEquals("00:3C:84:2A:C8:6B", radio.mac());
+        assertEquals("00:3C:84:2A:C8:6B", radio.mac());
+        assertEquals(List.of("getMac"), transport.commands);
+        radio.setVersion("RF_BM_BG22A3_SIM");
+        radio.startScan(STRONG);
+
+        // 앱을 다시 시작하면 모듈 정보는 파일에서, 모드는 UNKNOWN 부터
+        RecordingTransport fresh = new RecordingTransport();
+        RadioStateMachine restarted = new RadioStateMachine(fresh);
+        restarted.setCacheFile(file);
+        assertEquals(RadioStateMachine.STATE_UNKNOWN, restarted.state());
+        assertEquals("00:3C:84:2A:C8:6B", restarted.mac());
+        assertEquals("RF_BM_BG22A3_SIM", restarted.version());
+        assertEquals(STRONG, restarted.lastScan());
+        assertTrue(fresh.commands.isEmpty());
+
+        restarted.clearCache();
+        assertFalse(file.exists());
+        assertNull(restarted.cachedMac());
+        restarted.mac();
+        assertEquals(List.of("getMac"), fresh.commands);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RawTraceTest {
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void keepsMostRecentChunksInOrder() throws Exception {
+        RawTrace trace = new RawTrace(12 * 3 + 30);
+        for (int i = 0; i < 10; i++) {
+            byte[] chunk = ascii("chunk" + i + "...");
+            trace.record(chunk, 0, chunk.length, 1000 + i);
+        }
+        // 레코드 하나 = 헤더 12 + 10바이트, 66바이트 링에는 3개
+        assertEquals(3, trace.size());
+        assertEquals(10, trace.recordedChunks());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.writeTo(out);
+        ByteBuffer b = ByteBuffer.wrap(out.toByteArray());
+        for (int i = 7; i < 10; i++) {
+            assertEquals(1000 + i, b.getLong());
+            int len = b.getInt();
+            byte[] data = new byte[len];
+            b.get(data);
+            assertEquals("chunk" + i + "...", new String(data, StandardCharsets.US_ASCII));
+        }
+        assertEquals(0, b.remaining());
+    }
+
+    @Test
+    public void hexDumpAndTruncation() {
+        RawTrace trace = new RawTrace(32);
+        trace.record(new byte[]{0x02, 0x01, (byte) 0xFA}, 0, 3, 0);
+        String dump = trace.toHexDump();
+        assertTrue(dump, dump.endsWith(" len=3 0201FA\n"));
+
+        trace.record(new byte[100], 0, 100, 0);
+        assertEquals(1, trace.size());
+        assertEquals(1, trace.truncatedChunks());
+        assertTrue(trace.toHexDump().contains(" len=20 "));
+
+        trace.clear();
+        assertEquals("", trace.toHexDump());
+        trace.setEnabled(false);
+        trace.record(new byte[4], 0, 4, 0);
+        assertEquals(0, trace.size());
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecvSchedulerTest {
+
+    @Test
+    public void fixedSchedulerNeverChanges() {
+        RecvScheduler s = RecvScheduler.fixed(2048, 20, 1000);
+        assertArrayEquals(new int[]{2048}, s.bufferSizes());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, s.onRecv(i % 2 == 0 ? 0 : 2048, 0));
+            assertEquals(2048, s.bufferSize());
+            assertEquals(20, s.timeoutMs());
+            assertEquals(1000, s.maxWaitMs());
+        }
+    }
+
+    @Test
+    public void fullChunksGrowBufferAndSwitchToBusy() {
+        RecvScheduler s = new RecvScheduler();
+        assertArrayEquals(new int[]{512, 1024, 2048, 4096}, s.bufferSizes());
+        assertEquals(2048, s.bufferSize());
+        for (int i = 0; i < 20; i++) {
+            s.onRecv(s.bufferSize(), 10);
+        }
+        assertEquals(4096, s.bufferSize());
+        assertEquals(RecvScheduler.MODE_BUSY, s.mode());
+        assertEquals(10, s.timeoutMs());
+        // 409.6 B/ms 로 4096 의 75% 를 채우는 시간 ~= 7.5ms -> 최소값
+        assertEquals(20, s.maxWaitMs());
+        assertTrue(s.arrivalRate() > 300_000);
+    }
+
+    @Test
+    public void sparseChunksShrinkBufferAndTuneMaxWait() {
+        RecvScheduler s = new RecvScheduler();
+        for (int i = 0; i < 20; i++) {
+            // 100ms 마다 60바이트 (0.6 B/ms)
+            s.onRecv(60, 100);
+        }
+        assertEquals(512, s.bufferSize());
+        assertEquals(RecvScheduler.MODE_NORMAL, s.mode());
+        assertEquals(20, s.timeoutMs());
+        // 512 * 0.75 / 0.6 = 640ms
+        assertTrue("maxWait=" + s.maxWaitMs(), s.maxWaitMs() > 500 && s.maxWaitMs() < 800);
+    }
+
+    @Test
+    public void emptyReadsBackOffExponentially() {
+        RecvScheduler s = new RecvScheduler(new RecvScheduler.Config()
+                .maxWaitMs(20, 1000).idleReads(2).idleSleepMs(10, 80));
+        for (int i = 0; i < 20; i++) {
+            s.onRecv(1024, 20);
+        }
+        assertEquals(0, s.onRecv(0, 0));
+        assertTrue(s.mode() != RecvScheduler.MODE_IDLE);
+        int lastWait = s.maxWaitMs();
+
+        // 모듈이 바로 돌아오는 경우: maxWait 와 휴식이 두 배씩
+        int[] sleeps = new int[6];
+        int[] waits = new int[6];
+        for (int i = 0; i < sleeps.length; i++) {
+            sleeps[i] = s.onRecv(0, 0);
+            waits[i] = s.maxWaitMs();
+        }
+        assertEquals(RecvScheduler.MODE_IDLE, s.mode());
+        assertArrayEquals(new int[]{10, 20, 40, 80, 80, 80}, sleeps);
+        assertEquals(Math.min(1000, lastWait * 2), waits[0]);
+        assertEquals(1000, waits[5]);
+
+        // maxWait 를 모두 기다린 빈 읽기는 휴식이 필요 없다
+        assertEquals(0, s.onRecv(0, 1000));
+
+        // 데이터가 오면 바로 IDLE 을 벗어난다
+        assertEquals(0, s.onRecv(300, 5));
+        assertTrue(s.mode() != RecvScheduler.MODE_IDLE);
+        assertTrue(s.modeChanges() >= 2);
+        assertEquals(s.reads(), s.readsInMode(RecvScheduler.MODE_IDLE)
+                + s.readsInMode(RecvScheduler.MODE_NORMAL) + s.readsInMode(RecvScheduler.MODE_BUSY));
+    }
+
+    private static UartReader runReader(SimulatedAtTransport t, long millis) throws InterruptedException {
+        t.enableMaster(true);
+        t.startNewScan("", "", 0, "", "");
+        ChunkRing ring = new ChunkRing(64, 8192, ChunkRing.POLICY_DROP_OLDEST);
+        UartReader reader = new UartReader(t, ring, new RecvScheduler(new RecvScheduler.Config()
+                .maxWaitMs(20, 200)));
+        reader.start();
+        Thread.sleep(millis);
+        reader.stop();
+        return reader;
+    }
+
+    @Test
+    public void adaptsToSimulatedQuietStore() throws Exception {
+        // 기기 1대, 1초 주기: 대부분 빈 읽기
+        UartReader reader = runReader(new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(1).advIntervalMs(1000).rspRatio(0).realtime(true)), 800);
+        RecvScheduler s = reader.scheduler();
+        assertEquals(RecvScheduler.MODE_IDLE, s.mode());
+        assertEquals(200, s.maxWaitMs());
+        // 고정 20ms timeout 이었다면 ~40번, 백오프로 훨씬 적다
+        assertTrue("reads=" + s.reads(), s.reads() < 20);
+    }
+
+    @Test
+    public void adaptsToSimulatedBusyStore() throws Exception {
+        // 500대, 20ms 주기: 약 1.7MB/s
+        UartReader reader = runReader(new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(500).advIntervalMs(20).chunkSize(8192).realtime(true)), 500);
+        RecvScheduler s = reader.scheduler();
+        assertEquals(4096, s.bufferSize());
+        assertEquals(RecvScheduler.MODE_BUSY, s.mode());
+        assertEquals(0, s.emptyReads());
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.test1;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ScanDispatcherTest {
+    private static final byte[] ADV = {0x02, 0x01, 0x06};
+
+    private final DeviceTable table = new DeviceTable(256, 60_000);
+    private final DeltaTracker tracker = new DeltaTracker(table, 5);
+    private final ScanDispatcher dispatcher = new ScanDispatcher();
+
+    @After
+    public void tearDown() {
+        dispatcher.close();
+    }
+
+    /** mac, mac+1, ... 기기의 APPEARED 이벤트 n 개 */
+    private List<ScanEvent> appeared(long mac, int n, int rssi) {
+        for (int i = 0; i < n; i++) {
+            table.update(mac + i, rssi, ScanLineParser.TYPE_ADV, ADV, 0, ADV.length, 0);
+        }
+        return tracker.collect();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void fansOutSharedEventsWithPerSubscriberFilters() throws Exception {
+        List<ScanEvent> all = new CopyOnWriteArrayList<>();
+        List<ScanEvent> near = new CopyOnWriteArrayList<>();
+        dispatcher.subscribe("all", all::addAll);
+        ScanDispatcher.Subscription nearSub = dispatcher.subscribe("near", near::addAll,
+                new ScanDispatcher.Config().filter(e -> e.getDevice().getRssi() > -65));
+
+        List<ScanEvent> events = new ArrayList<>(appeared(100, 3, -60));
+        events.addAll(appeared(200, 2, -80));
+        dispatcher.onScanEvents(events.subList(0, 3));
+        dispatcher.onScanEvents(events.subList(3, 5));
+
+        await(() -> all.size() == 5 && nearSub.delivered() == 3);
+        // 복사 없이 같은 이벤트 객체를 받는다
+        for (int i = 0; i < 5; i++) {
+            assertSame(events.get(i), all.get(i));
+        }
+        assertEquals(3, near.size());
+        assertSame(events.get(0), near.get(0));
+        assertEquals(3, nearSub.accepted());
+        assertEquals(2, nearSub.rejected());
+        assertEquals(0, nearSub.dropped());
+    }
+
+    @Test
+    public void slowSubscriberDoesNotBlockOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<ScanEvent> slow = new CopyOnWriteArrayList<>();
+        List<ScanEvent> fast = new CopyOnWriteArrayList<>();
+        ScanDispatcher.Subscription slowSub = dispatcher.subscribe("slow", events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            slow.addAll(events);
+        }, new ScanDispatcher.Config().queueCapacity(4).maxBatch(1));
+        dispatcher.subscribe("fast", fast::addAll);
+
+        // 첫 이벤트를 꺼내 리스너에서 멈출 때까지 기다린다
+        List<ScanEvent> sent = new ArrayList<>(appeared(1000, 1, -70));
+        dispatcher.onScanEvents(sent);
+        await(() -> slowSub.accepted() == 1 && slowSub.queued() == 0);
+
+        long start = System.nanoTime();
+        for (int i = 1; i < 20; i++) {
+            List<ScanEvent> events = appeared(1000 + i, 1, -70);
+            sent.addAll(events);
+            dispatcher.onScanEvents(events);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        await(() -> fast.size() == 20);
+        assertEquals(sent, fast);
+
+        // 느린 구독자의 큐에는 최근 4 개만 남는다
+        assertEquals(20, slowSub.accepted());
+        assertEquals(4, slowSub.queued());
+        assertEquals(15, slowSub.dropped());
+        release.countDown();
+        await(() -> slow.size() == 5);
+        assertSame(sent.get(0), slow.get(0));
+        assertEquals(sent.subList(16, 20), slow.subList(1, 5));
+    }
+
+    @Test
+    public void limitsRateAndBatchSize() throws Exception {
+        List<Long> times = new CopyOnWriteArrayList<>();
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        ScanDispatcher.Subscription sub = dispatcher.subscribe("ui", events -> {
+            times.add(System.nanoTime());
+            sizes.add(events.size());
+        }, new ScanDispatcher.Config().minIntervalMs(50).maxBatch(4));
+
+        dispatcher.onScanEvents(appeared(1, 10, -70));
+        await(() -> sub.delivered() == 10);
+        assertEquals(List.of(4, 4, 2), sizes);
+        for (int i = 1; i < times.size(); i++) {
+            assertTrue(times.get(i) - times.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(45));
+        }
+        assertEquals(3, sub.batches());
+    }
+
+    @Test
+    public void isolatesFailuresAndStopsAfterClose() throws Exception {
+        List<ScanEvent> received = new CopyOnWriteArrayList<>();
+        ScanDispatcher.Subscription failing = dispatcher.subscribe("failing", events -> {
+            throw new IllegalStateException("boom");
+        });
+        ScanDispatcher.Subscription badFilter = dispatcher.subscribe("badFilter", received::addAll,
+                new ScanDispatcher.Config().filter(e -> {
+                    if (e.getDevice().getMac() == 2) {
+                        throw new IllegalArgumentException("bad");
+                    }
+                    return true;
+                }));
+
+        dispatcher.onScanEvents(appeared(1, 3, -70));
+        await(() -> failing.errors() == 1 && badFilter.delivered() == 2);
+        assertEquals(1, badFilter.errors());
+        assertEquals(1, badFilter.rejected());
+
+        badFilter.close();
+        assertEquals(List.of(failing), dispatcher.subscriptions());
+        dispatcher.onScanEvents(appeared(10, 1, -70));
+        await(() -> failing.errors() == 2);
+        assertEquals(2, received.size());
+        assertEquals(2, badFilter.accepted());
+
+        dispatcher.close();
+        assertTrue(failing.isClosed());
+        assertTrue(!dispatcher.hasSubscribers());
+    }
+}
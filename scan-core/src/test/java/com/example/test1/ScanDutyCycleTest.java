@@ -0,0 +1,136 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanDutyCycleTest {
+
+    private static List<ScanEvent> events(int appeared, int lost) {
+        List<ScanEvent> list = new ArrayList<>();
+        for (int i = 0; i < appeared; i++) {
+            list.add(new ScanEvent(ScanEvent.Type.APPEARED, DeviceTable.CHANGE_NEW, null));
+        }
+        for (int i = 0; i < lost; i++) {
+            list.add(new ScanEvent(ScanEvent.Type.LOST, 0, null));
+        }
+        return list;
+    }
+
+    @Test
+    public void continuousNeverStops() {
+        ScanDutyCycle d = new ScanDutyCycle();
+        d.start(0);
+        for (long t = 0; t < 60_000; t += 100) {
+            assertEquals(ScanDutyCycle.ACTION_NONE, d.update(t));
+        }
+        assertTrue(d.isOn());
+        assertEquals(1.0, d.dutyRatio(60_000), 1e-9);
+        assertEquals(5, d.cycles());
+        assertEquals(0, d.starts());
+        assertEquals(60_000, d.evictionTime(60_000));
+    }
+
+    @Test
+    public void balancedProfileOpensWindowsEachInterval() {
+        ScanDutyCycle d = new ScanDutyCycle(new ScanDutyCycle.Config()
+                .initialProfile(ScanDutyCycle.PROFILE_BALANCED));
+        d.start(0);
+        assertEquals(ScanDutyCycle.ACTION_NONE, d.update(2_999));
+        assertEquals(3_000 - 2_999, d.waitMs(2_999));
+        assertEquals(ScanDutyCycle.ACTION_STOP, d.update(3_000));
+        assertFalse(d.isOn());
+        assertEquals(2_000, d.waitMs(3_000));
+        assertEquals(ScanDutyCycle.ACTION_NONE, d.update(4_000));
+        // 꺼져 있는 동안 만료 시각은 멈춰 있다
+        assertEquals(3_000, d.evictionTime(4_999));
+        assertEquals(ScanDutyCycle.ACTION_START, d.update(5_000));
+        // 2초 꺼져 있었으니 만료 판단도 2초 늦춘다
+        assertEquals(4_000, d.evictionTime(6_000));
+
+        for (long t = 5_000; t <= 50_000; t += 100) {
+            d.update(t);
+        }
+        assertEquals(0.6, d.dutyRatio(50_000), 0.01);
+        assertEquals(10, d.starts());
+        assertEquals(10, d.stops());
+    }
+
+    @Test
+    public void autoModeFollowsChurnWithHysteresis() {
+        ScanDutyCycle d = new ScanDutyCycle(new ScanDutyCycle.Config()
+                .auto(true).burstOnAppear(false).settleCycles(2));
+        d.start(0);
+        long t = 0;
+        // 조용하면 settleCycles 주기 뒤에 저전력으로 내려간다
+        for (; d.profile() != ScanDutyCycle.PROFILE_LOW_POWER && t < 120_000; t += 100) {
+            d.update(t);
+        }
+        assertEquals(ScanDutyCycle.PROFILE_LOW_POWER, d.profile());
+        assertEquals(20_000, t - 100);
+        assertEquals(1, d.profileChanges());
+
+        // churn 이 기준을 넘으면 다음 주기 끝에 바로 연속으로
+        for (; t < 200_000 && d.profile() == ScanDutyCycle.PROFILE_LOW_POWER; t += 100) {
+            if (d.isOn() && t % 1000 == 0) {
+                d.onScanEvents(events(3, 3), t);
+            }
+            d.update(t);
+        }
+        assertEquals(ScanDutyCycle.PROFILE_CONTINUOUS, d.profile());
+        assertTrue(d.churnPerMinute() >= 20);
+        assertEquals(ScanDutyCycle.ACTION_NONE, d.update(t));
+        assertTrue(d.isOn());
+    }
+
+    @Test
+    public void burstOnTriggerThenReturn() {
+        ScanDutyCycle d = new ScanDutyCycle(new ScanDutyCycle.Config()
+                .initialProfile(ScanDutyCycle.PROFILE_LOW_POWER).burstMs(4_000));
+        d.start(0);
+        assertEquals(ScanDutyCycle.ACTION_STOP, d.update(2_000));
+        // 꺼져 있을 때 버스트는 바로 켠다
+        d.trigger(3_000);
+        assertEquals(ScanDutyCycle.PROFILE_BURST, d.profile());
+        assertEquals(ScanDutyCycle.ACTION_START, d.update(3_000));
+        assertEquals(ScanDutyCycle.ACTION_NONE, d.update(6_999));
+        assertEquals(1, d.waitMs(6_999));
+        assertEquals(ScanDutyCycle.ACTION_NONE, d.update(7_000));
+        assertEquals(ScanDutyCycle.PROFILE_LOW_POWER, d.profile());
+        assertEquals(ScanDutyCycle.ACTION_STOP, d.update(9_000));
+
+        // 저전력 창에서 새 기기가 보이면 버스트
+        assertEquals(ScanDutyCycle.ACTION_START, d.update(17_000));
+        d.onScanEvents(events(0, 1), 17_500);
+        assertEquals(ScanDutyCycle.PROFILE_LOW_POWER, d.profile());
+        d.onScanEvents(events(1, 0), 17_500);
+        assertEquals(ScanDutyCycle.PROFILE_BURST, d.profile());
+        assertEquals(ScanDutyCycle.ACTION_NONE, d.update(21_000));
+        assertEquals(2, d.bursts());
+    }
+
+    @Test
+    public void manualProfileDisablesAuto() {
+        ScanDutyCycle d = new ScanDutyCycle(new ScanDutyCycle.Config().auto(true));
+        d.start(0);
+        d.setProfile(ScanDutyCycle.PROFILE_BALANCED, 0);
+        assertFalse(d.isAuto());
+        for (long t = 0; t < 100_000; t += 500) {
+            d.onScanEvents(Collections.emptyList(), t);
+            d.update(t);
+        }
+        assertEquals(ScanDutyCycle.PROFILE_BALANCED, d.profile());
+        try {
+            new ScanDutyCycle.Config().profile(ScanDutyCycle.PROFILE_BALANCED, 5_000, 1_000);
+            throw new AssertionError("window > interval");
+        } catch (IllegalArgumentException expected) {
+            // 창이 주기보다 길 수 없다
+        }
+    }
+}
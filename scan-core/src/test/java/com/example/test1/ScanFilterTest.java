@@ -0,0 +1,150 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanFilterTest {
+
+    private static AdvertisementView view(String hex) {
+        byte[] ascii = hex.getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[ascii.length / 2];
+        Hex.decode(ascii, 0, ascii.length, data, 0);
+        return new AdvertisementView().wrap(data, 0, data.length);
+    }
+
+    // 이름 "mcandle", TX power, UUID16 0x1234, 서비스 데이터 0x1234
+    private static final String MCANDLE = "08096D63616E646C65020AF903033412051634120007";
+    // iBeacon (Apple 0x004C)
+    private static final String IBEACON = "0201061AFF4C000215E2C56DB5DFFB48D2B060D0F5A71096E000010002C5";
+    // 제조사 0x0075
+    private static final String SAMSUNG = "0201060AFF750001020304050607";
+
+    @Test
+    public void pushesDownMostSelectiveSingleCriterion() {
+        CompiledScanFilter f = new ScanFilter()
+                .addMac("AA:BB:CC:DD:EE:FF")
+                .addNamePrefix("mcandle")
+                .minRssi(-80)
+                .compile();
+        assertEquals(CompiledScanFilter.CRITERION_MAC, f.pushedDown());
+        assertEquals("AA:BB:CC:DD:EE:FF", f.moduleMac());
+        assertEquals("", f.moduleName());
+        assertEquals(-80, f.moduleRssi());
+        // MAC 은 모듈이 거르므로 소프트웨어에서는 이름만 본다
+        assertTrue(f.accept(0x112233445566L, -70, ScanLineParser.TYPE_ADV));
+        assertFalse(f.accept(0x112233445566L, -81, ScanLineParser.TYPE_ADV));
+        assertTrue(f.acceptPayload(view(MCANDLE)));
+        assertFalse(f.acceptPayload(view(IBEACON)));
+
+        f = new ScanFilter().addMac("AA:BB:CC:DD:EE:FF").addMac("11:22:33:44:55:66")
+                .addNamePrefix("mcandle").addManufacturerId(0x004C).compile();
+        assertEquals(CompiledScanFilter.CRITERION_NAME, f.pushedDown());
+        assertEquals("mcandle", f.moduleName());
+        assertEquals("", f.moduleMac());
+
+        f = new ScanFilter().addNamePrefix("mc").addNamePrefix("SIM").addManufacturerId(0x004C).compile();
+        assertEquals(CompiledScanFilter.CRITERION_MANUFACTURER, f.pushedDown());
+        assertEquals("004C", f.moduleManufacturerId());
+
+        f = new ScanFilter().addManufacturerId(0x004C).addManufacturerId(0x0075).compile();
+        assertEquals(CompiledScanFilter.CRITERION_NONE, f.pushedDown());
+        assertEquals(0, f.moduleRssi());
+    }
+
+    @Test
+    public void macSetAndPrefixes() {
+        ScanFilter spec = new ScanFilter().addMacPrefix("00:3C:84");
+        Set<Long> members = new HashSet<>();
+        for (long i = 0; i < 200; i++) {
+            long mac = 0x0A0000000000L + i * 7919;
+            spec.addMac(mac);
+            members.add(mac);
+        }
+        CompiledScanFilter f = spec.compile();
+        assertEquals(CompiledScanFilter.CRITERION_NONE, f.pushedDown());
+        for (long mac : members) {
+            assertTrue(f.accept(mac, -50, ScanLineParser.TYPE_ADV));
+        }
+        assertTrue(f.accept(MacAddress.parse("00:3C:84:2A:C8:6B"), -50, ScanLineParser.TYPE_RSP));
+        assertFalse(f.accept(MacAddress.parse("00:3C:85:2A:C8:6B"), -50, ScanLineParser.TYPE_RSP));
+        int accepted = 0;
+        for (long mac = 0x0B0000000000L; mac < 0x0B0000000000L + 100_000; mac++) {
+            if (f.accept(mac, -50, ScanLineParser.TYPE_ADV)) {
+                accepted++;
+            }
+        }
+        assertEquals(0, accepted);
+    }
+
+    @Test
+    public void payloadCriteriaAreAndedAcrossKindsAndOredWithin() {
+        CompiledScanFilter f = new ScanFilter()
+                .addManufacturerId(0x004C).addManufacturerId(0x0075)
+                .addManufacturerId(0x0059)
+                .compile();
+        assertEquals(CompiledScanFilter.CRITERION_NONE, f.pushedDown());
+        assertTrue(f.acceptPayload(view(IBEACON)));
+        assertTrue(f.acceptPayload(view(SAMSUNG)));
+        assertFalse(f.acceptPayload(view(MCANDLE)));
+
+        f = new ScanFilter().addServiceUuid16(0x1234).addServiceUuid16(0xFEAA)
+                .addNamePrefix("mc").addNamePrefix("SIM_").compile();
+        // 짧은 이름 prefix 가 둘이라 모듈로 내리지 않는다
+        assertEquals(CompiledScanFilter.CRITERION_NONE, f.pushedDown());
+        assertTrue(f.acceptPayload(view(MCANDLE)));
+        assertFalse(f.acceptPayload(view("0A0953494D5F31323334")));  // 이름만 있고 UUID 없음
+
+        f = new ScanFilter().addServiceUuid128(UUID.fromString("0000FEAA-0000-1000-8000-00805F9B34FB")).compile();
+        assertTrue(f.acceptPayload(view("1107FB349B5F8000008000100000AAFE0000")));
+        assertFalse(f.acceptPayload(view(IBEACON)));
+    }
+
+    @Test
+    public void payloadMasks() {
+        // iBeacon prefix (4C 00 02 15) 를 제조사 데이터 위치에서 비교, 마지막 바이트는 상위 니블만
+        CompiledScanFilter f = new ScanFilter()
+                .addPayloadMask(5, new byte[]{0x4C, 0x00, 0x02, 0x10}, new byte[]{-1, -1, -1, (byte) 0xF0})
+                .compile();
+        assertTrue(f.hasPayloadCriteria());
+        assertTrue(f.acceptPayload(view(IBEACON)));
+        assertFalse(f.acceptPayload(view(SAMSUNG)));
+        assertFalse(f.acceptPayload(view("020106")));  // 짧은 페이로드
+    }
+
+    @Test
+    public void headerFilterSkipsDecodingForeignDevices() {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(500).chunkSize(1000));
+        t.enableMaster(true);
+        t.startNewScan("", "", 0, "", "");
+        ScanFilter spec = new ScanFilter();
+        for (int i = 0; i < 20; i++) {
+            spec.addMac(t.deviceMac(i));
+        }
+        ScanLineParser parser = new ScanLineParser();
+        parser.setHeaderFilter(spec.compile());
+        final Set<Long> seen = new HashSet<>();
+        final int[] records = new int[1];
+        ScanLineParser.Callback cb = p -> {
+            seen.add(p.mac());
+            records[0]++;
+        };
+        byte[] buf = new byte[2048];
+        int[] len = new int[1];
+        for (int i = 0; i < 400; i++) {
+            t.recv(buf, len, 20, 1000);
+            parser.feed(buf, 0, len[0], cb);
+        }
+        assertEquals(20, seen.size());
+        long total = records[0] + parser.filteredLines();
+        assertTrue(parser.filteredLines() > total * 9 / 10);
+    }
+}
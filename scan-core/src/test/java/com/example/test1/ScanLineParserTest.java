@@ -0,0 +1,179 @@
+package com.example.test1;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanLineParserTest {
+
+    /** 파싱 결과를 비교하기 위한 문자열 수집기 */
+    private static final class Collector implements ScanLineParser.Callback {
+        final List<String> records = new ArrayList<>();
+        final List<Integer> rejects = new ArrayList<>();
+
+        @Override
+        public void onRecord(ScanLineParser p) {
+            records.add(MacAddress.toString(p.mac()) + "|" + p.rssi() + "|"
+                    + (p.type() == ScanLineParser.TYPE_ADV ? "ADV" : "RSP") + "|"
+                    + Hex.encode(p.payload(), 0, p.payloadLength()));
+        }
+
+        @Override
+        public void onReject(int reason) {
+            rejects.add(reason);
+        }
+    }
+
+    /** 기존 recvScanData 의 String.split 방식 (비교 기준) */
+    private static List<String> legacyParse(String text) {
+        List<String> out = new ArrayList<>();
+        String[] lines = text.split("\\r\\n|\\r|\\n", -1);
+        for (int i = 0; i < lines.length - 1; i++) {
+            String line = lines[i];
+            if (!line.startsWith("MAC:")) continue;
+            String[] parts = line.split(",", 3);
+            if (parts.length < 3) continue;
+            String mac = parts[0].split(":", 2)[1].trim();
+            int rssi;
+            try {
+                rssi = Integer.parseInt(parts[1].split(":")[1].trim());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            String payload = parts[2].split(":", 2)[1].trim();
+            if (payload.length() > 62 || payload.length() % 2 != 0) continue;
+            out.add(mac + "|" + rssi + "|" + parts[2].substring(0, 3) + "|" + payload);
+        }
+        return out;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void parsesSingleLine() {
+        ScanLineParser parser = new ScanLineParser();
+        Collector c = new Collector();
+        byte[] line = ascii("MAC:5E:60:BA:25:1A:BF,RSSI:-85,RSP:030378FE06FF650001C905\r\n");
+        parser.feed(line, 0, line.length, c);
+
+        assertEquals(1, c.records.size());
+        assertEquals("5E:60:BA:25:1A:BF|-85|RSP|030378FE06FF650001C905", c.records.get(0));
+        assertEquals(0, parser.pendingLength());
+    }
+
+    @Test
+    public void matchesLegacySplitOnCapturedLog() throws Exception {
+        List<byte[]> chunks = LogCorpus.chunks("orginal.txt");
+        byte[] all = LogCorpus.concat(chunks);
+        List<String> expected = legacyParse(new String(all, StandardCharsets.US_ASCII));
+        assertTrue(expected.size() > 50);
+
+        ScanLineParser parser = new ScanLineParser();
+        Collector c = new Collector();
+        for (byte[] chunk : chunks) {
+            parser.feed(chunk, 0, chunk.length, c);
+        }
+        assertEquals(expected, c.records);
+    }
+
+    @Test
+    public void fragmentationDoesNotChangeResult() throws Exception {
+        byte[] all = LogCorpus.concat(LogCorpus.chunks("orginal.txt"));
+        Collector whole = new Collector();
+        new ScanLineParser().feed(all, 0, all.length, whole);
+
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            ScanLineParser parser = new ScanLineParser();
+            Collector c = new Collector();
+            int p = 0;
+            while (p < all.length) {
+                int n = Math.min(all.length - p, 1 + random.nextInt(round == 0 ? 1 : 300));
+                parser.feed(all, p, n, c);
+                p += n;
+            }
+            assertEquals(whole.records, c.records);
+        }
+    }
+
+    @Test
+    public void rejectsMalformedLines() {
+        ScanLineParser parser = new ScanLineParser();
+        Collector c = new Collector();
+        byte[] data = ascii("OK\r\n"
+                + "MAC:5E:60:BA:25:1A:BF,RSSI:-8x,ADV:0201\r\n"
+                + "MAC:5E:60:BA:25:1A:BF,RSSI:-85,ADV:020\r\n"
+                + "MAC:5E:60:BA:25:1A:BF,RSSI:-85,ADV:"
+                + "0201061916F7FD01E2F3215B67EA536490A5E95D803A91EC0000000003000000\r\n"
+                + "MAC:5E:60:BA:25:1A,RSSI:-85,ADV:0201\r\n"
+                + "MAC:5E:60:BA:25:1A:BF,RSSI:-85\r\n"
+                + "MAC:5E:60:BA:25:1A:BF,RSSI:-85,XYZ:0201\r\n"
+                + "MAC:5E:60:BA:25:1A:BF,RSSI:-85,ADV:02G1\r\n"
+                + "MAC:5E:60:BA:25:1A:BF,RSSI:-85,ADV:0201\r\n");
+        parser.feed(data, 0, data.length, c);
+
+        assertEquals(1, c.records.size());
+        assertEquals("[" + ScanLineParser.REJECT_BAD_RSSI + ", " + ScanLineParser.REJECT_ODD_PAYLOAD
+                + ", " + ScanLineParser.REJECT_PAYLOAD_TOO_LONG + ", " + ScanLineParser.REJECT_BAD_MAC
+                + ", " + ScanLineParser.REJECT_MALFORMED + ", " + ScanLineParser.REJECT_UNKNOWN_TYPE
+                + ", " + ScanLineParser.REJECT_BAD_PAYLOAD + "]", c.rejects.toString());
+    }
+
+    @Test
+    public void dropsOverlongCarry() {
+        ScanLineParser parser = new ScanLineParser();
+        Collector c = new Collector();
+        byte[] junk = new byte[ScanLineParser.MAX_LINE_LENGTH + 10];
+        java.util.Arrays.fill(junk, (byte) 'A');
+        parser.feed(junk, 0, junk.length, c);
+        byte[] tail = ascii("\nMAC:5E:60:BA:25:1A:BF,RSSI:-85,ADV:0201\n");
+        parser.feed(tail, 0, tail.length, c);
+
+        assertEquals(1, c.records.size());
+        assertEquals("[" + ScanLineParser.REJECT_LINE_TOO_LONG + "]", c.rejects.toString());
+    }
+
+    @Test
+    public void steadyStateDoesNotAllocate() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+
+        List<byte[]> chunks = LogCorpus.chunks("orginal.txt");
+        ScanLineParser parser = new ScanLineParser();
+        final long[] sum = new long[1];
+        ScanLineParser.Callback sink = new ScanLineParser.Callback() {
+            @Override
+            public void onRecord(ScanLineParser p) {
+                sum[0] += p.mac() + p.rssi() + p.payloadLength();
+            }
+        };
+        for (int i = 0; i < 200; i++) {
+            for (byte[] chunk : chunks) {
+                parser.feed(chunk, 0, chunk.length, sink);
+            }
+        }
+
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 200; i++) {
+            for (byte[] chunk : chunks) {
+                parser.feed(chunk, 0, chunk.length, sink);
+            }
+        }
+        long allocated = mx.getThreadAllocatedBytes(tid) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 64 * 1024);
+        assertTrue(sum[0] != 0);
+    }
+}
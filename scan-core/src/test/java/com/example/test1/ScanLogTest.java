@@ -0,0 +1,64 @@
+package com.example.test1;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanLogTest {
+    private final List<String> lines = new ArrayList<>();
+
+    @After
+    public void restore() {
+        ScanLog.setSink(null);
+        ScanLog.setLevel(ScanLog.INFO);
+    }
+
+    private void capture(int level) {
+        ScanLog.setLevel(level);
+        ScanLog.setSink((l, tag, message, error) -> lines.add(l + "/" + tag + ": " + message));
+    }
+
+    @Test
+    public void disabledLevelDoesNotBuildMessage() {
+        capture(ScanLog.INFO);
+        int[] built = new int[1];
+        ScanLog.d("T", () -> {
+            built[0]++;
+            return "debug";
+        });
+        ScanLog.i("T", "info");
+        assertEquals(0, built[0]);
+        assertEquals("[4/T: info]", lines.toString());
+
+        ScanLog.setLevel(ScanLog.VERBOSE);
+        ScanLog.d("T", () -> {
+            built[0]++;
+            return "debug";
+        });
+        assertEquals(1, built[0]);
+
+        ScanLog.setLevel(ScanLog.NONE);
+        ScanLog.e("T", "error");
+        assertEquals(2, lines.size());
+    }
+
+    @Test
+    public void rateLimitSuppressesAndReports() throws Exception {
+        capture(ScanLog.VERBOSE);
+        ScanLog.RateLimit limit = new ScanLog.RateLimit(50);
+        for (int i = 0; i < 5; i++) {
+            limit.log(ScanLog.WARN, "T", () -> "overrun");
+        }
+        assertEquals(1, lines.size());
+        assertEquals(4, limit.suppressed());
+        Thread.sleep(60);
+        limit.log(ScanLog.WARN, "T", () -> "overrun");
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1), lines.get(1).endsWith("overrun (+4 suppressed)"));
+    }
+}
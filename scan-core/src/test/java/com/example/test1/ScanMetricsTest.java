@@ -0,0 +1,136 @@
+package com.example.test1;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ScanMetricsTest {
+
+    @Test
+    public void countsLinesByOutcome() {
+        ScanMetrics m = new ScanMetrics();
+        m.onRecord();
+        m.onRecord();
+        m.onFiltered(3);
+        m.onReject(ScanLineParser.REJECT_ODD_PAYLOAD);
+        m.onReject(ScanLineParser.REJECT_ODD_PAYLOAD);
+        m.onReject(ScanLineParser.REJECT_BAD_RSSI);
+        m.onTruncatedAd();
+        m.onRecv(0, 1000);
+        m.onRecv(500, 2000);
+        m.onRecv(0, 1000);
+        m.onRecv(300, 3000);
+
+        ScanMetrics.Snapshot s = m.snapshot();
+        assertEquals(8, s.lines());
+        assertEquals(2, s.records());
+        assertEquals(3, s.filtered());
+        assertEquals(3, s.rejects());
+        assertEquals(2, s.rejects(ScanLineParser.REJECT_ODD_PAYLOAD));
+        assertEquals(1, s.rejects(ScanLineParser.REJECT_BAD_RSSI));
+        assertEquals(1, s.truncatedAd());
+        assertEquals(800, s.bytesRead());
+        assertEquals(0.5, s.emptyReadRatio(), 1e-9);
+        assertEquals(500, s.recvBytes().max());
+        assertTrue(s.toString().contains("oddPayload=2"));
+    }
+
+    @Test
+    public void updatesDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(mx.isThreadAllocatedMemorySupported());
+
+        ScanMetrics m = new ScanMetrics();
+        for (int round = 0; round < 2; round++) {
+            long before = mx.getThreadAllocatedBytes(Thread.currentThread().getId());
+            for (int i = 0; i < 100_000; i++) {
+                m.onRecv(i & 1023, i * 37L);
+                m.onRecord();
+                m.onReject(i & 7);
+                m.parseNanos().record(i * 1013L);
+                m.callbackNanos().record(i);
+            }
+            long allocated = mx.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+            if (round == 1) {
+                assertTrue("allocated " + allocated, allocated < 1024);
+            }
+        }
+    }
+
+    @Test
+    public void linesPerSecondBetweenSnapshots() throws Exception {
+        ScanMetrics m = new ScanMetrics();
+        ScanMetrics.Snapshot first = m.snapshot();
+        for (int i = 0; i < 100; i++) {
+            m.onRecord();
+        }
+        Thread.sleep(50);
+        ScanMetrics.Snapshot second = m.snapshot();
+        double rate = second.linesPerSecond(first);
+        assertTrue(String.valueOf(rate), rate > 100 && rate <= 100 / 0.05);
+    }
+
+    @Test
+    public void readerRecordsEveryRecv() {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(100).chunkSize(500));
+        t.enableMaster(true);
+        t.startNewScan("", "", 0, "", "");
+        ScanMetrics m = new ScanMetrics();
+        ChunkRing ring = new ChunkRing(4, 1024, ChunkRing.POLICY_BLOCK);
+        UartReader reader = new UartReader(t, ring, RecvScheduler.fixed(1024, 20, 1000), m);
+        reader.start();
+        byte[] chunk = new byte[1024];
+        for (int i = 0; i < 50; i++) {
+            assertTrue(ring.poll(chunk, 1000) > 0);
+        }
+        reader.stop();
+        ScanMetrics.Snapshot s = m.snapshot();
+        assertEquals(reader.recvCalls(), s.recvCalls());
+        assertEquals(reader.bytesRead(), s.bytesRead());
+        assertEquals(500, s.recvBytes().max());
+        assertEquals(1024, s.recvBufferSize());
+        assertEquals(1000, s.recvMaxWaitMs());
+        assertTrue(s.schedulerMode() >= 0);
+        assertTrue(s.toString().contains("buffer=1024 maxWait=1000ms"));
+    }
+
+    @Test
+    public void exportsSchedulerGauges() {
+        ScanMetrics m = new ScanMetrics();
+        assertEquals(-1, m.snapshot().schedulerMode());
+        assertTrue(m.snapshot().toString().contains("scheduler mode=-"));
+
+        RecvScheduler scheduler = new RecvScheduler(new RecvScheduler.Config().bufferSize(256, 2048));
+        // 버퍼를 가득 채우는 읽기가 이어지면 busy 로 바뀌고 버퍼를 키운다
+        for (int i = 0; i < 20; i++) {
+            scheduler.onRecv(scheduler.bufferSize(), 5);
+            m.onScheduler(scheduler);
+        }
+        ScanMetrics.Snapshot s = m.snapshot();
+        assertEquals(RecvScheduler.MODE_BUSY, s.schedulerMode());
+        assertEquals(scheduler.bufferSize(), s.recvBufferSize());
+        assertEquals(scheduler.maxWaitMs(), s.recvMaxWaitMs());
+        assertTrue(s.toString().contains("scheduler mode=busy buffer=" + scheduler.bufferSize()));
+    }
+
+    @Test
+    public void periodicDump() throws Exception {
+        ScanMetrics m = new ScanMetrics();
+        CountDownLatch latch = new CountDownLatch(2);
+        m.startDump(10, snapshot -> latch.countDown());
+        try {
+            assertTrue(latch.await(2, TimeUnit.SECONDS));
+        } finally {
+            m.stopDump();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.test1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanWatchdogTest {
+    private static final int DEVICES = 20;
+    private static final long STEP_MS = 100;
+    // BleScan.DEFAULT_DEVICE_TTL_MS
+    private static final long DEVICE_TTL_MS = 30_000;
+    private static final RadioStateMachine.ScanParams PARAMS =
+            new RadioStateMachine.ScanParams("", "", -100, "", "");
+
+    private final FaultInjectingAtTransport transport = new FaultInjectingAtTransport(
+            new SimulatedAtTransport.Config().deviceCount(DEVICES).chunkSize(512));
+    private final RadioStateMachine radio = new RadioStateMachine(transport);
+    private final AtCommandEngine atEngine = new AtCommandEngine(transport);
+    // BleScan 과 같은 수신 경로: 수신 스레드가 링을 채우고 스캔 스레드(테스트)가 파싱한다
+    private final ChunkRing ring = new ChunkRing(4, 512, ChunkRing.POLICY_BLOCK);
+    // 시뮬레이터는 기다리지 않으므로 빈 읽기 뒤에도 거의 쉬지 않는다 (테스트 시간은 실제 시간보다 빠르다)
+    private final UartReader reader = new UartReader(transport, ring,
+            new RecvScheduler(new RecvScheduler.Config().bufferSize(512, 512).idleSleepMs(1, 1)));
+    private final ScanRecovery recovery = new ScanRecovery(radio, atEngine, ring);
+    private final DeviceTable table = new DeviceTable(64, DEVICE_TTL_MS);
+    private final DeltaTracker tracker = new DeltaTracker(table, 5);
+    private final ScanLineParser parser = new ScanLineParser();
+    private final byte[] buffer = new byte[512];
+    private final List<Integer> actions = new ArrayList<>();
+    private ScanWatchdog watchdog;
+    private long now = 1_000_000;
+    private int accepted;
+    private int rejected;
+    private int lost;
+
+    private final ScanLineParser.Callback callback = new ScanLineParser.Callback() {
+        @Override
+        public void onRecord(ScanLineParser p) {
+            accepted++;
+            table.update(p.mac(), p.rssi(), p.type(), p.payload(), 0, p.payloadLength(), now);
+        }
+
+        @Override
+        public void onReject(int reason) {
+            rejected++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        start(new ScanWatchdog.Config().backoffMs(5_000, 20_000));
+    }
+
+    @After
+    public void tearDown() {
+        reader.stop();
+        atEngine.close();
+    }
+
+    private void start(ScanWatchdog.Config config) {
+        watchdog = new ScanWatchdog(config);
+        assertEquals(0, radio.startScan(PARAMS));
+        reader.start();
+        watchdog.start(now);
+        recovery.start();
+    }
+
+    /** BleScan 스캔 루프와 같은 순서로 한 번 돈다 */
+    private void step() {
+        int len = ring.poll(buffer, 5);
+        if (len == ChunkRing.NONE) {
+            len = 0;
+        }
+        accepted = 0;
+        rejected = 0;
+        parser.feed(buffer, 0, len, callback);
+        table.evictExpired(recovery.evictionTime(now));
+        for (ScanEvent e : tracker.collect()) {
+            if (e.getType() == ScanEvent.Type.LOST) {
+                lost++;
+            }
+        }
+        watchdog.onData(len, now);
+        watchdog.onLines(accepted, rejected);
+        int action = watchdog.check(now);
+        if (action != ScanWatchdog.ACTION_NONE) {
+            actions.add(action);
+            if (recovery.recover(action, radio.lastScan(), reader, parser) != 0) {
+                watchdog.onCommandFailed();
+            }
+        }
+        now += STEP_MS;
+    }
+
+    private void runFor(long ms) {
+        for (long end = now + ms; now < end; ) {
+            step();
+        }
+    }
+
+    @Test
+    public void stallIsFixedByRestartingScan() {
+        runFor(2_000);
+        assertEquals(DEVICES, table.size());
+        transport.mute(ScanWatchdog.ACTION_RESTART_SCAN);
+        runFor(9_900);
+        assertTrue(actions.isEmpty());
+        runFor(2_000);
+        assertEquals(Arrays.asList(ScanWatchdog.ACTION_RESTART_SCAN), actions);
+        assertEquals(1, watchdog.faults(ScanWatchdog.FAULT_STALL));
+        assertEquals(1, watchdog.recoveries());
+        assertFalse(watchdog.isRecovering());
+        assertTrue(watchdog.recoveryMs().max() <= 1_000);
+        // 복구하는 동안 기기 테이블은 그대로
+        assertEquals(DEVICES, table.size());
+        assertEquals(RadioStateMachine.STATE_SCANNING, radio.state());
+    }
+
+    @Test
+    public void devicesThatLeaveStillExpireWhileRecovering() {
+        runFor(2_000);
+        assertEquals(DEVICES, table.size());
+        // 기기가 모두 떠났다: 어떤 조치로도 데이터가 돌아오지 않는다
+        transport.mute(99);
+        runFor(11_000);
+        assertEquals(Arrays.asList(ScanWatchdog.ACTION_RESTART_SCAN), actions);
+        assertTrue(watchdog.isRecovering());
+        assertEquals(0, lost);
+        // 복구가 끝나지 않아도 TTL (와 명령을 보낸 시간) 이 지나면 LOST
+        runFor(DEVICE_TTL_MS - 11_000 + 2_000);
+        assertEquals(DEVICES, lost);
+        assertEquals(0, table.size());
+        assertTrue(watchdog.isRecovering());
+        assertTrue(recovery.pausedMs() < 2_000);
+    }
+
+    @Test
+    public void commandFailureDuringBackoffIsKept() {
+        ScanWatchdog w = new ScanWatchdog(new ScanWatchdog.Config().backoffMs(5_000, 20_000));
+        w.start(0);
+        for (int level = 1; level <= 3; level++) {
+            w.onCommandFailed();
+            assertEquals(level, w.check(level * 100));
+        }
+        // 재시도 간격 (5 초) 중에 실패한 명령은 간격이 끝나면 조치한다
+        w.onCommandFailed();
+        assertEquals(ScanWatchdog.ACTION_NONE, w.check(400));
+        w.onData(100, 5_000);
+        assertEquals(ScanWatchdog.ACTION_NONE, w.check(5_299));
+        assertEquals(ScanWatchdog.ACTION_REOPEN, w.check(5_300));
+        assertEquals(1, w.faults(ScanWatchdog.FAULT_COMMAND));
+        assertEquals(4, w.commandFailures());
+    }
+
+    @Test
+    public void persistentStallEscalatesToRadioReset() {
+        runFor(1_000);
+        transport.mute(ScanWatchdog.ACTION_RESET_RADIO);
+        runFor(25_000);
+        assertEquals(Arrays.asList(ScanWatchdog.ACTION_RESTART_SCAN, ScanWatchdog.ACTION_RESET_RADIO), actions);
+        assertEquals(1, watchdog.attempts(ScanWatchdog.ACTION_RESTART_SCAN));
+        assertEquals(1, watchdog.attempts(ScanWatchdog.ACTION_RESET_RADIO));
+        assertEquals(1, watchdog.recoveries());
+        // 첫 조치 뒤 다시 stallMs 를 기다렸다가 올렸다
+        long took = watchdog.recoveryMs().max();
+        assertTrue("recovery " + took, took >= 10_000 && took < 11_000);
+        assertEquals(DEVICES, table.size());
+    }
+
+    @Test
+    public void garbageStreamEscalatesToReopenWithBackoff() {
+        runFor(1_000);
+        transport.garble(99); // 어떤 조치로도 풀리지 않는다
+        runFor(60_000);
+        // 1, 2, 3 단계 뒤 3 단계를 5, 10, 20, 20 초 간격으로 되풀이
+        assertEquals(Arrays.asList(1, 2, 3, 3, 3, 3, 3), actions);
+        assertEquals(1, watchdog.faults(ScanWatchdog.FAULT_GARBAGE));
+        assertTrue(watchdog.isRecovering());
+        assertEquals(0, watchdog.recoveries());
+
+        transport.clearFaults();
+        runFor(1_000);
+        assertFalse(watchdog.isRecovering());
+        assertEquals(1, watchdog.recoveries());
+        assertEquals(DEVICES, table.size());
+
+        // 다음 장애는 다시 1 단계부터
+        actions.clear();
+        transport.garble(ScanWatchdog.ACTION_REOPEN);
+        runFor(2_000);
+        assertEquals(Arrays.asList(1, 2, 3), actions);
+        assertEquals(2, watchdog.recoveries());
+    }
+
+    @Test
+    public void failedCommandEscalatesImmediately() {
+        runFor(1_000);
+        transport.mute(ScanWatchdog.ACTION_RESTART_SCAN);
+        transport.failStartScan(1);
+        int startsBefore = transport.startCalls();
+        runFor(12_000);
+        // 스캔 재시작이 실패하자 바로 다음 루프에서 2 단계
+        assertEquals(Arrays.asList(ScanWatchdog.ACTION_RESTART_SCAN, ScanWatchdog.ACTION_RESET_RADIO), actions);
+        assertEquals(1, watchdog.commandFailures());
+        assertEquals(1, watchdog.faults(ScanWatchdog.FAULT_STALL));
+        assertEquals(0, watchdog.faults(ScanWatchdog.FAULT_COMMAND));
+        assertEquals(startsBefore + 2, transport.startCalls());
+        assertEquals(1, watchdog.recoveries());
+        assertEquals(RadioStateMachine.STATE_SCANNING, radio.state());
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.test1;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SightingJournalTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final byte[] PAYLOAD = {0x02, 0x01, 0x06, 0x03, 0x03, (byte) 0xAA, (byte) 0xFE};
+    private static final long T0 = 1_700_000_000_000L;
+
+    private static void fill(SightingJournal j, int n) {
+        for (int i = 0; i < n; i++) {
+            j.append(0x001122330000L + (i % 50), -40 - (i % 50), ScanLineParser.TYPE_ADV + (i & 1),
+                    PAYLOAD, 0, PAYLOAD.length, T0 + i * 10L);
+        }
+    }
+
+    private static void assertRecords(SightingReader r, int n) throws Exception {
+        for (int i = 0; i < n; i++) {
+            assertTrue("record " + i, r.next());
+            assertEquals(0x001122330000L + (i % 50), r.mac());
+            assertEquals(-40 - (i % 50), r.rssi());
+            assertEquals(ScanLineParser.TYPE_ADV + (i & 1), r.type());
+            assertEquals(T0 + i * 10L, r.timeMs());
+            assertEquals(SightingJournal.payloadHash(PAYLOAD, 0, PAYLOAD.length), r.payloadHash());
+        }
+        assertFalse(r.next());
+    }
+
+    @Test
+    public void roundTripsCompressedAndRaw() throws Exception {
+        for (boolean compress : new boolean[]{true, false}) {
+            File dir = tmp.newFolder();
+            SightingJournal j = new SightingJournal(dir, new SightingJournal.Config()
+                    .batchRecords(100).batches(12).compress(compress).sync(false));
+            fill(j, 1050);
+            j.close();
+            assertEquals(1050, j.writtenRecords());
+            assertEquals(11, j.blocks());
+            if (compress) {
+                assertTrue("stored " + j.storedBytes(), j.storedBytes() < 1050 * SightingJournal.RECORD_SIZE / 2);
+            }
+            try (SightingReader r = SightingReader.open(dir, "sightings")) {
+                assertRecords(r, 1050);
+                assertEquals(0, r.corruptBlocks());
+            }
+        }
+    }
+
+    @Test
+    public void flushesPartialBatchAfterInterval() throws Exception {
+        File dir = tmp.newFolder();
+        SightingJournal j = new SightingJournal(dir, new SightingJournal.Config()
+                .batchRecords(1000).flushIntervalMs(100).sync(false));
+        fill(j, 10);
+        j.flushIfDue(T0 + 50);
+        assertEquals(0, j.blocks());
+        j.flushIfDue(T0 + 200);
+        long deadline = System.currentTimeMillis() + 2000;
+        while (j.blocks() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(10, j.writtenRecords());
+        j.close();
+    }
+
+    @Test
+    public void rotatesBySizeAndAppliesRetention() throws Exception {
+        File dir = tmp.newFolder();
+        SightingJournal j = new SightingJournal(dir, new SightingJournal.Config()
+                .batchRecords(100).batches(12).compress(false).sync(false).maxFileBytes(4000).maxFiles(0));
+        fill(j, 1000);
+        j.close();
+        List<File> files = SightingReader.files(dir, "sightings");
+        assertEquals(4, files.size()); // 1625바이트 블록 세 개마다 회전
+        try (SightingReader r = SightingReader.open(dir, "sightings")) {
+            assertRecords(r, 1000);
+        }
+
+        // 새 저널을 열면 개수 제한에 따라 오래된 파일을 지운다
+        SightingJournal next = new SightingJournal(dir, new SightingJournal.Config().maxFiles(3).sync(false));
+        next.close();
+        assertEquals(3, SightingReader.files(dir, "sightings").size());
+
+        // 시간 기준 보존
+        File oldest = SightingReader.files(dir, "sightings").get(0);
+        assertTrue(oldest.setLastModified(System.currentTimeMillis() - 10_000));
+        new SightingJournal(dir, new SightingJournal.Config().retentionMs(5_000).sync(false)).close();
+        assertFalse(oldest.exists());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyBatches() {
+        new SightingJournal.Config().batchRecords(0);
+    }
+
+    @Test
+    public void writesNextBatchToNewFileAfterWriteError() throws Exception {
+        File full = new File("/dev/full");
+        Assume.assumeTrue(full.exists());
+        File dir = tmp.newFolder();
+        SightingJournal j = new SightingJournal(dir, new SightingJournal.Config()
+                .batchRecords(100).batches(4).compress(false).sync(false).maxFileAgeMs(200).maxFiles(0));
+        // 두 번째 파일은 열리지만 쓰기는 실패한다 (디스크 가득 참)
+        File broken = new File(dir, "sightings-000002.sj");
+        Files.createSymbolicLink(broken.toPath(), full.toPath());
+        for (int b = 0; b < 3; b++) {
+            if (b == 1) {
+                Thread.sleep(250); // 나이 기준 회전
+            }
+            fill(j, 100);
+            long deadline = System.currentTimeMillis() + 2000;
+            while (j.writtenRecords() + j.writeErrors() * 100 < (b + 1) * 100L
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        j.close();
+        // 실패한 배치 하나만 잃고 다음 배치는 새 파일에 쓴다
+        assertEquals(1, j.writeErrors());
+        assertEquals(200, j.writtenRecords());
+        assertTrue(broken.delete());
+        List<File> files = SightingReader.files(dir, "sightings");
+        assertEquals(2, files.size());
+        assertTrue(files.get(1).getName(), files.get(1).getName().endsWith("-000003.sj"));
+        try (SightingReader r = SightingReader.open(dir, "sightings")) {
+            assertEquals(200, r.exportCsv(new StringBuilder()));
+            assertEquals(0, r.corruptBlocks());
+        }
+    }
+
+    @Test
+    public void neverBlocksWhenWriterFallsBehind() throws Exception {
+        File dir = tmp.newFolder();
+        SightingJournal j = new SightingJournal(dir, new SightingJournal.Config()
+                .batchRecords(10).batches(2).sync(true));
+        long start = System.nanoTime();
+        fill(j, 100_000);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        j.close();
+        assertTrue("append took " + elapsedMs + "ms", elapsedMs < 2000);
+        assertEquals(100_000, j.appendedRecords() + j.droppedRecords());
+        assertTrue(j.droppedRecords() > 0);
+        assertEquals(j.appendedRecords(), j.writtenRecords());
+    }
+
+    @Test
+    public void skipsTruncatedTailBlock() throws Exception {
+        File dir = tmp.newFolder();
+        SightingJournal j = new SightingJournal(dir, new SightingJournal.Config()
+                .batchRecords(100).batches(4).sync(false));
+        fill(j, 300);
+        j.close();
+        File f = SightingReader.files(dir, "sightings").get(0);
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        StringBuilder csv = new StringBuilder();
+        try (SightingReader r = SightingReader.open(dir, "sightings")) {
+            assertEquals(200, r.exportCsv(csv));
+            assertEquals(1, r.corruptBlocks());
+        }
+        assertTrue(csv.toString(), csv.toString().startsWith("time_ms,mac,rssi,type,payload_hash\n"
+                + T0 + ",00:11:22:33:00:00,-40,ADV,"));
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.test1;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SightingUplinkTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final DeviceTable table = new DeviceTable(4096, 60_000);
+    private final DeltaTracker tracker = new DeltaTracker(table, 5);
+    private final List<SightingUplink> uplinks = new ArrayList<>();
+    private Collector collector;
+
+    /**
+     * 테스트용 수집 서버. 받은 묶음을 디코딩해 목격 수와 바이트를 센다.
+     * failNext 만큼은 503 으로 거절하고, reject 이면 400 을 돌려준다.
+     */
+    static final class Collector implements AutoCloseable {
+        final HttpServer server;
+        final AtomicInteger failNext = new AtomicInteger();
+        volatile boolean reject;
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicLong sightings = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final List<UplinkBatch> batches = new CopyOnWriteArrayList<>();
+
+        Collector() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/sightings", exchange -> {
+                requests.incrementAndGet();
+                byte[] body;
+                try (InputStream in = exchange.getRequestBody()) {
+                    body = in.readAllBytes();
+                }
+                int code;
+                if (failNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    code = 503;
+                } else if (reject) {
+                    code = 400;
+                } else if (!SightingUplink.CONTENT_TYPE.equals(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                    code = 415;
+                } else {
+                    UplinkBatch batch = UplinkBatch.decode(body, 0, body.length);
+                    batches.add(batch);
+                    sightings.addAndGet(batch.size());
+                    bytes.addAndGet(body.length);
+                    code = 204;
+                }
+                exchange.sendResponseHeaders(code, -1);
+                exchange.close();
+            });
+            server.start();
+        }
+
+        URL url() throws IOException {
+            return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/sightings");
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (SightingUplink u : uplinks) {
+            u.close();
+        }
+        if (collector != null) {
+            collector.close();
+        }
+    }
+
+    private SightingUplink uplink(File dir, SightingUplink.Sender sender, SightingUplink.Config config)
+            throws IOException {
+        SightingUplink u = new SightingUplink(dir, sender, config);
+        uplinks.add(u);
+        return u;
+    }
+
+    /** iBeacon 형태 페이로드, 기기 n 개가 major/minor 만 다르다 */
+    private static byte[] beacon(int i) {
+        byte[] p = {0x02, 0x01, 0x06, 0x1A, (byte) 0xFF, 0x4C, 0x00, 0x02, 0x15,
+                (byte) 0xE2, (byte) 0xC5, 0x6D, (byte) 0xB5, (byte) 0xDF, (byte) 0xFB, 0x48, (byte) 0xD2,
+                (byte) 0xB0, 0x60, (byte) 0xD0, (byte) 0xF5, (byte) 0xA7, 0x10, (byte) 0x96, (byte) 0xE0,
+                0x00, 0x01, 0x00, 0x00, (byte) 0xC5};
+        p[27] = (byte) (i >> 8);
+        p[28] = (byte) i;
+        return p;
+    }
+
+    /** 기기 n 개가 round 번 광고한 이벤트 (첫 회 APPEARED, 이후 RSSI 변화로 CHANGED) */
+    private List<ScanEvent> traffic(int devices, int round) {
+        for (int i = 0; i < devices; i++) {
+            byte[] p = beacon(i);
+            int rssi = -50 - (i % 30) - (round % 2) * 10;
+            table.update(0xC0FFEE000000L + i, rssi, ScanLineParser.TYPE_ADV, p, 0, p.length, 1_700_000_000_000L + round * 1000L + i);
+        }
+        return tracker.collect();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void batchRoundTripIsCompactComparedToJson() throws Exception {
+        UplinkBatch batch = new UplinkBatch(1000);
+        JSONArray json = new JSONArray();
+        for (int round = 0; round < 4; round++) {
+            for (ScanEvent e : traffic(250, round)) {
+                batch.add(e);
+                json.put(e.getDevice().toJson());
+            }
+        }
+        assertEquals(1000, batch.size());
+        // RSSI 만 바뀐 CHANGED 는 페이로드를 싣지 않는다
+        assertEquals(250, batch.payloadCount());
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] encoded = batch.encode(deflater);
+        byte[] plain = batch.encode(null);
+        deflater.end();
+        assertEquals(1000, UplinkBatch.sightings(encoded));
+
+        for (byte[] data : new byte[][]{encoded, plain}) {
+            UplinkBatch decoded = UplinkBatch.decode(data, 0, data.length);
+            assertEquals(batch.size(), decoded.size());
+            for (int i = 0; i < batch.size(); i++) {
+                assertEquals(batch.mac(i), decoded.mac(i));
+                assertEquals(batch.type(i), decoded.type(i));
+                assertEquals(batch.rssi(i), decoded.rssi(i));
+                assertEquals(batch.timeMs(i), decoded.timeMs(i));
+                assertArrayEquals(batch.adv(i), decoded.adv(i));
+                assertArrayEquals(batch.rsp(i), decoded.rsp(i));
+            }
+        }
+        assertEquals(ScanEvent.Type.APPEARED, batch.type(0));
+        assertArrayEquals(beacon(0), batch.adv(0));
+        assertEquals(0, batch.adv(250).length);
+
+        int jsonBytes = json.toString().getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(encoded.length < plain.length);
+        assertTrue("encoded " + encoded.length + " vs json " + jsonBytes, encoded.length * 10 < jsonBytes);
+    }
+
+    @Test
+    public void deliversBatchesToCollector() throws Exception {
+        collector = new Collector();
+        SightingUplink u = uplink(folder.newFolder(), SightingUplink.http(collector.url(), 2000),
+                new SightingUplink.Config().batchSightings(500).batchAgeMs(60_000));
+
+        long start = System.nanoTime();
+        int total = 0;
+        for (int round = 0; round < 40; round++) {
+            List<ScanEvent> events = traffic(250, round);
+            total += events.size();
+            u.onScanEvents(events);
+        }
+        u.flush();
+        final int expected = total;
+        await(() -> u.sentSightings() == expected);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertEquals(expected, collector.sightings.get());
+        assertEquals(20, collector.requests.get());
+        assertEquals(20, u.sentBatches());
+        assertEquals(collector.bytes.get(), u.sentBytes());
+        await(() -> u.spooledBatches() == 0);
+        assertEquals(0, u.spooledBytes());
+        assertEquals(0, u.sendFailures());
+        // 대부분 RSSI 변화라 목격 하나가 몇 바이트면 된다
+        assertTrue("bytes per sighting " + u.bytesPerSighting(), u.bytesPerSighting() < 8);
+        ScanLog.i("SightingUplinkTest", String.format(Locale.US,
+                "%d sightings in %.3f s (%.0f/s), %.2f bytes/sighting", expected, seconds,
+                expected / seconds, u.bytesPerSighting()));
+    }
+
+    @Test
+    public void sendsPartialBatchAfterAge() throws Exception {
+        collector = new Collector();
+        SightingUplink u = uplink(folder.newFolder(), SightingUplink.http(collector.url(), 2000),
+                new SightingUplink.Config().batchSightings(1000).batchAgeMs(50));
+        u.onScanEvents(traffic(3, 0));
+        await(() -> collector.sightings.get() == 3);
+        assertEquals(1, u.batches());
+    }
+
+    @Test
+    public void retriesWithBackoffAndKeepsSpoolAcrossRestart() throws Exception {
+        collector = new Collector();
+        collector.failNext.set(3);
+        File dir = folder.newFolder();
+        SightingUplink.Config config = new SightingUplink.Config().batchSightings(100).batchAgeMs(60_000)
+                .retry(10, 40);
+        SightingUplink u = uplink(dir, SightingUplink.http(collector.url(), 2000), config);
+        u.onScanEvents(traffic(250, 0));
+        u.flush();
+        await(() -> u.sentSightings() == 250);
+        assertEquals(3, u.sendFailures());
+        assertEquals(3, u.sentBatches());
+        assertEquals(6, collector.requests.get());
+        await(() -> u.spooledBatches() == 0);
+
+        // 오프라인: 묶음이 디스크에 남는다
+        SightingUplink offline = uplink(dir, body -> {
+            throw new IOException("offline");
+        }, config);
+        offline.onScanEvents(traffic(250, 1));
+        offline.flush();
+        await(() -> offline.sendFailures() >= 2);
+        offline.close();
+        assertEquals(3, offline.spooledBatches());
+        assertEquals(3, SightingUplink.files(dir, "uplink").size());
+
+        // 다시 시작하면 남은 묶음부터 보낸다
+        SightingUplink resumed = uplink(dir, SightingUplink.http(collector.url(), 2000), config);
+        await(() -> collector.sightings.get() == 500);
+        await(() -> resumed.spooledBatches() == 0);
+        assertEquals(0, SightingUplink.files(dir, "uplink").size());
+        assertEquals(6, collector.batches.size());
+    }
+
+    @Test
+    public void dropsRejectedAndOverflowingBatches() throws Exception {
+        collector = new Collector();
+        collector.reject = true;
+        SightingUplink u = uplink(folder.newFolder(), SightingUplink.http(collector.url(), 2000),
+                new SightingUplink.Config().batchSightings(50).batchAgeMs(60_000));
+        u.onScanEvents(traffic(100, 0));
+        u.flush();
+        await(() -> u.rejectedBatches() == 2);
+        assertEquals(0, u.sendFailures());
+        await(() -> u.spooledBatches() == 0);
+
+        // 보내지 못하는 동안 스풀 용량을 넘으면 오래된 묶음부터 버린다
+        SightingUplink offline = uplink(folder.newFolder(), body -> {
+            throw new IOException("offline");
+        }, new SightingUplink.Config().batchSightings(50).batchAgeMs(60_000).maxSpoolBytes(1).retry(60_000, 60_000));
+        for (int round = 1; round < 6; round++) {
+            offline.onScanEvents(traffic(50, round));
+            offline.flush();
+        }
+        await(() -> offline.batches() == 5);
+        assertEquals(1, offline.spooledBatches());
+        assertEquals(4, offline.droppedBatches());
+    }
+
+    @Test
+    public void corruptBatchIsRejectedByDecoder() {
+        UplinkBatch batch = new UplinkBatch(4);
+        batch.add(traffic(1, 0).get(0));
+        byte[] encoded = batch.encode(null);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 3);
+        try {
+            UplinkBatch.decode(truncated, 0, truncated.length);
+            throw new AssertionError("expected IOException");
+        } catch (IOException expected) {
+            // 잘린 본문
+        }
+    }
+}
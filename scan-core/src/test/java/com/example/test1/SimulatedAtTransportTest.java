@@ -0,0 +1,118 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimulatedAtTransportTest {
+
+    private static final class Counter implements ScanLineParser.Callback {
+        final Set<Long> macs = new HashSet<>();
+        int records;
+        int rejects;
+
+        @Override
+        public void onRecord(ScanLineParser p) {
+            records++;
+            macs.add(p.mac());
+            assertTrue(new AdvertisementView().wrap(p.payload(), 0, p.payloadLength()).isValid());
+        }
+
+        @Override
+        public void onReject(int reason) {
+            rejects++;
+        }
+    }
+
+    private static void startScan(AtTransport t) {
+        assertEquals(0, t.enableMaster(true));
+        assertEquals(0, t.startNewScan("", "", 0, "", ""));
+    }
+
+    @Test
+    public void generatesParseableTrafficForAllDevices() {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(500).chunkSize(1000));
+        startScan(t);
+
+        byte[] buf = new byte[2048];
+        int[] len = new int[1];
+        ScanLineParser parser = new ScanLineParser();
+        Counter counter = new Counter();
+        boolean splitLine = false;
+        for (int i = 0; i < 400; i++) {
+            t.recv(buf, len, 20, 1000);
+            assertTrue(len[0] > 0 && len[0] <= 1000);
+            splitLine |= buf[len[0] - 1] != '\n';
+            parser.feed(buf, 0, len[0], counter);
+        }
+        assertEquals(0, counter.rejects);
+        assertEquals(500, counter.macs.size());
+        assertTrue("chunks should split lines", splitLine);
+    }
+
+    @Test
+    public void lineAlignedChunksEndOnNewline() {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(20).chunkSize(300).fragmentation(SimulatedAtTransport.Fragmentation.LINE_ALIGNED));
+        startScan(t);
+        byte[] buf = new byte[2048];
+        int[] len = new int[1];
+        t.recv(buf, len, 20, 1000); // 스캔 시작 OK
+        for (int i = 0; i < 50; i++) {
+            t.recv(buf, len, 20, 1000);
+            assertEquals('\n', buf[len[0] - 1]);
+        }
+    }
+
+    @Test
+    public void realtimeModePacesByAdvertisingInterval() {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(10).advIntervalMs(50).rspRatio(0).realtime(true));
+        startScan(t);
+        byte[] buf = new byte[2048];
+        int[] len = new int[1];
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < 300_000_000L) {
+            t.recv(buf, len, 20, 100);
+        }
+        // 300ms 동안 10대 x 50ms 주기 ~= 60줄
+        long lines = t.linesGenerated();
+        assertTrue("lines=" + lines, lines >= 40 && lines <= 80);
+    }
+
+    @Test
+    public void answersAtCommands() {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config().deviceCount(0));
+        byte[] cmd = "AT+VERSION\r\n".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0, t.send(cmd, cmd.length));
+        byte[] buf = new byte[256];
+        int[] len = new int[1];
+        t.recv(buf, len, 10, 100);
+        assertEquals("AT+VERSION=RF_BM_BG22A3_SIM\r\nOK\r\n", new String(buf, 0, len[0], StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void replaysCapturedLog() throws Exception {
+        List<byte[]> chunks = LogCorpus.chunks("orginal.txt");
+        SimulatedAtTransport t = SimulatedAtTransport.replay(chunks,
+                new SimulatedAtTransport.Config().chunkSize(4096));
+        startScan(t);
+        byte[] buf = new byte[4096];
+        int[] len = new int[1];
+        t.recv(buf, len, 20, 1000); // 스캔 시작 OK
+        for (byte[] chunk : chunks) {
+            t.recv(buf, len, 20, 1000);
+            assertArrayEquals(chunk, java.util.Arrays.copyOf(buf, len[0]));
+        }
+        t.recv(buf, len, 20, 1000);
+        assertEquals(0, len[0]);
+    }
+}
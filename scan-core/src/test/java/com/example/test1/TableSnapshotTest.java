@@ -0,0 +1,216 @@
+package com.example.test1;
+
+import org.json.JSONArray;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TableSnapshotTest {
+    private static final byte[] ADV1 = {0x02, 0x01, 0x06};
+    private static final byte[] ADV2 = {0x02, 0x01, 0x1A};
+
+    private final DeviceTable table = new DeviceTable(256, 1000);
+    private final DeltaTracker tracker = new DeltaTracker(table, 5);
+    private final TableSnapshot.Publisher publisher = new TableSnapshot.Publisher(256);
+
+    {
+        tracker.setSnapshotPublisher(publisher);
+    }
+
+    private void adv(long mac, int rssi, byte[] payload, long now) {
+        table.update(mac, rssi, ScanLineParser.TYPE_ADV, payload, 0, payload.length, now);
+    }
+
+    @Test
+    public void publishesOnlyChangedPages() {
+        TableSnapshot empty = publisher.current();
+        assertEquals(0, empty.size());
+        assertEquals(DeviceTable.NO_ENTRY, empty.nextEntry(0));
+
+        for (int i = 0; i < 200; i++) {
+            adv(1000 + i, -60, ADV1, 0);
+        }
+        tracker.collect();
+        TableSnapshot s1 = publisher.current();
+        assertEquals(1, s1.version());
+        assertEquals(200, s1.size());
+
+        // 히스테리시스 이내의 RSSI 변화도 스냅샷에는 반영된다
+        adv(1005, -62, ADV1, 10);
+        List<ScanEvent> events = tracker.collect();
+        assertTrue(events.isEmpty());
+        TableSnapshot s2 = publisher.current();
+        assertEquals(2, s2.version());
+        int e = table.find(1005);
+        assertEquals(-62, s2.rssi(e));
+        assertEquals(10, s2.lastSeen(e));
+        // 이전 스냅샷은 그대로다
+        assertEquals(-60, s1.rssi(e));
+        assertEquals(0, s1.lastSeen(e));
+
+        // 바뀐 기기가 속한 페이지만 새로 만들어진다
+        int changedPage = e / TableSnapshot.PAGE_SIZE;
+        for (int p = 0; p * TableSnapshot.PAGE_SIZE < 256; p++) {
+            int entry = p * TableSnapshot.PAGE_SIZE;
+            if (p == changedPage) {
+                assertNotSame(s1.page(entry), s2.page(entry));
+            } else {
+                assertSame(s1.page(entry), s2.page(entry));
+            }
+        }
+
+        // 변화가 없으면 게시하지 않는다
+        tracker.collect();
+        assertSame(s2, publisher.current());
+    }
+
+    @Test
+    public void publishCopiesOnlyTouchedDirectoryNodes() {
+        int capacity = 4 * TableSnapshot.NODE_SIZE * TableSnapshot.PAGE_SIZE;
+        DeviceTable big = new DeviceTable(capacity, 1000);
+        DeltaTracker bigTracker = new DeltaTracker(big, 5);
+        TableSnapshot.Publisher bigPublisher = new TableSnapshot.Publisher(capacity);
+        bigTracker.setSnapshotPublisher(bigPublisher);
+        for (int i = 0; i < capacity; i++) {
+            big.update(1000 + i, -60, ScanLineParser.TYPE_ADV, ADV1, 0, ADV1.length, 0);
+        }
+        bigTracker.collect();
+        TableSnapshot s1 = bigPublisher.current();
+        assertEquals(capacity, s1.size());
+
+        big.update(1000 + capacity / 2, -62, ScanLineParser.TYPE_ADV, ADV1, 0, ADV1.length, 10);
+        bigTracker.collect();
+        TableSnapshot s2 = bigPublisher.current();
+        int e = big.find(1000 + capacity / 2);
+        assertEquals(-62, s2.rssi(e));
+        assertEquals(-60, s1.rssi(e));
+        // 바뀐 페이지가 속한 노드만 새로 만들고 나머지 노드는 그대로 공유한다
+        int span = TableSnapshot.NODE_SIZE * TableSnapshot.PAGE_SIZE;
+        for (int entry = 0; entry < capacity; entry += span) {
+            if (entry / span == e / span) {
+                assertNotSame(s1.node(entry), s2.node(entry));
+            } else {
+                assertSame(s1.node(entry), s2.node(entry));
+            }
+        }
+        assertNotSame(s1.page(e), s2.page(e));
+        int neighbour = (e / TableSnapshot.PAGE_SIZE) % TableSnapshot.NODE_SIZE == 0
+                ? e + TableSnapshot.PAGE_SIZE : e - TableSnapshot.PAGE_SIZE;
+        assertSame(s1.page(neighbour), s2.page(neighbour));
+    }
+
+    @Test
+    public void removesEvictedDevices() {
+        adv(1, -60, ADV1, 0);
+        adv(2, -70, ADV1, 900);
+        tracker.collect();
+        TableSnapshot before = publisher.current();
+        int e1 = table.find(1);
+
+        table.evictExpired(1500);
+        List<ScanEvent> events = tracker.collect();
+        assertEquals(1, events.size());
+        assertEquals(ScanEvent.Type.LOST, events.get(0).getType());
+        TableSnapshot after = publisher.current();
+        assertEquals(1, after.size());
+        assertFalse(after.isUsed(e1));
+        assertEquals(DeviceTable.NO_ENTRY, after.find(1));
+        assertEquals(table.find(2), after.find(2));
+        assertTrue(before.isUsed(e1));
+        assertEquals(1, before.mac(e1));
+
+        // 같은 entry 를 다른 기기가 다시 쓰면 새 기기로 보인다
+        adv(3, -50, ADV2, 1600);
+        tracker.collect();
+        TableSnapshot reused = publisher.current();
+        assertEquals(2, reused.size());
+        assertEquals(ADV2.length, reused.adv(reused.find(3)).length());
+    }
+
+    @Test
+    public void sharesSnapshotsAndRendersJsonLazily() throws Exception {
+        PayloadCache cache = new PayloadCache(16);
+        tracker.setPayloadCache(cache);
+        adv(1, -60, ADV1, 0);
+        adv(2, -70, ADV2, 0);
+        List<ScanEvent> events = tracker.collect();
+        TableSnapshot s1 = publisher.current();
+        int e1 = table.find(1);
+        int e2 = table.find(2);
+        // DeltaTracker 가 보고한 스냅샷을 그대로 쓴다
+        assertSame(events.get(0).getDevice(), s1.device(e1));
+        assertSame(events.get(0).getDevice().getAdv(), s1.adv(e1));
+
+        JSONArray json = s1.toJson();
+        assertSame(json, s1.toJson());
+        assertEquals(2, json.length());
+        assertEquals(s1.device(e1).toJson().toString(), json.getJSONObject(0).toString());
+
+        // 기기 2 만 바뀌면 기기 1 의 스냅샷 객체는 다음 스냅샷에서도 같다
+        adv(2, -71, ADV2, 10);
+        tracker.collect();
+        TableSnapshot s2 = publisher.current();
+        assertSame(s1.device(e1), s2.device(e1));
+        assertNotSame(s1.device(e2), s2.device(e2));
+        assertEquals(-71, s2.device(e2).getRssi());
+        assertSame(s1.adv(e2), s2.adv(e2));
+        // 페이로드가 그대로면 캐시를 다시 찾지 않는다
+        assertEquals(2, cache.misses());
+        assertEquals(0, cache.hits());
+        assertNull(s2.device(e2).toJson().opt("RSSI_smoothed"));
+        assertEquals(2, s2.devices().size());
+    }
+
+    @Test
+    public void readersSeeConsistentSnapshotsWhileWriterPublishes() throws Exception {
+        // 기기 RSSI 는 모두 같은 값으로 함께 바뀐다. 읽는 쪽은 한 스냅샷 안에서 섞인 값을 보면 안 된다.
+        for (int i = 0; i < 64; i++) {
+            adv(i, -40, ADV1, 0);
+        }
+        tracker.collect();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            long lastVersion = 0;
+            while (!stop.get()) {
+                TableSnapshot s = publisher.current();
+                if (s.version() < lastVersion) {
+                    failure.set("version went back");
+                }
+                lastVersion = s.version();
+                int first = s.rssi(s.nextEntry(0));
+                int n = 0;
+                for (int e = s.nextEntry(0); e >= 0; e = s.nextEntry(e + 1)) {
+                    if (s.rssi(e) != first) {
+                        failure.set("torn snapshot at version " + s.version());
+                    }
+                    n++;
+                }
+                if (n != s.size()) {
+                    failure.set("size " + s.size() + " but " + n + " entries");
+                }
+            }
+        });
+        reader.start();
+        for (int round = 0; round < 20_000; round++) {
+            int rssi = -40 - round % 50;
+            for (int i = 0; i < 64; i++) {
+                adv(i, rssi, ADV1, round);
+            }
+            tracker.collect();
+        }
+        stop.set(true);
+        reader.join();
+        assertNull(failure.get());
+        assertEquals(64, publisher.current().size());
+    }
+}
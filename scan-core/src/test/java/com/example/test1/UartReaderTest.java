@@ -0,0 +1,123 @@
+package com.example.test1;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UartReaderTest {
+
+    @Test
+    public void blockPolicyDeliversEveryByteToConsumer() {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(200).chunkSize(1000));
+        t.enableMaster(true);
+        t.startNewScan("", "", 0, "", "");
+
+        ChunkRing ring = new ChunkRing(4, 2048, ChunkRing.POLICY_BLOCK);
+        UartReader reader = new UartReader(t, ring, 2048);
+        reader.start();
+
+        final Set<Long> macs = new HashSet<>();
+        final int[] rejects = new int[1];
+        ScanLineParser parser = new ScanLineParser();
+        ScanLineParser.Callback cb = new ScanLineParser.Callback() {
+            @Override
+            public void onRecord(ScanLineParser p) {
+                macs.add(p.mac());
+            }
+
+            @Override
+            public void onReject(int reason) {
+                rejects[0]++;
+            }
+        };
+        byte[] chunk = new byte[2048];
+        long consumed = 0;
+        for (int i = 0; i < 300; i++) {
+            int len = ring.poll(chunk, 1000);
+            assertTrue(len > 0);
+            assertEquals(0, ring.lastFlags());
+            parser.feed(chunk, 0, len, cb);
+            consumed += len;
+        }
+        reader.stop();
+        assertFalse(reader.isRunning());
+
+        // 정지 시점에 링에 남은 데이터와, 정지로 대기가 끊겨 버린 마지막 청크까지 합치면
+        // 시뮬레이터가 내보낸 바이트와 같다
+        int len;
+        while ((len = ring.poll(chunk, 0)) != ChunkRing.NONE) {
+            consumed += len;
+        }
+        assertEquals(t.bytesDelivered(), reader.bytesRead());
+        assertEquals(reader.bytesRead(), consumed + ring.droppedBytes());
+        assertTrue(ring.droppedChunks() <= 1);
+        assertEquals(0, rejects[0]);
+        assertEquals(200, macs.size());
+    }
+
+    @Test
+    public void failedRecvDoesNotRepeatPreviousChunk() {
+        // 한 번 걸러 recv 가 실패하고 length 는 이전 값 그대로 남는다
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(20).chunkSize(500)) {
+            private int calls;
+
+            @Override
+            public synchronized int recv(byte[] data, int[] length, int timeoutMs, int maxWaitMs) {
+                if (calls++ % 2 == 1) {
+                    return -1;
+                }
+                return super.recv(data, length, timeoutMs, maxWaitMs);
+            }
+        };
+        t.enableMaster(true);
+        t.startNewScan("", "", 0, "", "");
+
+        ChunkRing ring = new ChunkRing(4, 1024, ChunkRing.POLICY_BLOCK);
+        UartReader reader = new UartReader(t, ring, 1024);
+        reader.start();
+        byte[] chunk = new byte[1024];
+        long consumed = 0;
+        for (int i = 0; i < 50; i++) {
+            int len = ring.poll(chunk, 1000);
+            assertTrue(len > 0);
+            consumed += len;
+        }
+        reader.stop();
+        int len;
+        while ((len = ring.poll(chunk, 0)) != ChunkRing.NONE) {
+            consumed += len;
+        }
+        assertEquals(t.bytesDelivered(), reader.bytesRead());
+        assertEquals(reader.bytesRead(), consumed + ring.droppedBytes());
+    }
+
+    @Test
+    public void readerKeepsReadingWhileConsumerStalls() throws Exception {
+        SimulatedAtTransport t = new SimulatedAtTransport(new SimulatedAtTransport.Config()
+                .deviceCount(50).chunkSize(500));
+        t.enableMaster(true);
+        t.startNewScan("", "", 0, "", "");
+
+        ChunkRing ring = new ChunkRing(4, 1024, ChunkRing.POLICY_DROP_OLDEST);
+        UartReader reader = new UartReader(t, ring, 1024);
+        reader.start();
+        Thread.sleep(50); // 소비자가 멈춘 상태
+        reader.stop();
+
+        assertTrue(reader.recvCalls() > ring.capacity());
+        assertTrue(ring.overruns() > 0);
+        assertEquals(ring.capacity(), ring.size());
+        assertEquals(ring.offeredChunks() - ring.capacity(), ring.droppedChunks());
+
+        byte[] chunk = new byte[1024];
+        assertTrue(ring.poll(chunk, 0) > 0);
+        assertEquals(ChunkRing.FLAG_GAP, ring.lastFlags());
+    }
+}
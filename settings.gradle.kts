@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "test1"
 include(":app")
+include(":scan-core")
+include(":benchmark")
  
\ No newline at end of file